@@ -69,6 +69,11 @@ public final class Configure {
 	 */
 	public final static int PORT = getProperty("port", DEFAULT_PORT);
 	
+	/**
+	 * 负责连接读写的 selector 线程数，连接平均分配到各个线程，默认等于cpu核数
+	 */
+	public final static int NIO_REACTORS = getProperty("nio.reactors", Runtime.getRuntime().availableProcessors());
+	
 	/**
 	 * 是否挖矿
 	 */
@@ -116,6 +121,16 @@ public final class Configure {
 	 */
 	public final static int MAX_CONNECT_COUNT = getProperty("max.connect.count", 10);
 	
+	/**
+	 * 已收到的交易和区块过滤器，每一代最多记录的数量
+	 */
+	public final static int INVENTORY_FILTER_GENERATION_SIZE = getProperty("inventory.filter.generation.size", 200000);
+	
+	/**
+	 * 已收到的交易和区块过滤器，每一代最长使用的时间，单位秒，超过后即使没满也换新的一代
+	 */
+	public final static int INVENTORY_FILTER_GENERATION_SECONDS = getProperty("inventory.filter.generation.seconds", 600);
+	
 	/**
 	 * 区块生成间隔时间，单位秒
 	 */
@@ -141,6 +156,10 @@ public final class Configure {
 	 * 区块存储目录
 	 */
 	public static String DATA_BLOCK = DATA_DIR + File.separator + "block";
+	/**
+	 * 区块文件存储目录，完整区块按顺序追加写入
+	 */
+	public static String DATA_BLOCK_FILES = DATA_DIR + File.separator + "blocks";
 	/**
 	 * 区块状态存储目录
 	 */
@@ -150,6 +169,11 @@ public final class Configure {
 	 */
 	public static String DATA_TRANSACTION = DATA_DIR + File.separator + "transaction";
 	
+	/**
+	 * 区块提交时是否同步刷盘，开启后已提交的区块在断电后也不会丢失，关闭可提升同步速度
+	 */
+	public final static boolean BLOCK_COMMIT_SYNC = getProperty("block.commit.sync", true);
+	
 	/*************  RPC 相关配置  begin  *****************/
 	
 	/**
@@ -264,11 +288,26 @@ public final class Configure {
 
 	//交易备注最大字符长度
 	public final static int MAX_REMARK_LEN = 128;
+	
+	/**
+	 * 内存池最大占用字节数，超出后优先淘汰手续费率低的交易
+	 */
+	public final static long MEMPOOL_MAX_SIZE = getProperty("mempool.max.size", 100 * 1048576L);
 
 	/*************  交易相关配置   end  *****************/
 
 	/*************  系统级配置   begin  *****************/
 
+	/**
+	 * 本地 libsecp256k1 库可用时，是否用它来签名和验证签名，库不存在时始终使用纯java实现
+	 */
+	public final static boolean NATIVE_SECP256K1 = getProperty("secp256k1.native", true);
+
+	/**
+	 * 同步区块时是否先同步区块头，再从多个节点并行下载区块
+	 */
+	public final static boolean SYNC_HEADERS_FIRST = getProperty("sync.headers.first", true);
+
 	/**
 	 * 认证账户列表存储键
 	 */
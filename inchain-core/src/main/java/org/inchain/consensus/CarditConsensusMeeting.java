@@ -39,6 +39,7 @@ import org.inchain.network.NetworkParams;
 import org.inchain.store.BlockHeaderStore;
 import org.inchain.store.BlockStore;
 import org.inchain.store.BlockStoreProvider;
+import org.inchain.store.PeriodIndex;
 import org.inchain.store.TransactionStore;
 import org.inchain.transaction.Transaction;
 import org.inchain.transaction.business.RegConsensusTransaction;
@@ -305,34 +306,11 @@ public class CarditConsensusMeeting implements ConsensusMeeting {
 		oldMettings.clear();
 		
 		//加载之前5轮的共识信息
-		for (int i = 0; i < 5; i++) {
-			long startTime = bestBlockHeader.getPeriodStartTime();
-			
-			while(true) {
-				Sha256Hash hash = bestBlockHeader.getPreHash();
-				if(Sha256Hash.ZERO_HASH.equals(hash)) {
-					break;
-				}
-				BlockHeaderStore blockHeaderStore = blockStoreProvider.getHeader(hash.getBytes());
-				if(blockHeaderStore == null) {
-					break;
-				}
-				bestBlockHeader = blockHeaderStore.getBlockHeader();
-				
-				if(bestBlockHeader.getPeriodStartTime() != startTime) {
-					break;
-				}
-			}
-			if(startTime == bestBlockHeader.getPeriodStartTime()) {
-				break;
-			}
-			
-			List<ConsensusAccount> oldConsensusList = analysisConsensusSnapshots(bestBlockHeader.getPeriodStartTime());
-			MeetingItem metting = new MeetingItem(this, bestBlockHeader.getPeriodStartTime(), oldConsensusList);
+		for (PeriodIndex.Period period : blockStoreProvider.getPreviousPeriods(bestBlockHeader.getPeriodStartTime(), 5)) {
+			List<ConsensusAccount> oldConsensusList = analysisConsensusSnapshots(period.getPeriodStartTime());
+			MeetingItem metting = new MeetingItem(this, period.getPeriodStartTime(), oldConsensusList);
 			metting.startConsensus();
 			oldMettings.add(metting);
-			
-			//consensusListCacher
 		}
 		log.info("old metting size : {}", oldMettings.size());
 	}
@@ -388,8 +366,7 @@ public class CarditConsensusMeeting implements ConsensusMeeting {
 	}
 
 	/**
-	 * 获取某论的共识快照，从最新的内存映射倒推
-	 * TODO 可以考虑做一个内存映射，每次分析计算量太大 ？
+	 * 获取某论的共识快照
 	 * @param periodStartTime
 	 * @return List<ConsensusAccount>
 	 */
@@ -409,59 +386,11 @@ public class CarditConsensusMeeting implements ConsensusMeeting {
 				break;
 			}
 		}
-		//内存没找到，那么只有去查询了
+		//内存没找到，先从共识成员日志里计算，日志里没有的（升级之前的轮次）再从最新的快照倒推
 		if(consensusList == null) {
-			consensusList = consensusPool.listSnapshots();
-
-			byte[] endBlockHashBytes = blockStoreProvider.getBestBlockHeader().getBlockHeader().getHash().getBytes();
-			while(true) {
-				BlockStore blockStore = blockStoreProvider.getBlock(endBlockHashBytes);
-				if(blockStore == null || blockStore.getBlock() == null) {
-					break;
-				}
-
-				Block block = blockStore.getBlock();
-				if(block.getHeight() == 0l || block.getPeriodStartTime() < periodStartTime) {
-					break;
-				}
-
-				List<Transaction> txList = block.getTxs();
-				for (Transaction transaction : txList) {
-					//共识的注册与退出
-					if(transaction.getType() == Definition.TYPE_REG_CONSENSUS) {
-						//注册新的，那么删除掉
-						RegConsensusTransaction regTx = (RegConsensusTransaction) transaction;
-						Iterator<ConsensusAccount> it = consensusList.iterator();
-						while(it.hasNext()) {
-							ConsensusAccount consensusAccount = it.next();
-							if(Arrays.equals(regTx.getHash160(), consensusAccount.getCommissioned())) {
-								it.remove();
-								break;
-							}
-						}
-					} else if(transaction.getType() == Definition.TYPE_REM_CONSENSUS || transaction.getType() == Definition.TYPE_VIOLATION) {
-						//删除掉的，新增进去
-						byte[] hash160 = null;
-
-						//注册共识的交易
-						Sha256Hash txhash = transaction.getInput(0).getFroms().get(0).getParent().getHash();
-
-						TransactionStore regTxStore = blockStoreProvider.getTransaction(txhash.getBytes());
-						if(regTxStore == null) {
-							break;
-						}
-						RegConsensusTransaction regTx = (RegConsensusTransaction) regTxStore.getTransaction();
-
-						consensusList.add(new ConsensusAccount(regTx.getHash160(), regTx.getPackager()));
-					}
-				}
-
-				if(block.getPeriodStartTime() < periodStartTime) {
-					break;
-				} else {
-					endBlockHashBytes = block.getPreHash().getBytes();
-				}
-
+			consensusList = blockStoreProvider.getConsensusMembers(periodStartTime);
+			if(consensusList == null) {
+				consensusList = replayConsensusSnapshots(periodStartTime);
 			}
 			//排序
 			consensusList.sort(new Comparator<ConsensusAccount>() {
@@ -480,6 +409,66 @@ public class CarditConsensusMeeting implements ConsensusMeeting {
 		
 		return consensusList;
 	}
+
+	/*
+	 * 从最新的共识快照开始，倒序撤销区块里的共识注册和退出，得到某轮开始时的快照
+	 */
+	private List<ConsensusAccount> replayConsensusSnapshots(long periodStartTime) {
+		List<ConsensusAccount> consensusList = consensusPool.listSnapshots();
+
+		byte[] endBlockHashBytes = blockStoreProvider.getBestBlockHeader().getBlockHeader().getHash().getBytes();
+		while(true) {
+			BlockStore blockStore = blockStoreProvider.getBlock(endBlockHashBytes);
+			if(blockStore == null || blockStore.getBlock() == null) {
+				break;
+			}
+
+			Block block = blockStore.getBlock();
+			if(block.getHeight() == 0l || block.getPeriodStartTime() < periodStartTime) {
+				break;
+			}
+
+			List<Transaction> txList = block.getTxs();
+			for (Transaction transaction : txList) {
+				//共识的注册与退出
+				if(transaction.getType() == Definition.TYPE_REG_CONSENSUS) {
+					//注册新的，那么删除掉
+					RegConsensusTransaction regTx = (RegConsensusTransaction) transaction;
+					Iterator<ConsensusAccount> it = consensusList.iterator();
+					while(it.hasNext()) {
+						ConsensusAccount consensusAccount = it.next();
+						if(Arrays.equals(regTx.getHash160(), consensusAccount.getCommissioned())) {
+							it.remove();
+							break;
+						}
+					}
+				} else if(transaction.getType() == Definition.TYPE_REM_CONSENSUS || transaction.getType() == Definition.TYPE_VIOLATION) {
+					//删除掉的，新增进去
+					byte[] hash160 = null;
+
+					//注册共识的交易
+					Sha256Hash txhash = transaction.getInput(0).getFroms().get(0).getParent().getHash();
+
+					TransactionStore regTxStore = blockStoreProvider.getTransaction(txhash.getBytes());
+					if(regTxStore == null) {
+						break;
+					}
+					RegConsensusTransaction regTx = (RegConsensusTransaction) regTxStore.getTransaction();
+
+					//与共识池一致，打包人在前，申请人（委托人）在后
+					consensusList.add(new ConsensusAccount(regTx.getPackager(), regTx.getHash160()));
+				}
+			}
+
+			if(block.getPeriodStartTime() < periodStartTime) {
+				break;
+			} else {
+				endBlockHashBytes = block.getPreHash().getBytes();
+			}
+
+		}
+		return consensusList;
+	}
 	
 	/**
 	 * 接收会议消息
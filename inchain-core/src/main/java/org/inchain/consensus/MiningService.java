@@ -9,8 +9,8 @@ import org.inchain.account.Address;
 import org.inchain.core.*;
 import org.inchain.core.exception.VerificationException;
 import org.inchain.crypto.Sha256Hash;
-import org.inchain.filter.BloomFilter;
 import org.inchain.filter.InventoryFilter;
+import org.inchain.filter.OutpointSet;
 import org.inchain.kits.AccountKit;
 import org.inchain.kits.PeerKit;
 import org.inchain.mempool.Mempool;
@@ -146,14 +146,16 @@ public final class MiningService implements Mining {
 		
 		Coin fee = Coin.ZERO;
 		
-		//博隆过滤器，检查本次打包的交易是否有双花嫌疑
-		BloomFilter inputFilter = new BloomFilter(100000, 0.0001, RandomUtil.randomLong());
+		//已打包的交易，用于去重和查找被引用的本次已打包交易
+		Map<Sha256Hash, Transaction> packagedTxs = new HashMap<Sha256Hash, Transaction>();
+		//本次打包的交易引用的所有输出，检查是否有双花
+		OutpointSet inputFilter = new OutpointSet();
 		
 		int txsSize = 0;
 		int maxTxsSize = Definition.MAX_BLOCK_SIZE - 10000;
 
 		while (true) {
-			//每次获取内存里面的一个交易
+			//每次获取内存里面手续费率最高，并且所依赖的交易都已取出的一个交易
 			Transaction tx = null;
 			
 			while((tx = mempool.get()) != null) {
@@ -163,10 +165,10 @@ public final class MiningService implements Mining {
 				//如果某笔交易验证失败，则不打包进区块
 				try{
 					//去除重复交易
-					if(transactionList.contains(tx)) {
+					if(packagedTxs.containsKey(tx.getHash())) {
 						break;
 					}
-					boolean res = verifyTx(transactionList, tx, inputFilter, true);
+					boolean res = verifyTx(transactionList, packagedTxs, tx, inputFilter, true);
 					if(res) {
 						//交易费
 						//只有pay交易才有交易费
@@ -174,6 +176,7 @@ public final class MiningService implements Mining {
 							fee = fee.add(getTransactionFee(tx));
 						}
 						transactionList.add(tx);
+						packagedTxs.put(tx.getHash(), tx);
 
 						txsSize += tx.getLength();
 					} else {
@@ -463,13 +466,19 @@ public final class MiningService implements Mining {
 		//已发放的账户，不能在同一区块多次发放
 		Set<String> creditAccounts = new HashSet<String>();
 		
+		//块里的交易，查找被引用的交易
+		Map<Sha256Hash, Transaction> blockTxs = new HashMap<Sha256Hash, Transaction>();
+		for (Transaction tx : txs) {
+			blockTxs.put(tx.getHash(), tx);
+		}
+		
 		Iterator<Transaction> it = txs.iterator();
 		while(it.hasNext()) {
 			Transaction tx = it.next();
 			if(tx.getType() == Definition.TYPE_COINBASE) {
 				continue;
 			}
-			if(verifyTx(txs, tx, null, false)) {
+			if(verifyTx(txs, blockTxs, tx, null, false)) {
 				if(tx.getType() != Definition.TYPE_PAY) {
 					continue;
 				}
@@ -494,6 +503,7 @@ public final class MiningService implements Mining {
 			} else {
 				log.error("再次验证失败，移除交易： {} ", tx);
 				it.remove();
+				blockTxs.remove(tx.getHash());
 				if(tx.isPaymentTransaction()) {
 					//有金额的交易，计算该笔的手续费
 					refunedFee = refunedFee.add(getTransactionFee(tx));
@@ -577,11 +587,8 @@ public final class MiningService implements Mining {
 		TransactionOutput output = consensusRegTx.getOutput(0);
 		byte[] key = output.getKey();
 		//本输入在 transactionList 里面不能有2笔对此的引用，否则就造成了双花
-		if(filter != null) {
-			if(filter.contains(key)) {
-				return;
-			} 
-			filter.insert(key);
+		if(filter != null && !filter.add(key)) {
+			return;
 		}
 		
 		//因为违规证据有可能不一样，如果已经被处理过了，则不重复处理，这里用注册共识时的保证金是否被花费掉了来判断
@@ -628,7 +635,7 @@ public final class MiningService implements Mining {
 	 * violationType 违规类型，不同的类型面临的处罚不一样，1代表超时未出块
 	 */
 	private void processViolationConsensusAccount(int violationType, TimeoutConsensusViolation consensusViolation,
-			List<Transaction> transactionList, BloomFilter inputFilter) {
+			List<Transaction> transactionList, OutpointSet inputFilter) {
 		try {
 			if(violationType == ViolationEvidence.VIOLATION_TYPE_NOT_BROADCAST_BLOCK) {
 				//超时处理
@@ -659,11 +666,8 @@ public final class MiningService implements Mining {
 				TransactionOutput output = consensusRegTx.getOutput(0);
 				byte[] key = output.getKey();
 				//本输入在 transactionList 里面不能有2笔对此的引用，否则就造成了双花
-				if(filter != null) {
-					if(filter.contains(key)) {
-						throw new VerificationException("同一块多个交易引用了同一个输入");
-					} 
-					filter.insert(key);
+				if(inputFilter != null && !inputFilter.add(key)) {
+					throw new VerificationException("同一块多个交易引用了同一个输入");
 				}
 				
 				//签名脚本
@@ -714,12 +718,13 @@ public final class MiningService implements Mining {
 	/*
 	 * 验证交易的合法性
 	 * @param transactionList	//本次已打包的交易列表
+	 * @param packagedTxs		//本次已打包的交易，按hash查找
 	 * @param tx				//本次打包的交易
-	 * @param filter			//布隆过滤器，判断输入是否重复引用
+	 * @param filter			//已引用的输出集合，判断输入是否重复引用
 	 * @param forcedCheck		//是否强制检查
 	 * @return boolean
 	 */
-	private boolean verifyTx(List<Transaction> transactionList, Transaction tx, BloomFilter filter, boolean forcedCheck) {
+	private boolean verifyTx(List<Transaction> transactionList, Map<Sha256Hash, Transaction> packagedTxs, Transaction tx, OutpointSet filter, boolean forcedCheck) {
 		long time = System.currentTimeMillis();
 		try {
 			tx.verify();
@@ -777,17 +782,9 @@ public final class MiningService implements Mining {
 								//对于第一种情况，验证不通过
 								//第二种情况，我们顺序打包交易，也就是引用的输出必须是本次已打包的，否则就扔回内存池
 
-								//首先判断是否已打包
-								boolean hasPackage = false;
-								for (Transaction transaction : transactionList) {
-									if (transaction.getHash().equals(fromId)) {
-										preTransaction = transaction;
-										hasPackage = true;
-										break;
-									}
-								}
-								//已打包就通过
-								if (!hasPackage) {
+								//首先判断是否已打包，已打包就通过
+								preTransaction = packagedTxs.get(fromId);
+								if (preTransaction == null) {
 									//没打包，判断内存里面是否存在
 									preTransaction = MempoolContainer.getInstace().get(fromId);
 									if (preTransaction == null) {
@@ -824,11 +821,8 @@ public final class MiningService implements Mining {
 						}
 
 						//本输入在 transactionList 里面不能有2笔对此的引用，否则就造成了双花
-						if (filter != null) {
-							if (filter.contains(key)) {
-								throw new VerificationException("同一块多个交易引用了同一个输入");
-							}
-							filter.insert(key);
+						if (filter != null && !filter.add(key)) {
+							throw new VerificationException("同一块多个交易引用了同一个输入");
 						}
 					}
 				}
@@ -45,6 +45,16 @@ public class BroadcastResult extends Result {
 	public BroadcastResult get() throws InterruptedException, ExecutionException, TimeoutException {
 		return future.get(10, TimeUnit.SECONDS);
 	}
+
+	/**
+	 * 等待广播回应，批量广播时多笔交易共用一个截止时间
+	 * @param timeout
+	 * @param unit
+	 * @return BroadcastResult
+	 */
+	public BroadcastResult get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		return future.get(timeout, unit);
+	}
 	
 	/**
 	 * 添加响应对等体
@@ -12,6 +12,7 @@ import org.inchain.listener.EnoughAvailablePeersListener;
 import org.inchain.message.InventoryItem;
 import org.inchain.message.InventoryMessage;
 import org.inchain.message.Message;
+import org.inchain.message.MessageFrame;
 import org.inchain.message.NewBlockMessage;
 import org.inchain.network.NetworkParams;
 import org.inchain.transaction.Transaction;
@@ -94,10 +95,11 @@ public class BroadcasterComponent<T extends Message> implements Broadcaster<T> {
 				result.setNumWaitingFor(numWaitingFor);
 			}
             
-            //通过随机选择的对等体进行广播
+            //通过随机选择的对等体进行广播，只序列化一次
+            MessageFrame frame = createFrame(sendMessage);
 			for (Peer peer : peers) {
 				try {
-					peer.sendMessage(sendMessage);
+					peer.sendMessage(frame);
 				} catch (NotYetConnectedException | IOException e) {
 					log.warn("广播消息出错，可能原因是该节点连接已关闭, {}", e.getMessage());
 				}
@@ -133,6 +135,19 @@ public class BroadcasterComponent<T extends Message> implements Broadcaster<T> {
 		return sendMessage;
 	}
 
+	/**
+	 * 序列化消息，所有节点共享
+	 * @param message
+	 * @return MessageFrame
+	 */
+	private MessageFrame createFrame(Message message) {
+		try {
+			return new MessageFrame(network.getDefaultSerializer(), message);
+		} catch (IOException e) {
+			throw new RuntimeException("序列化广播消息出错", e);
+		}
+	}
+
 	@Override
 	public int broadcastMessage(T message) {
 		return broadcastMessage(message, null);
@@ -142,10 +157,11 @@ public class BroadcasterComponent<T extends Message> implements Broadcaster<T> {
 	public int broadcastMessage(T message, Peer excludePeer) {
 		int successCount = 0;
 		if(peerKit.canBroadcast()) {
+			MessageFrame frame = createFrame(message);
 			for (Peer peer : peerKit.findAvailablePeers()) {
 				if(excludePeer == null || (excludePeer!= null && !peer.equals(excludePeer))) {
 					try {
-						peer.sendMessage(message);
+						peer.sendMessage(frame);
 						successCount ++;
 					} catch (NotYetConnectedException | IOException e) {
 						log.warn("广播消息出错，可能原因是该节点连接已关闭, {}", e.getMessage());
@@ -167,9 +183,10 @@ public class BroadcasterComponent<T extends Message> implements Broadcaster<T> {
 		List<Peer> superPeers = peerKit.findAvailableSuperPeers();
 		if(superPeers.size()>0) {
 			Collections.shuffle(superPeers);
+			MessageFrame frame = createFrame(message);
 			for (Peer peer : superPeers) {
 				try {
-					peer.sendMessage(message);
+					peer.sendMessage(frame);
 					successCount ++;
 				} catch (NotYetConnectedException | IOException e) {
 					log.warn("广播消息出错，可能原因是该节点连接已关闭, {}", e.getMessage());
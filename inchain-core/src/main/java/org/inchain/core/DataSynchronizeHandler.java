@@ -11,12 +11,14 @@ import javax.annotation.PostConstruct;
 
 import org.inchain.consensus.ConsensusMeeting;
 import org.inchain.crypto.Sha256Hash;
+import org.inchain.Configure;
 import org.inchain.kits.PeerKit;
 import org.inchain.listener.BlockDownendListener;
 import org.inchain.listener.ConnectionChangedListener;
 import org.inchain.message.Block;
 import org.inchain.message.BlockHeader;
 import org.inchain.message.GetBlocksMessage;
+import org.inchain.message.HeadersMessage;
 import org.inchain.msgprocess.BlockMessageProcess;
 import org.inchain.msgprocess.GetBlocksMessageProcess;
 import org.inchain.msgprocess.MessageProcessResult;
@@ -75,6 +77,8 @@ public class DataSynchronizeHandler implements Runnable {
 	private boolean localBestBlockIsFork;
 	//下载监听
 	private SettableListenableFuture<Boolean> downloadFuture;
+	//先同步区块头的多节点下载器，同步时才有值
+	private volatile HeadersFirstSynchronizer headersSynchronizer;
 	
 	/**
 	 * 初始化，监听节点连接变化
@@ -205,7 +209,40 @@ public class DataSynchronizeHandler implements Runnable {
 			//假设本地最新区块时分叉块，在同步过程中只要发现一个能衔接上的，就不是分叉了
 			localBestBlockIsFork = true;
 			
+			//先同步区块头，再从所有高度一致的节点并行下载，对方不支持时使用原来的逐个节点下载
+			boolean headersFirstDone = false;
+			if(Configure.SYNC_HEADERS_FIRST && !newestPeers.isEmpty()) {
+				HeadersFirstSynchronizer synchronizer = new HeadersFirstSynchronizer(network, blockMessageProcess, new ArrayList<Peer>(newestPeers));
+				headersSynchronizer = synchronizer;
+				int result;
+				try {
+					result = synchronizer.synchronize(blockHeader, bestHeight);
+				} finally {
+					headersSynchronizer = null;
+				}
+				if(result == HeadersFirstSynchronizer.RESULT_SUCCESS) {
+					localBestBlockIsFork = false;
+					results.add(true);
+					headersFirstDone = true;
+				} else if(result == HeadersFirstSynchronizer.RESULT_NOT_FOUND) {
+					results.add(false);
+					headersFirstDone = true;
+				} else if(result == HeadersFirstSynchronizer.RESULT_FAILED) {
+					//已经保存了部分区块，说明不是分叉，下一轮继续同步
+					if(synchronizer.getConnectedCount() > 0) {
+						localBestBlockIsFork = false;
+						results.add(true);
+					} else {
+						results.add(false);
+					}
+					headersFirstDone = true;
+				}
+			}
+			
 			for (Peer peer : newestPeers) {
+				if(headersFirstDone) {
+					break;
+				}
 				try {
 					while(true) {
 						blockHeader = network.getBestBlockHeader();
@@ -325,6 +362,11 @@ public class DataSynchronizeHandler implements Runnable {
 	 * @param block
 	 */
 	public void processData(Block block) {
+		HeadersFirstSynchronizer synchronizer = headersSynchronizer;
+		if(synchronizer != null) {
+			synchronizer.receiveBlock(block);
+			return;
+		}
 		if(downingMessage != null) {
 			if(localBestBlockIsFork && block.getPreHash().equals(downingMessage.getStartHash())) {
 				localBestBlockIsFork = false;
@@ -349,11 +391,28 @@ public class DataSynchronizeHandler implements Runnable {
 		}
 	}
 	
+	/**
+	 * 处理收到的区块头，交给正在进行的多节点同步
+	 * @param headersMessage
+	 * @param peer
+	 */
+	public void processHeaders(HeadersMessage headersMessage, Peer peer) {
+		HeadersFirstSynchronizer synchronizer = headersSynchronizer;
+		if(synchronizer != null) {
+			synchronizer.receiveHeaders(peer, headersMessage.getHeaders());
+		}
+	}
+	
 	/**
 	 * 当收到对等节点返回数据没有找到的消息时，调用该方法触发结果
 	 * 如果为拉取区块没有找到，则设置下载失败
 	 */
 	public void dataNotFoundCheck(Sha256Hash hash) {
+		HeadersFirstSynchronizer synchronizer = headersSynchronizer;
+		if(synchronizer != null) {
+			synchronizer.notFound(hash);
+			return;
+		}
 		if(downloadFuture != null && downingMessage != null && downingMessage.getStartHash().equals(hash)) {
 			downloadFuture.set(false);
 		}
@@ -13,6 +13,8 @@ import org.inchain.message.DataNotFoundMessage;
 import org.inchain.message.GetAddressMessage;
 import org.inchain.message.GetBlocksMessage;
 import org.inchain.message.GetDatasMessage;
+import org.inchain.message.GetHeadersMessage;
+import org.inchain.message.HeadersMessage;
 import org.inchain.message.InventoryMessage;
 import org.inchain.message.Message;
 import org.inchain.message.NewBlockMessage;
@@ -163,6 +165,8 @@ public final class Definition {
     	PROCESS_FACTORYS.put(InventoryMessage.class, "inventoryMessageProcess");
     	PROCESS_FACTORYS.put(GetDatasMessage.class, "getDatasMessageProcess");
     	PROCESS_FACTORYS.put(DataNotFoundMessage.class, "dataNotFoundMessageProcess");
+    	PROCESS_FACTORYS.put(GetHeadersMessage.class, "getHeadersMessageProcess");
+    	PROCESS_FACTORYS.put(HeadersMessage.class, "headersMessageProcess");
 
     	PROCESS_FACTORYS.put(AddressMessage.class, "addressMessageProcess");
     	PROCESS_FACTORYS.put(GetAddressMessage.class, "addressMessageProcess");
@@ -207,6 +211,8 @@ public final class Definition {
     	MESSAGE_COMMANDS.put(InventoryMessage.class, "inv");
     	MESSAGE_COMMANDS.put(GetDatasMessage.class, "getdatas");
     	MESSAGE_COMMANDS.put(DataNotFoundMessage.class, "notfound");
+    	MESSAGE_COMMANDS.put(GetHeadersMessage.class, "getheaders");
+    	MESSAGE_COMMANDS.put(HeadersMessage.class, "headers");
 
 		MESSAGE_COMMANDS.put(Transaction.class, "tx_0");
 		MESSAGE_COMMANDS.put(RegAliasTransaction.class, "tx_" + TYPE_REG_ALIAS);
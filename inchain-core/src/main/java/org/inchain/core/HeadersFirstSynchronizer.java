@@ -0,0 +1,482 @@
+package org.inchain.core;
+
+import java.io.IOException;
+import java.nio.channels.NotYetConnectedException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.message.Block;
+import org.inchain.message.BlockHeader;
+import org.inchain.message.GetDatasMessage;
+import org.inchain.message.GetHeadersMessage;
+import org.inchain.message.HeadersMessage;
+import org.inchain.message.InventoryItem;
+import org.inchain.msgprocess.BlockMessageProcess;
+import org.inchain.msgprocess.MessageProcessResult;
+import org.inchain.network.NetworkParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * 先同步区块头，再从多个节点并行下载区块
+ * 区块头从一个节点按顺序获取，确定要下载的区块hash列表；区块按滑动窗口分批分配给所有高度一致的节点同时下载，
+ * 到达的顺序不定，先缓存起来，再按高度顺序依次交给区块处理器验证和保存
+ * 某个节点长时间没有返回分配给它的区块，则把这些区块重新分配给其它节点，多次超时的节点不再使用
+ * 每次同步创建一个实例，由 DataSynchronizeHandler 在同步线程里调用 {@link #synchronize(BlockHeader, long)}
+ * @author ln
+ *
+ */
+public class HeadersFirstSynchronizer {
+
+	private static final Logger log = LoggerFactory.getLogger(HeadersFirstSynchronizer.class);
+
+	//同步到了目标高度，或者对方没有更多区块
+	public static final int RESULT_SUCCESS = 0;
+	//没有节点应答区块头请求，可能都是不支持该消息的旧版本节点
+	public static final int RESULT_UNSUPPORTED = 1;
+	//开始区块不在对方的主链上，本地最新块可能是分叉块
+	public static final int RESULT_NOT_FOUND = 2;
+	//区块验证不通过，或者没有可用的节点
+	public static final int RESULT_FAILED = 3;
+
+	//等待区块头应答的时间，毫秒
+	private static final long HEADERS_TIMEOUT = 30000l;
+	//等待区块的默认时间，超过则重新分配给其它节点，毫秒
+	private static final long BLOCK_TIMEOUT = 30000l;
+	//已请求但还没有保存的最大区块数
+	private static final int WINDOW_SIZE = 1024;
+	//每次向一个节点请求的区块数
+	private static final int BATCH_SIZE = 16;
+	//每个节点最多同时下载的区块数
+	private static final int MAX_REQUESTS_PER_PEER = 128;
+	//节点超时多少次之后不再使用
+	private static final int MAX_STALLS = 2;
+
+	private final NetworkParams network;
+	private final BlockMessageProcess blockMessageProcess;
+	//可用的节点
+	private final List<Peer> peers;
+	//节点超时次数
+	private final Map<Peer, Integer> stalls = new HashMap<Peer, Integer>();
+	//等待区块的时间
+	private long blockTimeout = BLOCK_TIMEOUT;
+
+	//区块头同步进度，最后一个已知区块
+	private Sha256Hash lastHash;
+	private long lastHeight;
+	private long lastTime;
+	private boolean headersComplete;
+	//正在等待的区块头应答
+	private Peer headersPeer;
+	private SettableListenableFuture<List<BlockHeader>> headersFuture;
+	private boolean headersNotFound;
+
+	//待下载的区块hash，按高度排列
+	private final List<Sha256Hash> chain = new ArrayList<Sha256Hash>();
+	//下一个要保存的区块在 chain 里的位置
+	private int connectIndex;
+	//下一个要请求的区块在 chain 里的位置
+	private int requestIndex;
+	//已请求还没收到的区块
+	private final Map<Sha256Hash, Request> requests = new HashMap<Sha256Hash, Request>();
+	//已收到还没保存的区块
+	private final Map<Sha256Hash, Block> received = new HashMap<Sha256Hash, Block>();
+	//已保存的区块数
+	private long connectedCount;
+
+	public HeadersFirstSynchronizer(NetworkParams network, BlockMessageProcess blockMessageProcess, List<Peer> peers) {
+		this.network = network;
+		this.blockMessageProcess = blockMessageProcess;
+		this.peers = new ArrayList<Peer>(peers);
+	}
+
+	/**
+	 * 从本地最新区块开始同步，直到目标高度或者出错
+	 * @param localBestHeader	本地最新区块
+	 * @param targetHeight		目标高度
+	 * @return int 同步结果 RESULT_*
+	 */
+	public int synchronize(BlockHeader localBestHeader, long targetHeight) {
+		lastHash = localBestHeader.getHash();
+		lastHeight = localBestHeader.getHeight();
+		lastTime = localBestHeader.getTime();
+
+		int result = fetchHeaders(targetHeight);
+		if(result != RESULT_SUCCESS) {
+			return result;
+		}
+
+		long begin = System.currentTimeMillis();
+		while(true) {
+			//按顺序保存已到达的区块
+			Block block;
+			while((block = takeNextBlock()) != null) {
+				MessageProcessResult processResult = blockMessageProcess.process(block, null);
+				if(processResult == null || !processResult.isSuccess()) {
+					log.warn("同步区块 {} - {} 处理失败", block.getHeight(), block.getHash());
+					return RESULT_FAILED;
+				}
+				connectedCount++;
+			}
+
+			synchronized (this) {
+				if(connectIndex == chain.size() && headersComplete) {
+					break;
+				}
+			}
+
+			//待请求的区块不多了，获取下一批区块头
+			if(!headersComplete && remaining() < WINDOW_SIZE) {
+				result = fetchHeaders(targetHeight);
+				if(result != RESULT_SUCCESS) {
+					//已有的区块头继续下载，之后由调用方重新同步
+					headersComplete = true;
+				}
+			}
+
+			if(!requestBlocks()) {
+				log.warn("没有可用的节点，停止同步");
+				return RESULT_FAILED;
+			}
+
+			synchronized (this) {
+				if(!received.containsKey(connectIndex < chain.size() ? chain.get(connectIndex) : null)) {
+					try {
+						wait(500l);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return RESULT_FAILED;
+					}
+				}
+			}
+		}
+
+		long time = Math.max(1l, System.currentTimeMillis() - begin);
+		log.info("同步 {} 个区块，耗时 {} ms，{} 块/秒", connectedCount, time, connectedCount * 1000l / time);
+		return RESULT_SUCCESS;
+	}
+
+	/**
+	 * 已保存的区块数
+	 * @return long
+	 */
+	public long getConnectedCount() {
+		return connectedCount;
+	}
+
+	/**
+	 * 设置等待区块的时间，需要在同步开始之前设置
+	 * @param blockTimeout	毫秒
+	 */
+	public void setBlockTimeout(long blockTimeout) {
+		this.blockTimeout = blockTimeout;
+	}
+
+	/**
+	 * 收到区块头
+	 * @param peer
+	 * @param headers
+	 */
+	public synchronized void receiveHeaders(Peer peer, List<BlockHeader> headers) {
+		if(headersFuture != null && peer == headersPeer) {
+			headersFuture.set(headers);
+		}
+	}
+
+	/**
+	 * 收到区块
+	 * @param block
+	 * @return boolean 是否是本次同步请求的区块
+	 */
+	public synchronized boolean receiveBlock(Block block) {
+		Sha256Hash hash = block.getHash();
+		if(requests.remove(hash) == null) {
+			return false;
+		}
+		received.put(hash, block);
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * 对方节点没有找到请求的数据
+	 * @param hash
+	 */
+	public synchronized void notFound(Sha256Hash hash) {
+		if(headersFuture != null && hash.equals(lastHash)) {
+			headersNotFound = true;
+			headersFuture.set(null);
+			return;
+		}
+		Request request = requests.get(hash);
+		if(request != null) {
+			//马上重新分配
+			request.time = 0l;
+		}
+	}
+
+	/*
+	 * 获取一批区块头，依次尝试各个节点
+	 */
+	private int fetchHeaders(long targetHeight) {
+		if(lastHeight >= targetHeight) {
+			headersComplete = true;
+			return RESULT_SUCCESS;
+		}
+		boolean answered = false;
+		for (Peer peer : snapshotPeers()) {
+			SettableListenableFuture<List<BlockHeader>> future = new SettableListenableFuture<List<BlockHeader>>();
+			synchronized (this) {
+				headersPeer = peer;
+				headersFuture = future;
+				headersNotFound = false;
+			}
+			List<BlockHeader> headers = null;
+			try {
+				peer.sendMessage(new GetHeadersMessage(network, lastHash, Sha256Hash.ZERO_HASH));
+				headers = future.get(HEADERS_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (Exception e) {
+				if(log.isDebugEnabled()) {
+					log.debug("节点 {} 没有应答区块头请求", peer);
+				}
+			}
+			boolean notFound;
+			synchronized (this) {
+				headersPeer = null;
+				headersFuture = null;
+				notFound = headersNotFound;
+			}
+			if(notFound) {
+				return RESULT_NOT_FOUND;
+			}
+			if(headers == null) {
+				continue;
+			}
+			answered = true;
+			if(headers.isEmpty()) {
+				headersComplete = true;
+				return RESULT_SUCCESS;
+			}
+			if(!appendHeaders(headers)) {
+				log.warn("节点 {} 返回的区块头不正确", peer);
+				removePeer(peer);
+				continue;
+			}
+			if(lastHeight >= targetHeight || headers.size() < HeadersMessage.MAX_HEADERS) {
+				headersComplete = true;
+			}
+			return RESULT_SUCCESS;
+		}
+		return answered ? RESULT_FAILED : RESULT_UNSUPPORTED;
+	}
+
+	/*
+	 * 检查区块头是否连续、签名和梅克尔树根是否正确，全部通过才加入下载列表
+	 */
+	private synchronized boolean appendHeaders(List<BlockHeader> headers) {
+		Sha256Hash preHash = lastHash;
+		long height = lastHeight;
+		long time = lastTime;
+		for (BlockHeader header : headers) {
+			if(!verifyHeader(header, preHash, height, time)) {
+				return false;
+			}
+			preHash = header.getHash();
+			height = header.getHeight();
+			time = header.getTime();
+		}
+		for (BlockHeader header : headers) {
+			chain.add(header.getHash());
+		}
+		lastHash = preHash;
+		lastHeight = height;
+		lastTime = time;
+		return true;
+	}
+
+	/*
+	 * 验证单个区块头，只检查不依赖链上状态的部分，共识人和交易由区块处理器验证
+	 */
+	private boolean verifyHeader(BlockHeader header, Sha256Hash preHash, long preHeight, long preTime) {
+		if(header.getHash() == null || Sha256Hash.ZERO_HASH.equals(header.getHash()) || !preHash.equals(header.getPreHash())
+				|| header.getHeight() != preHeight + 1 || header.getTime() <= preTime) {
+			return false;
+		}
+		List<Sha256Hash> txHashs = header.getTxHashs();
+		if(txHashs == null || txHashs.isEmpty() || txHashs.size() != header.getTxCount()) {
+			return false;
+		}
+		try {
+			if(!BlockHeader.buildMerkleHash(txHashs).equals(header.getMerkleHash())) {
+				return false;
+			}
+			header.verifyScript();
+		} catch (Exception e) {
+			if(log.isDebugEnabled()) {
+				log.debug("区块头 {} 验证失败 {}", header.getHeight(), e.getMessage());
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/*
+	 * 取出下一个可以保存的区块
+	 */
+	private synchronized Block takeNextBlock() {
+		if(connectIndex >= chain.size()) {
+			return null;
+		}
+		Block block = received.remove(chain.get(connectIndex));
+		if(block == null) {
+			return null;
+		}
+		connectIndex++;
+		//已保存的部分不再需要
+		if(connectIndex >= 4096) {
+			chain.subList(0, connectIndex).clear();
+			requestIndex -= connectIndex;
+			connectIndex = 0;
+		}
+		return block;
+	}
+
+	private synchronized int remaining() {
+		return chain.size() - requestIndex;
+	}
+
+	/*
+	 * 重新分配超时的区块，并在窗口内分配新的区块
+	 * 没有可用节点时返回false
+	 */
+	private boolean requestBlocks() {
+		Map<Peer, List<InventoryItem>> sends = new HashMap<Peer, List<InventoryItem>>();
+		synchronized (this) {
+			if(peers.isEmpty()) {
+				return false;
+			}
+			long now = System.currentTimeMillis();
+
+			//超时的区块，一次检查里同一个节点只算一次超时
+			Map<Sha256Hash, Peer> stalled = new HashMap<Sha256Hash, Peer>();
+			Set<Peer> stalledPeers = new HashSet<Peer>();
+			Iterator<Map.Entry<Sha256Hash, Request>> it = requests.entrySet().iterator();
+			while(it.hasNext()) {
+				Map.Entry<Sha256Hash, Request> entry = it.next();
+				Request request = entry.getValue();
+				if(now - request.time > blockTimeout) {
+					stalled.put(entry.getKey(), request.peer);
+					stalledPeers.add(request.peer);
+					it.remove();
+				}
+			}
+			for (Peer peer : stalledPeers) {
+				Integer count = stalls.get(peer);
+				count = count == null ? 1 : count + 1;
+				stalls.put(peer, count);
+				if(count >= MAX_STALLS && peers.remove(peer)) {
+					log.warn("节点 {} 多次下载超时，不再使用", peer);
+				}
+			}
+			if(peers.isEmpty()) {
+				return false;
+			}
+			//优先分配给其它节点
+			for (Map.Entry<Sha256Hash, Peer> entry : stalled.entrySet()) {
+				Peer peer = selectPeer(Integer.MAX_VALUE, entry.getValue());
+				assign(sends, peer, entry.getKey(), now);
+			}
+
+			//窗口内新的区块
+			while(requestIndex < chain.size() && requestIndex - connectIndex < WINDOW_SIZE) {
+				Peer peer = selectPeer(MAX_REQUESTS_PER_PEER - BATCH_SIZE, null);
+				if(peer == null) {
+					break;
+				}
+				for (int i = 0; i < BATCH_SIZE && requestIndex < chain.size(); i++) {
+					assign(sends, peer, chain.get(requestIndex++), now);
+				}
+			}
+		}
+
+		for (Map.Entry<Peer, List<InventoryItem>> entry : sends.entrySet()) {
+			try {
+				entry.getKey().sendMessage(new GetDatasMessage(network, entry.getValue()));
+			} catch (NotYetConnectedException | IOException e) {
+				log.warn("向节点 {} 请求区块出错，不再使用", entry.getKey());
+				removePeer(entry.getKey());
+			}
+		}
+		return true;
+	}
+
+	private void assign(Map<Peer, List<InventoryItem>> sends, Peer peer, Sha256Hash hash, long now) {
+		requests.put(hash, new Request(peer, now));
+		List<InventoryItem> items = sends.get(peer);
+		if(items == null) {
+			items = new ArrayList<InventoryItem>();
+			sends.put(peer, items);
+		}
+		items.add(new InventoryItem(InventoryItem.Type.Block, hash));
+	}
+
+	/*
+	 * 选择下载中的区块最少的节点，都超过 maxLoad 时返回null
+	 * 除了 exclude 之外还有其它节点时不选择 exclude
+	 */
+	private Peer selectPeer(int maxLoad, Peer exclude) {
+		Map<Peer, Integer> loads = new HashMap<Peer, Integer>();
+		for (Request request : requests.values()) {
+			Integer load = loads.get(request.peer);
+			loads.put(request.peer, load == null ? 1 : load + 1);
+		}
+		Peer best = null;
+		int bestLoad = Integer.MAX_VALUE;
+		for (Peer peer : peers) {
+			if(peer == exclude && peers.size() > 1) {
+				continue;
+			}
+			Integer load = loads.get(peer);
+			int value = load == null ? 0 : load;
+			if(value < bestLoad) {
+				best = peer;
+				bestLoad = value;
+			}
+		}
+		return bestLoad > maxLoad ? null : best;
+	}
+
+	private synchronized void removePeer(Peer peer) {
+		peers.remove(peer);
+		for (Request request : requests.values()) {
+			if(request.peer == peer) {
+				request.time = 0l;
+			}
+		}
+	}
+
+	private synchronized List<Peer> snapshotPeers() {
+		return new ArrayList<Peer>(peers);
+	}
+
+	/**
+	 * 已分配的区块请求
+	 */
+	private static class Request {
+		private final Peer peer;
+		private long time;
+
+		private Request(Peer peer, long time) {
+			this.peer = peer;
+			this.time = time;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package org.inchain.core;
+
+import java.io.IOException;
+import java.nio.channels.NotYetConnectedException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.inchain.kits.PeerKit;
+import org.inchain.message.InventoryItem;
+import org.inchain.message.InventoryMessage;
+import org.inchain.network.NetworkParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 交易清单转发器
+ * 交易清单不再逐条立即广播，而是放入每个节点的待发送队列，按随机的短间隔或者积累到一定数量后合并成一个清单消息发送
+ * 对方已经通知过我的清单不会再发给对方
+ * @author ln
+ *
+ */
+@Component
+public class InventoryRelay {
+
+	private static final Logger log = LoggerFactory.getLogger(InventoryRelay.class);
+
+	//平均发送间隔，毫秒，每批的实际间隔随机，避免通过时间推断交易来源
+	private static final long AVERAGE_INTERVAL = 500l;
+	//最长发送间隔，毫秒
+	private static final long MAX_INTERVAL = 2000l;
+	//检查队列的间隔，毫秒
+	private static final long CHECK_INTERVAL = 100l;
+	//队列达到该数量时立即发送
+	public static final int MAX_BATCH_SIZE = 1000;
+
+	private static final Random random = new Random();
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+	@Autowired
+	private PeerKit peerKit;
+	@Autowired
+	private NetworkParams network;
+
+	@PostConstruct
+	public void init() {
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					long now = System.currentTimeMillis();
+					for (Peer peer : peerKit.findAvailablePeers()) {
+						send(peer, peer.getInventoryQueue().poll(now, false));
+					}
+				} catch (Exception e) {
+					log.error("发送清单出错", e);
+				}
+			}
+		}, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 转发清单给除来源节点以外的所有节点
+	 * @param item
+	 * @param fromPeer	清单来源节点，可以为null
+	 */
+	public void relay(InventoryItem item, Peer fromPeer) {
+		if(fromPeer != null) {
+			fromPeer.getInventoryQueue().addKnown(item.getHash());
+		}
+		long now = System.currentTimeMillis();
+		for (Peer peer : peerKit.findAvailablePeers()) {
+			if(peer.equals(fromPeer)) {
+				continue;
+			}
+			PeerInventoryQueue queue = peer.getInventoryQueue();
+			if(queue.offer(item, now + nextInterval()) >= MAX_BATCH_SIZE) {
+				send(peer, queue.poll(now, true));
+			}
+		}
+	}
+
+	/*
+	 * 指数分布的随机间隔
+	 */
+	private long nextInterval() {
+		return Math.min(MAX_INTERVAL, (long) (-Math.log(1.0d - random.nextDouble()) * AVERAGE_INTERVAL));
+	}
+
+	private void send(Peer peer, List<InventoryItem> items) {
+		if(items == null || items.isEmpty()) {
+			return;
+		}
+		try {
+			peer.sendMessage(new InventoryMessage(network, items));
+		} catch (NotYetConnectedException | IOException e) {
+			log.warn("发送清单出错，可能原因是该节点连接已关闭, {}", e.getMessage());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -7,8 +7,6 @@ import java.nio.channels.NotYetConnectedException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -29,6 +27,7 @@ import org.inchain.msgprocess.DefaultMessageProcessFactory;
 import org.inchain.msgprocess.MessageProcess;
 import org.inchain.msgprocess.MessageProcessFactory;
 import org.inchain.msgprocess.MessageProcessResult;
+import org.inchain.net.MessageWriteTarget;
 import org.inchain.network.NetworkParams;
 import org.inchain.transaction.Transaction;
 import org.inchain.utils.RandomUtil;
@@ -51,8 +50,20 @@ public class Peer extends PeerSocketHandler {
 	//ping futures
 	private Map<Long, SettableListenableFuture<Boolean>> pingFutures = new ConcurrentHashMap<Long, SettableListenableFuture<Boolean>>();
 	
-	//异步顺序执行所有接收到的消息，以免有处理时间较长的线程阻塞，影响性能
-	private ExecutorService executorService = Executors.newSingleThreadExecutor();
+	//接收到的消息放入队列，由共用的线程池按顺序处理，以免有处理时间较长的消息阻塞读取
+	private final PeerMessageQueue messageQueue = new PeerMessageQueue(new PeerMessageQueue.Listener() {
+		@Override
+		public void onMessage(Message message) {
+			dispatchMessage(message);
+		}
+		@Override
+		public void onReadPaused(boolean paused) {
+			MessageWriteTarget target = writeTarget;
+			if(target != null) {
+				target.setReadPaused(paused);
+			}
+		}
+	});
 	
 	//消息处理器工厂
 	private static MessageProcessFactory messageProcessFactory = DefaultMessageProcessFactory.getInstance();
@@ -73,6 +84,9 @@ public class Peer extends PeerSocketHandler {
 	//监控下载完成的区块
 	private Sha256Hash monitorBlockDownload;
 	
+	//待发送的清单和对方已知的清单
+	private final PeerInventoryQueue inventoryQueue = new PeerInventoryQueue();
+	
 	private SettableListenableFuture<Boolean> downloadFuture;
 
 	//区块同步开始的hash
@@ -95,23 +109,24 @@ public class Peer extends PeerSocketHandler {
     		return;
     	}
 		
-		final MessageProcess messageProcess = messageProcessFactory.getFactory(message);
-		if(messageProcess == null) {
+		if(messageProcessFactory.getFactory(message) == null) {
 			return;
-		} else{
-			executorService.submit(new Thread(){
-				public void run() {
-					//消息处理
-					//当同步区块时，把消息交给同步器处理，其它情况则交给相应的消息处理器
-					if(message instanceof Block && !(message instanceof NewBlockMessage)) {
-						DataSynchronizeHandler synchronizeHandler = SpringContextUtils.getBean(DataSynchronizeHandler.class);
-						synchronizeHandler.processData((Block) message);
-					} else {
-						MessageProcessResult result = messageProcess.process(message, Peer.this);
-						processMessageResult(message, result);
-					}
-				};
-			});
+		}
+		messageQueue.offer(message);
+	}
+	
+	/*
+	 * 消息处理，在消息队列的线程池里执行
+	 * 当同步区块时，把消息交给同步器处理，其它情况则交给相应的消息处理器
+	 */
+	private void dispatchMessage(Message message) {
+		if(message instanceof Block && !(message instanceof NewBlockMessage)) {
+			DataSynchronizeHandler synchronizeHandler = SpringContextUtils.getBean(DataSynchronizeHandler.class);
+			synchronizeHandler.processData((Block) message);
+		} else {
+			MessageProcess messageProcess = messageProcessFactory.getFactory(message);
+			MessageProcessResult result = messageProcess.process(message, Peer.this);
+			processMessageResult(message, result);
 		}
 	}
 	
@@ -239,6 +254,7 @@ public class Peer extends PeerSocketHandler {
 	
 	@Override
 	public void connectionClosed() {
+		messageQueue.close();
 		log.info("peer {} connectionClosed ", peerAddress);
 		if(log.isDebugEnabled()) {
 			log.debug("peer {} connectionClosed ", this);
@@ -314,6 +330,10 @@ public class Peer extends PeerSocketHandler {
 		return network;
 	}
 	
+	public PeerInventoryQueue getInventoryQueue() {
+		return inventoryQueue;
+	}
+	
 	public VersionMessage getPeerVersionMessage() {
 		return peerVersionMessage;
 	}
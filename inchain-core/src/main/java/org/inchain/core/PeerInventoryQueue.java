@@ -0,0 +1,93 @@
+package org.inchain.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.message.InventoryItem;
+
+/**
+ * 节点的待发送清单队列
+ * 要转发的清单先放入队列，由 {@link InventoryRelay} 定时或者积累到一定数量后合并成一个清单消息发送
+ * 同时记录对方已知的清单（对方发给我的，或者已经发给对方的），已知的不再发送
+ * @author ln
+ *
+ */
+public class PeerInventoryQueue {
+
+	//最多记录多少条对方已知的清单，超过后淘汰最早的
+	public static final int MAX_KNOWN_SIZE = 10000;
+
+	//对方已知的清单
+	private final Map<Sha256Hash, Boolean> known = new LinkedHashMap<Sha256Hash, Boolean>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Sha256Hash, Boolean> eldest) {
+			return size() > MAX_KNOWN_SIZE;
+		}
+	};
+	//待发送的清单
+	private List<InventoryItem> pending = new ArrayList<InventoryItem>();
+	//下次发送的时间
+	private long nextSendTime;
+
+	/**
+	 * 记录对方已知的清单
+	 * @param hash
+	 */
+	public synchronized void addKnown(Sha256Hash hash) {
+		known.put(hash, Boolean.TRUE);
+	}
+
+	/**
+	 * 对方是否已知该清单
+	 * @param hash
+	 * @return boolean
+	 */
+	public synchronized boolean isKnown(Sha256Hash hash) {
+		return known.containsKey(hash);
+	}
+
+	/**
+	 * 加入待发送队列，对方已知的则忽略
+	 * @param item
+	 * @param sendTime	队列为空时，本批次的发送时间
+	 * @return int 加入后队列的长度，忽略时返回 -1
+	 */
+	public synchronized int offer(InventoryItem item, long sendTime) {
+		if(known.put(item.getHash(), Boolean.TRUE) != null) {
+			return -1;
+		}
+		if(pending.isEmpty()) {
+			nextSendTime = sendTime;
+		}
+		pending.add(item);
+		return pending.size();
+	}
+
+	/**
+	 * 取出待发送的清单
+	 * @param now
+	 * @param force		不管是否到了发送时间
+	 * @return List<InventoryItem> 没有需要发送的返回null
+	 */
+	public synchronized List<InventoryItem> poll(long now, boolean force) {
+		if(pending.isEmpty() || (!force && now < nextSendTime)) {
+			return null;
+		}
+		List<InventoryItem> items = pending;
+		pending = new ArrayList<InventoryItem>();
+		return items;
+	}
+
+	/**
+	 * 待发送的数量
+	 * @return int
+	 */
+	public synchronized int size() {
+		return pending.size();
+	}
+}
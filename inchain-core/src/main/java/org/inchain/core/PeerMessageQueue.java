@@ -0,0 +1,223 @@
+package org.inchain.core;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.inchain.message.ConsensusMessage;
+import org.inchain.message.Message;
+import org.inchain.message.NewBlockMessage;
+import org.inchain.message.PingMessage;
+import org.inchain.message.PongMessage;
+import org.inchain.message.VerackMessage;
+import org.inchain.message.VersionMessage;
+import org.inchain.utils.ContextPropagatingThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 节点的消息处理队列
+ * 所有节点共用两个固定大小的线程池，不再每个连接创建一个线程。每个节点的消息按优先级分成两条队列，
+ * 每条队列同一时间只有一个线程在处理，保证同一队列里的消息按接收顺序处理，每处理一批就让出线程，轮到其它节点
+ * 握手、ping、共识和新区块消息走优先队列，使用单独的线程池，不会排在区块同步等大量消息后面
+ * 待处理的消息超过高水位时暂停读取该节点的数据，降到低水位以下再恢复，单个节点发送再快也不会占满内存
+ * @author ln
+ *
+ */
+public class PeerMessageQueue {
+
+	private static final Logger log = LoggerFactory.getLogger(PeerMessageQueue.class);
+
+	//高水位，待处理的消息数或者字节数达到时暂停读取
+	public static final int HIGH_WATER_COUNT = 1000;
+	public static final long HIGH_WATER_BYTES = 32l * 1048576;
+	//低水位，待处理的消息数和字节数都降到以下时恢复读取
+	public static final int LOW_WATER_COUNT = 200;
+	public static final long LOW_WATER_BYTES = 8l * 1048576;
+	//一次最多连续处理的消息数，之后让出线程
+	private static final int BATCH_SIZE = 16;
+
+	private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+	//优先消息线程池
+	private static final ExecutorService priorityExecutor = Executors.newFixedThreadPool(Math.max(2, PROCESSORS / 2),
+			new ContextPropagatingThreadFactory("peer message priority"));
+	//普通消息线程池
+	private static final ExecutorService normalExecutor = Executors.newFixedThreadPool(Math.max(4, PROCESSORS * 2),
+			new ContextPropagatingThreadFactory("peer message"));
+
+	/**
+	 * 消息处理和读取控制回调
+	 */
+	public interface Listener {
+		/**
+		 * 处理一条消息，在线程池里调用
+		 * @param message
+		 */
+		void onMessage(Message message);
+
+		/**
+		 * 暂停或者恢复读取
+		 * @param paused
+		 */
+		void onReadPaused(boolean paused);
+	}
+
+	private final Listener listener;
+	private final Lane priorityLane = new Lane(priorityExecutor);
+	private final Lane normalLane = new Lane(normalExecutor);
+
+	//待处理的消息数和字节数
+	private int pendingCount;
+	private long pendingBytes;
+	private boolean paused;
+	private boolean closed;
+
+	public PeerMessageQueue(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 加入队列，在读取线程里调用
+	 * @param message
+	 */
+	public void offer(Message message) {
+		boolean pause = false;
+		synchronized (this) {
+			if(closed) {
+				return;
+			}
+			pendingCount++;
+			pendingBytes += sizeOf(message);
+			if(!paused && (pendingCount >= HIGH_WATER_COUNT || pendingBytes >= HIGH_WATER_BYTES)) {
+				paused = pause = true;
+			}
+		}
+		if(pause) {
+			listener.onReadPaused(true);
+		}
+		(isPriority(message) ? priorityLane : normalLane).offer(message);
+	}
+
+	/**
+	 * 连接关闭，丢弃还没处理的消息
+	 */
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		priorityLane.clear();
+		normalLane.clear();
+	}
+
+	/**
+	 * 待处理的消息数
+	 * @return int
+	 */
+	public synchronized int size() {
+		return pendingCount;
+	}
+
+	/**
+	 * 是否已暂停读取
+	 * @return boolean
+	 */
+	public synchronized boolean isPaused() {
+		return paused;
+	}
+
+	/*
+	 * 握手、ping、共识和新区块消息优先处理
+	 */
+	private static boolean isPriority(Message message) {
+		return message instanceof VersionMessage || message instanceof VerackMessage || message instanceof PingMessage
+				|| message instanceof PongMessage || message instanceof ConsensusMessage || message instanceof NewBlockMessage;
+	}
+
+	private static long sizeOf(Message message) {
+		return Math.max(0, message.getLength());
+	}
+
+	private void done(Message message) {
+		boolean resume = false;
+		synchronized (this) {
+			pendingCount--;
+			pendingBytes -= sizeOf(message);
+			if(paused && pendingCount <= LOW_WATER_COUNT && pendingBytes <= LOW_WATER_BYTES) {
+				paused = false;
+				resume = !closed;
+			}
+		}
+		if(resume) {
+			listener.onReadPaused(false);
+		}
+	}
+
+	/**
+	 * 按顺序处理的一条队列，有消息时才占用线程
+	 */
+	private class Lane implements Runnable {
+
+		private final ExecutorService executor;
+		private final ArrayDeque<Message> messages = new ArrayDeque<Message>();
+		//是否已提交到线程池
+		private boolean scheduled;
+
+		private Lane(ExecutorService executor) {
+			this.executor = executor;
+		}
+
+		private void offer(Message message) {
+			boolean submit;
+			synchronized (this) {
+				messages.add(message);
+				submit = !scheduled;
+				scheduled = true;
+			}
+			if(submit) {
+				executor.execute(this);
+			}
+		}
+
+		private void clear() {
+			Message message;
+			while(true) {
+				synchronized (this) {
+					message = messages.poll();
+				}
+				if(message == null) {
+					break;
+				}
+				done(message);
+			}
+		}
+
+		@Override
+		public void run() {
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				Message message;
+				synchronized (this) {
+					message = messages.poll();
+					if(message == null) {
+						scheduled = false;
+						return;
+					}
+				}
+				try {
+					listener.onMessage(message);
+				} catch (Exception e) {
+					log.error("处理消息出错 {}", message, e);
+				} finally {
+					done(message);
+				}
+			}
+			synchronized (this) {
+				if(messages.isEmpty()) {
+					scheduled = false;
+					return;
+				}
+			}
+			//让出线程，排到其它节点后面
+			executor.execute(this);
+		}
+	}
+}
@@ -15,6 +15,7 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.inchain.message.Message;
+import org.inchain.message.MessageFrame;
 import org.inchain.message.MessageSerializer;
 import org.inchain.message.VerackMessage;
 import org.inchain.message.VersionMessage;
@@ -83,7 +84,66 @@ public abstract class PeerSocketHandler extends AbstractTimeoutHandler implement
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
             serializer.serialize(message, out);
-            writeTarget.writeBytes(out.toByteArray());
+            writeTarget.writeBuffer(ByteBuffer.wrap(out.toByteArray()));
+        } catch (IOException e) {
+        	close();
+        	throw e;
+        }
+    }
+    
+    /**
+     * 发送已经序列化好的消息内容，比如直接从区块文件读出的区块，省去解析成消息对象再序列化的开销
+     * @param type		消息类型，用于确定消息命令
+     * @param payload	消息内容
+     * @throws NotYetConnectedException
+     * @throws IOException
+     */
+    public void sendMessage(Class<? extends Message> type, byte[] payload) throws NotYetConnectedException, IOException {
+    	if(!handshake) {
+    		log.warn("handshake {} {} 节点还没有握手完成，不能通讯 {}", handshake, peerAddress, type.getSimpleName());
+    		return;
+    	}
+    	String command = Definition.MESSAGE_COMMANDS.get(type);
+    	if(command == null) {
+    		throw new IllegalArgumentException("未定义的消息 " + type);
+    	}
+        lock.lock();
+        try {
+            if (writeTarget == null)
+                throw new NotYetConnectedException();
+        } finally {
+            lock.unlock();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + 24);
+        try {
+            serializer.serialize(command, payload, out);
+            writeTarget.writeBuffer(ByteBuffer.wrap(out.toByteArray()));
+        } catch (IOException e) {
+        	close();
+        	throw e;
+        }
+    }
+    
+    /**
+     * 发送已经序列化好的消息帧，广播时多个节点共享同一个帧
+     * @param frame
+     * @throws NotYetConnectedException
+     * @throws IOException
+     */
+    public void sendMessage(MessageFrame frame) throws NotYetConnectedException, IOException {
+    	if(!handshake) {
+    		log.warn("handshake {} {} 节点还没有握手完成，不能通讯 {}", handshake, peerAddress, frame.getMessage());
+    		return;
+    	}
+        lock.lock();
+        try {
+            if (writeTarget == null)
+                throw new NotYetConnectedException();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writeTarget.writeBuffer(frame.duplicate());
         } catch (IOException e) {
         	close();
         	throw e;
@@ -112,8 +172,8 @@ public abstract class PeerSocketHandler extends AbstractTimeoutHandler implement
                     largeReadBufferPos += bytesToGet;
                     // Check the largeReadBuffer's status
                     if (largeReadBufferPos == largeReadBuffer.length) {
-                        // ...processing a message if one is available
-                        processMessage(serializer.deserializePayload(header, ByteBuffer.wrap(largeReadBuffer)));
+                        // ...processing a message if one is available, the buffer becomes the message's payload as is
+                        processMessage(serializer.deserializePayload(header, largeReadBuffer));
                         largeReadBuffer = null;
                         header = null;
                         firstMessage = false;
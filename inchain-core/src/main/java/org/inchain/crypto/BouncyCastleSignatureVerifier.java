@@ -0,0 +1,56 @@
+package org.inchain.crypto;
+
+import java.math.BigInteger;
+
+import org.inchain.crypto.ECKey.ECDSASignature;
+import org.inchain.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.params.ECPrivateKeyParameters;
+import org.spongycastle.crypto.params.ECPublicKeyParameters;
+import org.spongycastle.crypto.signers.ECDSASigner;
+import org.spongycastle.crypto.signers.HMacDSAKCalculator;
+
+/**
+ * 纯java的签名实现，本地库不可用时使用
+ * @author ln
+ *
+ */
+public class BouncyCastleSignatureVerifier implements SignatureVerifier {
+
+	private static final Logger log = LoggerFactory.getLogger(BouncyCastleSignatureVerifier.class);
+
+	@Override
+	public boolean verify(byte[] data, byte[] signature, byte[] pub) {
+		return verify(data, ECDSASignature.decodeFromDER(signature), pub);
+	}
+
+	@Override
+	public boolean verify(byte[] data, ECDSASignature signature, byte[] pub) {
+		ECDSASigner signer = new ECDSASigner();
+		ECPublicKeyParameters params = new ECPublicKeyParameters(ECKey.CURVE.getCurve().decodePoint(pub), ECKey.CURVE);
+		signer.init(false, params);
+		try {
+			return signer.verifySignature(data, signature.r, signature.s);
+		} catch (NullPointerException e) {
+			log.error("Caught NPE inside bouncy castle", e);
+			return false;
+		}
+	}
+
+	@Override
+	public ECDSASignature sign(byte[] data, BigInteger priv) {
+		Utils.checkNotNull(priv);
+		ECDSASigner signer = new ECDSASigner(new HMacDSAKCalculator(new SHA256Digest()));
+		ECPrivateKeyParameters privKey = new ECPrivateKeyParameters(priv, ECKey.CURVE);
+		signer.init(true, privKey);
+		BigInteger[] components = signer.generateSignature(data);
+		return new ECDSASignature(components[0], components[1]).toCanonicalised();
+	}
+
+	@Override
+	public String getName() {
+		return "bouncycastle";
+	}
+}
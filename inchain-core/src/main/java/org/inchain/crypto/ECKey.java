@@ -8,6 +8,8 @@ import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.Arrays;
 
+import org.inchain.Configure;
+import org.inchain.Secp256k1Context;
 import org.inchain.account.AccountTool;
 import org.inchain.account.Address;
 import org.inchain.core.TimeService;
@@ -22,7 +24,6 @@ import org.spongycastle.asn1.DERSequenceGenerator;
 import org.spongycastle.asn1.DLSequence;
 import org.spongycastle.asn1.x9.X9ECParameters;
 import org.spongycastle.crypto.AsymmetricCipherKeyPair;
-import org.spongycastle.crypto.digests.SHA256Digest;
 import org.spongycastle.crypto.ec.CustomNamedCurves;
 import org.spongycastle.crypto.generators.ECKeyPairGenerator;
 import org.spongycastle.crypto.params.ECDomainParameters;
@@ -30,8 +31,6 @@ import org.spongycastle.crypto.params.ECKeyGenerationParameters;
 import org.spongycastle.crypto.params.ECPrivateKeyParameters;
 import org.spongycastle.crypto.params.ECPublicKeyParameters;
 import org.spongycastle.crypto.params.KeyParameter;
-import org.spongycastle.crypto.signers.ECDSASigner;
-import org.spongycastle.crypto.signers.HMacDSAKCalculator;
 import org.spongycastle.math.ec.ECPoint;
 import org.spongycastle.math.ec.FixedPointCombMultiplier;
 import org.spongycastle.math.ec.FixedPointUtil;
@@ -50,6 +49,9 @@ public class ECKey {
 	public static final BigInteger HALF_CURVE_ORDER;
 
 	private static final SecureRandom secureRandom;	//随机种子
+	
+	//签名实现，本地库可用时使用 libsecp256k1，否则使用纯java实现，运行时可以更换，所以是 volatile 的
+	private static volatile SignatureVerifier signatureVerifier;
     
 	static {
         if (Utils.isAndroidRuntime())
@@ -60,6 +62,12 @@ public class ECKey {
                 CURVE_PARAMS.getH());
         HALF_CURVE_ORDER = CURVE_PARAMS.getN().shiftRight(1);
         secureRandom = new SecureRandom();
+        
+        signatureVerifier = new BouncyCastleSignatureVerifier();
+        if (Configure.NATIVE_SECP256K1 && Secp256k1Context.isEnabled()) {
+            signatureVerifier = new NativeSignatureVerifier(signatureVerifier);
+        }
+        log.info("签名验证使用 {}", signatureVerifier.getName());
     }
 	
 	protected final BigInteger priv;  	// 私匙
@@ -244,22 +252,30 @@ public class ECKey {
      * 验证签名
      */
     public static boolean verify(byte[] data, ECDSASignature signature, byte[] pub) {
-        ECDSASigner signer = new ECDSASigner();
-        ECPublicKeyParameters params = new ECPublicKeyParameters(CURVE.getCurve().decodePoint(pub), CURVE);
-        signer.init(false, params);
-        try {
-            return signer.verifySignature(data, signature.r, signature.s);
-        } catch (NullPointerException e) {
-            log.error("Caught NPE inside bouncy castle", e);
-            return false;
-        }
+        return signatureVerifier.verify(data, signature, pub);
     }
     
     /**
      * 验证签名
      */
     public static boolean verify(byte[] data, byte[] signature, byte[] pub) {
-        return verify(data, ECDSASignature.decodeFromDER(signature), pub);
+        return signatureVerifier.verify(data, signature, pub);
+    }
+    
+    /**
+     * 当前使用的签名实现
+     * @return SignatureVerifier
+     */
+    public static SignatureVerifier getSignatureVerifier() {
+        return signatureVerifier;
+    }
+    
+    /**
+     * 更换签名实现
+     * @param verifier
+     */
+    public static void setSignatureVerifier(SignatureVerifier verifier) {
+        signatureVerifier = Utils.checkNotNull(verifier);
     }
 
     /**
@@ -374,24 +390,7 @@ public class ECKey {
     }
 	
 	protected ECDSASignature doSign(Sha256Hash input, BigInteger privateKeyForSigning) {
-//        if (Secp256k1Context.isEnabled()) {
-//            try {
-//                byte[] signature = NativeSecp256k1.sign(
-//                        input.getBytes(),
-//                        Utils.bigIntegerToBytes(privateKeyForSigning, 32)
-//                );
-//                return ECDSASignature.decodeFromDER(signature);
-//            } catch (NativeSecp256k1Util.AssertFailException e) {
-//                log.error("Caught AssertFailException inside secp256k1", e);
-//                throw new RuntimeException(e);
-//            }
-//        }
-        Utils.checkNotNull(privateKeyForSigning);
-        ECDSASigner signer = new ECDSASigner(new HMacDSAKCalculator(new SHA256Digest()));
-        ECPrivateKeyParameters privKey = new ECPrivateKeyParameters(privateKeyForSigning, CURVE);
-        signer.init(true, privKey);
-        BigInteger[] components = signer.generateSignature(input.getBytes());
-        return new ECDSASignature(components[0], components[1]).toCanonicalised();
+        return signatureVerifier.sign(input.getBytes(), privateKeyForSigning);
     }
 	
 	/**
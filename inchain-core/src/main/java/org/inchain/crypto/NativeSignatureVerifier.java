@@ -0,0 +1,85 @@
+package org.inchain.crypto;
+
+import java.math.BigInteger;
+
+import org.inchain.NativeSecp256k1;
+import org.inchain.NativeSecp256k1Util.AssertFailException;
+import org.inchain.crypto.ECKey.ECDSASignature;
+import org.inchain.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于本地 libsecp256k1 的签名实现
+ * libsecp256k1 只接受严格DER编码和规范（低s值）的签名，而链上可能存在不规范的签名，所以本地验证不通过时，再用纯java实现确认一次，保证两种实现的验证结果一致
+ * 有效签名占绝大多数，所以这不会影响同步和验证区块的速度
+ * @author ln
+ *
+ */
+public class NativeSignatureVerifier implements SignatureVerifier {
+
+	private static final Logger log = LoggerFactory.getLogger(NativeSignatureVerifier.class);
+
+	private final SignatureVerifier fallback;
+
+	public NativeSignatureVerifier(SignatureVerifier fallback) {
+		this.fallback = fallback;
+	}
+
+	@Override
+	public boolean verify(byte[] data, byte[] signature, byte[] pub) {
+		try {
+			if(nativeVerify(data, signature, pub)) {
+				return true;
+			}
+		} catch (AssertFailException e) {
+			log.warn("Caught AssertFailException inside secp256k1", e);
+		}
+		return fallback.verify(data, signature, pub);
+	}
+
+	@Override
+	public boolean verify(byte[] data, ECDSASignature signature, byte[] pub) {
+		try {
+			if(nativeVerify(data, signature.encodeToDER(), pub)) {
+				return true;
+			}
+		} catch (AssertFailException e) {
+			log.warn("Caught AssertFailException inside secp256k1", e);
+		}
+		return fallback.verify(data, signature, pub);
+	}
+
+	@Override
+	public ECDSASignature sign(byte[] data, BigInteger priv) {
+		Utils.checkNotNull(priv);
+		try {
+			byte[] signature = nativeSign(data, Utils.bigIntegerToBytes(priv, 32));
+			if(signature.length > 0) {
+				return ECDSASignature.decodeFromDER(signature);
+			}
+		} catch (AssertFailException e) {
+			log.warn("Caught AssertFailException inside secp256k1", e);
+		}
+		return fallback.sign(data, priv);
+	}
+
+	@Override
+	public String getName() {
+		return "libsecp256k1";
+	}
+
+	/*
+	 * 调用本地库验证，测试时可以覆盖
+	 */
+	boolean nativeVerify(byte[] data, byte[] signature, byte[] pub) throws AssertFailException {
+		return NativeSecp256k1.verify(data, signature, pub);
+	}
+
+	/*
+	 * 调用本地库签名，测试时可以覆盖
+	 */
+	byte[] nativeSign(byte[] data, byte[] sec) throws AssertFailException {
+		return NativeSecp256k1.sign(data, sec);
+	}
+}
@@ -22,6 +22,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -211,6 +212,20 @@ public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
         return digest.digest(digest.digest());
     }
 
+    /**
+     * Calculates the SHA-256 hash of the remaining bytes of the given buffer,
+     * and then hashes the resulting hash again. The buffer's position is not changed,
+     * so the bytes can be checked before they are copied out of a (direct) read buffer.
+     *
+     * @param input the buffer containing the bytes to hash
+     * @return the double-hash (in big-endian order)
+     */
+    public static byte[] hashTwice(ByteBuffer input) {
+        MessageDigest digest = newDigest();
+        digest.update(input.duplicate());
+        return digest.digest(digest.digest());
+    }
+
     /**
      * Calculates the hash of hash on the given byte ranges. This is equivalent to
      * concatenating the two ranges and then passing the result to {@link #hashTwice(byte[])}.
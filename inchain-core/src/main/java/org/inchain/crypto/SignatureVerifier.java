@@ -0,0 +1,45 @@
+package org.inchain.crypto;
+
+import java.math.BigInteger;
+
+import org.inchain.crypto.ECKey.ECDSASignature;
+
+/**
+ * secp256k1 签名和验证的实现，启动时根据本地库是否可用选择，见 {@link ECKey#getSignatureVerifier()}
+ * @author ln
+ *
+ */
+public interface SignatureVerifier {
+
+	/**
+	 * 验证签名
+	 * @param data		签名的内容，32字节
+	 * @param signature	DER编码的签名
+	 * @param pub		公钥
+	 * @return boolean
+	 */
+	boolean verify(byte[] data, byte[] signature, byte[] pub);
+
+	/**
+	 * 验证签名
+	 * @param data		签名的内容，32字节
+	 * @param signature	签名
+	 * @param pub		公钥
+	 * @return boolean
+	 */
+	boolean verify(byte[] data, ECDSASignature signature, byte[] pub);
+
+	/**
+	 * 签名，结果为规范的（s值不大于曲线阶的一半）确定性签名
+	 * @param data		签名的内容，32字节
+	 * @param priv		私钥
+	 * @return ECDSASignature
+	 */
+	ECDSASignature sign(byte[] data, BigInteger priv);
+
+	/**
+	 * 实现的名称
+	 * @return String
+	 */
+	String getName();
+}
@@ -17,6 +17,32 @@ public interface Db {
 
 	boolean delete(byte[] key);
 	
+	/**
+	 * 开启批量写入，当前线程之后的 put/delete 都暂存在批次中，直到 {@link #commitBatch(boolean)} 时一次性原子写入
+	 * 批次未提交之前，当前线程的读取能看到批次内的修改，其它线程只能看到已提交的数据
+	 * 支持嵌套调用，只有最外层的提交才会真正写入
+	 */
+	void beginBatch();
+	
+	/**
+	 * 提交当前线程的批量写入
+	 * 嵌套的内层已经回滚时，最外层的提交会放弃整个批次并抛出 IllegalStateException
+	 * @param sync 是否同步刷盘
+	 */
+	void commitBatch(boolean sync);
+	
+	/**
+	 * 放弃当前线程未提交的批量写入
+	 * 嵌套调用时内层的回滚会让整个批次只能回滚，直到最外层结束才真正丢弃
+	 */
+	void rollbackBatch();
+	
+	/**
+	 * 当前线程是否处于批量写入中
+	 * @return boolean
+	 */
+	boolean isInBatch();
+	
 	void close() throws IOException;
 	
 	DB getSourceDb();
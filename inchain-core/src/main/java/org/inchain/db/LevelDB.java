@@ -3,11 +3,16 @@ package org.inchain.db;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 
+import org.inchain.core.ByteHash;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
 import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
 import org.iq80.leveldb.impl.Iq80DBFactory;
 
 /**
@@ -30,6 +35,11 @@ public class LevelDB implements Db {
 	//数据保存目录
 	private String filename;
 	
+	//批次内被删除的标记，按引用比较
+	private static final byte[] DELETED = new byte[0];
+	//每个线程独立的批量写入
+	private final ThreadLocal<Batch> batchHolder = new ThreadLocal<Batch>();
+	
 	public LevelDB(String filename) {
 		this(filename, LEVELDB_READ_CACHE_DEFAULT, LEVELDB_WRITE_CACHE_DEFAULT);
 	}
@@ -73,20 +83,100 @@ public class LevelDB implements Db {
 	
 	@Override
 	public boolean put(byte[] key, byte[] value) {
+		Batch batch = batchHolder.get();
+		if(batch != null) {
+			batch.writeBatch.put(key, value);
+			batch.pending.put(new ByteHash(key), value);
+			return true;
+		}
 		db.put(key, value);
 		return true;
 	}
 
 	@Override
 	public byte[] get(byte[] key) {
+		Batch batch = batchHolder.get();
+		if(batch != null) {
+			byte[] value = batch.pending.get(new ByteHash(key));
+			if(value == DELETED) {
+				return null;
+			} else if(value != null) {
+				return value;
+			}
+		}
 		return db.get(key);
 	}
 
 	@Override
 	public boolean delete(byte[] key) {
+		Batch batch = batchHolder.get();
+		if(batch != null) {
+			batch.writeBatch.delete(key);
+			batch.pending.put(new ByteHash(key), DELETED);
+			return true;
+		}
 		db.delete(key);
 		return true;
 	}
+	
+	@Override
+	public void beginBatch() {
+		Batch batch = batchHolder.get();
+		if(batch == null) {
+			batch = new Batch(db.createWriteBatch());
+			batchHolder.set(batch);
+		}
+		batch.depth++;
+	}
+
+	@Override
+	public void commitBatch(boolean sync) {
+		Batch batch = batchHolder.get();
+		if(batch == null) {
+			throw new IllegalStateException("no batch in progress");
+		}
+		if(--batch.depth > 0) {
+			return;
+		}
+		batchHolder.remove();
+		try {
+			if(batch.rollbackOnly) {
+				throw new IllegalStateException("batch has been rolled back by a nested call");
+			}
+			if(!batch.pending.isEmpty()) {
+				db.write(batch.writeBatch, new WriteOptions().sync(sync));
+			}
+		} finally {
+			closeQuietly(batch.writeBatch);
+		}
+	}
+
+	@Override
+	public void rollbackBatch() {
+		Batch batch = batchHolder.get();
+		if(batch == null) {
+			return;
+		}
+		//嵌套的回滚只标记，整个批次在最外层结束时放弃
+		batch.rollbackOnly = true;
+		if(--batch.depth > 0) {
+			return;
+		}
+		batchHolder.remove();
+		closeQuietly(batch.writeBatch);
+	}
+
+	@Override
+	public boolean isInBatch() {
+		return batchHolder.get() != null;
+	}
+	
+	private void closeQuietly(WriteBatch writeBatch) {
+		try {
+			writeBatch.close();
+		} catch (IOException e) {
+		}
+	}
 
 	@Override
 	public void close() throws IOException {
@@ -97,4 +187,19 @@ public class LevelDB implements Db {
 	public DB getSourceDb() {
 		return db;
 	}
+	
+	/**
+	 * 未提交的批量写入，pending 保存批次内的最新值，供批次内读取使用
+	 */
+	private static class Batch {
+		private final WriteBatch writeBatch;
+		private final Map<ByteHash, byte[]> pending = new HashMap<ByteHash, byte[]>();
+		private int depth;
+		//内层已经回滚，最外层不能再提交
+		private boolean rollbackOnly;
+		
+		private Batch(WriteBatch writeBatch) {
+			this.writeBatch = writeBatch;
+		}
+	}
 }
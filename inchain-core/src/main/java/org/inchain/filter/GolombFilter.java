@@ -0,0 +1,279 @@
+package org.inchain.filter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.inchain.utils.Utils;
+
+/**
+ * 紧凑的集合过滤器（Golomb-Rice 编码），用于记录一个区块里出现过的地址
+ * 每个元素用以密钥（区块hash的前16个字节）做 SipHash 后映射到 [0, N * M) 的范围内，排序后对相邻的差值做 Golomb-Rice 编码
+ * 误判率约为 1/M，每个元素大约占 P + 2 位，比同样误判率的布隆过滤器小很多，适合给每个区块保存一份
+ * 只能整体构建，构建后不能再添加；判断存在时可能误判，判断不存在时是准确的
+ * 存储格式：元素数量（4个字节，小端） + 编码后的位
+ * @author ln
+ *
+ */
+public class GolombFilter {
+
+	//余数的位数
+	private static final int P = 19;
+	//误判率的倒数
+	private static final long M = 784931l;
+
+	private final long k0;
+	private final long k1;
+	private final int count;
+	private final byte[] data;
+
+	/**
+	 * 解析已经保存的过滤器
+	 * @param key	密钥，至少16个字节
+	 * @param data	{@link #getData()} 的内容
+	 */
+	public GolombFilter(byte[] key, byte[] data) {
+		this.k0 = Utils.readInt64(key, 0);
+		this.k1 = Utils.readInt64(key, 8);
+		this.count = (int) Utils.readUint32(data, 0);
+		this.data = data;
+	}
+
+	/**
+	 * 构建过滤器，重复的元素只保留一个
+	 * @param key		密钥，至少16个字节
+	 * @param elements
+	 * @return GolombFilter
+	 */
+	public static GolombFilter build(byte[] key, Collection<byte[]> elements) {
+		long k0 = Utils.readInt64(key, 0);
+		long k1 = Utils.readInt64(key, 8);
+
+		Set<ByteBuffer> distinct = new HashSet<ByteBuffer>();
+		for (byte[] element : elements) {
+			distinct.add(ByteBuffer.wrap(element));
+		}
+		int count = distinct.size();
+		long range = count * M;
+
+		long[] values = new long[count];
+		int i = 0;
+		for (ByteBuffer element : distinct) {
+			values[i++] = hashToRange(k0, k1, range, element.array());
+		}
+		Arrays.sort(values);
+
+		BitWriter writer = new BitWriter(4 + count * (P + 2) / 8 + 1);
+		long last = 0;
+		for (long value : values) {
+			writer.writeGolombRice(value - last);
+			last = value;
+		}
+		byte[] data = writer.toByteArray();
+		Utils.uint32ToByteArrayLE(count, data, 0);
+		return new GolombFilter(key, data);
+	}
+
+	/**
+	 * 是否包含某个元素
+	 * @param element
+	 * @return boolean
+	 */
+	public boolean match(byte[] element) {
+		return matchAny(Arrays.asList(element));
+	}
+
+	/**
+	 * 是否包含任意一个元素，所有元素只需要遍历一次过滤器
+	 * @param elements
+	 * @return boolean
+	 */
+	public boolean matchAny(Collection<byte[]> elements) {
+		if(count == 0 || elements.isEmpty()) {
+			return false;
+		}
+		long range = count * M;
+		long[] queries = new long[elements.size()];
+		int i = 0;
+		for (byte[] element : elements) {
+			queries[i++] = hashToRange(k0, k1, range, element);
+		}
+		Arrays.sort(queries);
+
+		BitReader reader = new BitReader(data, 4);
+		long value = 0;
+		int j = 0;
+		for (int n = 0; n < count; n++) {
+			value += reader.readGolombRice();
+			while(queries[j] < value) {
+				if(++j == queries.length) {
+					return false;
+				}
+			}
+			if(queries[j] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 元素数量
+	 * @return int
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * 存储的内容
+	 * @return byte[]
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	private static long hashToRange(long k0, long k1, long range, byte[] element) {
+		return multiplyHigh(sipHash(k0, k1, element), range);
+	}
+
+	/*
+	 * 两个无符号64位整数相乘的高64位，即把哈希值均匀映射到 [0, range)
+	 */
+	private static long multiplyHigh(long a, long b) {
+		long aLow = a & 0xffffffffl;
+		long aHigh = a >>> 32;
+		long bLow = b & 0xffffffffl;
+		long bHigh = b >>> 32;
+		long cross = ((aLow * bLow) >>> 32) + ((aHigh * bLow) & 0xffffffffl) + aLow * bHigh;
+		return aHigh * bHigh + ((aHigh * bLow) >>> 32) + (cross >>> 32);
+	}
+
+	/**
+	 * SipHash-2-4
+	 * @param k0
+	 * @param k1
+	 * @param data
+	 * @return long
+	 */
+	public static long sipHash(long k0, long k1, byte[] data) {
+		long[] v = new long[] {
+			0x736f6d6570736575l ^ k0,
+			0x646f72616e646f6dl ^ k1,
+			0x6c7967656e657261l ^ k0,
+			0x7465646279746573l ^ k1
+		};
+		int end = data.length - data.length % 8;
+		for (int i = 0; i < end; i += 8) {
+			long m = Utils.readInt64(data, i);
+			v[3] ^= m;
+			sipRound(v);
+			sipRound(v);
+			v[0] ^= m;
+		}
+		long last = ((long) data.length) << 56;
+		for (int i = end; i < data.length; i++) {
+			last |= (data[i] & 0xffl) << (8 * (i - end));
+		}
+		v[3] ^= last;
+		sipRound(v);
+		sipRound(v);
+		v[0] ^= last;
+
+		v[2] ^= 0xff;
+		sipRound(v);
+		sipRound(v);
+		sipRound(v);
+		sipRound(v);
+		return v[0] ^ v[1] ^ v[2] ^ v[3];
+	}
+
+	private static void sipRound(long[] v) {
+		v[0] += v[1];
+		v[1] = Long.rotateLeft(v[1], 13);
+		v[1] ^= v[0];
+		v[0] = Long.rotateLeft(v[0], 32);
+		v[2] += v[3];
+		v[3] = Long.rotateLeft(v[3], 16);
+		v[3] ^= v[2];
+		v[0] += v[3];
+		v[3] = Long.rotateLeft(v[3], 21);
+		v[3] ^= v[0];
+		v[2] += v[1];
+		v[1] = Long.rotateLeft(v[1], 17);
+		v[1] ^= v[2];
+		v[2] = Long.rotateLeft(v[2], 32);
+	}
+
+	/*
+	 * 按位写入，高位在前
+	 */
+	private static final class BitWriter {
+		private byte[] bytes;
+		//已写入的位数，前4个字节留给元素数量
+		private long position = 32;
+
+		private BitWriter(int capacity) {
+			bytes = new byte[Math.max(capacity, 8)];
+		}
+
+		private void writeGolombRice(long value) {
+			long quotient = value >>> P;
+			for (long i = 0; i < quotient; i++) {
+				writeBit(1);
+			}
+			writeBit(0);
+			for (int i = P - 1; i >= 0; i--) {
+				writeBit((int) (value >>> i) & 1);
+			}
+		}
+
+		private void writeBit(int bit) {
+			int index = (int) (position >>> 3);
+			if(index >= bytes.length) {
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			}
+			if(bit != 0) {
+				bytes[index] |= 0x80 >>> (position & 7);
+			}
+			position++;
+		}
+
+		private byte[] toByteArray() {
+			return Arrays.copyOf(bytes, (int) ((position + 7) >>> 3));
+		}
+	}
+
+	/*
+	 * 按位读取，高位在前
+	 */
+	private static final class BitReader {
+		private final byte[] bytes;
+		private long position;
+
+		private BitReader(byte[] bytes, int offset) {
+			this.bytes = bytes;
+			this.position = offset * 8l;
+		}
+
+		private long readGolombRice() {
+			long quotient = 0;
+			while(readBit() == 1) {
+				quotient++;
+			}
+			long remainder = 0;
+			for (int i = 0; i < P; i++) {
+				remainder = (remainder << 1) | readBit();
+			}
+			return (quotient << P) | remainder;
+		}
+
+		private int readBit() {
+			int bit = (bytes[(int) (position >>> 3)] >>> (7 - (position & 7))) & 1;
+			position++;
+			return bit;
+		}
+	}
+}
@@ -1,31 +1,137 @@
 package org.inchain.filter;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.inchain.Configure;
 import org.inchain.utils.RandomUtil;
 import org.springframework.stereotype.Component;
 
 /**
- * 向量清单过滤器
+ * 向量清单过滤器，记录已经收到过的交易和区块
+ * 由若干代布隆过滤器组成，新的记录写入最新的一代，最新的一代写满或者用了一定时间后换新的一代，同时丢弃最老的一代
+ * 查询时检查所有代，已收到的记录至少在（代数 - 1）个周期内都能查到，误判率不会随着运行时间增长，占用的内存也是固定的
  * @author ln
  *
  */
 @Component
 public class InventoryFilter {
-	
-	private BloomFilter filter = new BloomFilter(1000000, 0.0001, RandomUtil.randomLong());
-	
-	public BloomFilter getFilter() {
-		return filter;
+
+	//同时保留的代数
+	private static final int GENERATIONS = 3;
+	//每一代的误判率
+	private static final double GENERATION_FALSE_POSITIVE_RATE = 0.0001;
+
+	private final int generationSize;
+	private final long generationMillis;
+
+	private final Lock locker = new ReentrantLock();
+	//按从新到老排列，换代时整体替换，查询不需要加锁
+	private volatile Generation[] generations;
+
+	public InventoryFilter() {
+		this(Configure.INVENTORY_FILTER_GENERATION_SIZE, Configure.INVENTORY_FILTER_GENERATION_SECONDS * 1000l);
 	}
-	
+
+	public InventoryFilter(int generationSize, long generationMillis) {
+		this.generationSize = generationSize;
+		this.generationMillis = generationMillis;
+		clear();
+	}
+
 	public void insert(byte[] object) {
-		filter.insert(object);
+		current().insert(object);
 	}
-	
+
 	public boolean contains(byte[] object) {
-		return filter.contains(object);
+		for (Generation generation : generations) {
+			if(generation.filter.contains(object)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 没有收到过时记录下来，检查和写入在同一个锁内完成，多个线程同时收到同一条记录时只有一个返回true
+	 * @param object
+	 * @return boolean	已经收到过返回false
+	 */
+	public boolean add(byte[] object) {
+		locker.lock();
+		try {
+			if(contains(object)) {
+				return false;
+			}
+			insert(object);
+			return true;
+		} finally {
+			locker.unlock();
+		}
+	}
+
+	/**
+	 * 当前的误判率，各代误判率的合计
+	 * @return double
+	 */
+	public double getFalsePositiveRate() {
+		double notMatched = 1d;
+		for (Generation generation : generations) {
+			notMatched *= 1d - generation.filter.getFalsePositiveRate(generation.count.get());
+		}
+		return 1d - notMatched;
 	}
-	
+
 	public void clear() {
-		filter = new BloomFilter(1000000, 0.0001, RandomUtil.randomLong());
+		locker.lock();
+		try {
+			Generation[] newGenerations = new Generation[GENERATIONS];
+			for (int i = 0; i < GENERATIONS; i++) {
+				newGenerations[i] = new Generation();
+			}
+			generations = newGenerations;
+		} finally {
+			locker.unlock();
+		}
+	}
+
+	/*
+	 * 获取写入的一代，写满或者过期时换代
+	 */
+	private Generation current() {
+		Generation current = generations[0];
+		if(!current.isFull()) {
+			return current;
+		}
+		locker.lock();
+		try {
+			current = generations[0];
+			if(current.isFull()) {
+				Generation[] newGenerations = new Generation[GENERATIONS];
+				newGenerations[0] = new Generation();
+				System.arraycopy(generations, 0, newGenerations, 1, GENERATIONS - 1);
+				generations = newGenerations;
+				current = newGenerations[0];
+			}
+			return current;
+		} finally {
+			locker.unlock();
+		}
+	}
+
+	private final class Generation {
+		private final BloomFilter filter = new BloomFilter(generationSize, GENERATION_FALSE_POSITIVE_RATE, RandomUtil.randomLong());
+		private final AtomicInteger count = new AtomicInteger();
+		private final long createTime = System.currentTimeMillis();
+
+		private void insert(byte[] object) {
+			filter.insert(object);
+			count.incrementAndGet();
+		}
+
+		private boolean isFull() {
+			return count.get() >= generationSize || System.currentTimeMillis() - createTime >= generationMillis;
+		}
 	}
 }
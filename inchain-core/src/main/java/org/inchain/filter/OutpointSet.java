@@ -0,0 +1,182 @@
+package org.inchain.filter;
+
+import java.util.Arrays;
+
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.transaction.TransactionOutput;
+
+/**
+ * 已花费输出集合，用于检查同一区块（或本次打包）里是否有多个交易引用了同一个输出
+ * 输出引用为 交易hash(32字节) + 输出序号(1字节)，与 {@link TransactionOutput#getKey()} 一致
+ * 使用开放寻址（线性探测）的哈希表，引用直接存放在连续的字节数组里，添加和查询不会为每个输入创建对象
+ * 与布隆过滤器不同，这里的判断是精确的，不会误判
+ * @author ln
+ *
+ */
+public class OutpointSet {
+
+	//单个输出引用的长度
+	public static final int KEY_LENGTH = Sha256Hash.LENGTH + 1;
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	//所有的引用，按槽位连续存放
+	private byte[] keys;
+	//槽位是否被占用
+	private boolean[] used;
+	//槽位数 - 1，槽位数是2的幂
+	private int mask;
+	private int size;
+
+	public OutpointSet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize 预计的输出引用数量
+	 */
+	public OutpointSet(int expectedSize) {
+		int capacity = 16;
+		//装载因子不超过0.5
+		while(capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		init(capacity);
+	}
+
+	private void init(int capacity) {
+		keys = new byte[capacity * KEY_LENGTH];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+		size = 0;
+	}
+
+	/**
+	 * 添加一个输出引用
+	 * @param output 被引用的输出
+	 * @return boolean 已存在返回false，也就是出现了双花
+	 */
+	public boolean add(TransactionOutput output) {
+		return add(output.getParent().getHash().getBytes(), output.getIndex());
+	}
+
+	/**
+	 * 添加一个输出引用
+	 * @param outpointKey 交易hash + 输出序号，共33字节
+	 * @return boolean 已存在返回false
+	 */
+	public boolean add(byte[] outpointKey) {
+		return add(outpointKey, outpointKey[Sha256Hash.LENGTH] & 0xff);
+	}
+
+	/**
+	 * 添加一个输出引用
+	 * @param txHash 交易hash，只取前32字节
+	 * @param index 输出序号
+	 * @return boolean 已存在返回false
+	 */
+	public boolean add(byte[] txHash, int index) {
+		int slot = find(txHash, index);
+		if(used[slot]) {
+			return false;
+		}
+		if((size + 1) * 2 > used.length) {
+			rehash();
+			slot = find(txHash, index);
+		}
+		System.arraycopy(txHash, 0, keys, slot * KEY_LENGTH, Sha256Hash.LENGTH);
+		keys[slot * KEY_LENGTH + Sha256Hash.LENGTH] = (byte) index;
+		used[slot] = true;
+		size++;
+		return true;
+	}
+
+	/**
+	 * 是否包含该输出引用
+	 * @param outpointKey 交易hash + 输出序号，共33字节
+	 * @return boolean
+	 */
+	public boolean contains(byte[] outpointKey) {
+		return used[find(outpointKey, outpointKey[Sha256Hash.LENGTH] & 0xff)];
+	}
+
+	/**
+	 * 是否包含该输出引用
+	 * @param output
+	 * @return boolean
+	 */
+	public boolean contains(TransactionOutput output) {
+		return used[find(output.getParent().getHash().getBytes(), output.getIndex())];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * 清空，保留已分配的空间
+	 */
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/*
+	 * 查找引用所在的槽位，不存在时返回应该插入的空槽位
+	 */
+	private int find(byte[] txHash, int index) {
+		index &= 0xff;
+		int slot = hash(txHash, index) & mask;
+		while(used[slot] && !equals(slot, txHash, index)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private boolean equals(int slot, byte[] txHash, int index) {
+		int offset = slot * KEY_LENGTH;
+		if(keys[offset + Sha256Hash.LENGTH] != (byte) index) {
+			return false;
+		}
+		for (int i = 0; i < Sha256Hash.LENGTH; i++) {
+			if(keys[offset + i] != txHash[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * 交易hash本身已经是均匀分布的，取其中8个字节与序号混合即可
+	 */
+	private static int hash(byte[] txHash, int index) {
+		int h = (txHash[0] & 0xff) | (txHash[1] & 0xff) << 8 | (txHash[2] & 0xff) << 16 | (txHash[3] & 0xff) << 24;
+		h ^= (txHash[28] & 0xff) | (txHash[29] & 0xff) << 8 | (txHash[30] & 0xff) << 16 | (txHash[31] & 0xff) << 24;
+		h += index * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private void rehash() {
+		byte[] oldKeys = keys;
+		boolean[] oldUsed = used;
+		init(oldUsed.length << 1);
+
+		byte[] txHash = new byte[Sha256Hash.LENGTH];
+		for (int i = 0; i < oldUsed.length; i++) {
+			if(!oldUsed[i]) {
+				continue;
+			}
+			int offset = i * KEY_LENGTH;
+			System.arraycopy(oldKeys, offset, txHash, 0, Sha256Hash.LENGTH);
+			int index = oldKeys[offset + Sha256Hash.LENGTH] & 0xff;
+			int slot = find(txHash, index);
+			System.arraycopy(oldKeys, offset, keys, slot * KEY_LENGTH, KEY_LENGTH);
+			used[slot] = true;
+			size++;
+		}
+	}
+}
@@ -11,6 +11,9 @@ import java.math.BigInteger;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -41,6 +44,7 @@ import org.inchain.signers.LocalTransactionSigner;
 import org.inchain.store.AccountStore;
 import org.inchain.store.BlockStoreProvider;
 import org.inchain.store.ChainstateStoreProvider;
+import org.inchain.store.RescanProgress;
 import org.inchain.store.TransactionStore;
 import org.inchain.store.TransactionStoreProvider;
 import org.inchain.transaction.Transaction;
@@ -49,6 +53,7 @@ import org.inchain.transaction.TransactionOutput;
 import org.inchain.transaction.business.*;
 import org.inchain.utils.Base58;
 import org.inchain.utils.ConsensusCalculationUtil;
+import org.inchain.utils.ContextPropagatingThreadFactory;
 import org.inchain.utils.DateUtil;
 import org.inchain.utils.Hex;
 import org.inchain.utils.RandomUtil;
@@ -62,6 +67,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.springframework.util.concurrent.ListenableFutureCallback;
 
 /**
  * 账户管理
@@ -75,6 +81,10 @@ public class AccountKit {
 
 	private final static Lock locker = new ReentrantLock();
 
+	//批量生成交易时并行签名和验证的线程池
+	private final static ExecutorService TRANSACTION_BUILD_EXECUTOR = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+			new ContextPropagatingThreadFactory("transaction builder"));
+
 	//账户文件路径
 	private String accountDir;
 	private List<Account> accountList = new ArrayList<Account>();
@@ -408,127 +418,37 @@ public class AccountKit {
 	 */
 	public BroadcastMakeAntifakeCodeResult makeAntifakeCode(String productTx, Coin reward, List<String> supplyList, Account account, String password) throws VerificationException {
 		//必须是认证账户才可以生成防伪码
-
-		if(account == null || !account.isCertAccount()) {
-			throw new VerificationException("非认证账户，不能生成防伪码");
-		}
-		if(account.isEncryptedOfTr()) {
-			if(StringUtil.isEmpty(password)) {
-				throw new VerificationException("账户已加密，请解密或者传入密码");
-			}
-			ECKey[] eckeys = account.decryptionTr(password);
-			if(eckeys == null) {
-				throw new VerificationException("密码错误");
-			}
-		}
-
-		if(account.isEncryptedOfTr()) {
-			throw new VerificationException("账户已加密，无法签名信息");
-		}
+		checkAntifakeCodeAccount(account, password);
 
 		try {
-			AntifakeCodeMakeTransaction tx = null;
-			if(productTx == null || productTx.isEmpty()) {
-				tx= new AntifakeCodeMakeTransaction(network);
-			}else {
-				Sha256Hash productTxHash = Sha256Hash.wrap(productTx);
-				tx = new AntifakeCodeMakeTransaction(network, productTxHash);
-			}
-
 			//是否附带奖励
 			Coin money = Coin.ZERO;
 			if(reward != null && reward.isGreaterThan(money)) {
 				money = reward;
 			}
-			//输入金额
-			Coin totalInputCoin = Coin.ZERO;
+			//选择输入
+			List<TransactionOutput> fromOutputs = null;
 			if(money.isGreaterThan(Coin.ZERO)) {
-				//选择输入
-				List<TransactionOutput> fromOutputs = selectNotSpentTransaction(money, account.getAddress());
+				fromOutputs = selectNotSpentTransaction(money, account.getAddress());
 				if(fromOutputs == null || fromOutputs.size() == 0) {
 					throw new VerificationException("余额不足，无法奖励");
 				}
-				for (TransactionOutput output : fromOutputs) {
-					TransactionInput input = new TransactionInput(output);
-					//认证账户的签名
-					input.setScriptSig(ScriptBuilder.createCertAccountInputScript(null, account.getAccountTransaction().getHash().getBytes(), account.getAddress().getHash160()));
-					tx.addInput(input);
-
-					totalInputCoin = totalInputCoin.add(Coin.valueOf(output.getValue()));
-				}
 			}
 
-			//供应链列表
-			if(supplyList != null) {
-				for (String antifakeCodeContent : supplyList) {
-					TransactionInput supplyInput = getInputByAntifakeContent(antifakeCodeContent);
-					tx.addInput(supplyInput);
-				}
-			}
+			AntifakeCode antifakeCode = newAntifakeCode();
+			AntifakeCodeMakeTransaction tx = newAntifakeCodeTransaction(productTx, money, fromOutputs, supplyList, account, antifakeCode);
+			verifyTransaction(tx, null);
+			BroadcastResult broadcastResult = broadcastVerifiedTransaction(tx);
 
-			//交易输出
-			byte[] antifakeCode = null;
 			try {
-				antifakeCode = tx.getAntifakeCode();
-			} catch (Exception e) {
-				throw new VerificationException("获取防伪码出错：" + e.getMessage());
-			}
-
-			//生成一个随机数作为验证密码
-			long verifyCode = RandomUtil.randomLong();
-			byte[] verifyCodeByte = new byte[8];
-			Utils.uint64ToByteArrayLE(verifyCode, verifyCodeByte, 0);
-			//把随机数sha256之后和防伪码再次sha256作为验证依据
-			byte[] antifakePasswordSha256 = Sha256Hash.hashTwice(verifyCodeByte);
-			byte[] verifyContent = new byte[Sha256Hash.LENGTH + 40];
-			System.arraycopy(antifakePasswordSha256, 0, verifyContent, 0, Sha256Hash.LENGTH);
-			System.arraycopy(antifakeCode, 0, verifyContent, Sha256Hash.LENGTH, 20);
-			System.arraycopy(account.getAddress().getHash160(), 0, verifyContent, Sha256Hash.LENGTH + 20, 20);
-
-			Sha256Hash verifyCodeConent = Sha256Hash.twiceOf(verifyContent);
-			//if( money.isGreaterThan(Coin.ZERO)) {
-			Script out = ScriptBuilder.createAntifakeOutputScript(account.getAddress().getHash160(), verifyCodeConent);
-			tx.addOutput(money, out);
-			//}
-
-			//是否找零
-			if(totalInputCoin.isGreaterThan(money)) {
-				tx.addOutput(totalInputCoin.subtract(money), account.getAddress());
-			}
-
-			//签名交易，如果有输入
-			if(money.isGreaterThan(Coin.ZERO)) {
-				final LocalTransactionSigner signer = new LocalTransactionSigner();
-				//认证账户的签名
-				signer.signCertAccountInputs(tx, account.getTrEckeys(), account.getAccountTransaction().getHash().getBytes(), account.getAddress().getHash160());
-			}
-			tx.sign(account);
-
-			tx.verify();
-			tx.verifyScript();
-			//验证交易是否合法
-			ValidatorResult<TransactionValidatorResult> rs = transactionValidator.valDo(tx);
-
-			if(!rs.getResult().isSuccess()) {
-				throw new VerificationException(rs.getResult().getMessage());
-			}
-
-			//加入内存池，因为广播的Inv消息出去，其它对等体会回应getDatas获取交易详情，会从本机内存取出来发送
-			boolean success = MempoolContainer.getInstace().add(tx);
-			if(!success) {
-				throw new VerificationException("加入内存池失败，可能原因[交易重复]");
-			}
-
-			try {
-				BroadcastResult result = peerKit.broadcast(tx).get();
+				BroadcastResult result = broadcastResult.get();
 
 				BroadcastMakeAntifakeCodeResult maResult = new BroadcastMakeAntifakeCodeResult(result.isSuccess(), result.getMessage());
 				//等待广播回应
 				if(result.isSuccess()) {
 					//更新交易记录
 					transactionStoreProvider.processNewTransaction(new TransactionStore(network, tx));
-					AntifakeCode ac = new AntifakeCode(antifakeCode, verifyCode);
-					maResult.setAntifakeCode(ac);
+					maResult.setAntifakeCode(antifakeCode);
 					maResult.setHash(tx.getHash());
 				}
 				return maResult;
@@ -542,6 +462,351 @@ public class AccountKit {
 		}
 	}
 
+	/**
+	 * 认证账户，批量生产防伪码
+	 * 没有奖励时各笔交易互不依赖，在线程池里并行生成、签名和验证；有奖励时第一笔选择足够所有奖励的输入，后面每一笔花费前一笔的找零，不需要等待确认
+	 * 全部验证通过后依次加入内存池并广播，不等待广播回应，立即返回每个防伪码的提交结果，见 {@link #trackAntifakeCodeResults}
+	 * @param productTx 	关联的商品
+	 * @param reward    	每个防伪码附带的验证奖励
+	 * @param supplyLists   每个防伪码的供应列表，可以为null
+	 * @param count			数量
+	 * @param account 		认证账户
+	 * @param password 		认证账户交易密码
+	 * @return List<BroadcastMakeAntifakeCodeResult>	与生成顺序一致，已提交的结果通过 getFuture() 得到各自的广播回应
+	 * @throws VerificationException
+	 */
+	public List<BroadcastMakeAntifakeCodeResult> makeAntifakeCodes(final String productTx, Coin reward, final List<List<String>> supplyLists, int count, final Account account, String password) throws VerificationException {
+		checkAntifakeCodeAccount(account, password);
+
+		try {
+			final Coin money = reward != null && reward.isGreaterThan(Coin.ZERO) ? reward : Coin.ZERO;
+			final boolean chained = money.isGreaterThan(Coin.ZERO);
+			final AntifakeCode[] antifakeCodes = new AntifakeCode[count];
+			final AntifakeCodeMakeTransaction[] txs = new AntifakeCodeMakeTransaction[count];
+			final String[] errors = new String[count];
+
+			if(chained) {
+				//有奖励，按顺序串成一条找零链，每一笔验证时前一笔已经在内存池里
+				List<TransactionOutput> fromOutputs = selectNotSpentTransaction(money.multiply(count), account.getAddress());
+				if(fromOutputs == null || fromOutputs.size() == 0) {
+					throw new VerificationException("余额不足，无法奖励");
+				}
+				//找零链断开的原因
+				String broken = null;
+				for (int i = 0; i < count; i++) {
+					if(broken != null) {
+						errors[i] = broken;
+						continue;
+					}
+					try {
+						antifakeCodes[i] = newAntifakeCode();
+						AntifakeCodeMakeTransaction tx = newAntifakeCodeTransaction(productTx, money, fromOutputs, supplyListOf(supplyLists, i), account, antifakeCodes[i]);
+						verifyTransaction(tx, null);
+						if(!MempoolContainer.getInstace().add(tx)) {
+							throw new VerificationException("加入内存池失败，可能原因[交易重复]");
+						}
+						txs[i] = tx;
+					} catch (VerificationException e) {
+						//后面的交易都依赖这一笔的找零，不再继续生成，已经生成的照常广播
+						errors[i] = e.getMessage();
+						broken = "前面的防伪码生成失败：" + e.getMessage();
+						continue;
+					}
+					//找零是第二个输出
+					if(txs[i].getOutputs().size() < 2) {
+						broken = "余额不足，无法奖励";
+						continue;
+					}
+					fromOutputs = new ArrayList<TransactionOutput>();
+					fromOutputs.add(txs[i].getOutput(1));
+				}
+			} else {
+				List<Future<?>> futures = new ArrayList<Future<?>>(count);
+				for (int i = 0; i < count; i++) {
+					final int index = i;
+					futures.add(TRANSACTION_BUILD_EXECUTOR.submit(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								antifakeCodes[index] = newAntifakeCode();
+								txs[index] = newAntifakeCodeTransaction(productTx, money, null, supplyListOf(supplyLists, index), account, antifakeCodes[index]);
+								verifyTransaction(txs[index], null);
+							} catch (VerificationException e) {
+								txs[index] = null;
+								errors[index] = e.getMessage();
+							}
+						}
+					}));
+				}
+				for (Future<?> future : futures) {
+					try {
+						future.get();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new VerificationException("生成防伪码被中断");
+					} catch (ExecutionException e) {
+						throw new VerificationException("生成防伪码出错：" + e.getCause().getMessage());
+					}
+				}
+				for (int i = 0; i < count; i++) {
+					if(txs[i] != null && !MempoolContainer.getInstace().add(txs[i])) {
+						txs[i] = null;
+						errors[i] = "加入内存池失败，可能原因[交易重复]";
+					}
+				}
+			}
+
+			//依次广播，不等待回应
+			BroadcastResult[] broadcastResults = new BroadcastResult[count];
+			for (int i = 0; i < count; i++) {
+				if(txs[i] != null) {
+					broadcastResults[i] = peerKit.broadcast(txs[i]);
+				}
+			}
+
+			return trackAntifakeCodeResults(txs, antifakeCodes, errors, broadcastResults, chained);
+		} finally {
+			if(account != null) {
+				account.resetKey();
+			}
+		}
+	}
+
+	/**
+	 * 验证交易，加入内存池并广播，不等待广播回应
+	 * 返回的提交结果 isSuccess() 表示已经开始广播，带交易hash，它的 getFuture() 在广播回应到达时完成，也可以调用 get() 等待
+	 * 广播成功后在回应的线程里更新交易记录，相互依赖的多笔交易需要按顺序更新交易记录，不适合用该方法提交
+	 * @param tx	已签名的交易
+	 * @return BroadcastResult
+	 * @throws VerificationException	验证不通过或者加入内存池失败
+	 */
+	public BroadcastResult submitTransaction(BaseCommonlyTransaction tx) throws VerificationException {
+		verifyTransaction(tx, null);
+		//加入内存池，因为广播的Inv消息出去，其它对等体会回应getDatas获取交易详情，会从本机内存取出来发送
+		if(!MempoolContainer.getInstace().add(tx)) {
+			throw new VerificationException("加入内存池失败，可能原因[交易重复]");
+		}
+		return submitBroadcast(tx);
+	}
+
+	/*
+	 * 生成每个防伪码的提交结果，与交易顺序一致，不等待广播回应
+	 * 已提交的结果带防伪码和交易hash，它的 future 在广播回应到达时完成，没有生成的结果已经完成
+	 * 串成找零链的交易都已经在内存池里，后一笔花费前一笔的找零，不论回应如何都立即按顺序记录，没有回应的交易仍然可能被打包
+	 * 互不依赖的交易在广播成功后记录
+	 */
+	List<BroadcastMakeAntifakeCodeResult> trackAntifakeCodeResults(Transaction[] txs, AntifakeCode[] antifakeCodes, String[] errors,
+			BroadcastResult[] broadcastResults, boolean chained) {
+		List<BroadcastMakeAntifakeCodeResult> results = new ArrayList<BroadcastMakeAntifakeCodeResult>(txs.length);
+		for (int i = 0; i < txs.length; i++) {
+			if(txs[i] == null) {
+				BroadcastMakeAntifakeCodeResult failed = new BroadcastMakeAntifakeCodeResult(false, errors[i]);
+				failed.getFuture().set(failed);
+				results.add(failed);
+				continue;
+			}
+			BroadcastMakeAntifakeCodeResult maResult = new BroadcastMakeAntifakeCodeResult(true, "已提交，等待广播回应");
+			maResult.setAntifakeCode(antifakeCodes[i]);
+			maResult.setHash(txs[i].getHash());
+			if(chained) {
+				recordTransaction(txs[i]);
+			}
+			followBroadcast(txs[i], broadcastResults[i], maResult, !chained);
+			results.add(maResult);
+		}
+		return results;
+	}
+
+	/*
+	 * 开始广播已经加入内存池的交易，不等待回应，广播成功后更新交易记录
+	 */
+	private BroadcastResult submitBroadcast(Transaction tx) {
+		BroadcastResult submitted = new BroadcastResult(true, "已提交，等待广播回应");
+		submitted.setHash(tx.getHash());
+		followBroadcast(tx, peerKit.broadcast(tx), submitted, true);
+		return submitted;
+	}
+
+	/*
+	 * 广播回应到达时，按需更新交易记录，再用回应完成提交结果的 future
+	 */
+	private void followBroadcast(final Transaction tx, BroadcastResult broadcastResult, final BroadcastResult submitted, final boolean record) {
+		broadcastResult.getFuture().addCallback(new ListenableFutureCallback<BroadcastResult>() {
+			@Override
+			public void onSuccess(BroadcastResult result) {
+				if(result.isSuccess() && record) {
+					recordTransaction(tx);
+				}
+				if(log.isDebugEnabled()) {
+					log.debug("交易 {} 广播回应：{}", tx.getHash(), result.getMessage());
+				}
+				submitted.getFuture().set(result);
+			}
+			@Override
+			public void onFailure(Throwable e) {
+				log.warn("交易 {} 广播失败：{}", tx.getHash(), e.getMessage());
+				submitted.getFuture().setException(e);
+			}
+		});
+	}
+
+	/*
+	 * 等待提交结果的广播回应，没有提交的直接返回
+	 */
+	private static BroadcastResult waitBroadcast(BroadcastResult submitted) {
+		if(!submitted.isSuccess()) {
+			return submitted;
+		}
+		try {
+			return submitted.get();
+		} catch (Exception e) {
+			return new BroadcastResult(false, "广播失败，失败信息：" + e.getMessage());
+		}
+	}
+
+	/*
+	 * 更新交易记录
+	 */
+	void recordTransaction(Transaction tx) {
+		transactionStoreProvider.processNewTransaction(new TransactionStore(network, tx));
+	}
+
+	/*
+	 * 验证交易的签名、脚本和业务规则
+	 */
+	private void verifyTransaction(BaseCommonlyTransaction tx, List<Transaction> txs) throws VerificationException {
+		tx.verify();
+		tx.verifyScript();
+		//验证交易是否合法
+		ValidatorResult<TransactionValidatorResult> rs = transactionValidator.valDo(tx, txs);
+
+		if(!rs.getResult().isSuccess()) {
+			throw new VerificationException(rs.getResult().getMessage());
+		}
+	}
+
+	/*
+	 * 加入内存池并广播已验证的交易
+	 */
+	private BroadcastResult broadcastVerifiedTransaction(Transaction tx) throws VerificationException {
+		//加入内存池，因为广播的Inv消息出去，其它对等体会回应getDatas获取交易详情，会从本机内存取出来发送
+		boolean success = MempoolContainer.getInstace().add(tx);
+		if(!success) {
+			throw new VerificationException("加入内存池失败，可能原因[交易重复]");
+		}
+		return peerKit.broadcast(tx);
+	}
+
+	/*
+	 * 检查生成防伪码的账户，账户已加密时用交易密码解密，调用方用完后负责 resetKey
+	 */
+	private void checkAntifakeCodeAccount(Account account, String password) throws VerificationException {
+		if(account == null || !account.isCertAccount()) {
+			throw new VerificationException("非认证账户，不能生成防伪码");
+		}
+		if(account.isEncryptedOfTr()) {
+			if(StringUtil.isEmpty(password)) {
+				throw new VerificationException("账户已加密，请解密或者传入密码");
+			}
+			ECKey[] eckeys = account.decryptionTr(password);
+			if(eckeys == null) {
+				throw new VerificationException("密码错误");
+			}
+		}
+
+		if(account.isEncryptedOfTr()) {
+			throw new VerificationException("账户已加密，无法签名信息");
+		}
+	}
+
+	private static List<String> supplyListOf(List<List<String>> supplyLists, int index) {
+		if(supplyLists == null || index >= supplyLists.size()) {
+			return null;
+		}
+		return supplyLists.get(index);
+	}
+
+	/*
+	 * 生成防伪码的验证密码，防伪码在交易生成后才确定
+	 */
+	private AntifakeCode newAntifakeCode() {
+		return new AntifakeCode(null, RandomUtil.randomLong());
+	}
+
+	/*
+	 * 生成并签名一笔防伪码交易，不做业务验证
+	 * fromOutputs 为奖励金额的来源，没有奖励时为null，多出的金额找零到认证账户，作为第二个输出
+	 * 生成的防伪码写入 antifakeCode
+	 */
+	private AntifakeCodeMakeTransaction newAntifakeCodeTransaction(String productTx, Coin money, List<TransactionOutput> fromOutputs,
+			List<String> supplyList, Account account, AntifakeCode antifakeCode) throws VerificationException {
+		AntifakeCodeMakeTransaction tx = null;
+		if(productTx == null || productTx.isEmpty()) {
+			tx= new AntifakeCodeMakeTransaction(network);
+		}else {
+			Sha256Hash productTxHash = Sha256Hash.wrap(productTx);
+			tx = new AntifakeCodeMakeTransaction(network, productTxHash);
+		}
+
+		//输入金额
+		Coin totalInputCoin = Coin.ZERO;
+		if(money.isGreaterThan(Coin.ZERO)) {
+			for (TransactionOutput output : fromOutputs) {
+				TransactionInput input = new TransactionInput(output);
+				//认证账户的签名
+				input.setScriptSig(ScriptBuilder.createCertAccountInputScript(null, account.getAccountTransaction().getHash().getBytes(), account.getAddress().getHash160()));
+				tx.addInput(input);
+
+				totalInputCoin = totalInputCoin.add(Coin.valueOf(output.getValue()));
+			}
+		}
+
+		//供应链列表
+		if(supplyList != null) {
+			for (String antifakeCodeContent : supplyList) {
+				TransactionInput supplyInput = getInputByAntifakeContent(antifakeCodeContent);
+				tx.addInput(supplyInput);
+			}
+		}
+
+		//交易输出
+		byte[] code = null;
+		try {
+			code = tx.getAntifakeCode();
+		} catch (Exception e) {
+			throw new VerificationException("获取防伪码出错：" + e.getMessage());
+		}
+		antifakeCode.setAntifakeCode(code);
+
+		//生成一个随机数作为验证密码
+		byte[] verifyCodeByte = new byte[8];
+		Utils.uint64ToByteArrayLE(antifakeCode.getVerifyCode(), verifyCodeByte, 0);
+		//把随机数sha256之后和防伪码再次sha256作为验证依据
+		byte[] antifakePasswordSha256 = Sha256Hash.hashTwice(verifyCodeByte);
+		byte[] verifyContent = new byte[Sha256Hash.LENGTH + 40];
+		System.arraycopy(antifakePasswordSha256, 0, verifyContent, 0, Sha256Hash.LENGTH);
+		System.arraycopy(code, 0, verifyContent, Sha256Hash.LENGTH, 20);
+		System.arraycopy(account.getAddress().getHash160(), 0, verifyContent, Sha256Hash.LENGTH + 20, 20);
+
+		Sha256Hash verifyCodeConent = Sha256Hash.twiceOf(verifyContent);
+		Script out = ScriptBuilder.createAntifakeOutputScript(account.getAddress().getHash160(), verifyCodeConent);
+		tx.addOutput(money, out);
+
+		//是否找零
+		if(totalInputCoin.isGreaterThan(money)) {
+			tx.addOutput(totalInputCoin.subtract(money), account.getAddress());
+		}
+
+		//签名交易，如果有输入
+		if(money.isGreaterThan(Coin.ZERO)) {
+			final LocalTransactionSigner signer = new LocalTransactionSigner();
+			//认证账户的签名
+			signer.signCertAccountInputs(tx, account.getTrEckeys(), account.getAccountTransaction().getHash().getBytes(), account.getAddress().getHash160());
+		}
+		tx.sign(account);
+		return tx;
+	}
+
 	/**
 	 * 绑定防伪码到商品
 	 * @param productTx
@@ -809,7 +1074,7 @@ public class AccountKit {
 	}
 
 	/**
-	 * 资产转让
+	 * 资产转让，等待广播回应
 	 * @param account
 	 * @param assetsRegisterTx
 	 * @param receiver
@@ -818,6 +1083,19 @@ public class AccountKit {
 	 * @return
 	 */
 	public BroadcastResult assetsTransfer(Account account, AssetsRegisterTransaction assetsRegisterTx, byte[] receiver, Long amount, String remark) {
+		return waitBroadcast(submitAssetsTransfer(account, assetsRegisterTx, receiver, amount, remark));
+	}
+
+	/**
+	 * 资产转让，不等待广播回应，见 {@link #submitTransaction}
+	 * @param account
+	 * @param assetsRegisterTx
+	 * @param receiver
+	 * @param amount
+	 * @param remark
+	 * @return BroadcastResult	提交结果
+	 */
+	public BroadcastResult submitAssetsTransfer(Account account, AssetsRegisterTransaction assetsRegisterTx, byte[] receiver, Long amount, String remark) {
 		AssetsTransferTransaction transferTx = new AssetsTransferTransaction(network, assetsRegisterTx.getHash(), receiver, amount,remark.getBytes(Utils.UTF_8));
 
 		//签名交易
@@ -852,18 +1130,7 @@ public class AccountKit {
 		if(!success) {
 			throw new VerificationException("加入内存池失败，可能原因[交易重复]");
 		}
-
-		try {
-			BroadcastResult br = peerKit.broadcast(transferTx).get();
-			//等待广播回应
-			if(br.isSuccess()) {
-				//更新交易记录
-				transactionStoreProvider.processNewTransaction(new TransactionStore(network, transferTx));
-			}
-			return br;
-		} catch (Exception e) {
-			return new BroadcastResult(false, "广播失败，失败信息：" + e.getMessage());
-		}
+		return submitBroadcast(transferTx);
 	}
 
 	/*
@@ -1315,7 +1582,7 @@ public class AccountKit {
 	}
 
 	/**
-	 * 发送普通交易到指定地址
+	 * 发送普通交易到指定地址，等待广播回应
 	 * @param to   base58的地址
 	 * @param money	发送金额
 	 * @param fee	手续费
@@ -1323,6 +1590,18 @@ public class AccountKit {
 	 * @throws MoneyNotEnoughException
 	 */
 	public BroadcastResult sendMoney(String to, Coin money, Coin fee, byte[] remark, String address, String password) throws MoneyNotEnoughException {
+		return waitBroadcast(submitMoney(to, money, fee, remark, address, password));
+	}
+
+	/**
+	 * 发送普通交易到指定地址，不等待广播回应，见 {@link #submitTransaction}
+	 * @param to   base58的地址
+	 * @param money	发送金额
+	 * @param fee	手续费
+	 * @return BroadcastResult	提交结果
+	 * @throws MoneyNotEnoughException
+	 */
+	public BroadcastResult submitMoney(String to, Coin money, Coin fee, byte[] remark, String address, String password) throws MoneyNotEnoughException {
 		//参数不能为空
 		Utils.checkNotNull(to);
 		long bestheight = 0;
@@ -1491,22 +1770,9 @@ public class AccountKit {
 
 			if(success) {
 				transactionStoreProvider.processNewTransaction(new TransactionStore(network, tx));
-				//广播结果
-				try {
-					log.info("交易大小：{} , 输入数{} - {},  输出数 {} , hash {}", tx.baseSerialize().length, tx.getInputs().size(), tx.getInputs().get(0).getFroms().size(), tx.getOutputs().size(), tx.getHash());
-					//等待广播回应
-					broadcastResult = peerKit.broadcast(tx).get();
-					//成功
-					if(broadcastResult.isSuccess()) {
-						//更新交易记录
-						transactionStoreProvider.processNewTransaction(new TransactionStore(network, tx));
-					}
-				} catch (Exception e) {
-					e.printStackTrace();
-					broadcastResult = new BroadcastResult();
-					broadcastResult.setSuccess(false);
-					broadcastResult.setMessage("广播出错，"+e.getMessage());
-				}
+				log.info("交易大小：{} , 输入数{} - {},  输出数 {} , hash {}", tx.baseSerialize().length, tx.getInputs().size(), tx.getInputs().get(0).getFroms().size(), tx.getOutputs().size(), tx.getHash());
+				//开始广播，不在锁里等待回应
+				broadcastResult = submitBroadcast(tx);
 			} else {
 				broadcastResult = new BroadcastResult();
 				broadcastResult.setSuccess(false);
@@ -3458,6 +3724,10 @@ public class AccountKit {
 			ret = new Result(false,"导入失败");
 			return ret;
 		}
+		RescanProgress rescanProgress = blockStoreProvider.getRescanProgress();
+		if(rescanProgress != null && rescanProgress.isCancelled()) {
+			return new Result(true,"导入账户"+addressTemp.getBase58()+"成功，交易记录的扫描已取消，下次启动时重新扫描");
+		}
 		ret = new Result(true,"导入账户"+addressTemp.getBase58()+"成功");
 		return  ret;
 	}
@@ -3860,7 +4130,9 @@ public class AccountKit {
 				return;
 			}
 		}
-		transactionStoreProvider.reloadTransaction(hash160s);
+		if(!transactionStoreProvider.reloadTransaction(hash160s)) {
+			log.warn("账户交易记录的扫描已取消，下次启动时重新扫描");
+		}
 	}
 
 	//初始化账户交易过滤器
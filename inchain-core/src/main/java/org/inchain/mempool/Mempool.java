@@ -32,7 +32,8 @@ public interface Mempool {
 	boolean bathRemove(Sha256Hash[] hashs);
 
 	/**
-	 * 获取最早的交易，同时从内存池中移除交易
+	 * 获取手续费率最高，并且引用的池内交易都已被取出的交易，同时从内存池中移除交易
+	 * 依次调用得到的交易顺序可以直接打包进区块
 	 * @return Transaction
 	 */
 	Transaction get();
@@ -45,7 +46,7 @@ public interface Mempool {
 	Transaction get(Sha256Hash hash);
 	
 	/**
-	 * 批量获取最早的交易，获取之后同时从内存池中移除交易
+	 * 按 {@link #get()} 的顺序批量获取交易，获取之后同时从内存池中移除交易
 	 * @param max	最大获取数量
 	 * @return Transaction[]
 	 */
@@ -1,94 +1,145 @@
 package org.inchain.mempool;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.inchain.Configure;
+import org.inchain.core.ByteHash;
 import org.inchain.crypto.Sha256Hash;
 import org.inchain.transaction.Transaction;
+import org.inchain.transaction.TransactionInput;
+import org.inchain.transaction.TransactionOutput;
 
 /**
- * 内存容器映射，必须要线程安全的
- * 先用ConcurrentSkipListMap简单实现
+ * 内存池实现，必须要线程安全的
+ * 按手续费率（每千字节手续费）排序，并记录池内交易之间的父子依赖，保证取出的交易始终排在它所引用的池内交易之后
+ * 池内所有交易引用的输出都有索引，引用了同一输出的交易会被直接拒绝
+ * 占用超过 {@link Configure#MEMPOOL_MAX_SIZE} 时，优先淘汰手续费率最低的交易
  * @author ln
  *
  */
 public class MempoolContainer implements Mempool {
 
-	private Lock locker = new ReentrantLock();
-	
-	private static final Map<Sha256Hash, Transaction> packageingContainer = new HashMap<Sha256Hash, Transaction>();
-	
-	private static final ConcurrentLinkedQueue<Transaction> container = new ConcurrentLinkedQueue<Transaction>();
-	private static final Map<Sha256Hash, Transaction> indexContainer = new HashMap<Sha256Hash, Transaction>();
-	
-	private static final Mempool instace = new MempoolContainer();
-
-	
-	private MempoolContainer() {
+	private final Lock locker = new ReentrantLock();
+
+	//待打包的交易
+	private final Map<Sha256Hash, Entry> pool = new HashMap<Sha256Hash, Entry>();
+	//已被取出打包，但还没有确认的交易
+	private final Map<Sha256Hash, Entry> packageingContainer = new HashMap<Sha256Hash, Entry>();
+	//被引用的输出 -> 引用它的交易
+	private final Map<ByteHash, Sha256Hash> spentIndex = new HashMap<ByteHash, Sha256Hash>();
+
+	//池内依赖都已满足，可以打包的交易，手续费率高的在前
+	private final TreeSet<Entry> readyQueue = new TreeSet<Entry>(new Comparator<Entry>() {
+		@Override
+		public int compare(Entry o1, Entry o2) {
+			if(o1.feeRate != o2.feeRate) {
+				return o1.feeRate > o2.feeRate ? -1 : 1;
+			}
+			return Long.compare(o1.sequence, o2.sequence);
+		}
+	});
+	//所有待打包交易的淘汰顺序，手续费率低的在前，同费率先淘汰后来的
+	private final TreeSet<Entry> evictQueue = new TreeSet<Entry>(new Comparator<Entry>() {
+		@Override
+		public int compare(Entry o1, Entry o2) {
+			if(o1.feeRate != o2.feeRate) {
+				return o1.feeRate < o2.feeRate ? -1 : 1;
+			}
+			return Long.compare(o2.sequence, o1.sequence);
+		}
+	});
+
+	//待打包交易占用的字节数
+	private long poolSize;
+	//最大占用字节数
+	private final long maxPoolSize;
+	//进入内存池的顺序
+	private long sequence;
+
+	private static final Mempool instace = new MempoolContainer(Configure.MEMPOOL_MAX_SIZE);
+
+	MempoolContainer(long maxPoolSize) {
+		this.maxPoolSize = maxPoolSize;
 	}
-	
+
 	public static Mempool getInstace() {
 		return instace;
 	}
-	
+
 	@Override
 	public boolean add(Transaction tx) {
 		locker.lock();
 		try {
-			if(indexContainer.containsKey(tx.getHash())) {
+			Sha256Hash hash = tx.getHash();
+			if(pool.containsKey(hash)) {
 				return false;
 			}
-			
+			//打包失败被放回的交易，先从打包列表里移除
+			Entry packageing = packageingContainer.remove(hash);
+			if(packageing != null) {
+				unindexSpent(packageing);
+			}
+
+			Entry entry = new Entry(tx, sequence++);
+
 			//保证新的交易不能双花
-			//在transactionValidator.valDo已经检测过了和区块上的不会重复花费，但是内存里面的没有检查
-			//这里就检查交易的输入和内存里面的交易输入是否相同，如果相同则代表有双花风险，应该制止
-			
-//			List<TransactionInput> thisInputs = tx.getInputs();
-//			//TODO 可以考虑这里改为布隆过滤器处理，应该会有性能提升？
-//			if(thisInputs != null && thisInputs.size() > 0) {
-//				for (TransactionInput input : thisInputs) {
-//					if(input.getFroms() == null || input.getFroms().size() == 0) {
-//						continue;
-//					}
-//					for (TransactionOutput from : input.getFroms()) {
-//						for (Transaction transaction : container) {
-//							List<TransactionInput> inputs = transaction.getInputs();
-//							if(inputs == null || inputs.size() == 0) {
-//								continue;
-//							}
-//							try {
-//								for (TransactionInput input2 : inputs) {
-//									if(input2.getFroms() == null || input2.getFroms().size() == 0) {
-//										continue;
-//									}
-//									for (TransactionOutput from2 : input2.getFroms()) {
-//										if(from2.getParent().getHash().equals(from.getParent().getHash()) && from2.getIndex() == from.getIndex()) {
-//											System.out.println("================");
-//											System.out.println("================");
-//											System.out.println("================");
-//											System.out.println("================");
-//											System.exit(0);
-//											return false;
-//										}
-//									}
-//								}
-//							}catch (Exception e) {
-//							}
-//						}
-//					}
-//				}
-//			}
-			
-			boolean success = container.add(tx);
-			if(success) {
-				indexContainer.put(tx.getHash(), tx);
-			}
-			return success;
+			//在transactionValidator.valDo已经检测过了和区块上的不会重复花费，这里检查和内存里面的交易是否引用了相同的输出
+			for (ByteHash key : entry.spentKeys) {
+				Sha256Hash spender = spentIndex.get(key);
+				if(spender != null && !spender.equals(hash)) {
+					return false;
+				}
+			}
+
+			//内存池已满，手续费率不比池内最低的高，则不接收
+			if(poolSize + entry.size > maxPoolSize && !evictQueue.isEmpty() && entry.feeRate <= evictQueue.first().feeRate) {
+				return false;
+			}
+
+			for (ByteHash key : entry.spentKeys) {
+				spentIndex.put(key, hash);
+			}
+
+			//关联池内的父交易
+			for (Sha256Hash parentHash : entry.parentHashs) {
+				Entry parent = pool.get(parentHash);
+				if(parent != null) {
+					parent.children.add(entry);
+					entry.parents.add(parent);
+				}
+			}
+			//关联先于本交易进入池内的子交易，区块回滚时交易是倒序放回的
+			for (TransactionOutput output : entry.outputs) {
+				Sha256Hash childHash = spentIndex.get(new ByteHash(output.getKey()));
+				Entry child = childHash == null ? null : pool.get(childHash);
+				if(child != null && !child.parents.contains(entry)) {
+					if(child.parents.isEmpty()) {
+						readyQueue.remove(child);
+					}
+					child.parents.add(entry);
+					entry.children.add(child);
+				}
+			}
+
+			pool.put(hash, entry);
+			evictQueue.add(entry);
+			if(entry.parents.isEmpty()) {
+				readyQueue.add(entry);
+			}
+			poolSize += entry.size;
+
+			evict();
+
+			return pool.containsKey(hash);
 		} finally {
 			locker.unlock();
 		}
@@ -96,12 +147,22 @@ public class MempoolContainer implements Mempool {
 
 	@Override
 	public boolean remove(Sha256Hash hash) {
-		Transaction tx = indexContainer.remove(hash);
-		if(tx != null) {
-			packageingContainer.remove(tx.getHash());
-			return container.remove(tx);
-		} else {
-			return false;
+		locker.lock();
+		try {
+			Entry entry = packageingContainer.remove(hash);
+			if(entry != null) {
+				unindexSpent(entry);
+				return true;
+			}
+			entry = pool.get(hash);
+			if(entry == null) {
+				return false;
+			}
+			removeFromPool(entry);
+			unindexSpent(entry);
+			return true;
+		} finally {
+			locker.unlock();
 		}
 	}
 
@@ -115,38 +176,53 @@ public class MempoolContainer implements Mempool {
 
 	@Override
 	public Transaction get() {
-		Transaction tx = container.poll();
-		if(tx != null) {
-			indexContainer.remove(tx.getHash());
-			packageingContainer.put(tx.getHash(), tx);
+		locker.lock();
+		try {
+			Entry entry = readyQueue.pollFirst();
+			if(entry == null) {
+				return null;
+			}
+			removeFromPool(entry);
+			packageingContainer.put(entry.tx.getHash(), entry);
+			return entry.tx;
+		} finally {
+			locker.unlock();
 		}
-		return tx;
 	}
-	
+
 	@Override
 	public Transaction get(Sha256Hash hash) {
-		Transaction tx = indexContainer.get(hash);
-		if(tx == null) {
-			tx = packageingContainer.get(hash);
+		locker.lock();
+		try {
+			Entry entry = pool.get(hash);
+			if(entry == null) {
+				entry = packageingContainer.get(hash);
+			}
+			return entry == null ? null : entry.tx;
+		} finally {
+			locker.unlock();
 		}
-		return tx;
 	}
 
 	@Override
 	public Transaction[] getNewest(int max) {
-		List<Transaction> list = new ArrayList<Transaction>();
-
-		while(max > 0) {
-			Transaction tx = container.poll();
-			if(tx == null) {
-				break;
-			} else {
-				indexContainer.remove(tx.getHash());
+		locker.lock();
+		try {
+			List<Transaction> list = new ArrayList<Transaction>();
+			while(max > 0) {
+				Entry entry = readyQueue.pollFirst();
+				if(entry == null) {
+					break;
+				}
+				removeFromPool(entry);
+				unindexSpent(entry);
+				list.add(entry.tx);
+				max--;
 			}
-			list.add(tx);
-			max--;
+			return list.toArray(new Transaction[list.size()]);
+		} finally {
+			locker.unlock();
 		}
-		return list.toArray(new Transaction[list.size()]);
 	}
 
 	/**
@@ -155,6 +231,116 @@ public class MempoolContainer implements Mempool {
 	 */
 	@Override
 	public int getTxCount() {
-		return container.size();
+		locker.lock();
+		try {
+			return pool.size();
+		} finally {
+			locker.unlock();
+		}
+	}
+
+	/*
+	 * 超出容量时，从手续费率最低的开始淘汰，连同依赖它的子交易一起移除
+	 */
+	private void evict() {
+		while(poolSize > maxPoolSize && !evictQueue.isEmpty()) {
+			evictWithChildren(evictQueue.first());
+		}
+	}
+
+	private void evictWithChildren(Entry entry) {
+		for (Entry child : new ArrayList<Entry>(entry.children)) {
+			if(pool.get(child.tx.getHash()) == child) {
+				evictWithChildren(child);
+			}
+		}
+		removeFromPool(entry);
+		unindexSpent(entry);
+	}
+
+	/*
+	 * 从待打包列表中移除，子交易少了一个未满足的依赖
+	 */
+	private void removeFromPool(Entry entry) {
+		pool.remove(entry.tx.getHash());
+		readyQueue.remove(entry);
+		evictQueue.remove(entry);
+		poolSize -= entry.size;
+
+		for (Entry parent : entry.parents) {
+			parent.children.remove(entry);
+		}
+		entry.parents.clear();
+		for (Entry child : entry.children) {
+			child.parents.remove(entry);
+			if(child.parents.isEmpty() && pool.get(child.tx.getHash()) == child) {
+				readyQueue.add(child);
+			}
+		}
+		entry.children.clear();
+	}
+
+	private void unindexSpent(Entry entry) {
+		Sha256Hash hash = entry.tx.getHash();
+		for (ByteHash key : entry.spentKeys) {
+			if(hash.equals(spentIndex.get(key))) {
+				spentIndex.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * 内存池里的交易，以及它的手续费率和池内依赖关系
+	 */
+	private static class Entry {
+		private final Transaction tx;
+		private final long sequence;
+		private final int size;
+		//每千字节的手续费
+		private final long feeRate;
+		private final List<TransactionOutput> outputs;
+		//引用的输出
+		private final List<ByteHash> spentKeys = new ArrayList<ByteHash>();
+		//引用的交易
+		private final Set<Sha256Hash> parentHashs = new HashSet<Sha256Hash>();
+		//池内还未被取出的父交易
+		private final Set<Entry> parents = new HashSet<Entry>();
+		//池内依赖本交易的子交易
+		private final Set<Entry> children = new HashSet<Entry>();
+
+		private Entry(Transaction tx, long sequence) {
+			this.tx = tx;
+			this.sequence = sequence;
+
+			int length = tx.getLength();
+			this.size = length > 0 ? length : tx.baseSerialize().length;
+
+			long inputValue = 0;
+			List<TransactionInput> inputs = tx.getInputs();
+			if(inputs != null) {
+				for (TransactionInput input : inputs) {
+					List<TransactionOutput> froms = input.getFroms();
+					if(froms == null) {
+						continue;
+					}
+					for (TransactionOutput from : froms) {
+						if(from.getParent() == null) {
+							continue;
+						}
+						spentKeys.add(new ByteHash(from.getKey()));
+						parentHashs.add(from.getParent().getHash());
+						inputValue += from.getValue();
+					}
+				}
+			}
+			long outputValue = 0;
+			this.outputs = tx.getOutputs() == null ? new ArrayList<TransactionOutput>() : tx.getOutputs();
+			for (TransactionOutput output : outputs) {
+				outputValue += output.getValue();
+			}
+			//输入金额未知（没有经过验证）的交易，按没有手续费处理
+			long fee = Math.max(0l, inputValue - outputValue);
+			this.feeRate = fee * 1000l / Math.max(1, size);
+		}
 	}
 }
@@ -87,21 +87,11 @@ public class Block extends BlockHeader {
 	 */
 	public Sha256Hash buildMerkleHash() {
 		
-		List<byte[]> tree = new ArrayList<byte[]>();
+		List<Sha256Hash> hashs = new ArrayList<Sha256Hash>();
         for (Transaction t : txs) {
-            tree.add(t.getHash().getBytes());
+            hashs.add(t.getHash());
         }
-        int levelOffset = 0;
-        for (int levelSize = txs.size(); levelSize > 1; levelSize = (levelSize + 1) / 2) {
-            for (int left = 0; left < levelSize; left += 2) {
-                int right = Math.min(left + 1, levelSize - 1);
-                byte[] leftBytes = Utils.reverseBytes(tree.get(levelOffset + left));
-                byte[] rightBytes = Utils.reverseBytes(tree.get(levelOffset + right));
-                tree.add(Utils.reverseBytes(Sha256Hash.hashTwice(leftBytes, 0, 32, rightBytes, 0, 32)));
-            }
-            levelOffset += levelSize;
-        }
-        Sha256Hash merkleHash = Sha256Hash.wrap(tree.get(tree.size() - 1));
+        Sha256Hash merkleHash = buildMerkleHash(hashs);
         if(this.merkleHash == null) {
         	this.merkleHash = merkleHash;
         } else {
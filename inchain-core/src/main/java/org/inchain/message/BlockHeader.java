@@ -163,6 +163,30 @@ public class BlockHeader extends Message {
 		}		
 	}
 
+	/**
+	 * 根据交易hash列表计算梅克尔树根
+	 * 只有区块头时，用区块头里的交易hash列表验证梅克尔树根
+	 * @param hashs	按区块里的顺序排列，不能为空
+	 * @return Sha256Hash
+	 */
+	public static Sha256Hash buildMerkleHash(List<Sha256Hash> hashs) {
+		List<byte[]> tree = new ArrayList<byte[]>();
+		for (Sha256Hash hash : hashs) {
+			tree.add(hash.getBytes());
+		}
+		int levelOffset = 0;
+		for (int levelSize = hashs.size(); levelSize > 1; levelSize = (levelSize + 1) / 2) {
+			for (int left = 0; left < levelSize; left += 2) {
+				int right = Math.min(left + 1, levelSize - 1);
+				byte[] leftBytes = Utils.reverseBytes(tree.get(levelOffset + left));
+				byte[] rightBytes = Utils.reverseBytes(tree.get(levelOffset + right));
+				tree.add(Utils.reverseBytes(Sha256Hash.hashTwice(leftBytes, 0, 32, rightBytes, 0, 32)));
+			}
+			levelOffset += levelSize;
+		}
+		return Sha256Hash.wrap(tree.get(tree.size() - 1));
+	}
+
 	/**
 	 *  签名区块头信息
 	 * @param account
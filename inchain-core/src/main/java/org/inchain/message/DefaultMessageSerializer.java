@@ -3,13 +3,14 @@ package org.inchain.message;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.lang.reflect.Constructor;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 
 import org.inchain.core.Definition;
 import org.inchain.core.exception.ProtocolException;
 import org.inchain.crypto.Sha256Hash;
+import org.inchain.message.MessageParsers.MessageParser;
+import org.inchain.message.MessageParsers.TransactionParser;
 import org.inchain.network.NetworkParams;
 import org.inchain.transaction.Transaction;
 import org.inchain.transaction.business.UnkonwTransaction;
@@ -89,18 +90,40 @@ public class DefaultMessageSerializer extends MessageSerializer {
 	@Override
 	public Message deserializePayload(MessagePacketHeader header, ByteBuffer in)
 			throws ProtocolException, BufferUnderflowException, UnsupportedOperationException {
+		if (in.remaining() < header.size) {
+			throw new BufferUnderflowException();
+		}
+		//直接在读缓冲区上校验，通过后才复制出消息内容
+		ByteBuffer payload = in.slice();
+		payload.limit(header.size);
+		byte[] hash = Sha256Hash.hashTwice(payload);
+		verifyChecksum(header, hash);
+
 		byte[] payloadBytes = new byte[header.size];
         in.get(payloadBytes, 0, header.size);
 
-        // Verify the checksum.
-        byte[] hash;
-        hash = Sha256Hash.hashTwice(payloadBytes);
+        return makeMessage(header, payloadBytes, hash);
+	}
+
+	@Override
+	public Message deserializePayload(MessagePacketHeader header, byte[] payload) throws ProtocolException, UnsupportedOperationException {
+		if (payload.length != header.size) {
+			throw new ProtocolException("Payload size " + payload.length + " does not match header size " + header.size);
+		}
+		byte[] hash = Sha256Hash.hashTwice(payload);
+		verifyChecksum(header, hash);
+		return makeMessage(header, payload, hash);
+	}
+
+	private void verifyChecksum(MessagePacketHeader header, byte[] hash) throws ProtocolException {
         if (header.checksum[0] != hash[0] || header.checksum[1] != hash[1] ||
                 header.checksum[2] != hash[2] || header.checksum[3] != hash[3]) {
             throw new ProtocolException("Checksum failed to verify, actual " +
             		Hex.encode(hash) + " vs " + Hex.encode(header.checksum));
         }
+	}
 
+	private Message makeMessage(MessagePacketHeader header, byte[] payloadBytes, byte[] hash) throws ProtocolException {
         if (log.isDebugEnabled()) {
             log.debug("Received {} byte '{}' message: {}", header.size, header.command,
                     Hex.encode(payloadBytes));
@@ -121,19 +144,12 @@ public class DefaultMessageSerializer extends MessageSerializer {
 		} else {
 			//创建消息
 	  		try {
-	  			Class<?> clazz = Definition.COMMANDS_MESSAGE.get(command);
-	  			if(clazz == null) {
+	  			MessageParser parser = MessageParsers.getMessageParser(command);
+	  			if(parser == null) {
 		  			log.warn("反序列化消息通用方法出错, 未定义的消息 {}", command);
 	  				return message;
 	  			}
-	  			Constructor<?> constructor = clazz.getDeclaredConstructor(NetworkParams.class, byte[].class);
-	  			if(constructor == null) {
-	  				constructor = clazz.getDeclaredConstructor(NetworkParams.class, String.class, byte[].class);
-	  	        	log.warn("No support for deserializing message with name {}", command);
-	  	        	message = (Message) constructor.newInstance(network, command, payloadBytes);
-	  			} else {
-	  				message = (Message) constructor.newInstance(network, payloadBytes);
-	  			}
+	  			message = parser.parse(network, payloadBytes);
 	  		} catch (Exception e) {
 	  			log.error("反序列化消息通用方法出错：{}", e);
 	  		}
@@ -196,17 +212,15 @@ public class DefaultMessageSerializer extends MessageSerializer {
 		int type = payloadBytes[offset] & 0XFF;
 		
 		try {
-			Class<?> clazz = Definition.TRANSACTION_RELATION.get(type);
-			if(clazz == null) {
+			TransactionParser parser = MessageParsers.getTransactionParser(type);
+			if(parser == null) {
 				UnkonwTransaction unkonwTransaction = new UnkonwTransaction(network, payloadBytes, offset);
 				if(log.isDebugEnabled()) {
 					log.debug("没有配置的消息序列化");
 				}
 				return unkonwTransaction;
 			}
-			Constructor<?> constructor = clazz.getDeclaredConstructor(NetworkParams.class, byte[].class, int.class);
-			
-			return (Transaction) constructor.newInstance(network, payloadBytes, offset);
+			return parser.parse(network, payloadBytes, offset);
 		} catch (Exception e) {
 			log.error("序列化消息出错：{}", e);
 			return null;
@@ -1,5 +1,7 @@
 package org.inchain.message;
 
+import java.util.List;
+
 import org.inchain.network.NetworkParams;
 
 /**
@@ -15,6 +17,10 @@ public static final long MAX_INVENTORY_ITEMS = 10000;
 		super(network, item);
 	}
 	
+	public GetDatasMessage(NetworkParams network, List<InventoryItem> items) {
+		super(network, items);
+	}
+	
 	public GetDatasMessage(NetworkParams network, byte[] payloadBytes) {
 		super(network, payloadBytes);
 	}
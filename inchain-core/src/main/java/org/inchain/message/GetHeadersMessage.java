@@ -0,0 +1,72 @@
+package org.inchain.message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.inchain.core.exception.ProtocolException;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.network.NetworkParams;
+
+/**
+ * 获取区块头消息，收到该消息的节点返回开始区块之后的主链区块头，最多 {@link HeadersMessage#MAX_HEADERS} 个
+ * 开始区块不在对方主链上时，返回 DataNotFound 消息
+ * @author ln
+ *
+ */
+public class GetHeadersMessage extends Message {
+
+	//开始区块的hash，返回的区块头不包含该区块
+	private Sha256Hash startHash;
+	//结束区块的hash，为 ZERO_HASH 时不限制
+	private Sha256Hash stopHash;
+
+	public GetHeadersMessage(NetworkParams network, byte[] payloadBytes) {
+		super(network, payloadBytes, 0);
+	}
+
+	public GetHeadersMessage(NetworkParams network, Sha256Hash startHash, Sha256Hash stopHash) {
+		super(network);
+		this.startHash = startHash;
+		this.stopHash = stopHash;
+	}
+
+	/**
+	 * 序列化
+	 */
+	@Override
+	protected void serializeToStream(OutputStream stream) throws IOException {
+		stream.write(startHash.getReversedBytes());
+		stream.write(stopHash.getReversedBytes());
+	}
+
+	/**
+	 * 反序列化
+	 */
+	@Override
+	protected void parse() throws ProtocolException {
+		this.startHash = readHash();
+		this.stopHash = readHash();
+		length = cursor;
+	}
+
+	@Override
+	public String toString() {
+		return "GetHeadersMessage [startHash=" + startHash + ", stopHash=" + stopHash + "]";
+	}
+
+	public Sha256Hash getStartHash() {
+		return startHash;
+	}
+
+	public void setStartHash(Sha256Hash startHash) {
+		this.startHash = startHash;
+	}
+
+	public Sha256Hash getStopHash() {
+		return stopHash;
+	}
+
+	public void setStopHash(Sha256Hash stopHash) {
+		this.stopHash = stopHash;
+	}
+}
@@ -0,0 +1,69 @@
+package org.inchain.message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.inchain.core.VarInt;
+import org.inchain.core.exception.ProtocolException;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.network.NetworkParams;
+
+/**
+ * 区块头列表消息，GetHeadersMessage 的应答
+ * 区块hash是对完整区块计算的，单凭区块头无法算出，所以每个区块头前面带上区块hash，下载到区块后再核对
+ * @author ln
+ *
+ */
+public class HeadersMessage extends Message {
+
+	//一次最多返回的区块头数量
+	public static final int MAX_HEADERS = 500;
+
+	private List<BlockHeader> headers;
+
+	public HeadersMessage(NetworkParams network, List<BlockHeader> headers) {
+		super(network);
+		this.headers = headers;
+	}
+
+	public HeadersMessage(NetworkParams network, byte[] payloadBytes) {
+		super(network, payloadBytes, 0);
+	}
+
+	@Override
+	protected void serializeToStream(OutputStream stream) throws IOException {
+		stream.write(new VarInt(headers.size()).encode());
+		for (BlockHeader header : headers) {
+			stream.write(header.getHash().getBytes());
+			stream.write(header.baseSerialize());
+		}
+	}
+
+	@Override
+	protected void parse() throws ProtocolException {
+		long count = readVarInt();
+		if(count > MAX_HEADERS) {
+			throw new ProtocolException("超过 headers 消息最大条数限制: " + count);
+		}
+		headers = new ArrayList<BlockHeader>((int) count);
+		for (int i = 0; i < count; i++) {
+			Sha256Hash hash = Sha256Hash.wrap(readBytes(32));
+			BlockHeader header = new BlockHeader(network, payload, cursor);
+			header.setHash(hash);
+			headers.add(header);
+			cursor += header.getLength();
+		}
+		length = cursor - offset;
+	}
+
+	public List<BlockHeader> getHeaders() {
+		return headers;
+	}
+
+	@Override
+	public String toString() {
+		return "HeadersMessage [size=" + (headers == null ? 0 : headers.size()) + "]";
+	}
+}
@@ -0,0 +1,56 @@
+package org.inchain.message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 已经序列化好的消息帧，包含消息头（网络标识、命令、长度、校验）和消息内容
+ * 广播时只序列化和计算校验一次，所有连接共享同一份只读数据，每个连接取各自的 {@link #duplicate()}
+ * @author ln
+ *
+ */
+public final class MessageFrame {
+
+	private final Message message;
+	private final ByteBuffer frame;
+
+	public MessageFrame(MessageSerializer serializer, Message message) throws IOException {
+		this.message = message;
+		if(message.getSerializer() == null) {
+			message.setSerializer(serializer);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize(message, out);
+		this.frame = ByteBuffer.wrap(out.toByteArray()).asReadOnlyBuffer();
+	}
+
+	/**
+	 * 获取一份独立读取位置的只读缓冲区，底层数据共享
+	 * @return ByteBuffer
+	 */
+	public ByteBuffer duplicate() {
+		return frame.duplicate();
+	}
+
+	/**
+	 * 原始消息
+	 * @return Message
+	 */
+	public Message getMessage() {
+		return message;
+	}
+
+	/**
+	 * 帧长度
+	 * @return int
+	 */
+	public int size() {
+		return frame.capacity();
+	}
+
+	@Override
+	public String toString() {
+		return "MessageFrame [message=" + message + ", size=" + size() + "]";
+	}
+}
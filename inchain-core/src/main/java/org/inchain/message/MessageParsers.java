@@ -0,0 +1,400 @@
+package org.inchain.message;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.inchain.core.Definition;
+import org.inchain.network.NetworkParams;
+import org.inchain.transaction.Transaction;
+import org.inchain.transaction.business.AntifakeCodeBindTransaction;
+import org.inchain.transaction.business.AntifakeCodeMakeTransaction;
+import org.inchain.transaction.business.AntifakeCodeVerifyTransaction;
+import org.inchain.transaction.business.AntifakeTransferTransaction;
+import org.inchain.transaction.business.AssetsIssuedTransaction;
+import org.inchain.transaction.business.AssetsRegisterTransaction;
+import org.inchain.transaction.business.AssetsTransferTransaction;
+import org.inchain.transaction.business.CertAccountRegisterTransaction;
+import org.inchain.transaction.business.CertAccountRevokeTransaction;
+import org.inchain.transaction.business.CertAccountUpdateTransaction;
+import org.inchain.transaction.business.CirculationTransaction;
+import org.inchain.transaction.business.CreditTransaction;
+import org.inchain.transaction.business.GeneralAntifakeTransaction;
+import org.inchain.transaction.business.ProductTransaction;
+import org.inchain.transaction.business.RegAliasTransaction;
+import org.inchain.transaction.business.RegConsensusTransaction;
+import org.inchain.transaction.business.RelevanceSubAccountTransaction;
+import org.inchain.transaction.business.RemConsensusTransaction;
+import org.inchain.transaction.business.RemoveSubAccountTransaction;
+import org.inchain.transaction.business.UpdateAliasTransaction;
+import org.inchain.transaction.business.ViolationTransaction;
+
+/**
+ * 消息和交易的解析器注册表
+ * 启动时为每个消息命令和每种交易类型绑定一个解析器，收到消息时直接调用，不再每次通过反射查找构造方法再创建实例
+ * 新增的消息或交易类型只在 {@link Definition} 里登记了类的，第一次解析时按构造方法生成解析器并缓存
+ * @author ln
+ *
+ */
+public final class MessageParsers {
+
+	/**
+	 * 消息解析器
+	 */
+	public interface MessageParser {
+		Message parse(NetworkParams network, byte[] payload);
+	}
+
+	/**
+	 * 交易解析器
+	 */
+	public interface TransactionParser {
+		Transaction parse(NetworkParams network, byte[] payload, int offset);
+	}
+
+	//消息命令对应的解析器
+	private static final Map<String, MessageParser> MESSAGE_PARSERS = new ConcurrentHashMap<String, MessageParser>();
+	//交易类型对应的解析器，交易类型只有一个字节，直接用数组
+	private static final TransactionParser[] TRANSACTION_PARSERS = new TransactionParser[256];
+
+	static {
+		register(PingMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new PingMessage(network, payload);
+			}
+		});
+		register(PongMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new PongMessage(network, payload);
+			}
+		});
+		register(VersionMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new VersionMessage(network, payload);
+			}
+		});
+		register(VerackMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new VerackMessage(network, payload);
+			}
+		});
+		register(AddressMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new AddressMessage(network, payload);
+			}
+		});
+		register(GetAddressMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new GetAddressMessage(network, payload);
+			}
+		});
+		register(Block.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new Block(network, payload);
+			}
+		});
+		register(GetBlocksMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new GetBlocksMessage(network, payload);
+			}
+		});
+		register(NewBlockMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new NewBlockMessage(network, payload);
+			}
+		});
+		register(ConsensusMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new ConsensusMessage(network, payload);
+			}
+		});
+		register(InventoryMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new InventoryMessage(network, payload);
+			}
+		});
+		register(GetDatasMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new GetDatasMessage(network, payload);
+			}
+		});
+		register(DataNotFoundMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new DataNotFoundMessage(network, payload);
+			}
+		});
+		register(GetHeadersMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new GetHeadersMessage(network, payload);
+			}
+		});
+		register(HeadersMessage.class, new MessageParser() {
+			@Override
+			public Message parse(NetworkParams network, byte[] payload) {
+				return new HeadersMessage(network, payload);
+			}
+		});
+
+		registerTransaction(Definition.TYPE_COINBASE, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new Transaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_PAY, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new Transaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_REG_ALIAS, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new RegAliasTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_UPDATE_ALIAS, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new UpdateAliasTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_REG_CONSENSUS, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new RegConsensusTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_REM_CONSENSUS, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new RemConsensusTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_CERT_ACCOUNT_REGISTER, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new CertAccountRegisterTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_CERT_ACCOUNT_UPDATE, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new CertAccountUpdateTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_CERT_ACCOUNT_REVOKE, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new CertAccountRevokeTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_RELEVANCE_SUBACCOUNT, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new RelevanceSubAccountTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_REMOVE_SUBACCOUNT, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new RemoveSubAccountTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_VIOLATION, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new ViolationTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_CREDIT, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new CreditTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_CREATE_PRODUCT, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new ProductTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_GENERAL_ANTIFAKE, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new GeneralAntifakeTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_ANTIFAKE_CODE_MAKE, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new AntifakeCodeMakeTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_ANTIFAKE_CODE_BIND, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new AntifakeCodeBindTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_ANTIFAKE_CODE_VERIFY, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new AntifakeCodeVerifyTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_ANTIFAKE_CIRCULATION, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new CirculationTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_ANTIFAKE_TRANSFER, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new AntifakeTransferTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_ASSETS_REGISTER, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new AssetsRegisterTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_ASSETS_ISSUED, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new AssetsIssuedTransaction(network, payload, offset);
+			}
+		});
+		registerTransaction(Definition.TYPE_ASSETS_TRANSFER, new TransactionParser() {
+			@Override
+			public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+				return new AssetsTransferTransaction(network, payload, offset);
+			}
+		});
+	}
+
+	private MessageParsers() {
+	}
+
+	/**
+	 * 注册消息解析器，消息命令取 {@link Definition#MESSAGE_COMMANDS} 里的定义
+	 * @param type
+	 * @param parser
+	 */
+	public static void register(Class<? extends Message> type, MessageParser parser) {
+		String command = Definition.MESSAGE_COMMANDS.get(type);
+		if(command == null) {
+			throw new IllegalArgumentException("未定义的消息 " + type);
+		}
+		MESSAGE_PARSERS.put(command, parser);
+	}
+
+	/**
+	 * 注册交易解析器
+	 * @param type
+	 * @param parser
+	 */
+	public static void registerTransaction(int type, TransactionParser parser) {
+		TRANSACTION_PARSERS[type & 0xff] = parser;
+	}
+
+	/**
+	 * 获取消息命令对应的解析器
+	 * @param command
+	 * @return MessageParser 未定义的消息返回null
+	 */
+	public static MessageParser getMessageParser(String command) {
+		MessageParser parser = MESSAGE_PARSERS.get(command);
+		if(parser == null) {
+			Class<? extends Message> clazz = Definition.COMMANDS_MESSAGE.get(command);
+			if(clazz == null) {
+				return null;
+			}
+			parser = new ConstructorMessageParser(clazz);
+			MESSAGE_PARSERS.put(command, parser);
+		}
+		return parser;
+	}
+
+	/**
+	 * 获取交易类型对应的解析器
+	 * @param type
+	 * @return TransactionParser 未定义的交易类型返回null
+	 */
+	public static TransactionParser getTransactionParser(int type) {
+		TransactionParser parser = TRANSACTION_PARSERS[type & 0xff];
+		if(parser == null) {
+			Class<? extends Message> clazz = Definition.TRANSACTION_RELATION.get(type);
+			if(clazz == null) {
+				return null;
+			}
+			parser = new ConstructorTransactionParser(clazz);
+			TRANSACTION_PARSERS[type & 0xff] = parser;
+		}
+		return parser;
+	}
+
+	/*
+	 * 只在 Definition 里登记了类的消息，构造方法只查找一次
+	 */
+	private static class ConstructorMessageParser implements MessageParser {
+		private final Constructor<?> constructor;
+
+		private ConstructorMessageParser(Class<?> clazz) {
+			try {
+				constructor = clazz.getDeclaredConstructor(NetworkParams.class, byte[].class);
+			} catch (NoSuchMethodException e) {
+				throw new IllegalStateException("消息 " + clazz + " 没有 (NetworkParams, byte[]) 构造方法", e);
+			}
+		}
+
+		@Override
+		public Message parse(NetworkParams network, byte[] payload) {
+			try {
+				return (Message) constructor.newInstance(network, payload);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/*
+	 * 只在 Definition 里登记了类的交易，构造方法只查找一次
+	 */
+	private static class ConstructorTransactionParser implements TransactionParser {
+		private final Constructor<?> constructor;
+
+		private ConstructorTransactionParser(Class<?> clazz) {
+			try {
+				constructor = clazz.getDeclaredConstructor(NetworkParams.class, byte[].class, int.class);
+			} catch (NoSuchMethodException e) {
+				throw new IllegalStateException("交易 " + clazz + " 没有 (NetworkParams, byte[], int) 构造方法", e);
+			}
+		}
+
+		@Override
+		public Transaction parse(NetworkParams network, byte[] payload, int offset) {
+			try {
+				return (Transaction) constructor.newInstance(network, payload, offset);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -50,6 +50,19 @@ public abstract class MessageSerializer {
      */
     public abstract Message deserializePayload(MessagePacketHeader header, ByteBuffer in) throws ProtocolException, BufferUnderflowException, UnsupportedOperationException;
 
+    /**
+     * 解析已经完整读出的消息内容，payload 直接作为消息的数据，不再复制
+     * 默认实现包装成 ByteBuffer 交给 {@link #deserializePayload(MessagePacketHeader, ByteBuffer)}
+     * @param header
+     * @param payload
+     * @return Message
+     * @throws ProtocolException
+     * @throws UnsupportedOperationException
+     */
+    public Message deserializePayload(MessagePacketHeader header, byte[] payload) throws ProtocolException, UnsupportedOperationException {
+        return deserializePayload(header, ByteBuffer.wrap(payload));
+    }
+
     public abstract void seekPastMagicBytes(ByteBuffer in) throws BufferUnderflowException;
 
     public abstract void serialize(String name, byte[] message, OutputStream out) throws IOException, UnsupportedOperationException;
@@ -68,7 +68,12 @@ public class GetDatasMessageProcess implements MessageProcess {
 				//交易数据获取
 				txInventory(inventoryItem, peer);
 			} else if(inventoryItem.getType() == InventoryItem.Type.Block){
-				//获取区块数据
+				//获取区块数据，区块文件里有的话直接发送，不需要组装区块
+				byte[] blockBytes = blockStoreProvider.getBlockBytes(inventoryItem.getHash().getBytes());
+				if(blockBytes != null) {
+					sendMessage(peer, Block.class, blockBytes);
+					continue;
+				}
 				Block block = getBlock(inventoryItem);
 				if(block == null) {
 					sendMessage(peer, new DataNotFoundMessage(network, inventoryItem.getHash()));
@@ -99,6 +104,16 @@ public class GetDatasMessageProcess implements MessageProcess {
 		}
 	}
 
+	private void sendMessage(Peer peer, Class<? extends Message> type, byte[] payload) {
+		try {
+			peer.sendMessage(type, payload);
+		} catch (NotYetConnectedException | IOException e) {
+			if(log.isDebugEnabled()) {
+				log.debug("发送消息出错，可能原因是连接已关闭", e.getMessage());
+			}
+		}
+	}
+
 	/**
 	 * 获取交易数据
 	 * @param inventoryItem
@@ -130,6 +145,11 @@ public class GetDatasMessageProcess implements MessageProcess {
 	 * 下载新区块
 	 */
 	private void newBlockInventory(InventoryItem inventoryItem, Peer peer) {
+		byte[] blockBytes = blockStoreProvider.getBlockBytes(inventoryItem.getHash().getBytes());
+		if(blockBytes != null) {
+			sendMessage(peer, NewBlockMessage.class, blockBytes);
+			return;
+		}
 		Block block = getBlock(inventoryItem);
 		if(block == null) {
 			sendMessage(peer, new DataNotFoundMessage(network, inventoryItem.getHash()));
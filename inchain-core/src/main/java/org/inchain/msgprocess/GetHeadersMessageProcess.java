@@ -0,0 +1,87 @@
+package org.inchain.msgprocess;
+
+import java.io.IOException;
+import java.nio.channels.NotYetConnectedException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.inchain.core.Peer;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.message.BlockHeader;
+import org.inchain.message.DataNotFoundMessage;
+import org.inchain.message.GetHeadersMessage;
+import org.inchain.message.HeadersMessage;
+import org.inchain.message.Message;
+import org.inchain.network.NetworkParams;
+import org.inchain.store.BlockHeaderStore;
+import org.inchain.store.BlockStoreProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * 区块头获取消息处理器
+ * @author ln
+ *
+ */
+@Service
+public class GetHeadersMessageProcess implements MessageProcess {
+
+	private static final Logger log = LoggerFactory.getLogger(GetHeadersMessageProcess.class);
+
+	@Autowired
+	private NetworkParams network;
+	@Autowired
+	private BlockStoreProvider blockStoreProvider;
+
+	@Override
+	public MessageProcessResult process(Message message, Peer peer) {
+
+		if(log.isDebugEnabled()) {
+			log.debug("receive get headers message : {}", message);
+		}
+
+		GetHeadersMessage getHeadersMessage = (GetHeadersMessage) message;
+		Sha256Hash startHash = getHeadersMessage.getStartHash();
+		Sha256Hash stopHash = getHeadersMessage.getStopHash();
+
+		//开始的块必须在主链上，否则对方的最新块是分叉块
+		BlockHeaderStore startBlockHeader = blockStoreProvider.getHeader(startHash.getBytes());
+		if(startBlockHeader != null) {
+			BlockHeaderStore mainHeader = blockStoreProvider.getHeaderByHeight(startBlockHeader.getBlockHeader().getHeight());
+			if(mainHeader == null || !startHash.equals(mainHeader.getBlockHeader().getHash())) {
+				startBlockHeader = null;
+			}
+		}
+		if(startBlockHeader == null) {
+			sendMessage(peer, new DataNotFoundMessage(network, startHash));
+			return null;
+		}
+
+		List<BlockHeader> headers = new ArrayList<BlockHeader>();
+		while(headers.size() < HeadersMessage.MAX_HEADERS) {
+			if(Sha256Hash.ZERO_HASH.equals(startBlockHeader.getNextHash()) || startBlockHeader.getBlockHeader().getHash().equals(stopHash)) {
+				break;
+			}
+			startBlockHeader = blockStoreProvider.getHeader(startBlockHeader.getNextHash().getBytes());
+			if(startBlockHeader == null) {
+				break;
+			}
+			headers.add(startBlockHeader.getBlockHeader());
+		}
+		sendMessage(peer, new HeadersMessage(network, headers));
+
+		return null;
+	}
+
+	private void sendMessage(Peer peer, Message message) {
+		try {
+			peer.sendMessage(message);
+		} catch (NotYetConnectedException | IOException e) {
+			if(log.isDebugEnabled()) {
+				log.debug("发送消息出错，可能原因是连接已关闭", e.getMessage());
+			}
+		}
+	}
+}
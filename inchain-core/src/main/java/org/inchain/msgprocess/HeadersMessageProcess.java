@@ -0,0 +1,35 @@
+package org.inchain.msgprocess;
+
+import org.inchain.core.DataSynchronizeHandler;
+import org.inchain.core.Peer;
+import org.inchain.message.HeadersMessage;
+import org.inchain.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * 区块头列表消息处理器，交给同步器处理
+ * @author ln
+ *
+ */
+@Service
+public class HeadersMessageProcess implements MessageProcess {
+
+	private static final Logger log = LoggerFactory.getLogger(HeadersMessageProcess.class);
+
+	@Autowired
+	private DataSynchronizeHandler dataSynchronizeHandler;
+
+	@Override
+	public MessageProcessResult process(Message message, Peer peer) {
+
+		if(log.isDebugEnabled()) {
+			log.debug("receive headers message : {}", message);
+		}
+
+		dataSynchronizeHandler.processHeaders((HeadersMessage) message, peer);
+		return null;
+	}
+}
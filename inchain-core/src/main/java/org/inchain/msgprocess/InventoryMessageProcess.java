@@ -84,6 +84,8 @@ public class InventoryMessageProcess implements MessageProcess {
 		//是否是区块下载消息
 		boolean isBlockDownload = true;
 		for (final InventoryItem inventoryItem : invList) {
+			//对方通知过的清单，转发时不再发给对方
+			peer.getInventoryQueue().addKnown(inventoryItem.getHash());
 			processInventoryItem(peer, inventoryItem);
 			if(inventoryItem.getType() != InventoryItem.Type.Block) {
 				isBlockDownload = false;
@@ -1,11 +1,15 @@
 package org.inchain.msgprocess;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.inchain.core.Definition;
+import org.inchain.core.InventoryRelay;
 import org.inchain.core.Peer;
 import org.inchain.core.exception.VerificationException;
 import org.inchain.crypto.Sha256Hash;
@@ -15,7 +19,6 @@ import org.inchain.mempool.Mempool;
 import org.inchain.mempool.MempoolContainer;
 import org.inchain.message.InventoryItem;
 import org.inchain.message.InventoryItem.Type;
-import org.inchain.message.InventoryMessage;
 import org.inchain.message.Message;
 import org.inchain.message.RejectMessage;
 import org.inchain.network.NetworkParams;
@@ -24,6 +27,7 @@ import org.inchain.store.BlockStoreProvider;
 import org.inchain.store.TransactionStore;
 import org.inchain.transaction.Output;
 import org.inchain.transaction.Transaction;
+import org.inchain.transaction.TransactionInput;
 import org.inchain.transaction.TransactionOutput;
 import org.inchain.transaction.business.CertAccountTransaction;
 import org.inchain.utils.Hex;
@@ -44,7 +48,11 @@ public class TransactionMessageProcess implements MessageProcess {
 	
 	private static final Logger log = LoggerFactory.getLogger(TransactionMessageProcess.class);
 
-	private Lock locker = new ReentrantLock();
+	//按引用的输出分段加锁，引用了相同输出的交易串行处理，互不相关的交易并行
+	private static final int LOCK_STRIPES = 64;
+	private final Lock[] outpointLockers = new Lock[LOCK_STRIPES];
+	//普通转账以外的交易还依赖账户、别名、共识等状态，这类交易之间串行处理
+	private final Lock stateLocker = new ReentrantLock();
 	
 	private Mempool mempool = MempoolContainer.getInstace();
 	
@@ -58,11 +66,16 @@ public class TransactionMessageProcess implements MessageProcess {
 	private TransactionValidator transactionValidator;
 	@Autowired
 	private InventoryFilter filter;
+	@Autowired
+	private InventoryRelay inventoryRelay;
 	
 	//没有找到的交易暂存
 	private List<Transaction> notFoundTxList = new CopyOnWriteArrayList<Transaction>();
 	
 	public TransactionMessageProcess() {
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			outpointLockers[i] = new ReentrantLock();
+		}
 	}
 	
 	@Override
@@ -74,41 +87,23 @@ public class TransactionMessageProcess implements MessageProcess {
 			log.debug("transaction message {}", Hex.encode(tx.baseSerialize()));
 		}
 		try {
-			locker.lock();
-			
 			Sha256Hash id = tx.getHash();
 
-			if(filter.contains(id.getBytes())) {
+			//第一步，去重，再做不依赖链上状态的格式、签名和脚本验证，各节点的消息线程之间不加锁，并行执行
+			if(!markReceived(id)) {
 				return new MessageProcessResult(tx.getHash(), false);
-			} else {
-				filter.insert(id.getBytes());
-			}
-			
-			//验证交易的合法性
-			tx.verify();
-			
-			//交易逻辑验证，验证不通过抛出VerificationException
-			MessageProcessResult verifyRes = verifyTx(tx);
-			if(verifyRes != null) {
-				return verifyRes;
 			}
+			transactionValidator.verifyScripts(tx, null);
 			
-			if(log.isDebugEnabled()) {
-				log.debug("verify success! tx id : {}", id);
+			//第二步，依赖状态的验证并加入内存池，只和引用了相同输出的交易串行
+			//第一步时还找不到引用的交易（没有验证脚本）的，在这一步完整验证
+			MessageProcessResult acceptRes = accept(tx, isInputsResolved(tx));
+			if(acceptRes != null) {
+				return acceptRes;
 			}
 			
-			//加入内存池
-			boolean res = mempool.add(tx);
-//			if(!res) {
-//				log.error("加入内存池失败："+ id);
-//				//加入内存池失败，有两种情况，第一是重复交易已经存在，第二是双花交易，出现失败时不做处理即可
-//				return new MessageProcessResult(tx.getHash(), true);
-//			}
-			
-			//转发交易
-			InventoryItem item = new InventoryItem(Type.Transaction, id);
-			InventoryMessage invMessage = new InventoryMessage(peer.getNetwork(), item);
-			peerKit.broadcastMessage(invMessage);
+			//第三步，转发交易，放入各节点的清单队列合并发送
+			inventoryRelay.relay(new InventoryItem(Type.Transaction, id), peer);
 	
 			//验证是否是转入到我账上的交易
 			checkIsMine(tx);
@@ -122,9 +117,95 @@ public class TransactionMessageProcess implements MessageProcess {
 			RejectMessage replyMessage = new RejectMessage(network, tx.getHash());
 			//TODO
 			return new MessageProcessResult(tx.getHash(), false, replyMessage);
+		}
+	}
+	
+	/*
+	 * 记录收到的交易，已经收到过的返回false
+	 */
+	private boolean markReceived(Sha256Hash id) {
+		return filter.add(id.getBytes());
+	}
+	
+	/*
+	 * 状态验证并加入内存池，成功返回null，否则返回处理结果
+	 */
+	private MessageProcessResult accept(Transaction tx, boolean scriptVerified) throws VerificationException {
+		List<Lock> lockers = getLockers(tx);
+		for (Lock lock : lockers) {
+			lock.lock();
+		}
+		try {
+			//交易逻辑验证，验证不通过抛出VerificationException
+			MessageProcessResult verifyRes = verifyTx(tx, scriptVerified);
+			if(verifyRes != null) {
+				return verifyRes;
+			}
+			
+			if(log.isDebugEnabled()) {
+				log.debug("verify success! tx id : {}", tx.getHash());
+			}
+			
+			//加入内存池
+			if(!mempool.add(tx)) {
+				//加入内存池失败，有三种情况，第一是重复交易已经存在，第二是双花交易，第三是内存池已满且手续费率过低，出现失败时不做处理即可，也不再转发
+				if(log.isDebugEnabled()) {
+					log.debug("加入内存池失败：{}", tx.getHash());
+				}
+				return new MessageProcessResult(tx.getHash(), true);
+			}
+			return null;
 		} finally {
-			locker.unlock();
+			for (int i = lockers.size() - 1; i >= 0; i--) {
+				lockers.get(i).unlock();
+			}
+		}
+	}
+	
+	/*
+	 * 输入引用的交易是否都已经找到，找到的才验证过赎回脚本
+	 */
+	private boolean isInputsResolved(Transaction tx) {
+		if(!tx.isPaymentTransaction() || tx.getInputs() == null) {
+			return true;
+		}
+		for (TransactionInput input : tx.getInputs()) {
+			if(input.getFroms() == null || input.getFroms().isEmpty()) {
+				return false;
+			}
+			Transaction fromTx = input.getFroms().get(0).getParent();
+			if(fromTx == null || fromTx.getOutputs() == null || fromTx.getOutputs().isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/*
+	 * 交易需要的锁，按固定顺序加锁，避免死锁
+	 */
+	private List<Lock> getLockers(Transaction tx) {
+		TreeSet<Integer> stripes = new TreeSet<Integer>();
+		if(tx.getInputs() != null) {
+			for (TransactionInput input : tx.getInputs()) {
+				if(input.getFroms() == null) {
+					continue;
+				}
+				for (TransactionOutput from : input.getFroms()) {
+					if(from.getParent() != null) {
+						stripes.add((Arrays.hashCode(from.getKey()) & 0x7fffffff) % LOCK_STRIPES);
+					}
+				}
+			}
+		}
+		List<Lock> lockers = new ArrayList<Lock>(stripes.size() + 1);
+		if(tx.getType() != Definition.TYPE_PAY) {
+			lockers.add(stateLocker);
+		}
+		for (Integer stripe : stripes) {
+			lockers.add(outpointLockers[stripe]);
 		}
+		return lockers;
 	}
 
 //	private void checkFoundOld(Transaction tx) {
@@ -193,8 +274,8 @@ public class TransactionMessageProcess implements MessageProcess {
 //	}
 
 	//交易逻辑验证，验证不通过抛出VerificationException
-	private MessageProcessResult verifyTx(Transaction tx) throws VerificationException {
-		TransactionValidatorResult rs = transactionValidator.valDo(tx, null).getResult();
+	private MessageProcessResult verifyTx(Transaction tx, boolean scriptVerified) throws VerificationException {
+		TransactionValidatorResult rs = transactionValidator.valDo(tx, null, scriptVerified).getResult();
 		
 		if(!rs.isSuccess()) {
 			//没有找到的交易
@@ -28,7 +28,13 @@ class ConnectionHandler implements MessageWriteTarget {
     // We lock when touching local flags and when writing data, but NEVER when calling any methods which leave this
     // class into non-Java classes.
     private final ReentrantLock lock = new ReentrantLock();
-    private final ByteBuffer readBuff;
+    // Upper bound for the read buffer, reads start from the pool's smallest size class and grow towards it
+    private final int readBuffSize;
+    // Size requested from the pool for the next read buffer, see adjustReadSize
+    private int readSize = DirectBufferPool.MIN_SIZE;
+    // Borrowed from DirectBufferPool for each read and only kept while it holds a partial message, so idle
+    // connections don't pin any direct memory. Only touched from the selector thread in handleKey.
+    private ByteBuffer readBuff;
     private final SocketChannel channel;
     private final SelectionKey key;
     StreamConnection connection;
@@ -49,11 +55,11 @@ class ConnectionHandler implements MessageWriteTarget {
         this.key = key;
         this.channel = checkNotNull(((SocketChannel)key.channel()));
         if (connection == null) {
-            readBuff = null;
+            readBuffSize = 0;
             return;
         }
         this.connection = connection;
-        readBuff = ByteBuffer.allocateDirect(Math.min(Math.max(connection.getMaxMessageSize(), BUFFER_SIZE_LOWER_BOUND), BUFFER_SIZE_UPPER_BOUND));
+        readBuffSize = Math.min(Math.max(connection.getMaxMessageSize(), BUFFER_SIZE_LOWER_BOUND), BUFFER_SIZE_UPPER_BOUND);
         connection.setWriteTarget(this); // May callback into us (eg closeConnection() now)
         connectedHandlers = null;
     }
@@ -78,11 +84,11 @@ class ConnectionHandler implements MessageWriteTarget {
     	this.key = key;
         this.channel = checkNotNull(channel);
         if (connection == null) {
-            readBuff = null;
+            readBuffSize = 0;
             return;
         }
         this.connection = connection;
-        readBuff = ByteBuffer.allocateDirect(Math.min(Math.max(connection.getMaxMessageSize(), BUFFER_SIZE_LOWER_BOUND), BUFFER_SIZE_UPPER_BOUND));
+        readBuffSize = Math.min(Math.max(connection.getMaxMessageSize(), BUFFER_SIZE_LOWER_BOUND), BUFFER_SIZE_UPPER_BOUND);
         connection.setWriteTarget(this); // May callback into us (eg closeConnection() now)
 
         // closeConnection() may have already happened because we invoked the other c'tor above, which called
@@ -132,6 +138,11 @@ class ConnectionHandler implements MessageWriteTarget {
 
     @Override
     public void writeBytes(byte[] message) throws IOException {
+        writeBuffer(ByteBuffer.wrap(Arrays.copyOf(message, message.length)));
+    }
+
+    @Override
+    public void writeBuffer(ByteBuffer message) throws IOException {
         boolean andUnlock = true;
         lock.lock();
         try {
@@ -140,12 +151,12 @@ class ConnectionHandler implements MessageWriteTarget {
             // append to it when we want to send a message. We then let tryWriteBytes() either send the message or
             // register our SelectionKey to wakeup when we have free outbound buffer space available.
 
-            if (bytesToWriteRemaining + message.length > OUTBOUND_BUFFER_BYTE_COUNT)
+            int length = message.remaining();
+            if (bytesToWriteRemaining + length > OUTBOUND_BUFFER_BYTE_COUNT)
                 throw new IOException("Outbound buffer overflowed");
             // Just dump the message onto the write buffer and call tryWriteBytes
-            // TODO: Kill the needless message duplication when the write completes right away
-            bytesToWrite.offer(ByteBuffer.wrap(Arrays.copyOf(message, message.length)));
-            bytesToWriteRemaining += message.length;
+            bytesToWrite.offer(message);
+            bytesToWriteRemaining += length;
             setWriteOps();
         } catch (IOException e) {
             lock.unlock();
@@ -165,6 +176,25 @@ class ConnectionHandler implements MessageWriteTarget {
         }
     }
 
+    @Override
+    public void setReadPaused(boolean paused) {
+        lock.lock();
+        try {
+            if (!key.isValid())
+                return;
+            if (paused) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            } else {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                key.selector().wakeup();
+            }
+        } catch (CancelledKeyException e) {
+            // The connection is being closed, nothing to resume
+        } finally {
+            lock.unlock();
+        }
+    }
+
     // May NOT be called with lock held
     @Override
     public void closeConnection() {
@@ -199,16 +229,22 @@ class ConnectionHandler implements MessageWriteTarget {
         ConnectionHandler handler = ((ConnectionHandler)key.attachment());
         try {
             if (!key.isValid()) {
+                handler.releaseReadBuff();
                 handler.closeConnection(); // Key has been cancelled, make sure the socket gets closed
                 return;
             }
             if (key.isReadable()) {
+                if (handler.readBuff == null)
+                    handler.readBuff = DirectBufferPool.DEFAULT.acquire(handler.readSize);
                 // Do a socket read and invoke the connection's receiveBytes message
+                int space = handler.readBuff.remaining();
                 int read = handler.channel.read(handler.readBuff);
                 if (read == 0) {
+                    handler.releaseIfEmpty();
                     return; // Was probably waiting on a write
                 } else if (read == -1) { // Socket was closed
                     key.cancel();
+                    handler.releaseReadBuff();
                     handler.closeConnection();
                     return;
                 }
@@ -220,6 +256,8 @@ class ConnectionHandler implements MessageWriteTarget {
                 // Now drop the bytes which were read by compacting readBuff (resetting limit and keeping relative
                 // position)
                 handler.readBuff.compact();
+                handler.adjustReadSize(read, space);
+                handler.releaseIfEmpty();
             }
             if (key.isWritable())
                 handler.tryWriteBytes();
@@ -228,7 +266,30 @@ class ConnectionHandler implements MessageWriteTarget {
             // (ClosedByInterruptException), or if handler.connection.receiveBytes throws something
             Throwable t = e;
             log.warn("Error handling SelectionKey: {}", t.getMessage() != null ? t.getMessage() : t.getClass().getName());
+            handler.releaseReadBuff();
         	handler.closeConnection();
         }
     }
+
+    // A read that filled all the free space means more data is waiting, so the next buffer comes from the next
+    // size class up (to readBuffSize). A read that used less than a quarter of the buffer moves back down, so
+    // only connections that are actually streaming (eg block downloads) hold the large buffers.
+    private void adjustReadSize(int read, int space) {
+        if (read >= space && readSize < readBuffSize)
+            readSize = Math.min(readSize * 4, readBuffSize);
+        else if (read < readSize / 4 && readSize > DirectBufferPool.MIN_SIZE)
+            readSize = Math.max(readSize / 4, DirectBufferPool.MIN_SIZE);
+    }
+
+    // Hand the read buffer back to the pool once every byte in it has been consumed
+    private void releaseIfEmpty() {
+        if (readBuff != null && (readBuff.position() == 0 || closeCalled))
+            releaseReadBuff();
+    }
+
+    private void releaseReadBuff() {
+        ByteBuffer buff = readBuff;
+        readBuff = null;
+        DirectBufferPool.DEFAULT.release(buff);
+    }
 }
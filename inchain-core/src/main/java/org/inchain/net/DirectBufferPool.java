@@ -0,0 +1,112 @@
+package org.inchain.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 直接内存缓冲区池
+ * 按大小分级（4K、16K、64K），所有连接共用，连接只在读取时或者有未处理完的数据时才占用缓冲区，空闲的连接不再各自持有一块直接内存
+ * 连接从最小的一级开始读取，一次读满时下次取大一级的，只有持续收到大量数据的连接才占用大的缓冲区
+ * 每一级最多缓存的总字节数有限制，超出的直接丢弃，交给 GC 回收
+ * @author ln
+ *
+ */
+public class DirectBufferPool {
+
+	//最小的一级
+	public static final int MIN_SIZE = 4096;
+	//最大的一级，超过的不缓存
+	public static final int MAX_SIZE = 65536;
+	//每一级最多缓存的字节数
+	private static final int MAX_BYTES_PER_CLASS = 8 * 1048576;
+
+	//所有连接共用的池
+	public static final DirectBufferPool DEFAULT = new DirectBufferPool();
+
+	private final SizeClass[] classes;
+
+	public DirectBufferPool() {
+		int count = 0;
+		for (int size = MIN_SIZE; size <= MAX_SIZE; size <<= 2) {
+			count++;
+		}
+		classes = new SizeClass[count];
+		int size = MIN_SIZE;
+		for (int i = 0; i < count; i++) {
+			classes[i] = new SizeClass(size);
+			size <<= 2;
+		}
+	}
+
+	/**
+	 * 取出一块不小于指定容量的缓冲区，取出时已经 clear
+	 * @param capacity
+	 * @return ByteBuffer
+	 */
+	public ByteBuffer acquire(int capacity) {
+		SizeClass sizeClass = classOf(capacity);
+		if(sizeClass == null) {
+			return ByteBuffer.allocateDirect(capacity);
+		}
+		ByteBuffer buffer = sizeClass.buffers.poll();
+		if(buffer == null) {
+			return ByteBuffer.allocateDirect(sizeClass.size);
+		}
+		sizeClass.count.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * 归还缓冲区，归还后调用方不能再使用
+	 * @param buffer
+	 */
+	public void release(ByteBuffer buffer) {
+		if(buffer == null || !buffer.isDirect()) {
+			return;
+		}
+		SizeClass sizeClass = classOf(buffer.capacity());
+		if(sizeClass == null || sizeClass.size != buffer.capacity()) {
+			return;
+		}
+		if(sizeClass.count.incrementAndGet() > sizeClass.maxCount) {
+			sizeClass.count.decrementAndGet();
+			return;
+		}
+		sizeClass.buffers.offer(buffer);
+	}
+
+	/**
+	 * 池里缓存的缓冲区数量
+	 * @return int
+	 */
+	public int size() {
+		int size = 0;
+		for (SizeClass sizeClass : classes) {
+			size += sizeClass.count.get();
+		}
+		return size;
+	}
+
+	private SizeClass classOf(int capacity) {
+		for (SizeClass sizeClass : classes) {
+			if(capacity <= sizeClass.size) {
+				return sizeClass;
+			}
+		}
+		return null;
+	}
+
+	private static class SizeClass {
+		private final int size;
+		private final int maxCount;
+		private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+		private final AtomicInteger count = new AtomicInteger();
+
+		private SizeClass(int size) {
+			this.size = size;
+			this.maxCount = MAX_BYTES_PER_CLASS / size;
+		}
+	}
+}
@@ -1,10 +1,25 @@
 package org.inchain.net;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public interface MessageWriteTarget {
 	
     void writeBytes(byte[] message) throws IOException;
     
+    /**
+     * 写入消息，不复制内容，调用方之后不能再修改缓冲区里的数据
+     * 同一份数据发给多个连接时，每个连接传入各自的 duplicate，共享底层数据
+     * @param message
+     * @throws IOException
+     */
+    void writeBuffer(ByteBuffer message) throws IOException;
+    
+    /**
+     * 暂停或者恢复读取，对方发送太快、本地来不及处理时暂停
+     * @param paused
+     */
+    void setReadPaused(boolean paused);
+    
     void closeConnection();
 }
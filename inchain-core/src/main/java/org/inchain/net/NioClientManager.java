@@ -19,6 +19,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.inchain.Configure;
 import org.inchain.core.Peer;
@@ -33,8 +34,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 /**
- * A class which manages a set of client connections. Uses Java NIO to select network events and processes them in a
- * single network processing thread.
+ * A class which manages a set of client connections. Uses Java NIO to select network events.
+ * 新连接由一个 selector 线程接收，连接的读写分配给多个反应器（各自一个 selector 线程）处理，反应器的数量由 {@link Configure#NIO_REACTORS} 配置
+ * 每个反应器管理分配给它的连接及其读写缓冲区，连接多时不会都挤在一个 selector 线程上
  */
 @Service
 public class NioClientManager implements ClientConnectionManager {
@@ -45,7 +47,12 @@ public class NioClientManager implements ClientConnectionManager {
     @Autowired
     private NetworkParams network;
     
+    //接收新连接的selector
     private Selector selector;
+    //负责连接读写的反应器
+    private final Reactor[] reactors;
+    //下一个连接分配给哪个反应器
+    private final AtomicInteger nextReactor = new AtomicInteger();
     
     //被动连接监听
     private NewInConnectionListener newInConnectionListener;
@@ -55,6 +62,17 @@ public class NioClientManager implements ClientConnectionManager {
     private ServerSocketChannel serverSocketChannel;
     
     public NioClientManager() {
+    	this(Configure.PORT, Configure.NIO_REACTORS);
+    }
+    
+    /*
+     * 指定监听端口和反应器数量，端口为0时由系统分配
+     */
+    NioClientManager(int port, int reactorCount) {
+    	reactors = new Reactor[Math.max(1, reactorCount)];
+    	for (int i = 0; i < reactors.length; i++) {
+    		reactors[i] = new Reactor(i);
+    	}
     	try {
             selector = SelectorProvider.provider().openSelector();
             if(this.isServer) {
@@ -65,10 +83,10 @@ public class NioClientManager implements ClientConnectionManager {
 	            // 检索与此通道关联的服务器套接字  
 	            serverSocket = serverSocketChannel.socket();  
 	            // 进行服务的绑定  
-	            serverSocket.bind(new InetSocketAddress(Configure.PORT));  
+	            serverSocket.bind(new InetSocketAddress(port));  
 	            // 注册到selector，等待连接  
 	            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);  
-	            log.info("Server Started on port {}", Configure.PORT);
+	            log.info("Server Started on port {}, {} reactors", serverSocket.getLocalPort(), reactors.length);
             }
         } catch (IOException e) {
             throw new RuntimeException(e); // Shouldn't ever happen
@@ -83,87 +101,50 @@ public class NioClientManager implements ClientConnectionManager {
 
         PendingConnect(SocketChannel sc, StreamConnection connection) { this.sc = sc; this.connection = connection;}
     }
-    final Queue<PendingConnect> newConnectionChannels = new LinkedBlockingQueue<PendingConnect>();
 
-    // Added to/removed from by the individual ConnectionHandler's, thus must by synchronized on its own.
-    private final Set<ConnectionHandler> connectedHandlers = Collections.synchronizedSet(new HashSet<ConnectionHandler>());
+    /*
+     * 轮流分配反应器
+     */
+    private Reactor nextReactor() {
+    	return reactors[(nextReactor.getAndIncrement() & Integer.MAX_VALUE) % reactors.length];
+    }
 
-    // Handle a SelectionKey which was selected
-    private void handleKey(SelectionKey key) throws IOException {
-        // We could have a !isValid() key here if the connection is already closed at this point
-        if (key.isValid() && key.isConnectable()) { // ie a client connection which has finished the initial connect process
-            // Create a ConnectionHandler and hook everything together
-            PendingConnect data = (PendingConnect) key.attachment();
-            StreamConnection connection = data.connection;
-            SocketChannel sc = (SocketChannel) key.channel();
-            ConnectionHandler handler = new ConnectionHandler(connection, key, connectedHandlers);
-            try {
-                if (sc.finishConnect()) {
-                	if(log.isDebugEnabled()) {
-                		log.debug("Connected to {}", sc.socket().getRemoteSocketAddress());
-                	}
-                    key.interestOps((key.interestOps() | SelectionKey.OP_READ) & ~SelectionKey.OP_CONNECT).attach(handler);
-                    connection.connectionOpened();
-                } else {
-                    log.warn("Failed to connect to {}", sc.socket().getRemoteSocketAddress());
-                    handler.closeConnection(); // Failed to connect for some reason
-                }
-            } catch (Exception e) {
-                // If e is a CancelledKeyException, there is a race to get to interestOps after finishConnect() which
-                // may cause this. Otherwise it may be any arbitrary kind of connection failure.
-                // Calling sc.socket().getRemoteSocketAddress() here throws an exception, so we can only log the error itself
-                log.warn("Failed connect to {} with exception: {}", connection, e.getMessage());
-                handler.closeConnection();
-            }
-        } else {
-        	ConnectionHandler handler = ((ConnectionHandler)key.attachment());
-            if (handler == null) {
-            	if(key.isValid() && key.isAcceptable()) {
-	            	ServerSocketChannel sc = (ServerSocketChannel) key.channel();
-	            	SocketChannel socketChannel = sc.accept();
-	            	
-	            	if(newInConnectionListener == null || !newInConnectionListener.allowConnection((InetSocketAddress)socketChannel.getRemoteAddress())) {
-	            		log.info("refush connection on " + socketChannel.getRemoteAddress());
-	            		socketChannel.close();
-	            		return;
-	            	}
-	            	
-                    // 配置为非阻塞  
-            		socketChannel.configureBlocking(false);
-            		SelectionKey newKey = socketChannel.register(selector, SelectionKey.OP_READ);
-//            		key.cancel();
-            		
-            		Peer peer = new Peer(network, new PeerAddress((InetSocketAddress)socketChannel.getRemoteAddress())) {
-            			@Override
-            			public void connectionOpened() {
-            				super.connectionOpened();
-            			}
-                		@Override
-                		public void connectionClosed() {
-                			if(newInConnectionListener != null) 
-                				newInConnectionListener.connectionClosed(this);
-                		}
-                	};
-            		handler = new ConnectionHandler(peer, newKey, socketChannel, connectedHandlers);
-            		newKey.attach(handler);
-		      		peer.connectionOpened();
-            		
-            		if(newInConnectionListener != null) 
-        				newInConnectionListener.connectionOpened(peer);
-                    
-                    return;
-                }
-            }
-            
-        	// Process bytes read
-        	ConnectionHandler.handleKey(key);
-        }
+    // Handle a SelectionKey which was selected on the accept selector
+    private void handleAcceptKey(SelectionKey key) throws IOException {
+    	if(!key.isValid() || !key.isAcceptable()) {
+    		return;
+    	}
+    	ServerSocketChannel sc = (ServerSocketChannel) key.channel();
+    	final SocketChannel socketChannel = sc.accept();
+    	if(socketChannel == null) {
+    		return;
+    	}
+    	
+    	if(newInConnectionListener == null || !newInConnectionListener.allowConnection((InetSocketAddress)socketChannel.getRemoteAddress())) {
+    		log.info("refush connection on " + socketChannel.getRemoteAddress());
+    		socketChannel.close();
+    		return;
+    	}
+    	
+        // 配置为非阻塞，交给反应器注册和处理读写
+		socketChannel.configureBlocking(false);
+		final Reactor reactor = nextReactor();
+		reactor.execute(new Runnable() {
+			@Override
+			public void run() {
+				reactor.accept(socketChannel);
+			}
+		});
     }
 
 	@Override
     public void start() {
 //    	executor.scheduleWithFixedDelay(this, 0, 1, TimeUnit.SECONDS);
-    	new Thread() {
+		for (Reactor reactor : reactors) {
+			Thread thread = new Thread(reactor, "nio reactor " + reactor.id);
+			thread.start();
+		}
+    	new Thread("nio accept") {
     		public void run() {
     			NioClientManager.this.run();
     		};
@@ -185,45 +166,30 @@ public class NioClientManager implements ClientConnectionManager {
         log.info("stoped service");
     }
 
+    /**
+     * 接收新连接
+     */
     public void run() {
         try {
             Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
             
             while (!executor.isShutdown()) {
-                PendingConnect conn;
-                while ((conn = newConnectionChannels.poll()) != null) {
-                    try {
-                        SelectionKey key = conn.sc.register(selector, SelectionKey.OP_CONNECT);
-                        key.attach(conn);
-                    } catch (ClosedChannelException e) {
-                        log.warn("SocketChannel was closed before it could be registered");
-                    }
-                }
-
                 selector.select();
 
                 Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
                 while (keyIterator.hasNext()) {
                     SelectionKey key = keyIterator.next();
                     keyIterator.remove();
-                    handleKey(key);
+                    try {
+                    	handleAcceptKey(key);
+                    } catch (IOException e) {
+                    	log.warn("Error accepting connection: {}", e.getMessage());
+                    }
                 }
             }
         } catch (Exception e) {
-            log.warn("Error trying to open/read from connection: ", e);
+            log.warn("Error trying to accept connection: ", e);
         } finally {
-            
-            // Go through and close everything, without letting IOExceptions get in our way
-            for (SelectionKey key : selector.keys()) {
-                try {
-                    key.channel().close();
-                } catch (IOException e) {
-                    log.warn("Error closing channel", e);
-                }
-                key.cancel();
-                if (key.attachment() instanceof ConnectionHandler)
-                    ConnectionHandler.handleKey(key); // Close connection if relevant
-            }
             try {
             	selector.close();
             } catch (IOException e) {
@@ -243,9 +209,14 @@ public class NioClientManager implements ClientConnectionManager {
             sc.configureBlocking(false);
             sc.socket().setReuseAddress(true);
             sc.connect(address);
-            PendingConnect data = new PendingConnect(sc, connection);
-            newConnectionChannels.offer(data);
-            selector.wakeup();
+            final PendingConnect data = new PendingConnect(sc, connection);
+            final Reactor reactor = nextReactor();
+            reactor.execute(new Runnable() {
+            	@Override
+            	public void run() {
+            		reactor.register(data);
+            	}
+            });
             return data.future;
         } catch (Throwable e) {
             return null;
@@ -254,22 +225,53 @@ public class NioClientManager implements ClientConnectionManager {
 
     public void triggerShutdown() {
         selector.wakeup();
+        for (Reactor reactor : reactors) {
+        	reactor.selector.wakeup();
+        }
     }
 
     @Override
     public int getConnectedClientCount() {
-        return connectedHandlers.size();
+    	int count = 0;
+    	for (Reactor reactor : reactors) {
+    		count += reactor.connectedHandlers.size();
+    	}
+        return count;
+    }
+
+    /*
+     * 每个反应器上的连接数
+     */
+    int[] getConnectedClientCounts() {
+    	int[] counts = new int[reactors.length];
+    	for (int i = 0; i < reactors.length; i++) {
+    		counts[i] = reactors[i].connectedHandlers.size();
+    	}
+    	return counts;
+    }
+    
+    /*
+     * 本地监听的端口
+     */
+    int getLocalPort() {
+    	return serverSocket.getLocalPort();
     }
 
     @Override
     public void closeConnections(int n) {
         while (n-- > 0) {
-            ConnectionHandler handler;
-            synchronized (connectedHandlers) {
-                handler = connectedHandlers.iterator().next();
+            ConnectionHandler handler = null;
+            for (Reactor reactor : reactors) {
+            	synchronized (reactor.connectedHandlers) {
+            		if (!reactor.connectedHandlers.isEmpty()) {
+            			handler = reactor.connectedHandlers.iterator().next();
+            			break;
+            		}
+            	}
             }
-            if (handler != null)
-                handler.closeConnection(); // Removes handler from connectedHandlers before returning
+            if (handler == null)
+            	break;
+            handler.closeConnection(); // Removes handler from connectedHandlers before returning
         }
     }
     
@@ -285,4 +287,150 @@ public class NioClientManager implements ClientConnectionManager {
             }
         };
     }
+
+    /**
+     * 反应器，一个 selector 线程，负责分配给它的连接的建立和读写
+     * 注册连接等操作都放到反应器自己的线程里执行
+     */
+    private class Reactor implements Runnable {
+    	private final int id;
+    	private final Selector selector;
+    	//在反应器线程里执行的任务
+    	private final Queue<Runnable> tasks = new LinkedBlockingQueue<Runnable>();
+    	// Added to/removed from by the individual ConnectionHandler's, thus must by synchronized on its own.
+    	private final Set<ConnectionHandler> connectedHandlers = Collections.synchronizedSet(new HashSet<ConnectionHandler>());
+    	
+    	private Reactor(int id) {
+    		this.id = id;
+    		try {
+    			selector = SelectorProvider.provider().openSelector();
+    		} catch (IOException e) {
+    			throw new RuntimeException(e); // Shouldn't ever happen
+    		}
+    	}
+    	
+    	private void execute(Runnable task) {
+    		tasks.offer(task);
+    		selector.wakeup();
+    	}
+    	
+    	/*
+    	 * 注册主动连接
+    	 */
+    	private void register(PendingConnect conn) {
+    		try {
+    			SelectionKey key = conn.sc.register(selector, SelectionKey.OP_CONNECT);
+    			key.attach(conn);
+    		} catch (ClosedChannelException e) {
+    			log.warn("SocketChannel was closed before it could be registered");
+    		}
+    	}
+    	
+    	/*
+    	 * 注册被动连接
+    	 */
+    	private void accept(SocketChannel socketChannel) {
+    		try {
+	    		SelectionKey newKey = socketChannel.register(selector, SelectionKey.OP_READ);
+	    		
+	    		Peer peer = new Peer(network, new PeerAddress((InetSocketAddress)socketChannel.getRemoteAddress())) {
+	    			@Override
+	    			public void connectionOpened() {
+	    				super.connectionOpened();
+	    			}
+	        		@Override
+	        		public void connectionClosed() {
+	        			if(newInConnectionListener != null) 
+	        				newInConnectionListener.connectionClosed(this);
+	        		}
+	        	};
+	        	ConnectionHandler handler = new ConnectionHandler(peer, newKey, socketChannel, connectedHandlers);
+	    		newKey.attach(handler);
+	      		peer.connectionOpened();
+	    		
+	    		if(newInConnectionListener != null) 
+					newInConnectionListener.connectionOpened(peer);
+    		} catch (IOException e) {
+    			log.warn("Error registering accepted connection: {}", e.getMessage());
+    			try {
+    				socketChannel.close();
+    			} catch (IOException e1) {
+    				log.warn("Error closing channel", e1);
+    			}
+    		}
+    	}
+    	
+	    // Handle a SelectionKey which was selected
+	    private void handleKey(SelectionKey key) throws IOException {
+	        // We could have a !isValid() key here if the connection is already closed at this point
+	        if (key.isValid() && key.isConnectable()) { // ie a client connection which has finished the initial connect process
+	            // Create a ConnectionHandler and hook everything together
+	            PendingConnect data = (PendingConnect) key.attachment();
+	            StreamConnection connection = data.connection;
+	            SocketChannel sc = (SocketChannel) key.channel();
+	            ConnectionHandler handler = new ConnectionHandler(connection, key, connectedHandlers);
+	            try {
+	                if (sc.finishConnect()) {
+	                	if(log.isDebugEnabled()) {
+	                		log.debug("Connected to {}", sc.socket().getRemoteSocketAddress());
+	                	}
+	                    key.interestOps((key.interestOps() | SelectionKey.OP_READ) & ~SelectionKey.OP_CONNECT).attach(handler);
+	                    connection.connectionOpened();
+	                } else {
+	                    log.warn("Failed to connect to {}", sc.socket().getRemoteSocketAddress());
+	                    handler.closeConnection(); // Failed to connect for some reason
+	                }
+	            } catch (Exception e) {
+	                // If e is a CancelledKeyException, there is a race to get to interestOps after finishConnect() which
+	                // may cause this. Otherwise it may be any arbitrary kind of connection failure.
+	                // Calling sc.socket().getRemoteSocketAddress() here throws an exception, so we can only log the error itself
+	                log.warn("Failed connect to {} with exception: {}", connection, e.getMessage());
+	                handler.closeConnection();
+	            }
+	        } else if (key.attachment() instanceof ConnectionHandler) {
+	        	// Process bytes read
+	        	ConnectionHandler.handleKey(key);
+	        }
+	    }
+    	
+    	@Override
+    	public void run() {
+    		try {
+    			while (!executor.isShutdown()) {
+    				Runnable task;
+    				while ((task = tasks.poll()) != null) {
+    					task.run();
+    				}
+    				
+    				selector.select();
+    				
+    				Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+    				while (keyIterator.hasNext()) {
+    					SelectionKey key = keyIterator.next();
+    					keyIterator.remove();
+    					handleKey(key);
+    				}
+    			}
+    		} catch (Exception e) {
+    			log.warn("Error trying to open/read from connection: ", e);
+    		} finally {
+    			// Go through and close everything, without letting IOExceptions get in our way
+    			for (SelectionKey key : selector.keys()) {
+    				try {
+    					key.channel().close();
+    				} catch (IOException e) {
+    					log.warn("Error closing channel", e);
+    				}
+    				key.cancel();
+    				if (key.attachment() instanceof ConnectionHandler)
+    					ConnectionHandler.handleKey(key); // Close connection if relevant
+    			}
+    			try {
+    				selector.close();
+    			} catch (IOException e) {
+    				log.warn("Error closing reactor selector", e);
+    			}
+    		}
+    	}
+    }
 }
@@ -523,13 +523,14 @@ public class RPCHanlder {
 			case "listtransactions": {
 				if(params.length() == 0) {
 					result.put("success", false);
-					result.put("message", "缺少参数，命令用法：listtransactions <limit> [confirm] [address]");
+					result.put("message", "缺少参数，命令用法：listtransactions <limit> [confirm] [address] [cursor]");
 					return result;
 				}
 
 				int limit = 0;
 				int confirm = 0;
 				String address = null;
+				String cursor = null;
 				try {
 					if(params.length() == 1) {
 						limit = params.getInt(0);
@@ -544,6 +545,9 @@ public class RPCHanlder {
 						limit = params.getInt(0);
 						confirm = params.getInt(1);
 						address = params.getString(2);
+						if(params.length() > 3) {
+							cursor = params.getString(3);
+						}
 					}
 					//检查地址是否合法
 					if(address != null) {
@@ -551,14 +555,17 @@ public class RPCHanlder {
 					}
 				}catch (Exception e) {
 					result.put("success", false);
-					result.put("message", "参数格式错误，命令用法：listtransactions <count> [confirm] [address]");
+					result.put("message", "参数格式错误，命令用法：listtransactions <count> [confirm] [address] [cursor]");
 					return result;
 				}
 
 
-				JSONArray txs =  rpcService.listtransactions(limit, confirm, address);
+				JSONObject page = rpcService.listtransactions(limit, confirm, address, cursor);
 				result.put("success", true);
-				result.put("txs", txs);
+				result.put("txs", page.getJSONArray("txs"));
+				if(page.has("cursor")) {
+					result.put("cursor", page.getString("cursor"));
+				}
 				return result;
 			}
 
@@ -1167,6 +1174,16 @@ public class RPCHanlder {
 			return rpcService.importPriKey(prikey);
 		}
 
+		//导入私钥后重新扫描区块的进度
+		case "getrescanprogress": {
+			return rpcService.getRescanProgress();
+		}
+
+		//取消重新扫描区块
+		case "abortrescan": {
+			return rpcService.abortRescan();
+		}
+
 		//资产签发
 		//参数格式：  资产代码  接收人地址 资产发行数量  备注 资产注册人地址(选填)  密码(选填)
 		case "assetsissue" : {
@@ -1520,6 +1537,11 @@ public class RPCHanlder {
 			return result;
 		}
 		
+		//获取区块交易并行验证的统计
+		case "getverifystats": {
+			return rpcService.getVerifyStats();
+		}
+		
 		//通过公钥得到地址
 		case "getaddressbypubkey": {
 			String pubkey = params.getString(0);
@@ -1600,6 +1622,8 @@ public class RPCHanlder {
 		sb.append("  getcredit                                                                                                                           获取账户的信用\n");
 		sb.append("  getaccountinfo                                                                                                           获取账户的详细信息\n");
 		sb.append("  importprikey                                                                                                           把私钥导入账户到钱包\n");
+		sb.append("  getrescanprogress                                                                                         获取导入后扫描区块的进度\n");
+		sb.append("  abortrescan                                                                                                     取消导入后的区块扫描\n");
 
 		sb.append("  getaccounts                                                                                                              获取钱包所有账户列表\n");
 		sb.append("  encryptwallet <password>                                                                                                         加密钱包\n");
@@ -1616,7 +1640,7 @@ public class RPCHanlder {
 		sb.append("  sendtoaddress <to address> <coin> [password]  [remark]                                                使用钱包给指定地址转账\n");
 		sb.append("  sendmoney <toaddressandcoins> [password]  [remark]                                                使用钱包给指定地址转账\n");
 		sb.append("  lockmoney <money> <unlockTime(yyyy-MM-dd)> <remark> [address] [password]             锁仓交易\n");
-		sb.append("  listtransactions <limit> [confirm] [address]                                                       获取账户的代币交易记录\n");
+		sb.append("  listtransactions <limit> [confirm] [address] [cursor]                                              获取账户的代币交易记录\n");
 		sb.append("  gettransaction                                                                                                            获取帐户的交易记录\n");
 
 		sb.append("\n");
@@ -1632,6 +1656,7 @@ public class RPCHanlder {
 		sb.append(" --- 节点相关 --- \n");
 		sb.append("  getpeers                                                                                                                        获取连接节点列表\n");
 		sb.append("  getpeercount                                                                                                                获取连接节点数量\n");
+		sb.append("  getverifystats                                                                                                      获取区块交易验证速度\n");
 
 		sb.append("\n");
 		sb.append(" --- 业务相关 --- \n");
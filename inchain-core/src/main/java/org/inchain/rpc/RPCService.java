@@ -223,6 +223,17 @@ public interface RPCService {
 	 */
 	JSONArray listtransactions(Integer limit, Integer confirm, String address) throws JSONException;
 
+	/**
+	 * 分页获取交易记录
+	 * @param limit
+	 * @param confirm
+	 * @param address
+	 * @param cursor	上一页返回的游标，为空时获取第一页
+	 * @return JSONObject
+	 * @throws JSONException
+	 */
+	JSONObject listtransactions(Integer limit, Integer confirm, String address, String cursor) throws JSONException;
+
 	/**
 	 * 通过交易hash获取条交易详情
 	 * @param txid
@@ -665,4 +676,22 @@ public interface RPCService {
 	JSONObject validateAddress(String address) throws JSONException;
 
 	JSONObject importPriKey(String prikey) throws JSONException;
+
+	/**
+	 * 获取钱包重新扫描区块的进度
+	 * @return JSONObject
+	 */
+	JSONObject getRescanProgress() throws JSONException;
+
+	/**
+	 * 取消正在进行的钱包重新扫描
+	 * @return JSONObject
+	 */
+	JSONObject abortRescan() throws JSONException;
+
+	/**
+	 * 获取区块交易并行验证的统计
+	 * @return JSONObject
+	 */
+	JSONObject getVerifyStats() throws JSONException;
 }
\ No newline at end of file
@@ -33,11 +33,13 @@ import org.inchain.message.BlockHeader;
 import org.inchain.network.NetworkParams;
 import org.inchain.script.Script;
 import org.inchain.store.AccountStore;
+import org.inchain.store.AddressTxIndex;
 import org.inchain.store.BlockForkStore;
 import org.inchain.store.BlockHeaderStore;
 import org.inchain.store.BlockStore;
 import org.inchain.store.BlockStoreProvider;
 import org.inchain.store.ChainstateStoreProvider;
+import org.inchain.store.RescanProgress;
 import org.inchain.store.TransactionStore;
 import org.inchain.store.TransactionStoreProvider;
 import org.inchain.transaction.Output;
@@ -51,6 +53,7 @@ import org.inchain.utils.DateUtil;
 import org.inchain.utils.Hex;
 import org.inchain.utils.StringUtil;
 import org.inchain.utils.Utils;
+import org.inchain.validator.ParallelTransactionVerifier;
 import org.inchain.validator.TransactionValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -78,6 +81,8 @@ public class RPCServiceImpl implements RPCService {
 	private ChainstateStoreProvider chainstateStoreProvider;
 	@Autowired
 	private TransactionValidator transactionValidator;
+	@Autowired
+	private ParallelTransactionVerifier parallelTransactionVerifier;
 
 	/**
 	 * 获取区块的数量
@@ -539,28 +544,36 @@ public class RPCServiceImpl implements RPCService {
 			JSONArray errormgs = new JSONArray();
 
 			if(count > 0) {
-				for (int i = 0; i < count; i++) {
-					//来源
-					List<String> sourcesList = null;
-					if(sources != null) {
-						sourcesList = new ArrayList<String>();
+				//来源
+				List<List<String>> sourcesLists = null;
+				if(sources != null) {
+					sourcesLists = new ArrayList<List<String>>();
+					for (int i = 0; i < count; i++) {
+						List<String> sourcesList = new ArrayList<String>();
 						JSONArray sourcesArray = sources.getJSONArray(i);
 
 						for (int j = 0; j < sourcesArray.length(); j++) {
 							sourcesList.add(sourcesArray.getString(j));
 						}
+						sourcesLists.add(sourcesList);
 					}
-					BroadcastMakeAntifakeCodeResult broadcastResult = accountKit.makeAntifakeCode(productTx, reward, sourcesList, account, trpw);
+				}
+				//一次生成全部交易并开始广播，不等待广播回应，回应到达后再更新交易记录
+				List<BroadcastMakeAntifakeCodeResult> broadcastResults = accountKit.makeAntifakeCodes(productTx, reward, sourcesLists, count, account, trpw);
 
-					if(broadcastResult.isSuccess()) {
+				for (BroadcastMakeAntifakeCodeResult broadcastResult : broadcastResults) {
+					if(broadcastResult.getAntifakeCode() != null) {
 						JSONObject antifakeJson = new JSONObject();
 						antifakeJson.put("antifakeCode", Base58.encode(broadcastResult.getAntifakeCode().getAntifakeCode()));
 						antifakeJson.put("verifyCode", broadcastResult.getAntifakeCode().getVerifyCode());
 						antifakeJson.put("antifakeContent", broadcastResult.getAntifakeCode().base58Encode());
 						antifakeJson.put("txHash", broadcastResult.getHash());
+						//返回时是否已经收到广播回应，没有收到的可以稍后通过交易hash查询
+						antifakeJson.put("broadcasted", broadcastResult.getFuture().isDone());
 
 						antifakeList.put(antifakeJson);
-					} else {
+					}
+					if(!broadcastResult.isSuccess()) {
 						errormgs.put(broadcastResult.getMessage());
 					}
 				}
@@ -885,9 +898,11 @@ public class RPCServiceImpl implements RPCService {
 				throw new VerificationException("注册资产不存在");
 			}
 
-			BroadcastResult br = accountKit.assetsTransfer(account, assetsRegisterTx, hashReceiver, amount, remark);
+			//不等待广播回应
+			BroadcastResult br = accountKit.submitAssetsTransfer(account, assetsRegisterTx, hashReceiver, amount, remark);
 			result.put("success",  br.isSuccess());
 			result.put("message", br.getMessage());
+			result.put("txHash", br.getHash());
 
 		}catch (VerificationException ve) {
 			log.error("资产发行出错：", ve);
@@ -2125,45 +2140,82 @@ public class RPCServiceImpl implements RPCService {
 	}
 
 	public JSONArray listtransactions(Integer limit, Integer confirm, String address) throws JSONException {
+		return listtransactions(limit, confirm, address, null).getJSONArray("txs");
+	}
+
+	/**
+	 * 分页获取交易记录，已确认的交易从地址交易索引里按从新到老的顺序读取，只读取当前页需要的部分
+	 * 第一页包含未确认的交易
+	 * @param limit
+	 * @param confirm
+	 * @param address	为空时获取钱包里所有账户的交易
+	 * @param cursor	上一页返回的游标，为空时获取第一页
+	 * @return JSONObject	txs 交易列表，cursor 下一页的游标，没有更多记录时不返回
+	 * @throws JSONException
+	 */
+	public JSONObject listtransactions(Integer limit, Integer confirm, String address, String cursor) throws JSONException {
+		JSONObject result = new JSONObject();
 		JSONArray array = new JSONArray();
+		result.put("txs", array);
 
-		List<TransactionStore> mineList = transactionStoreProvider.getMineTxList(address);
-		//依然按照交易时间排序
-		if(mineList.size() > 0) {
-			Collections.sort(mineList, new Comparator<TransactionStore>() {
-				@Override
-				public int compare(TransactionStore o1, TransactionStore o2) {
-					long v1 = o1.getTransaction().getTime();
-					long v2 = o2.getTransaction().getTime();
-					if(v1 == v2) {
-						return 0;
-					} else if(v1 > v2) {
-						return -1;
-					} else {
-						return 1;
+		List<byte[]> hash160s = new ArrayList<byte[]>();
+		if(StringUtil.isEmpty(address)) {
+			hash160s.addAll(transactionStoreProvider.getAddresses());
+		} else {
+			hash160s.add(Address.fromBase58(network, address).getHash160());
+		}
+		if(limit == null || limit <= 0 || hash160s.isEmpty()) {
+			return result;
+		}
+
+		long bestHeight = network.getBestBlockHeight();
+		List<Account> accountList = accountKit.getAccountList();
+		int count = 0;
+
+		AddressTxIndex.Position after = AddressTxIndex.Position.parse(cursor);
+		if(after == null) {
+			//未确认的交易排在最前面
+			if(bestHeight + 1 > confirm) {
+				for (TransactionStore txStore : transactionStoreProvider.getMineTxList(address)) {
+					if(count == limit) {
+						break;
 					}
-				}
-			});
-
-			//这里只取与我相关的转账交易，且确认数等于confirm的
-			long bestHeight = network.getBestBlockHeight();
-			int count = 0;
-			List<Account> accountList = accountKit.getAccountList();
-			for(int i = 0;i < mineList.size(); i++) {
-				TransactionStore txStore = mineList.get(i);
-				if(txStore.getTransaction().getType() == Definition.TYPE_PAY) {
-					if(bestHeight - txStore.getHeight() > confirm) {
+					if(txStore.getHeight() == -1l && txStore.getTransaction().getType() == Definition.TYPE_PAY) {
 						array.put(txConver(txStore, bestHeight, accountList));
 						count++;
 					}
 				}
-				if(count == limit) {
-					break;
-				}
+			}
+			if(count == limit) {
+				return result;
 			}
 		}
 
-		return array;
+		//确认数大于confirm，即高度不超过 bestHeight - confirm - 1
+		AddressTxIndex.Position confirmed = new AddressTxIndex.Position(bestHeight - confirm - 1, Integer.MAX_VALUE);
+		if(after == null || after.compareTo(confirmed) > 0) {
+			after = confirmed;
+		}
+		while(count < limit) {
+			//索引里包含其它类型的转账交易，不够一页时接着往后读
+			int need = limit - count;
+			List<AddressTxIndex.Item> items = blockStoreProvider.getAddressTransactions(hash160s, after, need);
+			for (AddressTxIndex.Item item : items) {
+				after = item.getPosition();
+				TransactionStore txStore = blockStoreProvider.getTransaction(item.getTxHash().getBytes());
+				if(txStore == null || txStore.getTransaction().getType() != Definition.TYPE_PAY) {
+					continue;
+				}
+				array.put(txConver(txStore, bestHeight, accountList));
+				count++;
+			}
+			if(items.size() < need) {
+				//没有更多记录
+				return result;
+			}
+		}
+		result.put("cursor", after.toString());
+		return result;
 	}
 
 	/**
@@ -2287,7 +2339,8 @@ public class RPCServiceImpl implements RPCService {
 				remark = passwordOrRemark;
 			}
 
-			BroadcastResult br = accountKit.sendMoney(toAddress, moneyCoin, feeCoin, remark == null ? null:remark.getBytes(), address, password);
+			//不等待广播回应
+			BroadcastResult br = accountKit.submitMoney(toAddress, moneyCoin, feeCoin, remark == null ? null:remark.getBytes(), address, password);
 
 			json.put("success", br.isSuccess());
 			json.put("message", br.getMessage());
@@ -3373,4 +3426,52 @@ public class RPCServiceImpl implements RPCService {
 		Result rs = accountKit.importPriKey(prikey);
 		return new JSONObject().put("success",rs.isSuccess()).put("message",rs.getMessage());
 	}
+
+	/**
+	 * 获取钱包重新扫描区块的进度
+	 * @return JSONObject
+	 */
+	public JSONObject getRescanProgress() throws JSONException {
+		RescanProgress progress = blockStoreProvider.getRescanProgress();
+		if(progress == null) {
+			return new JSONObject().put("success", false).put("message", "没有扫描记录");
+		}
+		JSONObject json = new JSONObject();
+		json.put("success", true);
+		json.put("percent", progress.getPercent());
+		json.put("bestHeight", progress.getBestHeight());
+		json.put("filteredHeight", progress.getFilteredHeight());
+		json.put("candidateBlocks", progress.getCandidateBlocks());
+		json.put("loadedBlocks", progress.getLoadedBlocks());
+		json.put("transactions", progress.getTransactions());
+		json.put("elapsed", progress.getElapsed());
+		json.put("finished", progress.isFinished());
+		json.put("cancelled", progress.isCancelled());
+		return json;
+	}
+
+	/**
+	 * 取消正在进行的钱包重新扫描
+	 * @return JSONObject
+	 */
+	public JSONObject abortRescan() throws JSONException {
+		if(blockStoreProvider.cancelRescan()) {
+			return new JSONObject().put("success", true).put("message", "已取消，下次启动时重新扫描");
+		}
+		return new JSONObject().put("success", false).put("message", "没有正在进行的扫描");
+	}
+
+	/**
+	 * 获取区块交易并行验证的统计
+	 * @return JSONObject
+	 */
+	public JSONObject getVerifyStats() throws JSONException {
+		JSONObject json = new JSONObject();
+		json.put("success", true);
+		json.put("parallelism", parallelTransactionVerifier.getParallelism());
+		json.put("verifiedCount", parallelTransactionVerifier.getVerifiedCount());
+		json.put("txPerSecond", parallelTransactionVerifier.getTxPerSecond());
+		json.put("lastTxPerSecond", parallelTransactionVerifier.getLastTxPerSecond());
+		return json;
+	}
 }
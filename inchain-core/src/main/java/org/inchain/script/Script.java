@@ -1114,9 +1114,6 @@ public class Script {
      */
 	private static void executeCheckSig(Transaction tx, int index, Script script, LinkedList<byte[]> stack, int opcode) {
 		
-		//复制一个tx，否则会导致里面的数据被修改
-		tx = new Transaction(tx.getNetwork(), tx.baseSerialize());
-
 		if(script.isSentToSystemAddress()) {
 			if(stack.size() < 2) {
 				throw new ScriptException("Check sign of the stack size < 2");
@@ -34,6 +34,16 @@ public class LocalTransactionSigner implements TransactionSigner {
     @Override
     public boolean signInputs(Transaction tx, ECKey key) {
         int numInputs = tx.getInputs().size();
+        //签名过程中交易内容除输入脚本外不会变化，复用签名hash的上下文
+        tx.setCacheSignatureHash(true);
+        try {
+            return doSignInputs(tx, key, numInputs);
+        } finally {
+            tx.setCacheSignatureHash(false);
+        }
+    }
+
+    private boolean doSignInputs(Transaction tx, ECKey key, int numInputs) {
         for (int i = 0; i < numInputs; i++) {
             TransactionInput txIn = (TransactionInput) tx.getInput(i);
             if (txIn.getFroms() == null || txIn.getFroms().size() == 0) {
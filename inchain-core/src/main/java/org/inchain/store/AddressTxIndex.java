@@ -0,0 +1,199 @@
+package org.inchain.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.db.Db;
+
+/**
+ * 地址交易索引，记录主链上每个地址相关的交易
+ * key：命名空间 + hash160 + 高度（取负） + 交易在区块里的序号（取负） -> 交易hash
+ * 高度和序号取负后顺序遍历即是从新到老，分页查询直接从上一页的位置往后读，耗时只与取出的条数有关，不需要把所有交易读出来排序
+ * 和区块数据存在同一个库里，随区块的保存和回滚一起在批次中写入
+ * @author ln
+ *
+ */
+public class AddressTxIndex {
+
+	private static final Keyspace KEYSPACE = Keyspace.ADDRESS_TXS;
+	//hash160之后的高度字段位置
+	private static final int HEIGHT_OFFSET = KEYSPACE.getPrefixLength() + 20;
+
+	private final Db db;
+
+	public AddressTxIndex(Db db) {
+		this.db = db;
+	}
+
+	/**
+	 * 记录地址相关的一笔交易，同一个位置重复写入不影响
+	 * @param hash160
+	 * @param height
+	 * @param txIndex
+	 * @param txHash
+	 */
+	public void put(byte[] hash160, long height, int txIndex, Sha256Hash txHash) {
+		db.put(getKey(hash160, height, txIndex), txHash.getBytes());
+	}
+
+	/**
+	 * 回滚时删除
+	 * @param hash160
+	 * @param height
+	 * @param txIndex
+	 */
+	public void delete(byte[] hash160, long height, int txIndex) {
+		db.delete(getKey(hash160, height, txIndex));
+	}
+
+	/**
+	 * 按从新到老的顺序获取多个地址相关的交易，同一笔交易涉及多个地址时只返回一次
+	 * 只能读到已经提交的区块
+	 * @param hash160s
+	 * @param after		上一页最后一条的位置，不包含，为null时从最新的开始
+	 * @param limit
+	 * @return List<Item>
+	 */
+	public List<Item> list(List<byte[]> hash160s, Position after, int limit) {
+		List<Item> items = new ArrayList<Item>();
+		if(limit <= 0 || hash160s.isEmpty()) {
+			return items;
+		}
+
+		//每个地址一个游标，每次取所有游标当前位置里最新的一条
+		List<Keyspace.Cursor> cursors = new ArrayList<Keyspace.Cursor>(hash160s.size());
+		Item[] heads = new Item[hash160s.size()];
+		try {
+			for (int i = 0; i < hash160s.size(); i++) {
+				byte[] hash160 = hash160s.get(i);
+				byte[] range = KEYSPACE.key().bytes(hash160).build();
+				byte[] from = after == null ? range : getKey(hash160, after.height, after.txIndex);
+				Keyspace.Cursor cursor = KEYSPACE.iterator(db, range, from);
+				cursors.add(cursor);
+				heads[i] = nextItem(cursor, after);
+			}
+
+			Item last = null;
+			while(items.size() < limit) {
+				int newest = -1;
+				for (int i = 0; i < heads.length; i++) {
+					if(heads[i] != null && (newest == -1 || heads[i].getPosition().compareTo(heads[newest].getPosition()) > 0)) {
+						newest = i;
+					}
+				}
+				if(newest == -1) {
+					break;
+				}
+				Item item = heads[newest];
+				heads[newest] = nextItem(cursors.get(newest), after);
+				if(last != null && last.getPosition().compareTo(item.getPosition()) == 0) {
+					continue;
+				}
+				items.add(item);
+				last = item;
+			}
+		} finally {
+			for (Keyspace.Cursor cursor : cursors) {
+				cursor.close();
+			}
+		}
+		return items;
+	}
+
+	/*
+	 * 游标的下一条，跳过起始位置本身
+	 */
+	private Item nextItem(Keyspace.Cursor cursor, Position after) {
+		while(cursor.hasNext()) {
+			Entry<byte[], byte[]> entry = cursor.next();
+			byte[] key = entry.getKey();
+			Position position = new Position(-Keyspace.readInt64(key, HEIGHT_OFFSET), -Keyspace.readInt32(key, HEIGHT_OFFSET + 8));
+			if(after != null && position.compareTo(after) >= 0) {
+				continue;
+			}
+			return new Item(position, Sha256Hash.wrap(entry.getValue()));
+		}
+		return null;
+	}
+
+	private static byte[] getKey(byte[] hash160, long height, int txIndex) {
+		return KEYSPACE.key().bytes(hash160).int64(-height).int32(-txIndex).build();
+	}
+
+	/**
+	 * 交易在主链上的位置，高度大的更新，同一高度序号大的更新
+	 */
+	public static final class Position implements Comparable<Position> {
+		private final long height;
+		private final int txIndex;
+
+		public Position(long height, int txIndex) {
+			this.height = height;
+			this.txIndex = txIndex;
+		}
+
+		/**
+		 * 解析分页游标，格式为 高度:序号
+		 * @param cursor
+		 * @return Position	格式不对时返回null
+		 */
+		public static Position parse(String cursor) {
+			if(cursor == null) {
+				return null;
+			}
+			int index = cursor.indexOf(':');
+			if(index <= 0) {
+				return null;
+			}
+			try {
+				return new Position(Long.parseLong(cursor.substring(0, index)), Integer.parseInt(cursor.substring(index + 1)));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		public long getHeight() {
+			return height;
+		}
+
+		public int getTxIndex() {
+			return txIndex;
+		}
+
+		@Override
+		public int compareTo(Position o) {
+			if(height != o.height) {
+				return height > o.height ? 1 : -1;
+			}
+			return Integer.compare(txIndex, o.txIndex);
+		}
+
+		@Override
+		public String toString() {
+			return height + ":" + txIndex;
+		}
+	}
+
+	/**
+	 * 查询结果的单条记录
+	 */
+	public static final class Item {
+		private final Position position;
+		private final Sha256Hash txHash;
+
+		private Item(Position position, Sha256Hash txHash) {
+			this.position = position;
+			this.txHash = txHash;
+		}
+
+		public Position getPosition() {
+			return position;
+		}
+
+		public Sha256Hash getTxHash() {
+			return txHash;
+		}
+	}
+}
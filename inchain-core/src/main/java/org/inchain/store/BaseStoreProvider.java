@@ -74,6 +74,28 @@ public abstract class BaseStoreProvider implements StoreProvider {
 		db.delete(key);
 	}
 	
+	/**
+	 * 开启批量写入，当前线程之后的写入在提交时一次性原子落盘
+	 */
+	public void beginBatch() {
+		db.beginBatch();
+	}
+	
+	/**
+	 * 提交当前线程的批量写入
+	 * @param sync 是否同步刷盘
+	 */
+	public void commitBatch(boolean sync) {
+		db.commitBatch(sync);
+	}
+	
+	/**
+	 * 放弃当前线程未提交的批量写入
+	 */
+	public void rollbackBatch() {
+		db.rollbackBatch();
+	}
+	
 	/**
 	 * 释放资源
 	 * @throws IOException 
@@ -0,0 +1,203 @@
+package org.inchain.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.inchain.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 区块文件存储，完整的区块原样追加写入 blk00000.dat 这样的文件，单个文件写满后换下一个文件
+ * 每条记录是 4 字节标识 + 4 字节长度 + 区块内容，区块的位置（文件编号、偏移、长度）由调用方记录在区块库里
+ * 读取时按位置一次读出，不需要再逐笔查询交易和重新组装区块
+ * @author ln
+ *
+ */
+public class BlockFileStore implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(BlockFileStore.class);
+
+	//单个区块文件的最大长度
+	public static final long MAX_FILE_SIZE = 128l * 1048576;
+	//记录标识
+	private static final int RECORD_MAGIC = 0x626c6b3a;
+	//记录头的长度，标识 + 区块长度
+	private static final int RECORD_HEADER_LENGTH = 8;
+
+	private final File dir;
+	//已打开的文件
+	private final Map<Integer, FileChannel> channels = new HashMap<Integer, FileChannel>();
+	//当前写入的文件编号和长度
+	private int currentFile;
+	private long currentSize;
+
+	public BlockFileStore(String dir) {
+		this.dir = new File(Utils.checkNotNull(dir));
+		if(!this.dir.exists()) {
+			this.dir.mkdirs();
+		}
+		//找到最后一个文件，继续写入
+		currentFile = 0;
+		File[] files = this.dir.listFiles();
+		if(files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				if(name.startsWith("blk") && name.endsWith(".dat") && name.length() == 12) {
+					try {
+						currentFile = Math.max(currentFile, Integer.parseInt(name.substring(3, 8)));
+					} catch (NumberFormatException e) {
+						continue;
+					}
+				}
+			}
+		}
+		currentSize = getFile(currentFile).length();
+	}
+
+	/**
+	 * 追加一个区块
+	 * @param content	区块内容
+	 * @param sync		是否马上刷盘
+	 * @return Location 区块在文件里的位置
+	 * @throws IOException
+	 */
+	public synchronized Location append(byte[] content, boolean sync) throws IOException {
+		if(currentSize > 0 && currentSize + RECORD_HEADER_LENGTH + content.length > MAX_FILE_SIZE) {
+			getChannel(currentFile).force(false);
+			currentFile++;
+			currentSize = 0;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_LENGTH + content.length);
+		buffer.putInt(RECORD_MAGIC);
+		buffer.putInt(content.length);
+		buffer.put(content);
+		buffer.flip();
+
+		FileChannel channel = getChannel(currentFile);
+		long position = currentSize;
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		if(sync) {
+			channel.force(false);
+		}
+		Location location = new Location(currentFile, currentSize + RECORD_HEADER_LENGTH, content.length);
+		currentSize = position;
+		return location;
+	}
+
+	/**
+	 * 撤销最后追加的区块，用于区块保存失败时，如果该区块已经不是最后一个，则不做处理
+	 * @param location
+	 */
+	public synchronized void truncate(Location location) {
+		if(location.getFile() != currentFile || location.getOffset() + location.getLength() != currentSize) {
+			return;
+		}
+		try {
+			long size = location.getOffset() - RECORD_HEADER_LENGTH;
+			getChannel(currentFile).truncate(size);
+			currentSize = size;
+		} catch (IOException e) {
+			log.warn("撤销区块文件记录出错", e);
+		}
+	}
+
+	/**
+	 * 读取区块内容
+	 * @param location
+	 * @return byte[]
+	 * @throws IOException
+	 */
+	public byte[] read(Location location) throws IOException {
+		FileChannel channel = getChannel(location.getFile());
+		ByteBuffer buffer = ByteBuffer.allocate(location.getLength());
+		long position = location.getOffset();
+		while(buffer.hasRemaining()) {
+			int count = channel.read(buffer, position);
+			if(count < 0) {
+				throw new IOException("区块文件 " + location.getFile() + " 长度不够，位置 " + location.getOffset());
+			}
+			position += count;
+		}
+		return buffer.array();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		for (FileChannel channel : channels.values()) {
+			channel.close();
+		}
+		channels.clear();
+	}
+
+	private synchronized FileChannel getChannel(int fileNumber) throws IOException {
+		FileChannel channel = channels.get(fileNumber);
+		if(channel == null) {
+			channel = new RandomAccessFile(getFile(fileNumber), "rw").getChannel();
+			channels.put(fileNumber, channel);
+		}
+		return channel;
+	}
+
+	private File getFile(int fileNumber) {
+		return new File(dir, String.format("blk%05d.dat", fileNumber));
+	}
+
+	/**
+	 * 区块在文件里的位置
+	 */
+	public static class Location {
+		//序列化后的长度
+		public static final int LENGTH = 4 + 8 + 4;
+
+		private final int file;
+		private final long offset;
+		private final int length;
+
+		public Location(int file, long offset, int length) {
+			this.file = file;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		public static Location parse(byte[] content) {
+			if(content == null || content.length != LENGTH) {
+				return null;
+			}
+			return new Location((int) Utils.readUint32(content, 0), Utils.readInt64(content, 4), (int) Utils.readUint32(content, 12));
+		}
+
+		public byte[] serialize() {
+			byte[] content = new byte[LENGTH];
+			Utils.uint32ToByteArrayLE(file, content, 0);
+			Utils.uint64ToByteArrayLE(offset, content, 4);
+			Utils.uint32ToByteArrayLE(length, content, 12);
+			return content;
+		}
+
+		public int getFile() {
+			return file;
+		}
+
+		public long getOffset() {
+			return offset;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		@Override
+		public String toString() {
+			return "Location [file=" + file + ", offset=" + offset + ", length=" + length + "]";
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package org.inchain.store;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.inchain.core.ByteHash;
+
+/**
+ * 区块头缓存，缓存的是解析好的区块头，读取时不需要再反序列化
+ * 按hash分段，每段是一个容量固定的LRU，段之间互不影响，读取区块头的rpc、共识线程不会相互阻塞，超过容量时只淘汰最久没有使用的，不会整体清空
+ * 缓存的区块头是共享的，取出后不能修改，需要修改时复制一份，存储提交之后再放入缓存
+ * @author ln
+ *
+ */
+public class BlockHeaderCache {
+
+	private static final int SEGMENT_COUNT = 16;
+
+	private final Segment[] segments;
+	//每次作废缓存时递增，从存储里读取区块头时用来判断期间是否有区块头被作废
+	private final AtomicLong version = new AtomicLong();
+
+	public BlockHeaderCache(int capacity) {
+		int segmentCapacity = Math.max(1, (capacity + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+		segments = new Segment[SEGMENT_COUNT];
+		for (int i = 0; i < SEGMENT_COUNT; i++) {
+			segments[i] = new Segment(segmentCapacity);
+		}
+	}
+
+	/**
+	 * 获取缓存的区块头
+	 * @param hash
+	 * @return BlockHeaderStore
+	 */
+	public BlockHeaderStore get(byte[] hash) {
+		ByteHash key = new ByteHash(hash);
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
+			return segment.get(key);
+		}
+	}
+
+	/**
+	 * 缓存区块头
+	 * @param hash
+	 * @param header
+	 */
+	public void put(byte[] hash, BlockHeaderStore header) {
+		ByteHash key = new ByteHash(hash);
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
+			segment.put(key, header);
+		}
+	}
+
+	/**
+	 * 当前版本，从存储里读取区块头之前获取
+	 * @return long
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * 从存储里读出的区块头放入缓存，如果读取之后有区块头被作废，读到的可能已经过期，则不放入
+	 * @param hash
+	 * @param header
+	 * @param expectedVersion	读取存储之前的版本
+	 * @return BlockHeaderStore 缓存里的区块头，没有放入时返回读到的
+	 */
+	public BlockHeaderStore putIfAbsent(byte[] hash, BlockHeaderStore header, long expectedVersion) {
+		ByteHash key = new ByteHash(hash);
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
+			BlockHeaderStore exist = segment.get(key);
+			if(exist != null) {
+				return exist;
+			}
+			if(version.get() == expectedVersion) {
+				segment.put(key, header);
+			}
+			return header;
+		}
+	}
+
+	/**
+	 * 作废区块头，存储里的区块头被删除或者修改并提交之后调用
+	 * 先递增版本再移除，提交之前从存储里读出的旧区块头不会再被放入缓存
+	 * @param hash
+	 */
+	public void invalidate(byte[] hash) {
+		version.incrementAndGet();
+		remove(hash);
+	}
+
+	/**
+	 * 移除区块头
+	 * @param hash
+	 */
+	public void remove(byte[] hash) {
+		ByteHash key = new ByteHash(hash);
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
+			segment.remove(key);
+		}
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * 缓存的区块头数量
+	 * @return int
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	private Segment segmentFor(ByteHash key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (SEGMENT_COUNT - 1)];
+	}
+
+	/*
+	 * 按访问顺序排列，超过容量时淘汰最久未访问的
+	 */
+	@SuppressWarnings("serial")
+	private static class Segment extends LinkedHashMap<ByteHash, BlockHeaderStore> {
+
+		private final int capacity;
+
+		private Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ByteHash, BlockHeaderStore> eldest) {
+			return size() > capacity;
+		}
+	}
+}
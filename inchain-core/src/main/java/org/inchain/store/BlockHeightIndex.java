@@ -0,0 +1,142 @@
+package org.inchain.store;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.inchain.crypto.Sha256Hash;
+
+/**
+ * 主链的高度与区块hash映射，按高度连续存放在一个数组里，每个高度占32个字节
+ * 保存区块时写入，回滚区块时删除，没有写入过的高度返回null，由调用方从存储里读取后再补上
+ * @author ln
+ *
+ */
+public class BlockHeightIndex {
+
+	private static final int HASH_LENGTH = 32;
+	private static final byte[] EMPTY = new byte[HASH_LENGTH];
+
+	private final ReadWriteLock locker = new ReentrantReadWriteLock();
+
+	private byte[] hashs;
+	//每次删除映射时递增，从存储里补映射时用来判断期间是否有区块被回滚
+	private long version;
+
+	public BlockHeightIndex(int initialCapacity) {
+		hashs = new byte[Math.max(1, initialCapacity) * HASH_LENGTH];
+	}
+
+	/**
+	 * 获取高度对应的区块hash
+	 * @param height
+	 * @return byte[]
+	 */
+	public byte[] get(long height) {
+		if(height < 0l) {
+			return null;
+		}
+		locker.readLock().lock();
+		try {
+			long offset = height * HASH_LENGTH;
+			if(offset + HASH_LENGTH > hashs.length) {
+				return null;
+			}
+			byte[] hash = Arrays.copyOfRange(hashs, (int) offset, (int) offset + HASH_LENGTH);
+			if(Arrays.equals(hash, EMPTY)) {
+				return null;
+			}
+			return hash;
+		} finally {
+			locker.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 设置高度对应的区块hash
+	 * @param height
+	 * @param hash
+	 */
+	public void put(long height, byte[] hash) {
+		if(height < 0l || hash == null || hash.length != HASH_LENGTH || height >= Integer.MAX_VALUE / HASH_LENGTH) {
+			return;
+		}
+		locker.writeLock().lock();
+		try {
+			int offset = (int) height * HASH_LENGTH;
+			if(offset + HASH_LENGTH > hashs.length) {
+				int capacity = Math.max(hashs.length * 2, offset + HASH_LENGTH);
+				hashs = Arrays.copyOf(hashs, Math.min(capacity, Integer.MAX_VALUE / HASH_LENGTH * HASH_LENGTH));
+			}
+			System.arraycopy(hash, 0, hashs, offset, HASH_LENGTH);
+		} finally {
+			locker.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 当前版本，从存储里读取映射之前获取
+	 * @return long
+	 */
+	public long getVersion() {
+		locker.readLock().lock();
+		try {
+			return version;
+		} finally {
+			locker.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 补上从存储里读到的映射，如果读取之后有区块被回滚，读到的可能已经过期，则不写入
+	 * @param height
+	 * @param hash
+	 * @param expectedVersion	读取存储之前的版本
+	 */
+	public void fill(long height, byte[] hash, long expectedVersion) {
+		locker.writeLock().lock();
+		try {
+			if(version == expectedVersion) {
+				put(height, hash);
+			}
+		} finally {
+			locker.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 设置高度对应的区块hash
+	 * @param height
+	 * @param hash
+	 */
+	public void put(long height, Sha256Hash hash) {
+		put(height, hash.getBytes());
+	}
+
+	/**
+	 * 删除该高度及之后的所有映射，回滚区块时调用
+	 * @param height
+	 */
+	public void truncate(long height) {
+		if(height < 0l) {
+			height = 0l;
+		}
+		locker.writeLock().lock();
+		try {
+			version++;
+			long offset = height * HASH_LENGTH;
+			if(offset < hashs.length) {
+				Arrays.fill(hashs, (int) offset, hashs.length, (byte) 0);
+			}
+		} finally {
+			locker.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 清空
+	 */
+	public void clear() {
+		truncate(0l);
+	}
+}
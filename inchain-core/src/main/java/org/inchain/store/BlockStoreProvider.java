@@ -5,11 +5,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -20,15 +25,16 @@ import org.inchain.SpringContextUtils;
 import org.inchain.account.Account;
 import org.inchain.account.AccountBody;
 import org.inchain.account.Address;
+import org.inchain.consensus.ConsensusAccount;
 import org.inchain.consensus.ConsensusMeeting;
 import org.inchain.consensus.ConsensusPool;
-import org.inchain.core.ByteHash;
 import org.inchain.core.Coin;
 import org.inchain.core.DataSynchronizeHandler;
 import org.inchain.core.Definition;
 import org.inchain.core.exception.VerificationException;
 import org.inchain.crypto.Sha256Hash;
 import org.inchain.filter.BloomFilter;
+import org.inchain.filter.GolombFilter;
 import org.inchain.listener.TransactionListener;
 import org.inchain.mempool.MempoolContainer;
 import org.inchain.message.Block;
@@ -42,6 +48,7 @@ import org.inchain.transaction.Transaction;
 import org.inchain.transaction.TransactionInput;
 import org.inchain.transaction.TransactionOutput;
 import org.inchain.transaction.business.*;
+import org.inchain.utils.ContextPropagatingThreadFactory;
 import org.inchain.utils.RandomUtil;
 import org.inchain.utils.Utils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -61,6 +68,8 @@ public class BlockStoreProvider extends BaseStoreProvider {
 	private final static Lock blockLock = new ReentrantLock();
 	//最新区块标识
 	private final static byte[] bestBlockKey = Sha256Hash.ZERO_HASH.getBytes();
+	//地址交易索引和区块地址过滤器的建立进度，建立完成后为1个字节
+	private final static byte[] BLOCK_INDEX_MARKER = Keyspace.META.key("block_index".getBytes());
 	//账户过滤器，用于判断交易是否与我有关
 	private BloomFilter accountFilter = new BloomFilter(100000, 0.0001, RandomUtil.randomLong());;
 	//区块状态提供器
@@ -81,19 +90,37 @@ public class BlockStoreProvider extends BaseStoreProvider {
 
 	//异步顺序执行，以免有处理时间较长的线程阻塞，影响性能
 	private ExecutorService executorService = Executors.newSingleThreadExecutor();
+	//重新扫描区块时并行读取的线程数
+	private final static int RESCAN_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+	//当前或者最近一次重新扫描区块的进度
+	private volatile RescanProgress rescanProgress;
 
 	//缓存
 	private final int CACHER_SIZE = 3000;
 	//区块头信息缓存
-	private Map<ByteHash, byte[]> blockHeaderCacher = new HashMap<ByteHash, byte[]>();
-	//区块高度和hash映射缓存
-	private Map<ByteHash, byte[]> blockHeightHashCacher = new HashMap<ByteHash, byte[]>();
+	private final BlockHeaderCache blockHeaderCacher = new BlockHeaderCache(2 * CACHER_SIZE);
+	//主链区块高度和hash映射
+	private final BlockHeightIndex blockHeightIndex = new BlockHeightIndex(CACHER_SIZE);
 	//最新区块hash缓存
 	private byte[] bestHashCacher = null;
+	//共识轮次索引
+	private final PeriodIndex periodIndex = new PeriodIndex();
+	//共识成员变动日志
+	private final ConsensusJournal consensusJournal = new ConsensusJournal(db);
+	//地址交易索引
+	private final AddressTxIndex addressTxIndex = new AddressTxIndex(db);
+	//完整区块文件
+	private final BlockFileStore blockFileStore;
 
 	//单例
 	BlockStoreProvider() {
-		super(Configure.DATA_BLOCK, 50 * 1048576, 20 * 1048576);
+		this(Configure.DATA_BLOCK, Configure.DATA_BLOCK_FILES);
+	}
+
+	//指定存储目录，测试时使用
+	BlockStoreProvider(String dir, String blockFilesDir) {
+		super(dir, 50 * 1048576, 20 * 1048576);
+		blockFileStore = new BlockFileStore(blockFilesDir);
 	}
 
 	@Override
@@ -108,7 +135,11 @@ public class BlockStoreProvider extends BaseStoreProvider {
 
 	@PostConstruct
 	public void init() {
+		initHeightKeyspace();
 		initCacher();
+		initPeriodIndex();
+		consensusJournal.load();
+		initBlockIndexes();
 //		test();
 	}
 
@@ -118,28 +149,348 @@ public class BlockStoreProvider extends BaseStoreProvider {
 		if(bestBlockHeader == null) {
 			return;
 		}
+		//主链最近的高度映射按高度顺序一次读出
+		long bestHeight = bestBlockHeader.getBlockHeader().getHeight();
+		long fromHeight = Math.max(0l, bestHeight - CACHER_SIZE + 1);
+		List<byte[]> hashs = getBlockHashs(fromHeight, CACHER_SIZE);
+		for (int i = 0; i < hashs.size(); i++) {
+			blockHeightIndex.put(fromHeight + i, hashs.get(i));
+		}
+		
 		Sha256Hash hash = bestBlockHeader.getBlockHeader().getHash();
 		int count = CACHER_SIZE;
 		while(count -- > 0) {
 			if(Sha256Hash.ZERO_HASH.equals(hash)) {
 				break;
 			}
+			//读取时会放入缓存
 			BlockHeaderStore blockHeader = getHeader(hash.getBytes());
 			if(blockHeader == null) {
 				break;
 			}
-			blockHeaderCacher.put(new ByteHash(hash.getBytes()), blockHeader.getBlockHeader().baseSerialize());
-
-			byte[] heightBytes = new byte[4];
-			Utils.uint32ToByteArrayBE(blockHeader.getBlockHeader().getHeight(), heightBytes, 0);
-			blockHeightHashCacher.put(new ByteHash(heightBytes), hash.getBytes());
 
 			hash = blockHeader.getBlockHeader().getPreHash();
 		}
 	}
 
+	/*
+	 * 按高度排列的主链区块映射是后来加的，旧版本的数据第一次启动时从旧的高度映射里补齐
+	 * 分批提交，最新高度的映射最后写入，中途退出的话下次启动会重新补齐
+	 */
+	private void initHeightKeyspace() {
+		BlockHeaderStore bestBlockHeader = getBestBlockHeader();
+		if(bestBlockHeader == null) {
+			return;
+		}
+		long bestHeight = bestBlockHeader.getBlockHeader().getHeight();
+		if(db.get(Keyspace.BLOCK_HEIGHT.key(bestHeight)) != null) {
+			return;
+		}
+		
+		log.info("建立区块高度索引");
+		long time = System.currentTimeMillis();
+		
+		byte[] heightBytes = new byte[4];
+		long height = bestHeight - 1;
+		while(height >= 0l) {
+			db.beginBatch();
+			try {
+				for (int i = 0; i < 10000 && height >= 0l; i++, height--) {
+					Utils.uint32ToByteArrayBE(height, heightBytes, 0);
+					byte[] hash = db.get(heightBytes);
+					if(hash != null) {
+						db.put(Keyspace.BLOCK_HEIGHT.key(height), hash);
+					}
+				}
+				db.commitBatch(false);
+			} catch (RuntimeException e) {
+				db.rollbackBatch();
+				throw e;
+			}
+		}
+		db.put(Keyspace.BLOCK_HEIGHT.key(bestHeight), bestBlockHeader.getBlockHeader().getHash().getBytes());
+		log.info("区块高度索引建立完成，共 {} 个区块，耗时 {} ms", bestHeight + 1, System.currentTimeMillis() - time);
+	}
+	
+	/**
+	 * 按高度顺序获取主链上连续的区块hash，在库里顺序读取，不需要逐个高度查询
+	 * 只能读到已经提交的区块
+	 * @param fromHeight	开始的高度，包含
+	 * @param count			最多获取的数量
+	 * @return List<byte[]>	遇到不连续的高度即结束
+	 */
+	public List<byte[]> getBlockHashs(long fromHeight, int count) {
+		List<byte[]> hashs = new ArrayList<byte[]>();
+		int offset = Keyspace.BLOCK_HEIGHT.getPrefixLength();
+		Keyspace.Cursor cursor = Keyspace.BLOCK_HEIGHT.iterator(db, Keyspace.BLOCK_HEIGHT.key().build(), Keyspace.BLOCK_HEIGHT.key(fromHeight));
+		try {
+			long height = fromHeight;
+			while(hashs.size() < count && cursor.hasNext()) {
+				Entry<byte[], byte[]> item = cursor.next();
+				if(item.getKey().length != offset + 8 || Keyspace.readInt64(item.getKey(), offset) != height) {
+					break;
+				}
+				hashs.add(item.getValue());
+				height++;
+			}
+		} finally {
+			cursor.close();
+		}
+		return hashs;
+	}
+	
+	/*
+	 * 地址交易索引和区块地址过滤器是后来加的，旧版本的数据第一次启动时遍历主链补齐
+	 * 分批提交，进度记录在标记里，中途退出的话下次启动从记录的高度继续，重复写入同一个位置不影响
+	 */
+	private void initBlockIndexes() {
+		byte[] marker = db.get(BLOCK_INDEX_MARKER);
+		if(marker != null && marker.length == 1) {
+			return;
+		}
+		BlockHeaderStore bestBlockHeader = getBestBlockHeader();
+		if(bestBlockHeader == null) {
+			db.put(BLOCK_INDEX_MARKER, new byte[] {1});
+			return;
+		}
+		long bestHeight = bestBlockHeader.getBlockHeader().getHeight();
+		long height = marker == null ? 0l : Utils.readInt64(marker, 0);
+		
+		log.info("建立地址交易索引和区块地址过滤器，从高度 {} 开始", height);
+		long time = System.currentTimeMillis();
+		
+		byte[] progress = new byte[8];
+		while(height <= bestHeight) {
+			List<byte[]> hashs = getBlockHashs(height, 1000);
+			if(hashs.isEmpty()) {
+				break;
+			}
+			db.beginBatch();
+			try {
+				for (byte[] hash : hashs) {
+					BlockStore blockStore = getBlock(hash);
+					if(blockStore != null) {
+						indexBlock(blockStore.getBlock());
+					}
+					height++;
+				}
+				Utils.uint64ToByteArrayLE(height, progress, 0);
+				db.put(BLOCK_INDEX_MARKER, progress);
+				db.commitBatch(false);
+			} catch (RuntimeException e) {
+				db.rollbackBatch();
+				throw e;
+			}
+		}
+		db.put(BLOCK_INDEX_MARKER, new byte[] {1});
+		log.info("地址交易索引和区块地址过滤器建立完成，共 {} 个区块，耗时 {} ms", bestHeight + 1, System.currentTimeMillis() - time);
+	}
+	
+	/*
+	 * 写入区块的地址交易索引和地址过滤器，区块里的交易必须已经写入
+	 * 过滤器里包含区块里所有可能与某个账户有关的地址，与 checkTxIsMine 的判断一致，重新扫描时用来跳过无关的区块
+	 */
+	private void indexBlock(Block block) {
+		List<byte[]> blockHash160s = new ArrayList<byte[]>();
+		for (int i = 0; i < block.getTxCount(); i++) {
+			Transaction tx = block.getTxs().get(i);
+			List<byte[]> hash160s = getPaymentHash160s(tx);
+			for (byte[] hash160 : hash160s) {
+				addressTxIndex.put(hash160, block.getHeight(), i, tx.getHash());
+			}
+			blockHash160s.addAll(hash160s);
+			addBusinessHash160s(tx, blockHash160s);
+		}
+		byte[] hash = block.getHash().getBytes();
+		byte[] filter = GolombFilter.build(hash, blockHash160s).getData();
+		byte[] content = new byte[hash.length + filter.length];
+		System.arraycopy(hash, 0, content, 0, hash.length);
+		System.arraycopy(filter, 0, content, hash.length, filter.length);
+		db.put(Keyspace.BLOCK_FILTER.key(block.getHeight()), content);
+	}
+	
+	/*
+	 * 回滚区块的地址交易索引和地址过滤器，输入的地址从引用的上一笔交易里取，必须在区块的交易被删除之前调用
+	 */
+	private void unindexBlock(Block block) {
+		for (int i = (int) block.getTxCount() - 1; i >= 0; i--) {
+			for (byte[] hash160 : getPaymentHash160s(block.getTxs().get(i))) {
+				addressTxIndex.delete(hash160, block.getHeight(), i);
+			}
+		}
+		db.delete(Keyspace.BLOCK_FILTER.key(block.getHeight()));
+	}
+	
+	/*
+	 * 转账类交易的输入和输出地址，输入的地址从引用的上一笔交易里取
+	 */
+	private List<byte[]> getPaymentHash160s(Transaction tx) {
+		List<byte[]> hash160s = new ArrayList<byte[]>();
+		if(!tx.isPaymentTransaction()) {
+			return hash160s;
+		}
+		List<TransactionInput> inputs = tx.getInputs();
+		if(inputs != null) {
+			for (TransactionInput input : inputs) {
+				if(input.getFroms() == null) {
+					continue;
+				}
+				for (TransactionOutput from : input.getFroms()) {
+					TransactionStore fromTxs = getTransaction(from.getParent().getHash().getBytes());
+					if(fromTxs == null) {
+						continue;
+					}
+					addSentToHash160(hash160s, fromTxs.getTransaction().getOutput(from.getIndex()).getScript());
+				}
+			}
+		}
+		for (TransactionOutput output : tx.getOutputs()) {
+			addSentToHash160(hash160s, output.getScript());
+		}
+		return hash160s;
+	}
+	
+	private void addSentToHash160(List<byte[]> hash160s, Script script) {
+		if(script == null || !script.isSentToAddress()) {
+			return;
+		}
+		byte[] hash160 = script.getChunks().get(2).data;
+		for (byte[] item : hash160s) {
+			if(Arrays.equals(item, hash160)) {
+				return;
+			}
+		}
+		hash160s.add(hash160);
+	}
+	
+	/*
+	 * 输入输出以外，checkTxIsMine 会检查的地址
+	 */
+	private void addBusinessHash160s(Transaction transaction, List<byte[]> hash160s) {
+		if(transaction.isPaymentTransaction()) {
+			if(transaction.getType() == Definition.TYPE_VIOLATION) {
+				ViolationTransaction vtx = (ViolationTransaction) transaction;
+				addHash160(hash160s, vtx.getViolationEvidence().getAudienceHash160());
+				if(vtx.getViolationEvidence().getViolationType() != ViolationEvidence.VIOLATION_TYPE_NOT_BROADCAST_BLOCK) {
+					TransactionStore regTxStore = getTransaction(vtx.getInput(0).getFroms().get(0).getParent().getHash().getBytes());
+					if(regTxStore != null && regTxStore.getTransaction() instanceof RegConsensusTransaction) {
+						addHash160(hash160s, ((RegConsensusTransaction) regTxStore.getTransaction()).getHash160());
+					}
+				}
+			}
+		} else if(transaction.getType() == Definition.TYPE_CREDIT) {
+			addHash160(hash160s, ((CreditTransaction) transaction).getOwnerHash160());
+		} else if(transaction instanceof BaseCommonlyTransaction) {
+			addHash160(hash160s, ((BaseCommonlyTransaction) transaction).getHash160());
+			if(transaction.getType() == Definition.TYPE_ANTIFAKE_TRANSFER) {
+				addHash160(hash160s, ((AntifakeTransferTransaction) transaction).getReceiveHash160());
+			} else if(transaction.getType() == Definition.TYPE_ASSETS_ISSUED) {
+				addHash160(hash160s, ((AssetsIssuedTransaction) transaction).getReceiver());
+			} else if(transaction.getType() == Definition.TYPE_ASSETS_TRANSFER) {
+				addHash160(hash160s, ((AssetsTransferTransaction) transaction).getReceiver());
+			}
+		}
+	}
+	
+	private void addHash160(List<byte[]> hash160s, byte[] hash160) {
+		if(hash160 != null) {
+			hash160s.add(hash160);
+		}
+	}
+	
+	/**
+	 * 按从新到老的顺序分页获取地址相关的交易，同一笔交易只返回一次
+	 * 只能读到已经提交的区块
+	 * @param hash160s
+	 * @param after		上一页最后一条的位置，不包含，为null时从最新的开始
+	 * @param limit
+	 * @return List<AddressTxIndex.Item>
+	 */
+	public List<AddressTxIndex.Item> getAddressTransactions(List<byte[]> hash160s, AddressTxIndex.Position after, int limit) {
+		return addressTxIndex.list(hash160s, after, limit);
+	}
+	
+	/*
+	 * 加载共识轮次索引，如果和最新区块对不上（旧版本的数据或者数据被重置过），则遍历主链重建
+	 */
+	private void initPeriodIndex() {
+		periodIndex.clear();
+		
+		int offset = Keyspace.PERIOD.getPrefixLength();
+		Keyspace.Cursor cursor = Keyspace.PERIOD.iterator(db);
+		try {
+			while(cursor.hasNext()) {
+				Entry<byte[], byte[]> item = cursor.next();
+				byte[] key = item.getKey();
+				if(key.length != offset + 8 || item.getValue().length != 16) {
+					continue;
+				}
+				periodIndex.put(new PeriodIndex.Period(Utils.readInt64(key, offset),
+						Utils.readInt64(item.getValue(), 0), Utils.readInt64(item.getValue(), 8)));
+			}
+		} finally {
+			cursor.close();
+		}
+		
+		BlockHeaderStore bestBlockHeaderStore = getBestBlockHeader();
+		if(bestBlockHeaderStore == null) {
+			return;
+		}
+		BlockHeader bestBlockHeader = bestBlockHeaderStore.getBlockHeader();
+		PeriodIndex.Period last = periodIndex.getLast();
+		if(last != null && last.getPeriodStartTime() == bestBlockHeader.getPeriodStartTime() && last.getLastHeight() == bestBlockHeader.getHeight()) {
+			return;
+		}
+		
+		log.info("重建共识轮次索引");
+		long time = System.currentTimeMillis();
+		
+		db.beginBatch();
+		try {
+			for (PeriodIndex.Period period : periodIndex.getRange(Long.MIN_VALUE, Long.MAX_VALUE)) {
+				db.delete(getPeriodKey(period.getPeriodStartTime()));
+			}
+			periodIndex.clear();
+			
+			BlockHeader blockHeader = bestBlockHeader;
+			while(blockHeader != null) {
+				periodIndex.add(blockHeader.getPeriodStartTime(), blockHeader.getHeight());
+				if(Sha256Hash.ZERO_HASH.equals(blockHeader.getPreHash())) {
+					break;
+				}
+				BlockHeaderStore preHeaderStore = getHeader(blockHeader.getPreHash().getBytes());
+				blockHeader = preHeaderStore == null ? null : preHeaderStore.getBlockHeader();
+			}
+			for (PeriodIndex.Period period : periodIndex.getRange(Long.MIN_VALUE, Long.MAX_VALUE)) {
+				db.put(getPeriodKey(period.getPeriodStartTime()), serializePeriod(period.getFirstHeight(), period.getLastHeight()));
+			}
+			db.commitBatch(Configure.BLOCK_COMMIT_SYNC);
+		} catch (RuntimeException e) {
+			db.rollbackBatch();
+			periodIndex.clear();
+			throw e;
+		}
+		log.info("共识轮次索引重建完成，共 {} 轮，耗时 {} ms", periodIndex.size(), System.currentTimeMillis() - time);
+	}
+	
+	private static byte[] getPeriodKey(long periodStartTime) {
+		return Keyspace.PERIOD.key().int64LE(periodStartTime).build();
+	}
+	
+	private static byte[] getBlockFileKey(byte[] hash) {
+		return Keyspace.BLOCK_FILE.key(hash);
+	}
+	
+	private static byte[] serializePeriod(long firstHeight, long lastHeight) {
+		byte[] value = new byte[16];
+		Utils.uint64ToByteArrayLE(firstHeight, value, 0);
+		Utils.uint64ToByteArrayLE(lastHeight, value, 8);
+		return value;
+	}
+	
 	/**
 	 * 保存区块完整的区块信息
+	 * 区块数据和状态数据分别写入各自的批次，全部处理成功后才一次性提交，保证不会出现只保存了一半的区块
 	 * @param blockStore
 	 * @throws IOException
 	 */
@@ -168,61 +519,105 @@ public class BlockStoreProvider extends BaseStoreProvider {
 			if(blockStore.getNextHash() == null) {
 				blockStore.setNextHash(Sha256Hash.ZERO_HASH);
 			}
-			//先保存交易，再保存区块，保证区块体不出错
-			//保存交易
-			for (int i = 0; i < block.getTxCount(); i++) {
-
-				Transaction tx = block.getTxs().get(i);
-				TransactionStore txs = new TransactionStore(network,  tx, block.getHeight(), null);
-
-				db.put(tx.getHash().getBytes(), txs.baseSerialize());
-
-				saveChainstate(block, txs);
+			
+			List<TransactionStore> txsList = new ArrayList<TransactionStore>(block.getTxs().size());
+			
+			List<ConsensusJournal.Event> consensusEvents = new ArrayList<ConsensusJournal.Event>();
+			
+			BlockFileStore.Location blockLocation = null;
+			
+			db.beginBatch();
+			chainstateStoreProvider.beginBatch();
+			try {
+				//新一轮的第一个块，按需保存这一轮开始时的共识成员列表，必须在处理本块的交易之前
+				if(periodIndex.get(block.getPeriodStartTime()) == null && consensusJournal.needCheckpoint(block.getPeriodStartTime(), periodIndex)) {
+					consensusJournal.putCheckpoint(block.getPeriodStartTime(), consensusPool.listSnapshots());
+				}
+				
+				//先保存交易，再保存区块，保证区块体不出错
+				//保存交易
+				for (int i = 0; i < block.getTxCount(); i++) {
+	
+					Transaction tx = block.getTxs().get(i);
+					TransactionStore txs = new TransactionStore(network,  tx, block.getHeight(), null);
+	
+					db.put(tx.getHash().getBytes(), txs.baseSerialize());
+	
+					saveChainstate(block, txs);
+					txsList.add(txs);
+					
+					ConsensusJournal.Event event = getConsensusEvent(tx);
+					if(event != null) {
+						consensusEvents.add(event);
+					}
+				}
+				consensusJournal.appendEvents(block.getPeriodStartTime(), block.getHeight(), consensusEvents);
+				indexBlock(block);
+				
+				//完整区块追加到区块文件，库里只记录位置，文件先于批次落盘，位置不会指向没写完的数据
+				blockLocation = blockFileStore.append(block.baseSerialize(), Configure.BLOCK_COMMIT_SYNC);
+				db.put(getBlockFileKey(hash.getBytes()), blockLocation.serialize());
+	
+				//保存块头
+				byte[] blockHeaderBytes = blockStore.serializeHeaderToBytes();
+				db.put(hash.getBytes(), blockHeaderBytes);
+	
+				byte[] heightBytes = new byte[4];
+				Utils.uint32ToByteArrayBE(block.getHeight(), heightBytes, 0);
+	
+				db.put(heightBytes, hash.getBytes());
+				db.put(Keyspace.BLOCK_HEIGHT.key(block.getHeight()), hash.getBytes());
+	
+				//更新最新区块
+				db.put(bestBlockKey, hash.getBytes());
+	
+				//更新上一区块的指针，缓存里的区块头是共享的，修改副本，提交之后再放入缓存
+				BlockHeaderStore preBlockHeader = null;
+				if(!Sha256Hash.ZERO_HASH.equals(block.getPreHash())) {
+					preBlockHeader = copyHeader(getHeader(block.getPreHash().getBytes()));
+					preBlockHeader.setNextHash(block.getHash());
+					db.put(preBlockHeader.getBlockHeader().getHash().getBytes(), preBlockHeader.baseSerialize());
+				}
+				
+				//更新共识轮次索引
+				PeriodIndex.Period period = periodIndex.get(block.getPeriodStartTime());
+				long firstHeight = period == null ? block.getHeight() : period.getFirstHeight();
+				db.put(getPeriodKey(block.getPeriodStartTime()), serializePeriod(firstHeight, block.getHeight()));
+				
+				//先提交状态，再提交区块，最新区块指针随区块一起最后落盘
+				chainstateStoreProvider.commitBatch(Configure.BLOCK_COMMIT_SYNC);
+				db.commitBatch(Configure.BLOCK_COMMIT_SYNC);
+				
+				periodIndex.add(block.getPeriodStartTime(), block.getHeight());
+				
+				//写入区块头信息缓存
+				BlockHeaderStore blockHeaderStore = new BlockHeaderStore(network, blockHeaderBytes);
+				blockHeaderStore.getBlockHeader().setHash(hash);
+				blockHeaderCacher.put(hash.getBytes(), blockHeaderStore);
+				if(preBlockHeader != null) {
+					blockHeaderCacher.invalidate(block.getPreHash().getBytes());
+					blockHeaderCacher.put(block.getPreHash().getBytes(), preBlockHeader);
+				}
+				//写入区块高度与hash映射
+				blockHeightIndex.put(block.getHeight(), hash);
+				bestHashCacher = hash.getBytes();
+			} catch (Exception e) {
+				chainstateStoreProvider.rollbackBatch();
+				db.rollbackBatch();
+				if(blockLocation != null) {
+					blockFileStore.truncate(blockLocation);
+				}
+				throw e;
 			}
-
-			//保存块头
-			byte[] blockHeaderBytes = blockStore.serializeHeaderToBytes();
-			db.put(hash.getBytes(), blockHeaderBytes);
-			//写入区块头信息缓存
-			blockHeaderCacher.put(new ByteHash(hash.getBytes()), blockHeaderBytes);
-
-			byte[] heightBytes = new byte[4];
-			Utils.uint32ToByteArrayBE(block.getHeight(), heightBytes, 0);
-
-			db.put(heightBytes, hash.getBytes());
-			//写入区块高度与hash映射缓存
-			blockHeightHashCacher.put(new ByteHash(heightBytes), hash.getBytes());
-			//TODO 更新过期缓存
-
-			//更新最新区块
-			db.put(bestBlockKey, hash.getBytes());
-			bestHashCacher = hash.getBytes();
-
-			//更新上一区块的指针
-			if(!Sha256Hash.ZERO_HASH.equals(block.getPreHash())) {
-				BlockHeaderStore preBlockHeader = getHeader(block.getPreHash().getBytes());
-				preBlockHeader.setNextHash(block.getHash());
-				db.put(preBlockHeader.getBlockHeader().getHash().getBytes(), preBlockHeader.baseSerialize());
+			
+			//数据落盘之后，再检查交易是否与我有关
+			for (TransactionStore txs : txsList) {
+				checkIsMineAndUpdate(txs);
 			}
 		} catch (Exception e) {
 			log.info("保存区块出错：", e);
 			throw e;
 		} finally {
-//			//检查区块数据的完整性
-//			BlockStore blockStoreTemp = getBlock(blockStore.getBlock().getHash().getBytes());
-//			if(blockStoreTemp.getBlock().getTxs().size() != (int)blockStore.getBlock().getTxCount()) {
-//				//交易存储不完整
-//				revokedNewestBlock();
-////				//重新存储
-////				saveBlock(blockStore);
-//				throw new VerificationException("区块保存不完整，实际交易数量为" + blockStore.getBlock().getTxCount() + " , 保存数量为" + blockStoreTemp.getBlock().getTxs());
-//			}
-
-			if(blockHeaderCacher.size() > 2 * CACHER_SIZE) {
-				blockHeaderCacher.clear();
-				blockHeightHashCacher.clear();
-				initCacher();
-			}
 			blockLock.unlock();
 		}
 	}
@@ -482,15 +877,13 @@ public class BlockStoreProvider extends BaseStoreProvider {
 
 			chainstateStoreProvider.put(bindtx.getAntifakeCode(), makebind);
 		}
-		//交易是否与我有关
-		checkIsMineAndUpdate(txs);
 	}
 
 
 	/**
 	 * 撤销本地最新块，放入分叉块中，目前先放到状态存储中
 	 * 注意块的撤销，只能重最新块依次处理
-	 * 需要有出错回滚事务 TODO
+	 * 区块数据和状态数据的撤销在同一批次中提交
 	 */
 	public Block revokedNewestBlock() {
 		blockLock.lock();
@@ -500,10 +893,25 @@ public class BlockStoreProvider extends BaseStoreProvider {
 				//创世块，禁止
 				return null;
 			}
-			revokedBlock(bestBlock);
-			//更新最新区块
 			byte[] bestBlockHashBytes = bestBlock.getPreHash().getBytes();
-			db.put(bestBlockKey, bestBlockHashBytes);
+			
+			db.beginBatch();
+			chainstateStoreProvider.beginBatch();
+			BlockHeaderStore preBlockHeader = null;
+			try {
+				preBlockHeader = revokeBlockData(bestBlock);
+				//更新最新区块
+				db.put(bestBlockKey, bestBlockHashBytes);
+				
+				chainstateStoreProvider.commitBatch(Configure.BLOCK_COMMIT_SYNC);
+				db.commitBatch(Configure.BLOCK_COMMIT_SYNC);
+			} catch (RuntimeException e) {
+				chainstateStoreProvider.rollbackBatch();
+				db.rollbackBatch();
+				periodIndex.add(bestBlock.getPeriodStartTime(), bestBlock.getHeight());
+				throw e;
+			}
+			updateCacheAfterRevoke(bestBlock, preBlockHeader);
 			bestHashCacher = bestBlockHashBytes;
 			
 			return bestBlock;
@@ -513,34 +921,84 @@ public class BlockStoreProvider extends BaseStoreProvider {
 	}
 
 	/**
-	 * 回滚区块
+	 * 回滚区块，修复数据时调用，区块数据和状态数据的撤销在同一批次中提交
 	 * @param block
 	 */
 	public void revokedBlock(Block block) {
+		blockLock.lock();
+		try {
+			db.beginBatch();
+			chainstateStoreProvider.beginBatch();
+			BlockHeaderStore preBlockHeader = null;
+			try {
+				preBlockHeader = revokeBlockData(block);
+				
+				chainstateStoreProvider.commitBatch(Configure.BLOCK_COMMIT_SYNC);
+				db.commitBatch(Configure.BLOCK_COMMIT_SYNC);
+			} catch (RuntimeException e) {
+				chainstateStoreProvider.rollbackBatch();
+				db.rollbackBatch();
+				periodIndex.add(block.getPeriodStartTime(), block.getHeight());
+				throw e;
+			}
+			updateCacheAfterRevoke(block, preBlockHeader);
+		} finally {
+			blockLock.unlock();
+		}
+	}
+	
+	/*
+	 * 回滚区块提交之后，作废区块头缓存和该高度之后的高度映射，放入更新过指针的上一区块头
+	 * 必须在提交之后进行，否则其它线程可能在提交前从存储里读到旧的映射，再放回缓存
+	 */
+	private void updateCacheAfterRevoke(Block block, BlockHeaderStore preBlockHeader) {
+		blockHeaderCacher.invalidate(block.getHash().getBytes());
+		blockHeightIndex.truncate(block.getHeight());
+		if(preBlockHeader != null) {
+			blockHeaderCacher.invalidate(block.getPreHash().getBytes());
+			blockHeaderCacher.put(block.getPreHash().getBytes(), preBlockHeader);
+		}
+	}
+	
+	/*
+	 * 在当前批次里撤销区块的数据，不修改任何缓存
+	 * 返回更新了下一区块指针的上一区块头副本，提交之后放入缓存，创世块返回null
+	 */
+	private BlockHeaderStore revokeBlockData(Block block) {
 		
 		Sha256Hash bestBlockHash = block.getHash();
 		
 		chainstateStoreProvider.put(bestBlockHash.getBytes(), block.baseSerialize());
 		
-		//回滚块信息
+		//回滚块信息，区块文件里的内容不再被引用，不需要删除
 		db.delete(bestBlockHash.getBytes());
+		db.delete(getBlockFileKey(bestBlockHash.getBytes()));
 		
 		byte[] heightBytes = new byte[4]; 
 		Utils.uint32ToByteArrayBE(block.getHeight(), heightBytes, 0);
 		
 		db.delete(heightBytes);
+		db.delete(Keyspace.BLOCK_HEIGHT.key(block.getHeight()));
 		
-		//删除区块头信息缓存
-		blockHeaderCacher.remove(new ByteHash(bestBlockHash.getBytes()));
-		blockHeightHashCacher.remove(new ByteHash(heightBytes));
+		//回滚共识轮次索引
+		PeriodIndex.Period period = periodIndex.remove(block.getPeriodStartTime(), block.getHeight());
+		if(period == null) {
+			db.delete(getPeriodKey(block.getPeriodStartTime()));
+		} else {
+			db.put(getPeriodKey(block.getPeriodStartTime()), serializePeriod(period.getFirstHeight(), period.getLastHeight()));
+		}
+		consensusJournal.revoke(block.getPeriodStartTime(), block.getHeight(), period == null);
 		
-		//更新上一区块的指针
+		//更新上一区块的指针，修改的是副本
+		BlockHeaderStore preBlockHeader = null;
 		if(!Sha256Hash.ZERO_HASH.equals(block.getPreHash())) {
-			BlockHeaderStore preBlockHeader = getHeader(block.getPreHash().getBytes());
+			preBlockHeader = copyHeader(getHeader(block.getPreHash().getBytes()));
 			preBlockHeader.setNextHash(Sha256Hash.ZERO_HASH);
 			db.put(preBlockHeader.getBlockHeader().getHash().getBytes(), preBlockHeader.baseSerialize());
 		}
 		
+		unindexBlock(block);
+		
 		//回滚交易
 		//反转交易，保证回滚时序正确
 		//TODO
@@ -549,6 +1007,7 @@ public class BlockStoreProvider extends BaseStoreProvider {
 			
 			revokedTransaction(txs);
 		}
+		return preBlockHeader;
 	}
 	
 	/**
@@ -956,19 +1415,28 @@ public class BlockStoreProvider extends BaseStoreProvider {
 	 */
 	public BlockHeaderStore getHeader(byte[] hash) {
 		
-		byte[] content = null;
-		content = blockHeightHashCacher.get(new ByteHash(hash));
-		
-		if(content == null) {
-			content = db.get(hash);
+		BlockHeaderStore blockHeaderStore = blockHeaderCacher.get(hash);
+		if(blockHeaderStore != null) {
+			return blockHeaderStore;
 		}
-
+		
+		long version = blockHeaderCacher.getVersion();
+		byte[] content = db.get(hash);
 		if(content == null) {
 			return null;
 		}
-		BlockHeaderStore blockHeaderStore = new BlockHeaderStore(network, content);
+		blockHeaderStore = new BlockHeaderStore(network, content);
 		blockHeaderStore.getBlockHeader().setHash(Sha256Hash.wrap(hash));
-		return blockHeaderStore;
+		return blockHeaderCacher.putIfAbsent(hash, blockHeaderStore, version);
+	}
+	
+	/*
+	 * 复制区块头，缓存里的区块头是共享的，需要修改时使用副本
+	 */
+	private BlockHeaderStore copyHeader(BlockHeaderStore header) {
+		BlockHeaderStore copy = new BlockHeaderStore(network, header.baseSerialize());
+		copy.getBlockHeader().setHash(header.getBlockHeader().getHash());
+		return copy;
 	}
 	
 	/**
@@ -977,18 +1445,18 @@ public class BlockStoreProvider extends BaseStoreProvider {
 	 * @return BlockHeaderStore
 	 */
 	public BlockHeaderStore getHeaderByHeight(long height) {
-		byte[] heightBytes = new byte[4]; 
-		Utils.uint32ToByteArrayBE(height, heightBytes, 0);
-		
-		byte[] hash = null;
-		
-		hash = blockHeightHashCacher.get(new ByteHash(heightBytes));
+		byte[] hash = blockHeightIndex.get(height);
 		
 		if(hash == null) {
+			byte[] heightBytes = new byte[4]; 
+			Utils.uint32ToByteArrayBE(height, heightBytes, 0);
+			
+			long version = blockHeightIndex.getVersion();
 			hash = db.get(heightBytes);
-		}
-		if(hash == null) {
-			return null;
+			if(hash == null) {
+				return null;
+			}
+			blockHeightIndex.fill(height, hash, version);
 		}
 		return getHeader(hash);
 	}
@@ -1022,6 +1490,19 @@ public class BlockStoreProvider extends BaseStoreProvider {
 	 * @return BlockStore
 	 */
 	public BlockStore getBlockByHeader(BlockHeaderStore header) {
+		//优先从区块文件一次读出
+		byte[] blockBytes = getBlockBytes(header.getBlockHeader().getHash().getBytes());
+		if(blockBytes != null) {
+			Block block = new Block(network, blockBytes);
+			block.setHash(header.getBlockHeader().getHash());
+			
+			BlockStore blockStore = new BlockStore(network);
+			blockStore.setBlock(block);
+			blockStore.setNextHash(header.getNextHash());
+			return blockStore;
+		}
+		
+		//旧版本保存的区块没有区块文件，通过交易列表组装
 		//交易列表
 		List<Transaction> txs = new ArrayList<Transaction>();
 		
@@ -1059,6 +1540,25 @@ public class BlockStoreProvider extends BaseStoreProvider {
 		return blockStore;
 	}
 	
+	/**
+	 * 从区块文件读取序列化好的完整区块，可以直接发送给其它节点
+	 * 旧版本保存的区块没有区块文件，返回null
+	 * @param hash
+	 * @return byte[]
+	 */
+	public byte[] getBlockBytes(byte[] hash) {
+		BlockFileStore.Location location = BlockFileStore.Location.parse(db.get(getBlockFileKey(hash)));
+		if(location == null) {
+			return null;
+		}
+		try {
+			return blockFileStore.read(location);
+		} catch (IOException e) {
+			log.error("读取区块文件出错 {}", location, e);
+			return null;
+		}
+	}
+	
 	/**
 	 * 获取一笔交易
 	 * @param hash
@@ -1143,109 +1643,213 @@ public class BlockStoreProvider extends BaseStoreProvider {
 	}
 
 	/**
-	 * 重新加载相关的所有交易，意味着会遍历整个区块
-	 * 该操作一遍只会在账号导入之后进行操作
+	 * 重新加载相关的所有交易
+	 * 先用每个区块的地址过滤器找出可能相关的区块，只读取这些区块，读取和解析并行进行，再按高度顺序处理
+	 * 该操作一般只会在账号导入之后进行，进度通过 {@link #getRescanProgress()} 获取，可以通过 {@link #cancelRescan()} 取消
 	 * @param hash160s
-	 * @return List<TransactionStore>  返回交易列表
+	 * @return List<TransactionStore>  返回交易列表，被取消时返回null
 	 */
 	public List<TransactionStore> loadRelatedTransactions(List<byte[]> hash160s) {
 		blockLock.lock();
+		BlockHeaderStore bestBlockHeader = getBestBlockHeader();
+		RescanProgress progress = new RescanProgress(bestBlockHeader == null ? -1l : bestBlockHeader.getBlockHeader().getHeight());
+		rescanProgress = progress;
+		
+		ExecutorService rescanExecutor = Executors.newFixedThreadPool(RESCAN_THREADS, new ContextPropagatingThreadFactory("block-rescan"));
 		try {
 			accountFilter.init();
 			for (byte[] hash160 : hash160s) {
 				accountFilter.insert(hash160);
 			}
 			
-			//从创始快开始遍历所有区块
-			BlockStore blockStore = network.getGengsisBlock();
-			Sha256Hash nextHash = blockStore.getBlock().getHash();
+			List<byte[]> candidates = getRescanCandidates(hash160s, progress);
+			if(progress.isCancelled()) {
+				log.info("重新扫描区块已取消");
+				return null;
+			}
 			
 			List<TransactionStore> mineTxs = new ArrayList<TransactionStore>();
-			while(!nextHash.equals(Sha256Hash.ZERO_HASH)) {
-				BlockStore nextBlockStore = getBlock(nextHash.getBytes());
+			Map<Sha256Hash, TransactionStore> mineTxMap = new HashMap<Sha256Hash, TransactionStore>();
+			
+			//提前读取的区块数，限制同时在内存里的区块
+			LinkedList<Future<BlockStore>> loading = new LinkedList<Future<BlockStore>>();
+			int next = 0;
+			while(next < candidates.size() || !loading.isEmpty()) {
+				while(next < candidates.size() && loading.size() < RESCAN_THREADS * 4) {
+					final byte[] hash = candidates.get(next++);
+					loading.add(rescanExecutor.submit(new Callable<BlockStore>() {
+						@Override
+						public BlockStore call() {
+							return getBlock(hash);
+						}
+					}));
+				}
+				if(progress.isCancelled()) {
+					log.info("重新扫描区块已取消");
+					return null;
+				}
+				BlockStore blockStore = loading.removeFirst().get();
+				if(blockStore != null) {
+					collectMineTransactions(blockStore.getBlock(), mineTxs, mineTxMap);
+				}
+				progress.blockLoaded(mineTxs.size());
+			}
+			
+			log.info("重新扫描区块完成，检查 {} 个区块，读取 {} 个区块，找到 {} 笔交易，耗时 {} ms",
+					progress.getBestHeight() + 1, candidates.size(), mineTxs.size(), progress.getElapsed());
+			return mineTxs;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			rescanExecutor.shutdownNow();
+			progress.finish();
+			blockLock.unlock();
+		}
+	}
+	
+	/**
+	 * 当前或者最近一次重新扫描区块的进度
+	 * @return RescanProgress	没有扫描过时返回null
+	 */
+	public RescanProgress getRescanProgress() {
+		return rescanProgress;
+	}
+	
+	/**
+	 * 取消正在进行的重新扫描
+	 * @return boolean	没有正在进行的扫描时返回false
+	 */
+	public boolean cancelRescan() {
+		RescanProgress progress = rescanProgress;
+		return progress != null && progress.cancel();
+	}
+	
+	/*
+	 * 按高度顺序遍历区块地址过滤器，返回可能与账户有关的区块hash
+	 * 缺少过滤器的高度直接作为候选，不会漏掉区块
+	 */
+	private List<byte[]> getRescanCandidates(List<byte[]> hash160s, RescanProgress progress) {
+		List<byte[]> candidates = new ArrayList<byte[]>();
+		long bestHeight = progress.getBestHeight();
+		long height = 0l;
+		
+		int offset = Keyspace.BLOCK_FILTER.getPrefixLength();
+		Keyspace.Cursor cursor = Keyspace.BLOCK_FILTER.iterator(db);
+		try {
+			while(cursor.hasNext() && height <= bestHeight && !progress.isCancelled()) {
+				Entry<byte[], byte[]> item = cursor.next();
+				//键或者内容的长度不对时跳过，当作该高度缺少过滤器
+				byte[] content = item.getValue();
+				if(item.getKey().length != offset + 8 || content.length < Sha256Hash.LENGTH + 4) {
+					continue;
+				}
+				long filterHeight = Keyspace.readInt64(item.getKey(), offset);
+				if(filterHeight > bestHeight) {
+					break;
+				}
+				for (; height < filterHeight; height++) {
+					addUnfilteredCandidate(candidates, height);
+				}
+				byte[] hash = Arrays.copyOfRange(content, 0, Sha256Hash.LENGTH);
+				GolombFilter filter = new GolombFilter(hash, Arrays.copyOfRange(content, Sha256Hash.LENGTH, content.length));
+				if(filter.matchAny(hash160s)) {
+					candidates.add(hash);
+				}
+				progress.setFilteredHeight(height);
+				height++;
+			}
+		} finally {
+			cursor.close();
+		}
+		for (; height <= bestHeight && !progress.isCancelled(); height++) {
+			addUnfilteredCandidate(candidates, height);
+		}
+		progress.setCandidateBlocks(candidates.size());
+		return candidates;
+	}
+	
+	private void addUnfilteredCandidate(List<byte[]> candidates, long height) {
+		BlockHeaderStore header = getHeaderByHeight(height);
+		if(header != null) {
+			candidates.add(header.getBlockHeader().getHash().getBytes());
+		}
+	}
+	
+	/*
+	 * 找出区块里与账户有关的交易，引用的上一笔交易从已找到的交易里按hash直接取
+	 */
+	private void collectMineTransactions(Block block, List<TransactionStore> mineTxs, Map<Sha256Hash, TransactionStore> mineTxMap) {
+		for (Transaction tx : block.getTxs()) {
+			TransactionStore mineTx = null;
+			//普通交易
+			if(tx.isPaymentTransaction()) {
+				//获取转入交易转入的多少钱
+				List<TransactionOutput> outputs = tx.getOutputs();
 				
-				Block block = nextBlockStore.getBlock();
+				if(outputs == null) {
+					continue;
+				}
+				//过滤掉coinbase里的0交易
+				if(tx.getType() == Definition.TYPE_COINBASE && outputs.get(0).getValue() == 0l) {
+					continue;
+				}
 				
-				List<Transaction> txs = block.getTxs();
+				//交易状态
+				byte[] status = new byte[outputs.size()];
+				//交易是否跟我有关
+				boolean isMineTx = false;
 				
-				for (Transaction tx : txs) {
+				for (int i = 0; i < outputs.size(); i++) {
+					Output output = outputs.get(i);
+					Script script = output.getScript();
 					
-					//普通交易
-					if(tx.isPaymentTransaction()) {
-						//获取转入交易转入的多少钱
-						List<TransactionOutput> outputs = tx.getOutputs();
-						
-						if(outputs == null) {
-							continue;
-						}
-						//过滤掉coinbase里的0交易
-						if(tx.getType() == Definition.TYPE_COINBASE && outputs.get(0).getValue() == 0l) {
+					if(script.isSentToAddress() && accountFilter.contains(script.getChunks().get(2).data)) {
+						status[i] = TransactionStore.STATUS_UNUSE;
+						isMineTx = true;
+						break;
+					}
+				}
+				List<TransactionInput> inputs = tx.getInputs();
+				if(inputs != null && inputs.size() > 0) {
+					for (TransactionInput input : inputs) {
+						if(input.getFroms() == null || input.getFroms().size() == 0) {
 							continue;
 						}
-						
-						//交易状态
-						byte[] status = new byte[outputs.size()];
-						//交易是否跟我有关
-						boolean isMineTx = false;
-						
-						for (int i = 0; i < outputs.size(); i++) {
-							Output output = outputs.get(i);
+						for (TransactionOutput from : input.getFroms()) {
+							TransactionStore transactionStore = mineTxMap.get(from.getParent().getHash());
+							if(transactionStore == null) {
+								continue;
+							}
+							//对上一交易的引用以及索引值
+							TransactionOutput output = transactionStore.getTransaction().getOutput(from.getIndex());
 							Script script = output.getScript();
-							
 							if(script.isSentToAddress() && accountFilter.contains(script.getChunks().get(2).data)) {
-								status[i] = TransactionStore.STATUS_UNUSE;
+								transactionStore.getStatus()[from.getIndex()] = TransactionStore.STATUS_USED;
 								isMineTx = true;
-								break;
 							}
 						}
-						List<TransactionInput> inputs = tx.getInputs();
-						if(inputs != null && inputs.size() > 0) {
-							for (TransactionInput input : inputs) {
-								if(input.getFroms() == null || input.getFroms().size() == 0) {
-									continue;
-								}
-								for (TransactionOutput from : input.getFroms()) {
-									Sha256Hash fromTxHash = from.getParent().getHash();
-									
-									for (TransactionStore transactionStore : mineTxs) {
-										Transaction mineTx = transactionStore.getTransaction();
-										if(mineTx.getHash().equals(fromTxHash)) {
-											//对上一交易的引用以及索引值
-											TransactionOutput output = (TransactionOutput) mineTx.getOutput(from.getIndex());
-											Script script = output.getScript();
-											if(script.isSentToAddress() && accountFilter.contains(script.getChunks().get(2).data)) {
-												transactionStore.getStatus()[from.getIndex()] = TransactionStore.STATUS_USED;
-												isMineTx = true;
-												break;
-											}
-										}
-									}
-								}
-							}
-						}
-						
-						//除单纯的转账交易外，还有可能有业务逻辑附带代币交易的
-						if(!isMineTx && tx.getType() != Definition.TYPE_PAY &&
-								tx.getType() != Definition.TYPE_COINBASE) {
-							isMineTx = checkTxIsMine(tx);
-						}
-						
-						if(isMineTx) {
-							mineTxs.add(new TransactionStore(network, tx, block.getHeight(), status));
-						}
-					} else {
-						boolean isMine = checkTxIsMine(tx);
-						if(isMine) {
-							mineTxs.add(new TransactionStore(network, tx, block.getHeight(), new byte[]{}));
-						}
 					}
 				}
-				nextHash = nextBlockStore.getNextHash();
+				
+				//除单纯的转账交易外，还有可能有业务逻辑附带代币交易的
+				if(!isMineTx && tx.getType() != Definition.TYPE_PAY &&
+						tx.getType() != Definition.TYPE_COINBASE) {
+					isMineTx = checkTxIsMine(tx);
+				}
+				
+				if(isMineTx) {
+					mineTx = new TransactionStore(network, tx, block.getHeight(), status);
+				}
+			} else if(checkTxIsMine(tx)) {
+				mineTx = new TransactionStore(network, tx, block.getHeight(), new byte[]{});
+			}
+			if(mineTx != null) {
+				mineTxs.add(mineTx);
+				mineTxMap.put(tx.getHash(), mineTx);
 			}
-			
-			return mineTxs;
-		} finally {
-			blockLock.unlock();
 		}
 	}
 
@@ -1259,19 +1863,63 @@ public class BlockStoreProvider extends BaseStoreProvider {
 	 * @return BlockHeader
 	 */
 	public BlockHeader getBlockHeaderByperiodStartTime(long periodStartTime) {
-		BlockHeaderStore bestBlockHeaderStore = getBestBlockHeader();
-		
-		while(bestBlockHeaderStore != null) {
-			BlockHeader bestBlockHeader = bestBlockHeaderStore.getBlockHeader();
-			if(bestBlockHeader.getPreHash().equals(Sha256Hash.ZERO_HASH) || bestBlockHeader.getPeriodStartTime() == periodStartTime) {
-				return bestBlockHeader;
-			} else {
-				bestBlockHeaderStore = getHeader(bestBlockHeader.getPreHash().getBytes());
+		//这一轮的最后一个块，主链上没有这一轮时返回创世块
+		PeriodIndex.Period period = periodIndex.get(periodStartTime);
+		BlockHeaderStore blockHeaderStore = getHeaderByHeight(period == null ? 0l : period.getLastHeight());
+		if(blockHeaderStore == null) {
+			return null;
+		}
+		return blockHeaderStore.getBlockHeader();
+	}
+	
+	/**
+	 * 获取某一轮共识在主链上的高度范围
+	 * @param periodStartTime
+	 * @return Period 主链上没有这一轮时返回null
+	 */
+	public PeriodIndex.Period getPeriod(long periodStartTime) {
+		return periodIndex.get(periodStartTime);
+	}
+	
+	/**
+	 * 获取某一轮开始时的共识成员列表，未排序
+	 * @param periodStartTime
+	 * @return List<ConsensusAccount> 共识成员日志没有覆盖这一轮时返回null
+	 */
+	public List<ConsensusAccount> getConsensusMembers(long periodStartTime) {
+		return consensusJournal.getMembers(periodStartTime, periodIndex);
+	}
+	
+	/*
+	 * 交易引起的共识成员变动，与共识无关的交易返回null
+	 */
+	private ConsensusJournal.Event getConsensusEvent(Transaction tx) {
+		if(tx.getType() == Definition.TYPE_REG_CONSENSUS) {
+			RegConsensusTransaction regTx = (RegConsensusTransaction) tx;
+			return new ConsensusJournal.Event(ConsensusJournal.TYPE_JOIN, regTx.getPackager(), regTx.getHash160());
+		} else if(tx.getType() == Definition.TYPE_REM_CONSENSUS || tx.getType() == Definition.TYPE_VIOLATION) {
+			//注册共识的交易
+			Sha256Hash regTxHash = tx.getInput(0).getFroms().get(0).getParent().getHash();
+			TransactionStore regTxStore = getTransaction(regTxHash.getBytes());
+			if(regTxStore == null || !(regTxStore.getTransaction() instanceof RegConsensusTransaction)) {
+				return null;
 			}
+			RegConsensusTransaction regTx = (RegConsensusTransaction) regTxStore.getTransaction();
+			return new ConsensusJournal.Event(ConsensusJournal.TYPE_LEAVE, regTx.getPackager(), regTx.getHash160());
 		}
 		return null;
 	}
 	
+	/**
+	 * 获取某一轮之前的若干轮共识，最近的在前面
+	 * @param periodStartTime
+	 * @param count
+	 * @return List<Period>
+	 */
+	public List<PeriodIndex.Period> getPreviousPeriods(long periodStartTime, int count) {
+		return periodIndex.getPrevious(periodStartTime, count);
+	}
+	
 	private boolean reseting = false;
 	/**
 	 * 重建数据
@@ -1340,6 +1988,7 @@ public class BlockStoreProvider extends BaseStoreProvider {
 				byte[] bestBlockHashBytes = newBestBlockStore.getBlock().getHash().getBytes();
 				db.put(bestBlockKey, bestBlockHashBytes);
 				bestHashCacher = bestBlockHashBytes;
+				initPeriodIndex();
 			}
 			
 			for (Long height : badBlock) {
@@ -1386,7 +2035,10 @@ public class BlockStoreProvider extends BaseStoreProvider {
 				for (int i = 0; i < block.getTxCount(); i++) {
 					Transaction tx = block.getTxs().get(i);
 					try {
-						saveChainstate(nextBlockStore.getBlock(), new TransactionStore(network,  tx, block.getHeight(), null));
+						TransactionStore txs = new TransactionStore(network,  tx, block.getHeight(), null);
+						saveChainstate(nextBlockStore.getBlock(), txs);
+						//交易是否与我有关
+						checkIsMineAndUpdate(txs);
 					} catch (IOException e) {
 						e.printStackTrace();
 					}
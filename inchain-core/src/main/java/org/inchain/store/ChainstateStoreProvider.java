@@ -1,5 +1,6 @@
 package org.inchain.store;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -8,6 +9,8 @@ import java.util.Map.Entry;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import javax.annotation.PostConstruct;
+
 import org.inchain.Configure;
 import org.inchain.account.AccountBody;
 import org.inchain.account.Address;
@@ -36,6 +39,28 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	private Lock revokeLock  = new ReentrantLock();
 	private Lock assetsLock = new ReentrantLock();
 	
+	//子账户的单条记录，子账户地址 + 添加交易
+	private static final int SUB_ACCOUNT_RECORD_LENGTH = Address.HASH_LENGTH + Sha256Hash.LENGTH;
+	//防伪码流转的单条记录，添加人 + 交易
+	private static final int CIRCULATION_RECORD_LENGTH = Address.LENGTH + Sha256Hash.LENGTH;
+	//防伪码转让的单条记录，接收人 + 交易
+	private static final int TRANSFER_RECORD_LENGTH = Address.HASH_LENGTH + Sha256Hash.LENGTH;
+	//旧版本的列表记录已转换的标记
+	private static final byte[] MULTI_VALUE_INDEX_MARKER = "multi_value_index".getBytes();
+	
+	//认证账户 -> 子账户，id为子账户地址
+	private MultiValueIndex subAccountIndex;
+	//防伪码 -> 流转信息，id为交易hash
+	private MultiValueIndex circulationIndex;
+	//防伪码 + 添加人 -> 流转信息，只用于计数
+	private MultiValueIndex circulationAdderIndex;
+	//防伪码 -> 转让记录，id为交易hash
+	private MultiValueIndex transferIndex;
+	//资产code的hash -> 发行交易 + 金额，id为交易hash
+	private MultiValueIndex assetsIssueIndex;
+	//账户 -> 持有的资产，id为资产code的hash
+	private MultiValueIndex accountAssetsIndex;
+	
 	@Autowired
 	private BlockStoreProvider blockStoreProvider;
 	@Autowired
@@ -51,6 +76,18 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	protected ChainstateStoreProvider(String dir, long leveldbReadCache,
 			int leveldbWriteCache) {
 		super(dir, leveldbReadCache, leveldbWriteCache);
+		
+		subAccountIndex = new MultiValueIndex(db, Keyspace.SUB_ACCOUNTS);
+		circulationIndex = new MultiValueIndex(db, Keyspace.CIRCULATIONS);
+		circulationAdderIndex = new MultiValueIndex(db, Keyspace.CIRCULATION_ADDERS);
+		transferIndex = new MultiValueIndex(db, Keyspace.ANTIFAKE_TRANSFERS);
+		assetsIssueIndex = new MultiValueIndex(db, Keyspace.ASSETS_ISSUES);
+		accountAssetsIndex = new MultiValueIndex(db, Keyspace.ACCOUNT_ASSETS);
+	}
+	
+	@PostConstruct
+	public void init() {
+		migrateLegacyLists();
 	}
 
 	@Override
@@ -127,20 +164,8 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return boolean
 	 */
 	public boolean addSubAccount(RelevanceSubAccountTransaction relevancSubAccountTx) {
-		byte[] subAccountKey = new byte[22];
-		subAccountKey[0] = 0;
-		subAccountKey[1] = 1;
-		System.arraycopy(relevancSubAccountTx.getHash160(), 0, subAccountKey, 2, Address.LENGTH);
-		
-		byte[] subAccounts = getBytes(subAccountKey);
-		if(subAccounts == null) {
-			subAccounts = new byte[0];
-		}
-		byte[] newSubAccounts = new byte[subAccounts.length + Address.HASH_LENGTH + Sha256Hash.LENGTH];
-		System.arraycopy(subAccounts, 0, newSubAccounts, 0, subAccounts.length);
-		System.arraycopy(relevancSubAccountTx.getRelevanceHashs(), 0, newSubAccounts, subAccounts.length, Address.HASH_LENGTH);
-		System.arraycopy(relevancSubAccountTx.getHash().getBytes(), 0, newSubAccounts, subAccounts.length + Address.HASH_LENGTH, Sha256Hash.LENGTH);
-		put(subAccountKey, newSubAccounts);
+		byte[] relevanceHashs = relevancSubAccountTx.getRelevanceHashs();
+		subAccountIndex.put(relevancSubAccountTx.getHash160(), relevanceHashs, concat(relevanceHashs, relevancSubAccountTx.getHash().getBytes()));
 		return true;
 	}
 	
@@ -150,30 +175,7 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return boolean
 	 */
 	public boolean revokedAddSubAccount(RelevanceSubAccountTransaction relevancSubAccountTx) {
-		byte[] subAccountKey = new byte[22];
-		subAccountKey[0] = 0;
-		subAccountKey[1] = 1;
-		System.arraycopy(relevancSubAccountTx.getHash160(), 0, subAccountKey, 2, Address.LENGTH);
-		
-		byte[] subAccounts = getBytes(subAccountKey);
-		
-		byte[] newSubAccounts = new byte[subAccounts.length - (Address.HASH_LENGTH + Sha256Hash.LENGTH)];
-		
-		//找出位置在哪里
-		//判断在列表里面才更新，否则就被清空了
-		for (int j = 0; j < subAccounts.length; j += (Address.HASH_LENGTH + Sha256Hash.LENGTH)) {
-			byte[] addressHashsTemp = Arrays.copyOfRange(subAccounts, j, j + Address.HASH_LENGTH);
-			if(Arrays.equals(addressHashsTemp, relevancSubAccountTx.getRelevanceHashs())) {
-				System.arraycopy(subAccounts, 0, newSubAccounts, 0, j);
-				int newIndex = j + Address.HASH_LENGTH + Sha256Hash.LENGTH;
-				if(newIndex < subAccounts.length) {
-					System.arraycopy(subAccounts, newIndex, newSubAccounts, j, subAccounts.length - newIndex);
-				}
-				put(subAccountKey, newSubAccounts);
-				return true;
-			}
-		}
-		return false;
+		return removeSubAccount(relevancSubAccountTx.getHash160(), relevancSubAccountTx.getRelevanceHashs(), relevancSubAccountTx.getHash());
 	}
 	
 	/**
@@ -182,31 +184,19 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return boolean
 	 */
 	public boolean removeSubAccount(RemoveSubAccountTransaction removeSubAccountTx) {
-		byte[] subAccountKey = new byte[22];
-		subAccountKey[0] = 0;
-		subAccountKey[1] = 1;
-		System.arraycopy(removeSubAccountTx.getHash160(), 0, subAccountKey, 2, Address.LENGTH);
-		
-		byte[] subAccounts = getBytes(subAccountKey);
-		
-		byte[] newSubAccounts = new byte[subAccounts.length - (Address.HASH_LENGTH + Sha256Hash.LENGTH)];
-		
-		//找出位置在哪里
-		//判断在列表里面才更新，否则就被清空了
-		for (int j = 0; j < subAccounts.length; j += (Address.HASH_LENGTH + Sha256Hash.LENGTH)) {
-			byte[] addressHashsTemp = Arrays.copyOfRange(subAccounts, j, j + Address.HASH_LENGTH);
-			byte[] txhash = Arrays.copyOfRange(subAccounts, j + Address.HASH_LENGTH, j + Address.HASH_LENGTH + Sha256Hash.LENGTH);
-			if(Arrays.equals(addressHashsTemp, removeSubAccountTx.getRelevanceHashs()) && Arrays.equals(txhash, removeSubAccountTx.getTxhash().getBytes())) {
-				System.arraycopy(subAccounts, 0, newSubAccounts, 0, j);
-				int newIndex = j + Address.HASH_LENGTH + Sha256Hash.LENGTH;
-				if(newIndex < subAccounts.length) {
-					System.arraycopy(subAccounts, newIndex, newSubAccounts, j, subAccounts.length - newIndex);
-				}
-				put(subAccountKey, newSubAccounts);
-				return true;
-			}
+		return removeSubAccount(removeSubAccountTx.getHash160(), removeSubAccountTx.getRelevanceHashs(), removeSubAccountTx.getTxhash());
+	}
+	
+	/*
+	 * 删除子账户，只有添加该子账户的交易一致时才删除
+	 */
+	private boolean removeSubAccount(byte[] certHash160, byte[] relevanceHashs, Sha256Hash txHash) {
+		byte[] record = subAccountIndex.get(certHash160, relevanceHashs);
+		if(record == null || !Arrays.equals(Arrays.copyOfRange(record, Address.HASH_LENGTH, SUB_ACCOUNT_RECORD_LENGTH), txHash.getBytes())) {
+			return false;
 		}
-		return false;
+		subAccountIndex.remove(certHash160, relevanceHashs);
+		return true;
 	}
 	
 	/**
@@ -215,20 +205,8 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return boolean
 	 */
 	public boolean revokedRemoveSubAccount(RemoveSubAccountTransaction removeSubAccountTx) {
-		byte[] subAccountKey = new byte[22];
-		subAccountKey[0] = 0;
-		subAccountKey[1] = 1;
-		System.arraycopy(removeSubAccountTx.getHash160(), 0, subAccountKey, 2, Address.LENGTH);
-		
-		byte[] subAccounts = getBytes(subAccountKey);
-		if(subAccounts == null) {
-			subAccounts = new byte[0];
-		}
-		byte[] newSubAccounts = new byte[subAccounts.length + Address.HASH_LENGTH + Sha256Hash.LENGTH];
-		System.arraycopy(subAccounts, 0, newSubAccounts, 0, subAccounts.length);
-		System.arraycopy(removeSubAccountTx.getRelevanceHashs(), 0, newSubAccounts, subAccounts.length, Address.HASH_LENGTH);
-		System.arraycopy(removeSubAccountTx.getTxhash().getBytes(), 0, newSubAccounts, subAccounts.length + Address.HASH_LENGTH, Sha256Hash.LENGTH);
-		put(subAccountKey, newSubAccounts);
+		byte[] relevanceHashs = removeSubAccountTx.getRelevanceHashs();
+		subAccountIndex.put(removeSubAccountTx.getHash160(), relevanceHashs, concat(relevanceHashs, removeSubAccountTx.getTxhash().getBytes()));
 		return true;
 	}
 	
@@ -240,20 +218,10 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	public List<RelevanceSubAccountTransaction> getSubAccountList(byte[] certHash160) {
 		List<RelevanceSubAccountTransaction> list = new ArrayList<RelevanceSubAccountTransaction>();
 		
-		byte[] subAccountKey = new byte[22];
-		subAccountKey[0] = 0;
-		subAccountKey[1] = 1;
-		System.arraycopy(certHash160, 0, subAccountKey, 2, Address.LENGTH);
-		
-		byte[] subAccounts = getBytes(subAccountKey);
-		if(subAccounts == null || subAccounts.length == 0) {
-			return list;
-		}
-		
-		for (int j = 0; j < subAccounts.length; j += (Address.HASH_LENGTH + Sha256Hash.LENGTH)) {
-			Sha256Hash txHash = Sha256Hash.wrap(Arrays.copyOfRange(subAccounts, j + Address.HASH_LENGTH, j + Address.HASH_LENGTH + Sha256Hash.LENGTH));
+		for (byte[] record : subAccountIndex.values(certHash160)) {
+			byte[] txHash = Arrays.copyOfRange(record, Address.HASH_LENGTH, SUB_ACCOUNT_RECORD_LENGTH);
 			
-			TransactionStore txs = blockStoreProvider.getTransaction(txHash.getBytes());
+			TransactionStore txs = blockStoreProvider.getTransaction(txHash);
 			if(txs == null) {
 				continue;
 			}
@@ -269,16 +237,7 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return int
 	 */
 	public int getSubAccountCount(byte[] certHash160) {
-		byte[] subAccountKey = new byte[22];
-		subAccountKey[0] = 0;
-		subAccountKey[1] = 1;
-		System.arraycopy(certHash160, 0, subAccountKey, 2, Address.LENGTH);
-		
-		byte[] subAccounts = getBytes(subAccountKey);
-		if(subAccounts == null || subAccounts.length == 0) {
-			return 0;
-		}
-		return (int)(subAccounts.length / (Address.HASH_LENGTH + Sha256Hash.LENGTH));
+		return (int) subAccountIndex.count(certHash160);
 	}
 	
 	/**
@@ -288,22 +247,11 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return Sha256Hash 返回商家添加子账户的交易id，有可能返回null
 	 */
 	public Sha256Hash checkIsSubAccount(byte[] certHash160, byte[] addressHashs) {
-		byte[] subAccountKey = new byte[22];
-		subAccountKey[0] = 0;
-		subAccountKey[1] = 1;
-		System.arraycopy(certHash160, 0, subAccountKey, 2, Address.LENGTH);
-		
-		byte[] subAccounts = getBytes(subAccountKey);
-		if(subAccounts == null || subAccounts.length == 0) {
+		byte[] record = subAccountIndex.get(certHash160, addressHashs);
+		if(record == null) {
 			return null;
 		}
-		for (int j = 0; j < subAccounts.length; j += (Address.HASH_LENGTH + Sha256Hash.LENGTH)) {
-			byte[] addressHashsTemp = Arrays.copyOfRange(subAccounts, j, j + Address.HASH_LENGTH);
-			if(Arrays.equals(addressHashsTemp, addressHashs)) {
-				return Sha256Hash.wrap(Arrays.copyOfRange(subAccounts, j + Address.HASH_LENGTH, j + Address.HASH_LENGTH + Sha256Hash.LENGTH));
-			}
-		}
-		return null;
+		return Sha256Hash.wrap(Arrays.copyOfRange(record, Address.HASH_LENGTH, SUB_ACCOUNT_RECORD_LENGTH));
 	}
 	
 	/**
@@ -429,20 +377,8 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @param txHash
 	 */
 	public void addCirculation(byte[] antifakeCode, byte[] hash160, Sha256Hash txHash) {
-		byte[] circulationKey = new byte[22];
-		circulationKey[0] = 0;
-		circulationKey[1] = 1;
-		System.arraycopy(antifakeCode, 0, circulationKey, 2, Address.LENGTH);
-		
-		byte[] circulations = getBytes(circulationKey);
-		if(circulations == null) {
-			circulations = new byte[0];
-		}
-		byte[] newCirculations = new byte[circulations.length +  Address.LENGTH + Sha256Hash.LENGTH];
-		System.arraycopy(circulations, 0, newCirculations, 0, circulations.length);
-		System.arraycopy(hash160, 0, newCirculations, circulations.length, Address.LENGTH);
-		System.arraycopy(txHash.getBytes(), 0, newCirculations, circulations.length + Address.LENGTH, Sha256Hash.LENGTH);
-		put(circulationKey, newCirculations);
+		circulationIndex.put(antifakeCode, txHash.getBytes(), concat(hash160, txHash.getBytes()));
+		circulationAdderIndex.put(concat(antifakeCode, hash160), txHash.getBytes(), txHash.getBytes());
 	}
 	
 	/**
@@ -452,31 +388,8 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @param txHash
 	 */
 	public void revokedAddCirculation(byte[] antifakeCode, byte[] hash160, Sha256Hash txHash) {
-		byte[] circulationKey = new byte[22];
-		circulationKey[0] = 0;
-		circulationKey[1] = 1;
-		System.arraycopy(antifakeCode, 0, circulationKey, 2, Address.LENGTH);
-		
-		byte[] circulations = getBytes(circulationKey);
-		if(circulations == null) {
-			circulations = new byte[0];
-		}
-		byte[] newCirculations = new byte[circulations.length - (Address.LENGTH + Sha256Hash.LENGTH)];
-		
-		//找出位置在哪里
-		//判断在列表里面才更新，否则就被清空了
-		for (int j = 0; j < circulations.length; j += (Address.LENGTH + Sha256Hash.LENGTH)) {
-			byte[] addressHashsTemp = Arrays.copyOfRange(circulations, j, j + Address.LENGTH);
-			byte[] txHashByte = Arrays.copyOfRange(circulations, j + Address.LENGTH, j + Address.LENGTH + Sha256Hash.LENGTH);
-			if(Arrays.equals(addressHashsTemp, hash160) && Arrays.equals(txHash.getBytes(), txHashByte)) {
-				System.arraycopy(circulations, 0, newCirculations, 0, j);
-				int newIndex = j + Address.LENGTH + Sha256Hash.LENGTH;
-				if(newIndex < circulations.length) {
-					System.arraycopy(circulations, newIndex, newCirculations, j, circulations.length - newIndex);
-				}
-				put(circulationKey, circulations);
-				return;
-			}
+		if(circulationIndex.remove(antifakeCode, txHash.getBytes()) != null) {
+			circulationAdderIndex.remove(concat(antifakeCode, hash160), txHash.getBytes());
 		}
 	}
 
@@ -487,25 +400,7 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return int
 	 */
 	public int getCirculationCount(byte[] antifakeCode, byte[] hash160) {
-		byte[] circulationKey = new byte[22];
-		circulationKey[0] = 0;
-		circulationKey[1] = 1;
-		System.arraycopy(antifakeCode, 0, circulationKey, 2, Address.LENGTH);
-		
-		byte[] circulations = getBytes(circulationKey);
-		
-		if(circulations == null) {
-			return 0;
-		}
-		
-		int count = 0;
-		for (int j = 0; j < circulations.length; j += (Address.LENGTH + Sha256Hash.LENGTH)) {
-			byte[] addressHash160 = Arrays.copyOfRange(circulations, j, j + Address.LENGTH);
-			if(Arrays.equals(addressHash160, hash160)) {
-				count++;
-			}
-		}
-		return count;
+		return (int) circulationAdderIndex.count(concat(antifakeCode, hash160));
 	}
 	
 	/**
@@ -514,18 +409,7 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return int
 	 */
 	public int getCirculationCount(byte[] antifakeCode) {
-		byte[] circulationKey = new byte[22];
-		circulationKey[0] = 0;
-		circulationKey[1] = 1;
-		System.arraycopy(antifakeCode, 0, circulationKey, 2, Address.LENGTH);
-		
-		byte[] circulations = getBytes(circulationKey);
-		
-		if(circulations == null) {
-			return 0;
-		}
-		
-		return circulations.length / (Address.LENGTH + Sha256Hash.LENGTH);
+		return (int) circulationIndex.count(antifakeCode);
 	}
 	
 	/**
@@ -536,21 +420,10 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	public List<CirculationTransaction> getCirculationList(byte[] antifakeCode) {
 		List<CirculationTransaction> list = new ArrayList<CirculationTransaction>();
 		
-		byte[] circulationKey = new byte[22];
-		circulationKey[0] = 0;
-		circulationKey[1] = 1;
-		System.arraycopy(antifakeCode, 0, circulationKey, 2, Address.LENGTH);
-		
-		byte[] circulations = getBytes(circulationKey);
-		
-		if(circulations == null) {
-			return list;
-		}
-		
-		for (int j = 0; j < circulations.length; j += (Address.LENGTH + Sha256Hash.LENGTH)) {
-			Sha256Hash txHash = Sha256Hash.wrap(Arrays.copyOfRange(circulations, j + Address.LENGTH, j + Address.LENGTH + Sha256Hash.LENGTH));
+		for (byte[] record : circulationIndex.values(antifakeCode)) {
+			byte[] txHash = Arrays.copyOfRange(record, Address.LENGTH, CIRCULATION_RECORD_LENGTH);
 			
-			TransactionStore txs = blockStoreProvider.getTransaction(txHash.getBytes());
+			TransactionStore txs = blockStoreProvider.getTransaction(txHash);
 			if(txs == null) {
 				continue;
 			}
@@ -568,26 +441,12 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @param txHash
 	 */
 	public void antifakeTransfer(byte[] antifakeCode, byte[] hash160, byte[] receiveHashs, Sha256Hash txHash) {
-		byte[] transferKey = new byte[22];
-		transferKey[0] = 0;
-		transferKey[1] = 2;
-		System.arraycopy(antifakeCode, 0, transferKey, 2, Address.LENGTH);
-		
-		byte[] transfers = getBytes(transferKey);
-		if(transfers == null) {
-			transfers = new byte[0];
-		}
-		byte[] newTransfers = new byte[transfers.length +  Address.HASH_LENGTH + Sha256Hash.LENGTH];
-		System.arraycopy(transfers, 0, newTransfers, 0, transfers.length);
-		System.arraycopy(receiveHashs, 0, newTransfers, transfers.length, Address.HASH_LENGTH);
-		System.arraycopy(txHash.getBytes(), 0, newTransfers, transfers.length + Address.HASH_LENGTH, Sha256Hash.LENGTH);
+		transferIndex.put(antifakeCode, txHash.getBytes(), concat(receiveHashs, txHash.getBytes()));
 		
 		AccountStore accountInfo = getAccountInfo(hash160);
 		//扣除信用
 		accountInfo.setCert(accountInfo.getCert() + Configure.TRANSFER_ANTIFAKECODE_SUB_CREDIT);
 		saveAccountInfo(accountInfo);
-				
-		put(transferKey, newTransfers);
 	}
 	
 	/**
@@ -598,36 +457,13 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @param txHash
 	 */
 	public void revokedAntifakeTransfer(byte[] antifakeCode, byte[] hash160, byte[] receiveHashs, Sha256Hash txHash) {
-		byte[] transferKey = new byte[22];
-		transferKey[0] = 0;
-		transferKey[1] = 2;
-		System.arraycopy(antifakeCode, 0, transferKey, 2, Address.LENGTH);
-		
-		byte[] transfers = getBytes(transferKey);
-		if(transfers == null) {
+		if(transferIndex.remove(antifakeCode, txHash.getBytes()) == null) {
 			return;
 		}
-		byte[] newTransfers = new byte[transfers.length - (Address.HASH_LENGTH + Sha256Hash.LENGTH)];
-		
-		for (int j = 0; j < transfers.length; j += (Address.HASH_LENGTH + Sha256Hash.LENGTH)) {
-			byte[] addressHashsTemp = Arrays.copyOfRange(transfers, j, j + Address.HASH_LENGTH);
-			byte[] txHashByte = Arrays.copyOfRange(transfers, j + Address.HASH_LENGTH, j + Address.HASH_LENGTH + Sha256Hash.LENGTH);
-			if(Arrays.equals(addressHashsTemp, hash160) && Arrays.equals(txHash.getBytes(), txHashByte)) {
-				System.arraycopy(transfers, 0, newTransfers, 0, j);
-				
-				int newIndex = j + Address.HASH_LENGTH + Sha256Hash.LENGTH;
-				if(newIndex < transfers.length) {
-					System.arraycopy(transfers, j + newIndex, newTransfers, j, transfers.length - newIndex);
-				}
-				put(transferKey, newTransfers);
-				
-				AccountStore accountInfo = getAccountInfo(hash160);
-				//扣除信用
-				accountInfo.setCert(accountInfo.getCert() - Configure.TRANSFER_ANTIFAKECODE_SUB_CREDIT);
-				saveAccountInfo(accountInfo);
-				return;
-			}
-		}
+		AccountStore accountInfo = getAccountInfo(hash160);
+		//退回扣除的信用
+		accountInfo.setCert(accountInfo.getCert() - Configure.TRANSFER_ANTIFAKECODE_SUB_CREDIT);
+		saveAccountInfo(accountInfo);
 	}
 	
 	/**
@@ -636,18 +472,11 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return byte[]
 	 */
 	public byte[] getAntifakeCodeOwner(byte[] antifakeCode) {
-		byte[] transferKey = new byte[22];
-		transferKey[0] = 0;
-		transferKey[1] = 2;
-		System.arraycopy(antifakeCode, 0, transferKey, 2, Address.LENGTH);
-		
-		byte[] transfers = getBytes(transferKey);
-		if(transfers == null || transfers.length == 0) {
+		byte[] record = transferIndex.last(antifakeCode);
+		if(record == null) {
 			return null;
 		}
-		int count = transfers.length / (Address.HASH_LENGTH + Sha256Hash.LENGTH);
-		int index = (count - 1) * (Address.HASH_LENGTH + Sha256Hash.LENGTH);
-		return Arrays.copyOfRange(transfers, index, index + Address.HASH_LENGTH);
+		return Arrays.copyOfRange(record, 0, Address.HASH_LENGTH);
 	}
 	
 	/**
@@ -656,16 +485,7 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return int
 	 */
 	public int getAntifakeCodeTransferCount(byte[] antifakeCode) {
-		byte[] transferKey = new byte[22];
-		transferKey[0] = 0;
-		transferKey[1] = 2;
-		System.arraycopy(antifakeCode, 0, transferKey, 2, Address.LENGTH);
-		
-		byte[] transfers = getBytes(transferKey);
-		if(transfers == null || transfers.length == 0) {
-			return 0;
-		}
-		return transfers.length / (Address.HASH_LENGTH + Sha256Hash.LENGTH);
+		return (int) transferIndex.count(antifakeCode);
 	}
 	
 	/**
@@ -676,21 +496,10 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	public List<AntifakeTransferTransaction> getAntifakeCodeTransferList(byte[] antifakeCode) {
 		List<AntifakeTransferTransaction> list = new ArrayList<AntifakeTransferTransaction>();
 		
-		byte[] transferKey = new byte[22];
-		transferKey[0] = 0;
-		transferKey[1] = 2;
-		System.arraycopy(antifakeCode, 0, transferKey, 2, Address.LENGTH);
-		
-		byte[] transfers = getBytes(transferKey);
-		
-		if(transfers == null) {
-			return list;
-		}
-		
-		for (int j = 0; j < transfers.length; j += (Address.HASH_LENGTH + Sha256Hash.LENGTH)) {
-			Sha256Hash txHash = Sha256Hash.wrap(Arrays.copyOfRange(transfers, j + Address.HASH_LENGTH, j + Address.HASH_LENGTH + Sha256Hash.LENGTH));
+		for (byte[] record : transferIndex.values(antifakeCode)) {
+			byte[] txHash = Arrays.copyOfRange(record, Address.HASH_LENGTH, TRANSFER_RECORD_LENGTH);
 			
-			TransactionStore txs = blockStoreProvider.getTransaction(txHash.getBytes());
+			TransactionStore txs = blockStoreProvider.getTransaction(txHash);
 			if(txs == null) {
 				continue;
 			}
@@ -1169,36 +978,22 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 
 	/**
 	 * 资产发行
-	 * 资产发行后，用所注册的资产的code + 前缀[1],[1]作为key，存储在一个列表里
+	 * 资产发行后，用所注册的资产的code的hash作为所有者，存储在资产发行记录的索引里
 	 * @param assetsIssuedTx
 	 */
 	public void assetsIssued(AssetsIssuedTransaction assetsIssuedTx) {
 		assetsLock.lock();
 		try {
-			//1. 首先找到注册交易，然后通过注册交易的code，生成存储资产发行列表的key
+			//1. 首先找到注册交易，然后通过注册交易的code，生成资产发行记录的所有者
 			TransactionStore txs =  blockStoreProvider.getTransaction(assetsIssuedTx.getAssetsHash().getBytes());
 			AssetsRegisterTransaction assetsRegisterTx = (AssetsRegisterTransaction)txs.getTransaction();
-
-			//资产发行列表的key = [1],[1] + hash256(registerTx.code)
-			byte[] key = new byte[Sha256Hash.LENGTH + 2];
 			byte[] hash256 = Sha256Hash.hash(assetsRegisterTx.getCode());
-			System.arraycopy(Configure.ASSETS_ISSUE_FIRST_KEYS, 0, key, 0, Configure.ASSETS_ISSUE_FIRST_KEYS.length);
-			System.arraycopy(hash256, 0, key, 2, hash256.length);
-
-			//获取已存储的资产发行列表
-			byte[] assetsIssueHash256s = getBytes(key);
-			if(assetsIssueHash256s == null) {
-				assetsIssueHash256s = new byte[0];
-			}
 
-			byte[] newHash256s = new byte[assetsIssueHash256s.length + Sha256Hash.LENGTH];
+			//将新交易存入发行记录，同时记下发行的金额，统计总额时不需要再读取交易
 			byte[] txHash = assetsIssuedTx.getHash().getBytes();
-			//将新交易存入进列表
-			System.arraycopy(assetsIssueHash256s, 0, newHash256s, 0, assetsIssueHash256s.length);
-			System.arraycopy(txHash, 0, newHash256s, assetsIssueHash256s.length, txHash.length);
-			put(key, newHash256s);
+			assetsIssueIndex.put(hash256, txHash, assetsIssueRecord(txHash, assetsIssuedTx.getAmount()));
 
-			//资产发行列表存储后，需要维护接收人的资产账户信息
+			//资产发行记录存储后，需要维护接收人的资产账户信息
 			updateAccountAssets(hash256, assetsIssuedTx.getReceiver(), assetsIssuedTx.getAmount(), 1);
 		}catch (Exception e) {
 			log.error("出错了{}", e.getMessage(), e);
@@ -1215,48 +1010,15 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 		AssetsIssuedTransaction assetsIssuedTx = (AssetsIssuedTransaction)tx;
 		assetsLock.lock();
 		try {
-			//1. 首先找到注册交易，然后通过注册交易的code，生成存储资产发行列表的key
+			//1. 首先找到注册交易，然后通过注册交易的code，生成资产发行记录的所有者
 			TransactionStore txs =  blockStoreProvider.getTransaction(assetsIssuedTx.getAssetsHash().getBytes());
 			AssetsRegisterTransaction assetsRegisterTx = (AssetsRegisterTransaction)txs.getTransaction();
-
-			//资产发行列表的key = [1],[1] + hash256(registerTx.code)
-			byte[] key = new byte[Sha256Hash.LENGTH + 2];
 			byte[] hash256 = Sha256Hash.hash(assetsRegisterTx.getCode());
-			System.arraycopy(Configure.ASSETS_ISSUE_FIRST_KEYS, 0, key, 0, Configure.ASSETS_ISSUE_FIRST_KEYS.length);
-			System.arraycopy(hash256, 0, key, 2, hash256.length);
 
-			//获取已存储的资产发行列表
-			byte[] txHash = assetsIssuedTx.getHash().getBytes();
-			byte[] assetsIssueHash256s = getBytes(key);
-			if(assetsIssueHash256s == null) {
+			//删除该笔资产发行交易
+			if(assetsIssueIndex.remove(hash256, assetsIssuedTx.getHash().getBytes()) == null) {
 				return;
 			}
-			if(assetsIssueHash256s.length == Sha256Hash.LENGTH) {
-				if(Arrays.equals(txHash, assetsIssueHash256s)) {
-					delete(key);
-				}
-			}else {
-				//找到该笔资产发行交易，然后删除
-				for(int j = 0; j < assetsIssueHash256s.length; j++) {
-					byte[] current = new byte[Sha256Hash.LENGTH];
-					System.arraycopy(assetsIssueHash256s, j, current, 0, Sha256Hash.LENGTH);
-					if(Arrays.equals(current, txHash)) {
-						byte [] before = new byte[j];
-						System.arraycopy(assetsIssueHash256s, 0, before, 0, j);
-
-						byte [] end = new byte[assetsIssueHash256s.length - j - Sha256Hash.LENGTH];
-						System.arraycopy(assetsIssueHash256s, j + Sha256Hash.LENGTH, end, 0, end.length);
-
-						//newHash = before + end;
-						byte []newHash = new byte[assetsIssueHash256s.length - Sha256Hash.LENGTH];
-						System.arraycopy(before, 0, newHash, 0, before.length);
-						System.arraycopy(end, 0, newHash, before.length, end.length);
-
-						put(key, newHash);
-						break;
-					}
-				}
-			}
 
 			//从我的资产账户中，清除这笔交易
 			updateAccountAssets(hash256, assetsIssuedTx.getReceiver(), assetsIssuedTx.getAmount(), -1);
@@ -1275,59 +1037,18 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @param symbol 变动的方向  1，-1
 	 */
 	private void updateAccountAssets(byte[] code,  byte[] addressHash, long amount, int symbol) {
-		//资产账户的key 规则为 [1],[1] + recevier
-		byte[] key = new byte[addressHash.length + 2];
-		//固定key的前两位为 [1],[1]
-		System.arraycopy(Configure.ASSETS_ISSUE_FIRST_KEYS, 0, key, 0, Configure.ASSETS_ISSUE_FIRST_KEYS.length);
-		System.arraycopy(addressHash, 0, key, 2, addressHash.length);
-
-		//获取接收人资产账户列表
-		byte[] myAssets = getBytes(key);
-
-		if(myAssets == null && symbol == 1) {
-			//如果资产账户列表为空，直接新增
-			Assets assets = new Assets(code, amount);
-			myAssets = assets.serialize();
-			put(key, myAssets);
-		}else {
-			// 查询是否已存在于资产列表中
-			boolean hasAssets = false;
-			for(int j = 0; j < myAssets.length; j += Assets.CODE_LENGTH + 8) {
-				byte[] current = new byte[Assets.CODE_LENGTH + 8];
-				System.arraycopy(myAssets, j, current, 0, Assets.CODE_LENGTH + 8);
-				Assets assets = new Assets(current);
-
-				//如果存在，则在以前的资产上添加，然后重新保存到列表中
-				if(Arrays.equals(assets.getCode(), code)) {
-					assets.setBalance(assets.getBalance() + symbol * amount);
-
-					byte [] before = new byte[j];
-					System.arraycopy(myAssets, 0, before, 0, j);
-
-					byte [] end = new byte[myAssets.length - j - Assets.CODE_LENGTH - 8 ];
-					System.arraycopy(myAssets, j + Assets.CODE_LENGTH + 8, end, 0, end.length);
-
-					//newAssets = before + assets.serialize() + end;
-					byte [] newAssets = new byte[myAssets.length];
-					System.arraycopy(before, 0, newAssets, 0, before.length);
-					System.arraycopy(assets.serialize(), 0, newAssets, before.length, Assets.CODE_LENGTH + 8);
-					System.arraycopy(end, 0, newAssets, before.length + Assets.CODE_LENGTH + 8, end.length);
-
-					put(key, newAssets);
-					hasAssets = true;
-					break;
-				}
-			}
-			//如果没有则在后面新增
-			if(!hasAssets && symbol == 1) {
-				byte [] newAssets = new byte[myAssets.length + Assets.CODE_LENGTH + 8];
-				System.arraycopy(myAssets, 0, newAssets, 0, myAssets.length);
-
-				Assets assets = new Assets(code, amount);
-				System.arraycopy(assets.serialize(), 0, newAssets, myAssets.length, Assets.CODE_LENGTH + 8);
-				put(key, newAssets);
+		byte[] current = accountAssetsIndex.get(addressHash, code);
+		if(current == null) {
+			//如果资产账户里没有该资产，直接新增
+			if(symbol == 1) {
+				accountAssetsIndex.put(addressHash, code, new Assets(code, amount).serialize());
 			}
+			return;
 		}
+		//如果存在，则在以前的资产上添加
+		Assets assets = new Assets(current);
+		assets.setBalance(assets.getBalance() + symbol * amount);
+		accountAssetsIndex.put(addressHash, code, assets.serialize());
 	}
 
 	/**
@@ -1336,22 +1057,9 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return
 	 */
 	public List<TransactionStore> getAssetsIssueList(byte[] code) {
-		//资产发行列表的key = [1],[1] + hash256(registerTx.code)
-		byte[] key = new byte[Sha256Hash.LENGTH + 2];
-		byte[] hash256 = Sha256Hash.hash(code);
-		//固定key的前两位为 1,1
-		System.arraycopy(Configure.ASSETS_ISSUE_FIRST_KEYS, 0, key, 0, Configure.ASSETS_ISSUE_FIRST_KEYS.length);
-		System.arraycopy(hash256, 0, key, 2, hash256.length);
-
 		List<TransactionStore> list = new ArrayList<>();
-		byte[] assetsRegHash256s = getBytes(key);
-		if(assetsRegHash256s == null) {
-			return list;
-		}
-
-		for (int j = 0; j < assetsRegHash256s.length; j += Sha256Hash.LENGTH) {
-			Sha256Hash txHash = Sha256Hash.wrap(Arrays.copyOfRange(assetsRegHash256s, j, j + Sha256Hash.LENGTH));
-			TransactionStore txs = blockStoreProvider.getTransaction(txHash.getBytes());
+		for (byte[] record : assetsIssueIndex.values(Sha256Hash.hash(code))) {
+			TransactionStore txs = blockStoreProvider.getTransaction(Arrays.copyOfRange(record, 0, Sha256Hash.LENGTH));
 			list.add(txs);
 		}
 		return list;
@@ -1363,21 +1071,9 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return
 	 */
 	public Long getAssetsIssueAmount(byte[] code) {
-		//资产发行列表的key = [1],[1] + hash256(registerTx.code)
-		byte[] key = new byte[Sha256Hash.LENGTH + 2];
-		byte[] hash256 = Sha256Hash.hash(code);
-		//固定key的前两位为 1,1
-		System.arraycopy(Configure.ASSETS_ISSUE_FIRST_KEYS, 0, key, 0, Configure.ASSETS_ISSUE_FIRST_KEYS.length);
-		System.arraycopy(hash256, 0, key, 2, hash256.length);
-		byte[] assetsRegHash256s = getBytes(key);
-		if(assetsRegHash256s == null) {
-			return 0L;
-		}
 		Long amount = 0L;
-		for (int j = 0; j < assetsRegHash256s.length; j += Sha256Hash.LENGTH) {
-			Sha256Hash txHash = Sha256Hash.wrap(Arrays.copyOfRange(assetsRegHash256s, j, j + Sha256Hash.LENGTH));
-			TransactionStore txs = blockStoreProvider.getTransaction(txHash.getBytes());
-			amount += ((AssetsIssuedTransaction)txs.getTransaction()).getAmount();
+		for (byte[] record : assetsIssueIndex.values(Sha256Hash.hash(code))) {
+			amount += Utils.readInt64(record, Sha256Hash.LENGTH);
 		}
 		return amount;
 	}
@@ -1388,22 +1084,9 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return
 	 */
 	public List<Assets> getMyAssetsAccount(byte[] addressHash) {
-		//资产账户的key 规则为 [1],[1] + recevier
-		byte[] key = new byte[addressHash.length + 2];
-		System.arraycopy(Configure.ASSETS_ISSUE_FIRST_KEYS, 0, key, 0, Configure.ASSETS_ISSUE_FIRST_KEYS.length);
-		System.arraycopy(addressHash, 0, key, 2, addressHash.length);
-
-		byte[] myAssets = getBytes(key);
-		if(myAssets == null) {
-			myAssets = new byte[0];
-		}
 		List<Assets> assetsList = new ArrayList<>();
-
-		for(int j = 0; j < myAssets.length; j += Assets.CODE_LENGTH + 8) {
-			byte[] current = new byte[Assets.CODE_LENGTH + 8];
-			System.arraycopy(myAssets, j, current, 0, Assets.CODE_LENGTH + 8);
-			Assets assets = new Assets(current);
-			assetsList.add(assets);
+		for (byte[] record : accountAssetsIndex.values(addressHash)) {
+			assetsList.add(new Assets(record));
 		}
 		return assetsList;
 	}
@@ -1415,17 +1098,11 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 	 * @return
 	 */
 	public Assets getMyAssetsByCode(byte[] addressHash, byte[] code) {
-		List<Assets> assetsList = getMyAssetsAccount(addressHash);
-		if(assetsList == null || assetsList.size() == 0) {
+		byte[] record = accountAssetsIndex.get(addressHash, code);
+		if(record == null) {
 			return null;
 		}
-
-		for(Assets assets : assetsList) {
-			if(Arrays.equals(assets.getCode(), code)) {
-				return assets;
-			}
-		}
-		return null;
+		return new Assets(record);
 	}
 
 	/**
@@ -1497,4 +1174,129 @@ public class ChainstateStoreProvider extends BaseStoreProvider {
 			delete(key);
 		}
 	}
+
+	/**
+	 * 旧版本把子账户、防伪码流转和转让、资产发行和资产账户的列表拼接后存在一个key里，每次追加都要读出整个列表再写回
+	 * 启动时一次性把这些列表转换到多值索引里，并删除旧的key
+	 */
+	private void migrateLegacyLists() {
+		byte[] markerKey = Keyspace.META.key(MULTI_VALUE_INDEX_MARKER);
+		if(db.get(markerKey) != null) {
+			return;
+		}
+		
+		List<Entry<byte[], byte[]>> legacyLists = new ArrayList<Entry<byte[], byte[]>>();
+		DBIterator iterator = db.getSourceDb().iterator();
+		try {
+			//子账户、防伪码流转 [0],[1] + 20个字节，防伪码转让 [0],[2] + 20个字节
+			iterator.seek(new byte[] {0, 1});
+			while(iterator.hasNext()) {
+				Entry<byte[], byte[]> item = iterator.next();
+				byte[] key = item.getKey();
+				if(key.length < 2 || key[0] != 0 || key[1] > 2) {
+					break;
+				}
+				if(key.length == 2 + Address.LENGTH) {
+					legacyLists.add(item);
+				}
+			}
+			//资产发行 [1],[1] + 32个字节，资产账户 [1],[1] + 地址
+			iterator.seek(Configure.ASSETS_ISSUE_FIRST_KEYS);
+			while(iterator.hasNext()) {
+				Entry<byte[], byte[]> item = iterator.next();
+				byte[] key = item.getKey();
+				if(key.length < 2 || key[0] != 1 || key[1] != 1) {
+					break;
+				}
+				if(key.length == 2 + Sha256Hash.LENGTH || key.length == 2 + Address.LENGTH || key.length == 2 + Address.HASH_LENGTH) {
+					legacyLists.add(item);
+				}
+			}
+		} finally {
+			try {
+				iterator.close();
+			} catch (IOException e) {
+				log.warn("关闭迭代器出错", e);
+			}
+		}
+		
+		if(!legacyLists.isEmpty()) {
+			log.info("转换旧版本的列表记录，共 {} 个", legacyLists.size());
+		}
+		long time = System.currentTimeMillis();
+		db.beginBatch();
+		try {
+			for (Entry<byte[], byte[]> item : legacyLists) {
+				migrateLegacyList(item.getKey(), item.getValue());
+				db.delete(item.getKey());
+			}
+			db.put(markerKey, new byte[] {1});
+			db.commitBatch(true);
+		} catch (RuntimeException e) {
+			db.rollbackBatch();
+			throw e;
+		}
+		if(!legacyLists.isEmpty()) {
+			log.info("列表记录转换完成，耗时 {} ms", System.currentTimeMillis() - time);
+		}
+	}
+	
+	private void migrateLegacyList(byte[] key, byte[] value) {
+		byte[] owner = Arrays.copyOfRange(key, 2, key.length);
+		if(key[0] == 0 && key[1] == 1) {
+			if(isLegacySubAccountList(owner, value)) {
+				for (int j = 0; j + SUB_ACCOUNT_RECORD_LENGTH <= value.length; j += SUB_ACCOUNT_RECORD_LENGTH) {
+					byte[] record = Arrays.copyOfRange(value, j, j + SUB_ACCOUNT_RECORD_LENGTH);
+					subAccountIndex.put(owner, Arrays.copyOfRange(record, 0, Address.HASH_LENGTH), record);
+				}
+			} else {
+				for (int j = 0; j + CIRCULATION_RECORD_LENGTH <= value.length; j += CIRCULATION_RECORD_LENGTH) {
+					byte[] hash160 = Arrays.copyOfRange(value, j, j + Address.LENGTH);
+					addCirculation(owner, hash160, Sha256Hash.wrap(Arrays.copyOfRange(value, j + Address.LENGTH, j + CIRCULATION_RECORD_LENGTH)));
+				}
+			}
+		} else if(key[0] == 0 && key[1] == 2) {
+			for (int j = 0; j + TRANSFER_RECORD_LENGTH <= value.length; j += TRANSFER_RECORD_LENGTH) {
+				byte[] record = Arrays.copyOfRange(value, j, j + TRANSFER_RECORD_LENGTH);
+				transferIndex.put(owner, Arrays.copyOfRange(record, Address.HASH_LENGTH, TRANSFER_RECORD_LENGTH), record);
+			}
+		} else if(owner.length == Sha256Hash.LENGTH) {
+			for (int j = 0; j + Sha256Hash.LENGTH <= value.length; j += Sha256Hash.LENGTH) {
+				byte[] txHash = Arrays.copyOfRange(value, j, j + Sha256Hash.LENGTH);
+				TransactionStore txs = blockStoreProvider.getTransaction(txHash);
+				long amount = txs == null ? 0l : ((AssetsIssuedTransaction) txs.getTransaction()).getAmount();
+				assetsIssueIndex.put(owner, txHash, assetsIssueRecord(txHash, amount));
+			}
+		} else {
+			for (int j = 0; j + Assets.CODE_LENGTH + 8 <= value.length; j += Assets.CODE_LENGTH + 8) {
+				byte[] record = Arrays.copyOfRange(value, j, j + Assets.CODE_LENGTH + 8);
+				accountAssetsIndex.put(owner, Arrays.copyOfRange(record, 0, Assets.CODE_LENGTH), record);
+			}
+		}
+	}
+	
+	/*
+	 * 子账户和防伪码流转在旧版本里使用同样的key格式，按单条记录的长度区分，长度都能整除时，认证账户有账户信息，防伪码没有
+	 */
+	private boolean isLegacySubAccountList(byte[] owner, byte[] value) {
+		boolean subAccounts = value.length % SUB_ACCOUNT_RECORD_LENGTH == 0;
+		boolean circulations = value.length % CIRCULATION_RECORD_LENGTH == 0;
+		if(subAccounts && circulations) {
+			return getBytes(owner) != null;
+		}
+		return subAccounts;
+	}
+	
+	private static byte[] assetsIssueRecord(byte[] txHash, long amount) {
+		byte[] record = new byte[Sha256Hash.LENGTH + 8];
+		System.arraycopy(txHash, 0, record, 0, Sha256Hash.LENGTH);
+		Utils.uint64ToByteArrayLE(amount, record, Sha256Hash.LENGTH);
+		return record;
+	}
+	
+	private static byte[] concat(byte[] first, byte[] second) {
+		byte[] result = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, result, first.length, second.length);
+		return result;
+	}
 }
@@ -0,0 +1,262 @@
+package org.inchain.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.inchain.account.Address;
+import org.inchain.consensus.ConsensusAccount;
+import org.inchain.db.Db;
+import org.inchain.utils.Utils;
+
+/**
+ * 共识成员变动日志，按轮次（时段开始时间）记录每一轮里加入和退出共识的成员，并每隔若干轮保存一次该轮开始时的完整成员列表（检查点）
+ * 任意一轮开始时的成员列表 = 不晚于该轮的最近检查点 + 检查点之后各轮的变动，计算量只与变动的数量有关，不需要反序列化区块
+ * 和区块数据存在同一个库里，随区块的保存和回滚一起在批次中写入
+ * @author ln
+ *
+ */
+public class ConsensusJournal {
+
+	//每隔多少轮保存一次检查点
+	public static final int CHECKPOINT_INTERVAL = 20;
+
+	//变动日志的命名空间，key后面跟8个字节的时段开始时间
+	private static final Keyspace EVENTS_KEYSPACE = Keyspace.CONSENSUS_EVENTS;
+	//检查点的命名空间，key后面跟8个字节的时段开始时间
+	private static final Keyspace CHECKPOINT_KEYSPACE = Keyspace.CONSENSUS_CHECKPOINT;
+
+	//加入共识
+	public static final int TYPE_JOIN = 1;
+	//退出共识
+	public static final int TYPE_LEAVE = 2;
+
+	//单条变动的长度，高度 + 类型 + 打包人 + 委托人
+	private static final int EVENT_LENGTH = 8 + 1 + 2 * Address.LENGTH;
+	//检查点里单个成员的长度，打包人 + 委托人
+	private static final int MEMBER_LENGTH = 2 * Address.LENGTH;
+
+	private final Db db;
+
+	//所有检查点的时段开始时间，只是索引，以存储里的为准
+	private final TreeSet<Long> checkpoints = new TreeSet<Long>();
+
+	public ConsensusJournal(Db db) {
+		this.db = db;
+	}
+
+	/**
+	 * 从存储里加载检查点列表
+	 */
+	public void load() {
+		synchronized (checkpoints) {
+			checkpoints.clear();
+			int offset = CHECKPOINT_KEYSPACE.getPrefixLength();
+			Keyspace.Cursor cursor = CHECKPOINT_KEYSPACE.iterator(db);
+			try {
+				while(cursor.hasNext()) {
+					byte[] key = cursor.next().getKey();
+					if(key.length == offset + 8) {
+						checkpoints.add(Utils.readInt64(key, offset));
+					}
+				}
+			} finally {
+				cursor.close();
+			}
+		}
+	}
+
+	/**
+	 * 新的一轮是否需要保存检查点
+	 * @param periodStartTime
+	 * @param periodIndex
+	 * @return boolean
+	 */
+	public boolean needCheckpoint(long periodStartTime, PeriodIndex periodIndex) {
+		Long last;
+		synchronized (checkpoints) {
+			last = checkpoints.floor(periodStartTime);
+		}
+		if(last == null) {
+			return true;
+		}
+		return periodIndex.getRange(last, periodStartTime).size() >= CHECKPOINT_INTERVAL;
+	}
+
+	/**
+	 * 保存某一轮开始时的成员列表
+	 * @param periodStartTime
+	 * @param members
+	 */
+	public void putCheckpoint(long periodStartTime, List<ConsensusAccount> members) {
+		byte[] value = new byte[members.size() * MEMBER_LENGTH];
+		int offset = 0;
+		for (ConsensusAccount member : members) {
+			writeAddress(member.getHash160(), value, offset);
+			writeAddress(member.getCommissioned(), value, offset + Address.LENGTH);
+			offset += MEMBER_LENGTH;
+		}
+		db.put(getKey(CHECKPOINT_KEYSPACE, periodStartTime), value);
+		synchronized (checkpoints) {
+			checkpoints.add(periodStartTime);
+		}
+	}
+
+	/**
+	 * 追加区块里的成员变动，同时清除该高度及之后的旧记录
+	 * @param periodStartTime
+	 * @param height
+	 * @param events
+	 */
+	public void appendEvents(long periodStartTime, long height, List<Event> events) {
+		byte[] key = getKey(EVENTS_KEYSPACE, periodStartTime);
+		byte[] stored = db.get(key);
+		byte[] old = truncateEvents(stored, height);
+		if(events.isEmpty()) {
+			if(old == null && stored != null) {
+				db.delete(key);
+			} else if(old != stored) {
+				db.put(key, old);
+			}
+			return;
+		}
+		int oldLength = old == null ? 0 : old.length;
+		byte[] value = new byte[oldLength + events.size() * EVENT_LENGTH];
+		if(old != null) {
+			System.arraycopy(old, 0, value, 0, oldLength);
+		}
+		int offset = oldLength;
+		for (Event event : events) {
+			Utils.uint64ToByteArrayLE(height, value, offset);
+			value[offset + 8] = (byte) event.type;
+			writeAddress(event.packager, value, offset + 9);
+			writeAddress(event.commissioned, value, offset + 9 + Address.LENGTH);
+			offset += EVENT_LENGTH;
+		}
+		db.put(key, value);
+	}
+
+	/**
+	 * 回滚区块时调用，删除该高度的成员变动，整轮都被回滚时删除这一轮的记录和检查点
+	 * @param periodStartTime
+	 * @param height
+	 * @param removeRound	这一轮是否已全部回滚
+	 */
+	public void revoke(long periodStartTime, long height, boolean removeRound) {
+		byte[] key = getKey(EVENTS_KEYSPACE, periodStartTime);
+		if(removeRound) {
+			db.delete(key);
+			db.delete(getKey(CHECKPOINT_KEYSPACE, periodStartTime));
+			synchronized (checkpoints) {
+				checkpoints.remove(periodStartTime);
+			}
+			return;
+		}
+		byte[] old = db.get(key);
+		byte[] value = truncateEvents(old, height);
+		if(value == null) {
+			db.delete(key);
+		} else if(value.length != old.length) {
+			db.put(key, value);
+		}
+	}
+
+	/**
+	 * 计算某一轮开始时的成员列表，没有可用的检查点时返回null
+	 * @param periodStartTime
+	 * @param periodIndex
+	 * @return List<ConsensusAccount>
+	 */
+	public List<ConsensusAccount> getMembers(long periodStartTime, PeriodIndex periodIndex) {
+		Long checkpoint;
+		synchronized (checkpoints) {
+			checkpoint = checkpoints.floor(periodStartTime);
+		}
+		if(checkpoint == null) {
+			return null;
+		}
+		byte[] value = db.get(getKey(CHECKPOINT_KEYSPACE, checkpoint));
+		if(value == null) {
+			return null;
+		}
+		List<ConsensusAccount> members = new ArrayList<ConsensusAccount>(value.length / MEMBER_LENGTH);
+		for (int offset = 0; offset + MEMBER_LENGTH <= value.length; offset += MEMBER_LENGTH) {
+			members.add(new ConsensusAccount(Arrays.copyOfRange(value, offset, offset + Address.LENGTH),
+					Arrays.copyOfRange(value, offset + Address.LENGTH, offset + MEMBER_LENGTH)));
+		}
+
+		//依次应用检查点之后、该轮之前各轮的变动
+		for (PeriodIndex.Period period : periodIndex.getRange(checkpoint, periodStartTime - 1)) {
+			byte[] events = db.get(getKey(EVENTS_KEYSPACE, period.getPeriodStartTime()));
+			if(events == null) {
+				continue;
+			}
+			for (int offset = 0; offset + EVENT_LENGTH <= events.length; offset += EVENT_LENGTH) {
+				int type = events[offset + 8];
+				byte[] packager = Arrays.copyOfRange(events, offset + 9, offset + 9 + Address.LENGTH);
+				byte[] commissioned = Arrays.copyOfRange(events, offset + 9 + Address.LENGTH, offset + EVENT_LENGTH);
+				if(type == TYPE_JOIN) {
+					ConsensusAccount member = new ConsensusAccount(packager, commissioned);
+					if(!members.contains(member)) {
+						members.add(member);
+					}
+				} else if(type == TYPE_LEAVE) {
+					Iterator<ConsensusAccount> it = members.iterator();
+					while(it.hasNext()) {
+						if(Arrays.equals(commissioned, it.next().getCommissioned())) {
+							it.remove();
+							break;
+						}
+					}
+				}
+			}
+		}
+		return members;
+	}
+
+	/*
+	 * 去掉该高度及之后的变动，全部去掉时返回null
+	 */
+	private static byte[] truncateEvents(byte[] events, long height) {
+		if(events == null) {
+			return null;
+		}
+		int length = 0;
+		while(length + EVENT_LENGTH <= events.length && Utils.readInt64(events, length) < height) {
+			length += EVENT_LENGTH;
+		}
+		if(length == 0) {
+			return null;
+		}
+		return length == events.length ? events : Arrays.copyOf(events, length);
+	}
+
+	private static void writeAddress(byte[] hash160, byte[] out, int offset) {
+		if(hash160 != null) {
+			System.arraycopy(hash160, 0, out, offset, Math.min(hash160.length, Address.LENGTH));
+		}
+	}
+
+	private static byte[] getKey(Keyspace keyspace, long periodStartTime) {
+		return keyspace.key().int64LE(periodStartTime).build();
+	}
+
+	/**
+	 * 一条成员变动
+	 */
+	public static class Event {
+		private final int type;
+		//打包人
+		private final byte[] packager;
+		//委托人
+		private final byte[] commissioned;
+
+		public Event(int type, byte[] packager, byte[] commissioned) {
+			this.type = type;
+			this.packager = packager;
+			this.commissioned = commissioned;
+		}
+	}
+}
@@ -0,0 +1,309 @@
+package org.inchain.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import org.inchain.db.Db;
+import org.inchain.utils.Utils;
+import org.iq80.leveldb.DBIterator;
+
+/**
+ * 存储的key命名空间，区块库和链状态库共用一套登记
+ * 每一类带前缀的记录在这里登记一个固定的前缀，保证不同记录之间的key不会重复，key的各个字段通过 {@link KeyBuilder} 按固定的编码拼接
+ * 同一命名空间里的记录在库里是连续存放的，按前缀限定范围顺序遍历即可，不需要逐个按key查询；整数用大端编码时按数值顺序排列
+ *
+ * 旧版本直接用32个字节的hash作为key的记录仍然和这些命名空间在同一个库里，所以前缀使用4个可见字符，
+ * 单字节的前缀会和大约1/256的hash key落在同一个范围里
+ * @author ln
+ *
+ */
+public final class Keyspace {
+
+	//共识轮次索引，时段开始时间（小端） -> 首尾高度
+	public static final Keyspace PERIOD = new Keyspace("prd:");
+	//区块在区块文件里的位置，区块hash -> 位置
+	public static final Keyspace BLOCK_FILE = new Keyspace("blf:");
+	//主链区块，高度（大端） -> 区块hash
+	public static final Keyspace BLOCK_HEIGHT = new Keyspace("hgt:");
+	//共识成员变动日志，时段开始时间（小端） -> 变动列表
+	public static final Keyspace CONSENSUS_EVENTS = new Keyspace("csj:");
+	//共识成员检查点，时段开始时间（小端） -> 成员列表
+	public static final Keyspace CONSENSUS_CHECKPOINT = new Keyspace("csc:");
+	//地址交易索引，hash160 + 高度（取负） + 交易序号（取负） -> 交易hash，见 AddressTxIndex
+	public static final Keyspace ADDRESS_TXS = new Keyspace("atx:");
+	//区块地址过滤器，高度（大端） -> 区块hash + 过滤器，见 GolombFilter
+	public static final Keyspace BLOCK_FILTER = new Keyspace("bkf:");
+	
+	//以下为链状态库里的多值索引，见 MultiValueIndex
+	//认证账户的子账户，认证账户 -> 子账户地址 + 添加交易
+	public static final Keyspace SUB_ACCOUNTS = new Keyspace("sac:");
+	//防伪码流转信息，防伪码 -> 添加人 + 交易
+	public static final Keyspace CIRCULATIONS = new Keyspace("cir:");
+	//防伪码流转信息按添加人计数，防伪码 + 添加人 -> 交易
+	public static final Keyspace CIRCULATION_ADDERS = new Keyspace("cia:");
+	//防伪码转让记录，防伪码 -> 接收人 + 交易
+	public static final Keyspace ANTIFAKE_TRANSFERS = new Keyspace("aft:");
+	//资产发行记录，资产代码的hash -> 发行交易
+	public static final Keyspace ASSETS_ISSUES = new Keyspace("ais:");
+	//账户持有的资产，账户 -> 资产代码 + 余额
+	public static final Keyspace ACCOUNT_ASSETS = new Keyspace("aas:");
+	//存储格式的升级标记
+	public static final Keyspace META = new Keyspace("mta:");
+
+	private final byte[] prefix;
+
+	private Keyspace(String name) {
+		this.prefix = name.getBytes(Charset.forName("US-ASCII"));
+	}
+
+	/**
+	 * 前缀长度，也就是key里第一个字段的位置
+	 * @return int
+	 */
+	public int getPrefixLength() {
+		return prefix.length;
+	}
+
+	/**
+	 * 开始拼接一个该命名空间下的key
+	 * @return KeyBuilder
+	 */
+	public KeyBuilder key() {
+		return new KeyBuilder(prefix);
+	}
+
+	/**
+	 * 前缀加上一段内容组成的key
+	 * @param suffix
+	 * @return byte[]
+	 */
+	public byte[] key(byte[] suffix) {
+		return key().bytes(suffix).build();
+	}
+
+	/**
+	 * 前缀加上大端编码的整数组成的key，按数值顺序排列
+	 * @param value
+	 * @return byte[]
+	 */
+	public byte[] key(long value) {
+		return key().int64(value).build();
+	}
+
+	/**
+	 * key是否属于该命名空间
+	 * @param key
+	 * @return boolean
+	 */
+	public boolean contains(byte[] key) {
+		return startsWith(key, prefix);
+	}
+
+	/**
+	 * 遍历整个命名空间
+	 * @param db
+	 * @return Cursor
+	 */
+	public Cursor iterator(Db db) {
+		return new Cursor(db, prefix, prefix);
+	}
+
+	/**
+	 * 遍历以指定key开头的记录，比如同一个所有者下的全部记录
+	 * @param db
+	 * @param rangePrefix	由 {@link #key()} 拼出的key的开头部分
+	 * @return Cursor
+	 */
+	public Cursor iterator(Db db, byte[] rangePrefix) {
+		Utils.checkState(contains(rangePrefix));
+		return new Cursor(db, rangePrefix, rangePrefix);
+	}
+
+	/**
+	 * 在以指定key开头的记录里，从某个key开始往后遍历
+	 * @param db
+	 * @param rangePrefix
+	 * @param from			包含该key
+	 * @return Cursor
+	 */
+	public Cursor iterator(Db db, byte[] rangePrefix, byte[] from) {
+		Utils.checkState(contains(rangePrefix) && startsWith(from, rangePrefix));
+		return new Cursor(db, rangePrefix, from);
+	}
+
+	/**
+	 * 读取key里大端编码的8个字节整数
+	 * @param key
+	 * @param offset
+	 * @return long
+	 */
+	public static long readInt64(byte[] key, int offset) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (key[offset + i] & 0xffl);
+		}
+		return value ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * 读取key里大端编码的4个字节整数
+	 * @param key
+	 * @param offset
+	 * @return int
+	 */
+	public static int readInt32(byte[] key, int offset) {
+		int value = 0;
+		for (int i = 0; i < 4; i++) {
+			value = (value << 8) | (key[offset + i] & 0xff);
+		}
+		return value ^ Integer.MIN_VALUE;
+	}
+
+	private static boolean startsWith(byte[] key, byte[] prefix) {
+		if(key == null || key.length < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if(key[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return new String(prefix, Charset.forName("US-ASCII"));
+	}
+
+	/**
+	 * key拼接器，整数按大端编码并翻转符号位，负数排在正数前面，遍历时按数值顺序返回
+	 */
+	public static final class KeyBuilder {
+		private byte[] bytes;
+		private int length;
+
+		private KeyBuilder(byte[] prefix) {
+			bytes = Arrays.copyOf(prefix, prefix.length + 40);
+			length = prefix.length;
+		}
+
+		public KeyBuilder bytes(byte[] value) {
+			ensure(value.length);
+			System.arraycopy(value, 0, bytes, length, value.length);
+			length += value.length;
+			return this;
+		}
+
+		public KeyBuilder int8(int value) {
+			ensure(1);
+			bytes[length++] = (byte) value;
+			return this;
+		}
+
+		public KeyBuilder int64(long value) {
+			ensure(8);
+			value ^= Long.MIN_VALUE;
+			for (int i = 7; i >= 0; i--) {
+				bytes[length + i] = (byte) value;
+				value >>>= 8;
+			}
+			length += 8;
+			return this;
+		}
+
+		public KeyBuilder int32(int value) {
+			ensure(4);
+			value ^= Integer.MIN_VALUE;
+			for (int i = 3; i >= 0; i--) {
+				bytes[length + i] = (byte) value;
+				value >>>= 8;
+			}
+			length += 4;
+			return this;
+		}
+
+		/**
+		 * 小端编码的8个字节整数，只用于兼容已有的记录，不能按数值顺序遍历
+		 * @param value
+		 * @return KeyBuilder
+		 */
+		public KeyBuilder int64LE(long value) {
+			ensure(8);
+			Utils.uint64ToByteArrayLE(value, bytes, length);
+			length += 8;
+			return this;
+		}
+
+		public byte[] build() {
+			return Arrays.copyOf(bytes, length);
+		}
+
+		private void ensure(int size) {
+			if(length + size > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + size));
+			}
+		}
+	}
+
+	/**
+	 * 限定在某个前缀范围内的顺序遍历，遇到范围外的key即结束
+	 * 只能看到已经提交的数据，当前线程未提交的批量写入不可见，用完必须关闭
+	 */
+	public static final class Cursor implements Iterator<Entry<byte[], byte[]>>, Closeable {
+		private final DBIterator iterator;
+		private final byte[] rangePrefix;
+		private Entry<byte[], byte[]> next;
+
+		private Cursor(Db db, byte[] rangePrefix, byte[] from) {
+			this.rangePrefix = rangePrefix;
+			this.iterator = db.getSourceDb().iterator();
+			iterator.seek(from);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(next != null) {
+				return true;
+			}
+			if(!iterator.hasNext()) {
+				return false;
+			}
+			Entry<byte[], byte[]> item = iterator.peekNext();
+			if(!startsWith(item.getKey(), rangePrefix)) {
+				return false;
+			}
+			next = iterator.next();
+			return true;
+		}
+
+		@Override
+		public Entry<byte[], byte[]> next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Entry<byte[], byte[]> item = next;
+			next = null;
+			return item;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			try {
+				iterator.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
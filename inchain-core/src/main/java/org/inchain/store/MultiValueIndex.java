@@ -0,0 +1,241 @@
+package org.inchain.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.inchain.db.Db;
+import org.inchain.utils.Utils;
+
+/**
+ * 一对多的索引，同一个所有者（比如防伪码、认证账户）下的每一条记录单独存一个key，另有一个计数key
+ * 追加、按id删除、计数都只读写固定的几个key，不再把整个列表读出来拼接后写回；列表按追加顺序存放，可以分页遍历
+ *
+ * key的格式（所有者的长度不固定，所以前面带1个字节的长度）：
+ * 计数	命名空间 + 所有者长度 + 所有者 + 'c'				-> 下一个序号（8） + 记录数（8）
+ * 记录	命名空间 + 所有者长度 + 所有者 + 'e' + 序号（大端）	-> 记录内容
+ * id	命名空间 + 所有者长度 + 所有者 + 'i' + id			-> 序号
+ *
+ * 写入通过 db.put 进行，在批次中调用时随批次一起提交；分页遍历只能看到已经提交的数据
+ * 同一个所有者的写入需要调用方保证不并发
+ * @author ln
+ *
+ */
+public class MultiValueIndex {
+
+	private static final byte COUNTER = 'c';
+	private static final byte ENTRY = 'e';
+	private static final byte ID = 'i';
+
+	private final Db db;
+	private final Keyspace keyspace;
+
+	public MultiValueIndex(Db db, Keyspace keyspace) {
+		this.db = db;
+		this.keyspace = keyspace;
+	}
+
+	/**
+	 * 添加一条记录，id已存在时替换原有的内容，位置不变
+	 * @param owner
+	 * @param id		同一个所有者下唯一
+	 * @param value
+	 * @return boolean	是否为新增
+	 */
+	public boolean put(byte[] owner, byte[] id, byte[] value) {
+		byte[] idKey = key(owner, ID).bytes(id).build();
+		byte[] seqBytes = db.get(idKey);
+		if(seqBytes != null) {
+			db.put(entryKey(owner, Utils.readInt64(seqBytes, 0)), value);
+			return false;
+		}
+		long[] counter = readCounter(owner);
+		long seq = counter[0];
+
+		db.put(entryKey(owner, seq), value);
+		db.put(idKey, int64(seq));
+		writeCounter(owner, seq + 1, counter[1] + 1);
+		return true;
+	}
+
+	/**
+	 * 删除一条记录
+	 * 删除的是最后一条时，下一个序号跟着回退，回滚区块时按相反的顺序删除，序号和添加前保持一致
+	 * @param owner
+	 * @param id
+	 * @return byte[]	被删除的内容，不存在时返回null
+	 */
+	public byte[] remove(byte[] owner, byte[] id) {
+		byte[] idKey = key(owner, ID).bytes(id).build();
+		byte[] seqBytes = db.get(idKey);
+		if(seqBytes == null) {
+			return null;
+		}
+		long seq = Utils.readInt64(seqBytes, 0);
+		byte[] entryKey = entryKey(owner, seq);
+		byte[] value = db.get(entryKey);
+
+		db.delete(entryKey);
+		db.delete(idKey);
+
+		long[] counter = readCounter(owner);
+		long nextSeq = counter[0];
+		long count = counter[1] - 1;
+		if(count <= 0) {
+			db.delete(key(owner, COUNTER).build());
+			return value;
+		}
+		if(seq == nextSeq - 1) {
+			//跳过中间已经删除的位置
+			nextSeq = seq;
+			while(nextSeq > 0 && db.get(entryKey(owner, nextSeq - 1)) == null) {
+				nextSeq--;
+			}
+		}
+		writeCounter(owner, nextSeq, count);
+		return value;
+	}
+
+	/**
+	 * 获取某条记录
+	 * @param owner
+	 * @param id
+	 * @return byte[]	不存在时返回null
+	 */
+	public byte[] get(byte[] owner, byte[] id) {
+		byte[] seqBytes = db.get(key(owner, ID).bytes(id).build());
+		if(seqBytes == null) {
+			return null;
+		}
+		return db.get(entryKey(owner, Utils.readInt64(seqBytes, 0)));
+	}
+
+	/**
+	 * 记录是否存在
+	 * @param owner
+	 * @param id
+	 * @return boolean
+	 */
+	public boolean contains(byte[] owner, byte[] id) {
+		return db.get(key(owner, ID).bytes(id).build()) != null;
+	}
+
+	/**
+	 * 所有者下的记录数
+	 * @param owner
+	 * @return long
+	 */
+	public long count(byte[] owner) {
+		return readCounter(owner)[1];
+	}
+
+	/**
+	 * 最后添加的一条记录
+	 * @param owner
+	 * @return byte[]	没有记录时返回null
+	 */
+	public byte[] last(byte[] owner) {
+		long nextSeq = readCounter(owner)[0];
+		if(nextSeq == 0) {
+			return null;
+		}
+		//删除最后一条时已经回退了序号，这里正常情况下一次即可取到
+		for (long seq = nextSeq - 1; seq >= 0; seq--) {
+			byte[] value = db.get(entryKey(owner, seq));
+			if(value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 按添加顺序获取所有者下的全部记录
+	 * @param owner
+	 * @return List<byte[]>
+	 */
+	public List<byte[]> values(byte[] owner) {
+		List<Item> items = list(owner, 0, Integer.MAX_VALUE);
+		List<byte[]> values = new ArrayList<byte[]>(items.size());
+		for (Item item : items) {
+			values.add(item.getValue());
+		}
+		return values;
+	}
+
+	/**
+	 * 分页获取，下一页从最后一条的序号 + 1 开始
+	 * @param owner
+	 * @param fromSeq	包含该序号
+	 * @param limit
+	 * @return List<Item>
+	 */
+	public List<Item> list(byte[] owner, long fromSeq, int limit) {
+		List<Item> items = new ArrayList<Item>();
+		if(limit <= 0) {
+			return items;
+		}
+		byte[] range = key(owner, ENTRY).build();
+		Keyspace.Cursor cursor = keyspace.iterator(db, range, entryKey(owner, fromSeq));
+		try {
+			while(cursor.hasNext() && items.size() < limit) {
+				Entry<byte[], byte[]> entry = cursor.next();
+				items.add(new Item(Keyspace.readInt64(entry.getKey(), range.length), entry.getValue()));
+			}
+		} finally {
+			cursor.close();
+		}
+		return items;
+	}
+
+	private long[] readCounter(byte[] owner) {
+		byte[] counter = db.get(key(owner, COUNTER).build());
+		if(counter == null) {
+			return new long[] {0l, 0l};
+		}
+		return new long[] {Utils.readInt64(counter, 0), Utils.readInt64(counter, 8)};
+	}
+
+	private void writeCounter(byte[] owner, long nextSeq, long count) {
+		byte[] counter = new byte[16];
+		Utils.uint64ToByteArrayLE(nextSeq, counter, 0);
+		Utils.uint64ToByteArrayLE(count, counter, 8);
+		db.put(key(owner, COUNTER).build(), counter);
+	}
+
+	private byte[] entryKey(byte[] owner, long seq) {
+		return key(owner, ENTRY).int64(seq).build();
+	}
+
+	private Keyspace.KeyBuilder key(byte[] owner, byte type) {
+		Utils.checkState(owner.length < 256);
+		return keyspace.key().int8(owner.length).bytes(owner).int8(type);
+	}
+
+	private static byte[] int64(long value) {
+		byte[] bytes = new byte[8];
+		Utils.uint64ToByteArrayLE(value, bytes, 0);
+		return bytes;
+	}
+
+	/**
+	 * 分页获取时的单条记录
+	 */
+	public static final class Item {
+		private final long seq;
+		private final byte[] value;
+
+		private Item(long seq, byte[] value) {
+			this.seq = seq;
+			this.value = value;
+		}
+
+		public long getSeq() {
+			return seq;
+		}
+
+		public byte[] getValue() {
+			return value;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package org.inchain.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 共识轮次索引，记录每一轮（按时段开始时间区分）在主链上的第一个和最后一个区块的高度
+ * 持久化由 BlockStoreProvider 负责，这里是内存里按开始时间排好序的视图，查询用二分查找
+ * @author ln
+ *
+ */
+public class PeriodIndex {
+
+	private final ReadWriteLock locker = new ReentrantReadWriteLock();
+
+	//按开始时间升序
+	private final List<Period> periods = new ArrayList<Period>();
+
+	/**
+	 * 获取某一轮
+	 * @param periodStartTime
+	 * @return Period
+	 */
+	public Period get(long periodStartTime) {
+		locker.readLock().lock();
+		try {
+			int index = search(periodStartTime);
+			return index < 0 ? null : periods.get(index);
+		} finally {
+			locker.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 获取某一轮之前的若干轮，按时间倒序，最近的在前面
+	 * @param periodStartTime
+	 * @param count
+	 * @return List<Period>
+	 */
+	public List<Period> getPrevious(long periodStartTime, int count) {
+		locker.readLock().lock();
+		try {
+			int index = search(periodStartTime);
+			//没有找到时，index 是插入点的负数减一，前面的都是更早的轮次
+			int end = index < 0 ? -index - 2 : index - 1;
+			List<Period> list = new ArrayList<Period>();
+			for (int i = end; i >= 0 && list.size() < count; i--) {
+				list.add(periods.get(i));
+			}
+			return list;
+		} finally {
+			locker.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 获取开始时间在 [fromTime, toTime] 之间的所有轮次，按时间升序
+	 * @param fromTime
+	 * @param toTime
+	 * @return List<Period>
+	 */
+	public List<Period> getRange(long fromTime, long toTime) {
+		locker.readLock().lock();
+		try {
+			int index = search(fromTime);
+			if(index < 0) {
+				index = -index - 1;
+			}
+			List<Period> list = new ArrayList<Period>();
+			for (int i = index; i < periods.size(); i++) {
+				Period period = periods.get(i);
+				if(period.periodStartTime > toTime) {
+					break;
+				}
+				list.add(period);
+			}
+			return list;
+		} finally {
+			locker.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 新增区块时调用
+	 * @param periodStartTime
+	 * @param height
+	 */
+	public void add(long periodStartTime, long height) {
+		locker.writeLock().lock();
+		try {
+			int index = search(periodStartTime);
+			if(index < 0) {
+				periods.add(-index - 1, new Period(periodStartTime, height, height));
+			} else {
+				Period old = periods.get(index);
+				periods.set(index, new Period(periodStartTime, Math.min(old.firstHeight, height), Math.max(old.lastHeight, height)));
+			}
+		} finally {
+			locker.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 设置某一轮的高度范围，从存储加载时调用
+	 * @param period
+	 */
+	public void put(Period period) {
+		locker.writeLock().lock();
+		try {
+			int index = search(period.periodStartTime);
+			if(index < 0) {
+				periods.add(-index - 1, period);
+			} else {
+				periods.set(index, period);
+			}
+		} finally {
+			locker.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 回滚区块时调用，区块只能从最新的开始回滚，所以该高度就是这一轮的最后一个块
+	 * @param periodStartTime
+	 * @param height
+	 * @return Period 回滚之后的这一轮，整轮都被回滚时返回null
+	 */
+	public Period remove(long periodStartTime, long height) {
+		locker.writeLock().lock();
+		try {
+			int index = search(periodStartTime);
+			if(index < 0) {
+				return null;
+			}
+			Period old = periods.get(index);
+			if(height <= old.firstHeight) {
+				periods.remove(index);
+				return null;
+			}
+			Period period = new Period(periodStartTime, old.firstHeight, Math.min(old.lastHeight, height - 1));
+			periods.set(index, period);
+			return period;
+		} finally {
+			locker.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 清空
+	 */
+	public void clear() {
+		locker.writeLock().lock();
+		try {
+			periods.clear();
+		} finally {
+			locker.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 轮次数量
+	 * @return int
+	 */
+	public int size() {
+		locker.readLock().lock();
+		try {
+			return periods.size();
+		} finally {
+			locker.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 最后一轮
+	 * @return Period
+	 */
+	public Period getLast() {
+		locker.readLock().lock();
+		try {
+			return periods.isEmpty() ? null : periods.get(periods.size() - 1);
+		} finally {
+			locker.readLock().unlock();
+		}
+	}
+
+	/*
+	 * 二分查找，规则同 Arrays.binarySearch
+	 */
+	private int search(long periodStartTime) {
+		int low = 0;
+		int high = periods.size() - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			long value = periods.get(mid).periodStartTime;
+			if(value < periodStartTime) {
+				low = mid + 1;
+			} else if(value > periodStartTime) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * 一轮共识在主链上的高度范围，不可修改
+	 */
+	public static class Period {
+		private final long periodStartTime;
+		private final long firstHeight;
+		private final long lastHeight;
+
+		public Period(long periodStartTime, long firstHeight, long lastHeight) {
+			this.periodStartTime = periodStartTime;
+			this.firstHeight = firstHeight;
+			this.lastHeight = lastHeight;
+		}
+
+		public long getPeriodStartTime() {
+			return periodStartTime;
+		}
+		public long getFirstHeight() {
+			return firstHeight;
+		}
+		public long getLastHeight() {
+			return lastHeight;
+		}
+
+		@Override
+		public String toString() {
+			return "Period [periodStartTime=" + periodStartTime + ", firstHeight=" + firstHeight + ", lastHeight=" + lastHeight + "]";
+		}
+	}
+}
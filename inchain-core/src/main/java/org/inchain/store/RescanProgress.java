@@ -0,0 +1,114 @@
+package org.inchain.store;
+
+/**
+ * 钱包重新扫描区块的进度
+ * 扫描分两步：先用每个区块的地址过滤器找出可能相关的区块，再读取这些区块找出相关的交易
+ * 扫描过程中可以取消，取消后钱包的交易记录保持不变，下次启动时会重新扫描
+ * @author ln
+ *
+ */
+public class RescanProgress {
+
+	private final long bestHeight;
+	private final long startTime = System.currentTimeMillis();
+
+	//已经检查过滤器的高度
+	private volatile long filteredHeight = -1l;
+	//过滤器匹配的区块数
+	private volatile int candidateBlocks;
+	//已经处理的匹配区块数
+	private volatile int loadedBlocks;
+	//找到的相关交易数
+	private volatile int transactions;
+	private volatile boolean filtered;
+	private volatile boolean finished;
+	private volatile boolean cancelled;
+
+	public RescanProgress(long bestHeight) {
+		this.bestHeight = bestHeight;
+	}
+
+	/**
+	 * 取消扫描
+	 * @return boolean	扫描已经结束时返回false
+	 */
+	public boolean cancel() {
+		if(finished) {
+			return false;
+		}
+		cancelled = true;
+		return true;
+	}
+
+	/**
+	 * 完成百分比，检查过滤器和处理匹配的区块各占一半
+	 * 取消后停在取消时的进度
+	 * @return int
+	 */
+	public int getPercent() {
+		if(finished && !cancelled) {
+			return 100;
+		}
+		if(!filtered) {
+			return (int) (50 * (filteredHeight + 1) / (bestHeight + 1));
+		}
+		if(candidateBlocks == 0) {
+			return 100;
+		}
+		return 50 + 50 * loadedBlocks / candidateBlocks;
+	}
+
+	/**
+	 * 已用时间，毫秒
+	 * @return long
+	 */
+	public long getElapsed() {
+		return System.currentTimeMillis() - startTime;
+	}
+
+	void setFilteredHeight(long filteredHeight) {
+		this.filteredHeight = filteredHeight;
+	}
+
+	void setCandidateBlocks(int candidateBlocks) {
+		this.candidateBlocks = candidateBlocks;
+		this.filtered = true;
+	}
+
+	void blockLoaded(int transactions) {
+		this.loadedBlocks++;
+		this.transactions = transactions;
+	}
+
+	void finish() {
+		this.finished = true;
+	}
+
+	public long getBestHeight() {
+		return bestHeight;
+	}
+
+	public long getFilteredHeight() {
+		return filteredHeight;
+	}
+
+	public int getCandidateBlocks() {
+		return candidateBlocks;
+	}
+
+	public int getLoadedBlocks() {
+		return loadedBlocks;
+	}
+
+	public int getTransactions() {
+		return transactions;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
@@ -22,7 +22,6 @@ import org.inchain.transaction.Transaction;
 import org.inchain.transaction.TransactionInput;
 import org.inchain.transaction.TransactionOutput;
 import org.inchain.transaction.business.BaseCommonlyTransaction;
-import org.inchain.utils.Hex;
 import org.inchain.utils.StringUtil;
 import org.iq80.leveldb.DBIterator;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -42,8 +41,8 @@ public class TransactionStoreProvider extends BaseStoreProvider {
 	private List<byte[]> addresses = new CopyOnWriteArrayList<byte[]>();
 	//我的交易列表
 	private List<TransactionStore> mineTxList = new CopyOnWriteArrayList<TransactionStore>();
-	//未花费的交易
-	private List<TransactionStore> unspendTxList = new CopyOnWriteArrayList<TransactionStore>();
+	//我的未花费输出，按地址索引
+	private final UtxoIndex utxoIndex = new UtxoIndex();
 	
 	//新交易监听器
 	private TransactionListener transactionListener;
@@ -94,23 +93,7 @@ public class TransactionStoreProvider extends BaseStoreProvider {
 			mineTxList.add(txs);
 			
 			//是否未花费的交易
-			Transaction tx = txs.getTransaction();
-			if(tx.isPaymentTransaction()) {
-				byte[] status = txs.getStatus();
-				List<TransactionOutput> outputs = tx.getOutputs();
-				for (int i = 0; i < outputs.size(); i++) {
-					TransactionOutput output = outputs.get(i);
-					Script script = output.getScript();
-					if(status == null || status.length < i || status[i] != TransactionStore.STATUS_UNUSE || unspendTxList.contains(txs)) {
-						continue;
-					}
-					for (byte[] hash160 : addresses) {
-						if(script.isSentToAddress() && Arrays.equals(script.getChunks().get(2).data, hash160)) {
-							unspendTxList.add(txs);
-						}
-					}
-				}
-			}
+			indexUnspentOutputs(txs);
 		}
 		
 		//绑定新交易监听器
@@ -153,6 +136,11 @@ public class TransactionStoreProvider extends BaseStoreProvider {
 								transactionStore.setStatus(ftxStatus);
 								//更新存储
 								put(transactionStore.getTransaction().getHash().getBytes(), transactionStore.baseSerialize());
+								//输出重新变为未花费
+								byte[] hash160 = getMineHash160(transactionStore.getTransaction().getOutput(from.getIndex()));
+								if(hash160 != null) {
+									utxoIndex.add(transactionStore, from.getIndex(), hash160);
+								}
 								break;
 							}
 						}
@@ -161,6 +149,7 @@ public class TransactionStoreProvider extends BaseStoreProvider {
 			}
 		}
 		
+		utxoIndex.removeTransaction(tx);
 		delete(tx.getHash().getBytes());
 		
 		//从内存中删除
@@ -185,6 +174,7 @@ public class TransactionStoreProvider extends BaseStoreProvider {
 				transactionStore.setHeight(txs.getHeight());
 				txs = transactionStore;
 				hasUpdate = true;
+				utxoIndex.confirm(txs.getTransaction());
 				//保存
 				put(txs.getTransaction().getHash().getBytes(), txs.baseSerialize());
 				break;
@@ -207,37 +197,17 @@ public class TransactionStoreProvider extends BaseStoreProvider {
 							continue;
 						}
 						for (TransactionOutput from : input.getFroms()) {
-							Sha256Hash fromTxHash = from.getParent().getHash();
-							
-							for (TransactionStore unspendTx : unspendTxList) {
-								if(unspendTx.getTransaction().getHash().equals(fromTxHash)) {
-									//更新内存
-									byte[] ftxStatus = unspendTx.getStatus();
-									ftxStatus[from.getIndex()] = TransactionStore.STATUS_USED;
-									unspendTx.setStatus(ftxStatus);
-									
-									//更新存储
-									put(unspendTx.getTransaction().getHash().getBytes(), unspendTx.baseSerialize());
-									
-									//查询该笔交易是否还有我没有花费的交易
-									List<TransactionOutput> outputsTemp = unspendTx.getTransaction().getOutputs();
-									boolean hasUnspend = false;
-									for (TransactionOutput transactionOutput : outputsTemp) {
-										Script script = transactionOutput.getScript();
-										for (byte[] hash160 : addresses) {
-											if(script.isSentToAddress() && Arrays.equals(script.getChunks().get(2).data, hash160)
-													&& ftxStatus[transactionOutput.getIndex()] == TransactionStore.STATUS_UNUSE) {
-												hasUnspend = true;
-												break;
-											}
-										}
-									}
-									if(!hasUnspend) {
-										unspendTxList.remove(unspendTx);
-									}
-									break;
-								}
+							//更新内存
+							TransactionStore unspendTx = utxoIndex.spend(from.getKey());
+							if(unspendTx == null) {
+								continue;
 							}
+							byte[] ftxStatus = unspendTx.getStatus();
+							ftxStatus[from.getIndex()] = TransactionStore.STATUS_USED;
+							unspendTx.setStatus(ftxStatus);
+							
+							//更新存储
+							put(unspendTx.getTransaction().getHash().getBytes(), unspendTx.baseSerialize());
 						}
 					}
 				}
@@ -245,20 +215,11 @@ public class TransactionStoreProvider extends BaseStoreProvider {
 				byte[] status = new byte[outputs.size()];
 				
 				for (int i = 0; i < outputs.size(); i++) {
-					TransactionOutput output = outputs.get(i);
-					Script script = output.getScript();
 					status[i] = TransactionStore.STATUS_UNUSE;
-					
-					for (byte[] hash160 : addresses) {
-						if(script.isSentToAddress() && Arrays.equals(script.getChunks().get(2).data, hash160)
-								&& !unspendTxList.contains(txs)) {
-							unspendTxList.add(txs);
-							break;
-						}
-					}
 				}
 				//设置交易存储状态
 				txs.setStatus(status);
+				indexUnspentOutputs(txs);
 			}
 			//保存
 			put(txs.getTransaction().getHash().getBytes(), txs.baseSerialize());
@@ -391,10 +352,16 @@ public class TransactionStoreProvider extends BaseStoreProvider {
 	/**
 	 * 重新初始化交易记录列表
 	 * @param hash160s
-	 * @return boolean
+	 * @return boolean	扫描被取消时返回false，原有的交易记录和地址列表保持不变，下次启动时会重新扫描
 	 */
 	public boolean reloadTransaction(List<byte[]> hash160s) {
 		
+		//遍历区块找出相关交易
+		List<TransactionStore> newMineTxList = blockStoreProvider.loadRelatedTransactions(hash160s);
+		if(newMineTxList == null) {
+			return false;
+		}
+		
 		clean();
 		
 		//写入新列表
@@ -406,31 +373,15 @@ public class TransactionStoreProvider extends BaseStoreProvider {
 		
 		this.addresses = hash160s;
 		
-		//遍历区块写入相关交易
-		mineTxList = blockStoreProvider.loadRelatedTransactions(hash160s);
-		unspendTxList = new CopyOnWriteArrayList<TransactionStore>();
+		//写入相关交易
+		mineTxList = new CopyOnWriteArrayList<TransactionStore>(newMineTxList);
+		utxoIndex.clear();
 		
 		for (TransactionStore txs : mineTxList) {
 			put(txs.getTransaction().getHash().getBytes(), txs.baseSerialize());
 			
 			//是否未花费的交易
-			Transaction tx = txs.getTransaction();
-			if(tx.isPaymentTransaction()) {
-				byte[] status = txs.getStatus();
-				List<TransactionOutput> outputs = tx.getOutputs();
-				for (int i = 0; i < outputs.size(); i++) {
-					TransactionOutput output = outputs.get(i);
-					Script script = output.getScript();
-					if(status == null || status.length < i || status[i] != TransactionStore.STATUS_UNUSE || unspendTxList.contains(txs)) {
-						continue;
-					}
-					for (byte[] hash160 : this.addresses) {
-						if(script.isSentToAddress() && Arrays.equals(script.getChunks().get(2).data, hash160)) {
-							unspendTxList.add(txs);
-						}
-					}
-				}
-			}
+			indexUnspentOutputs(txs);
 		}
 		
 		return true;
@@ -455,75 +406,64 @@ public class TransactionStoreProvider extends BaseStoreProvider {
 		put(ADDRESSES_KEY, addressesBytes);
 	}
 	
-	/**
-	 * 获取地址的最新余额和未确认的余额
-	 * @param hash160
-	 * @return Coin[]
+	/*
+	 * 把交易里属于我的、未花费的输出加入索引
 	 */
-	public Coin[] getBalanceAndUnconfirmedBalance(byte[] hash160) {
-		Coin balance = Coin.ZERO;
-		Coin unconfirmedBalance = Coin.ZERO;
-		
-		//查询当前区块最新高度
-		long bestBlockHeight = network.getBestHeight();
-		long localBestBlockHeight = network.getBestBlockHeight();
-		
-		if(bestBlockHeight < localBestBlockHeight) {
-			bestBlockHeight = localBestBlockHeight;
+	private void indexUnspentOutputs(TransactionStore txs) {
+		Transaction tx = txs.getTransaction();
+		if(!tx.isPaymentTransaction()) {
+			return;
 		}
-		
-		for (TransactionStore transactionStore : unspendTxList) {
-			//获取转入交易转入的多少钱
-			Transaction tx = transactionStore.getTransaction();
-			if(!tx.isPaymentTransaction()) {
+		byte[] status = txs.getStatus();
+		List<TransactionOutput> outputs = tx.getOutputs();
+		for (int i = 0; i < outputs.size(); i++) {
+			if(status == null || status.length <= i || status[i] != TransactionStore.STATUS_UNUSE) {
 				continue;
 			}
-			
-			//如果交易不可用，则标记
-			boolean txAvailable = true;
-			if(tx.getLockTime() < 0l
-					|| (tx.getLockTime() > Definition.LOCKTIME_THRESHOLD && tx.getLockTime() > TimeService.currentTimeSeconds())
-					|| (tx.getLockTime() < Definition.LOCKTIME_THRESHOLD && tx.getLockTime() > bestBlockHeight)) {
-				txAvailable = false;
+			byte[] hash160 = getMineHash160(outputs.get(i));
+			if(hash160 != null) {
+				utxoIndex.add(txs, i, hash160);
 			}
-			
-			byte[] key = tx.getHash().getBytes();
-			byte[] status = transactionStore.getStatus();
-			
-			List<TransactionOutput> outputs = tx.getOutputs();
-			
-			for (int i = 0; i < outputs.size(); i++) {
-				TransactionOutput output = outputs.get(i);
-				Script script = output.getScript();
-				if(script.isSentToAddress() && Arrays.equals(script.getChunks().get(2).data, hash160)) {
-
-					byte[] statueKey = new byte[key.length + 1];
-					System.arraycopy(key, 0, statueKey, 0, key.length);
-					statueKey[statueKey.length - 1] = (byte) i;
-					
-					//交易是否已花费
-//					byte[] content = chainstateStoreProvider.getBytes(statueKey);
-//					if(content == null) {
-//						continue;
-//					}
-					//交易是否已花费
-					if(status != null && status.length > 0 && status[i] == TransactionStore.STATUS_USED) {
-						continue;
-					}
-					//本笔输出是否可用
-					long lockTime = output.getLockTime();
-					if(!txAvailable || lockTime < 0l
-							|| (lockTime >= Definition.LOCKTIME_THRESHOLD && lockTime > TimeService.currentTimeSeconds())
-							|| (lockTime < Definition.LOCKTIME_THRESHOLD && lockTime > bestBlockHeight)
-							|| (i == 0 && transactionStore.getHeight() == -1l)) {
-						unconfirmedBalance = unconfirmedBalance.add(Coin.valueOf(output.getValue()));
-					} else {
-						balance = balance.add(Coin.valueOf(output.getValue()));
-					}
-				}
+		}
+	}
+	
+	/*
+	 * 输出是否转给我的地址，是则返回对应的地址
+	 */
+	private byte[] getMineHash160(TransactionOutput output) {
+		Script script = output.getScript();
+		if(!script.isSentToAddress()) {
+			return null;
+		}
+		byte[] data = script.getChunks().get(2).data;
+		for (byte[] hash160 : addresses) {
+			if(Arrays.equals(data, hash160)) {
+				return hash160;
 			}
 		}
-		return new Coin[]{balance, unconfirmedBalance};
+		return null;
+	}
+	
+	/*
+	 * 当前最新高度，取网络高度和本地高度的较大值
+	 */
+	private long getBestHeight() {
+		long bestBlockHeight = network.getBestHeight();
+		long localBestBlockHeight = network.getBestBlockHeight();
+		
+		if(bestBlockHeight < localBestBlockHeight) {
+			bestBlockHeight = localBestBlockHeight;
+		}
+		return bestBlockHeight;
+	}
+	
+	/**
+	 * 获取地址的最新余额和未确认的余额
+	 * @param hash160
+	 * @return Coin[]
+	 */
+	public Coin[] getBalanceAndUnconfirmedBalance(byte[] hash160) {
+		return utxoIndex.getBalanceAndUnconfirmedBalance(hash160, getBestHeight(), TimeService.currentTimeSeconds());
 	}
 	
 	/**
@@ -539,136 +479,22 @@ public class TransactionStoreProvider extends BaseStoreProvider {
 	 * @return List<TransactionOutput>
 	 */
 	public List<TransactionOutput> getNotSpentTransactionOutputs(byte[] hash160) {
-		
-		List<TransactionOutput> txs = new ArrayList<TransactionOutput>();
-		
-		//查询当前区块最新高度
-		long bestBlockHeight = network.getBestHeight();
-		long localBestBlockHeight = network.getBestBlockHeight();
-		
-		if(bestBlockHeight < localBestBlockHeight) {
-			bestBlockHeight = localBestBlockHeight;
-		}
-		
-		for (TransactionStore transactionStore : unspendTxList) {
-			
-			//交易状态
-			byte[] status = transactionStore.getStatus();
-			
-			Transaction tx = transactionStore.getTransaction();
-			
-			//如果不是转账交易，则跳过
-			if(!tx.isPaymentTransaction()) {
-				continue;
-			}
-			
-			//如果交易不可用，则跳过
-			if(tx.getLockTime() < 0l
-					|| (tx.getLockTime() > Definition.LOCKTIME_THRESHOLD && tx.getLockTime() > TimeService.currentTimeSeconds())
-					|| (tx.getLockTime() < Definition.LOCKTIME_THRESHOLD && tx.getLockTime() > bestBlockHeight)) {
-				continue;
-			}
-			
-			List<TransactionOutput> outputs = tx.getOutputs();
-			
-			//遍历交易输出
-			for (int i = 0; i < outputs.size(); i++) {
-				TransactionOutput output = outputs.get(i);
-				Script script = output.getScript();
-				if(script.isSentToAddress() && Arrays.equals(script.getChunks().get(2).data, hash160)) {
-
-					//交易是否已花费
-					if(status[i] == TransactionStore.STATUS_USED) {
-						continue;
-					}
-//					
-//					//链上状态是否可用
-//					byte[] statueKey = new byte[key.length + 1];
-//					System.arraycopy(key, 0, statueKey, 0, key.length);
-//					statueKey[statueKey.length - 1] = (byte) i;
-//					
-//					byte[] content = chainstateStoreProvider.getBytes(statueKey);
-//					if(content == null) {
-//						continue;
-//					}
-					
-					//本笔输出是否可用
-					long lockTime = output.getLockTime();
-					if(lockTime < 0l
-							|| (lockTime > Definition.LOCKTIME_THRESHOLD && lockTime > TimeService.currentTimeSeconds())
-							|| (lockTime < Definition.LOCKTIME_THRESHOLD && lockTime > bestBlockHeight) ) {
-						continue;
-					} else {
-						txs.add((TransactionOutput) output);
-					}
-				}
-			}
-		}
-		return txs;
+		return utxoIndex.getSpendableOutputs(hash160, getBestHeight(), TimeService.currentTimeSeconds());
 	}
 
 	/**
 	 * 获取制定地址集合所有未花费的交易输出
-	 * @return List<TransactionOutput>
+	 * @return HashMap<String,List<TransactionOutput>>
 	 */
 	public HashMap<String,List<TransactionOutput>> getNotSpentTransactionOutputs(List<byte[]> hash160s) {
 
 		HashMap<String,List<TransactionOutput>> txs = new HashMap<String,List<TransactionOutput>>();
 
-		//查询当前区块最新高度
-		long bestBlockHeight = network.getBestHeight();
-		long localBestBlockHeight = network.getBestBlockHeight();
-
-		if(bestBlockHeight < localBestBlockHeight) {
-			bestBlockHeight = localBestBlockHeight;
-		}
-
+		long bestBlockHeight = getBestHeight();
+		long time = TimeService.currentTimeSeconds();
 
-		for(int j=0;j<hash160s.size();j++){
-			byte[] hash160 = hash160s.get(j);
-			//log.info("find user"+ Hex.encode(hash160));
-			ArrayList<TransactionOutput> unSpentOutputs= new ArrayList<TransactionOutput>();
-			for (TransactionStore transactionStore : unspendTxList){
-				//交易状态
-
-				byte[] status = transactionStore.getStatus();
-				Transaction tx = transactionStore.getTransaction();
-				List<TransactionOutput> outputs = tx.getOutputs();
-				//如果不是转账交易，则跳过
-				if(!tx.isPaymentTransaction()) {
-					continue;
-				}
-
-				//如果交易不可用，则跳过
-				if(tx.getLockTime() < 0l
-						|| (tx.getLockTime() > Definition.LOCKTIME_THRESHOLD && tx.getLockTime() > TimeService.currentTimeSeconds())
-						|| (tx.getLockTime() < Definition.LOCKTIME_THRESHOLD && tx.getLockTime() > bestBlockHeight)) {
-					continue;
-				}
-
-				//遍历交易输出
-				for (int i = 0; i < outputs.size(); i++) {
-					TransactionOutput output = outputs.get(i);
-					Script script = output.getScript();
-					if (script.isSentToAddress() && Arrays.equals(script.getChunks().get(2).data, hash160)) {
-						log.info("find output"+ Hex.encode(script.getChunks().get(2).data));
-						//交易是否已花费
-						if (status[i] == TransactionStore.STATUS_USED) {
-							continue;
-						}
-						//本笔输出是否可用
-						long lockTime = output.getLockTime();
-						if (lockTime < 0l
-								|| (lockTime > Definition.LOCKTIME_THRESHOLD && lockTime > TimeService.currentTimeSeconds())
-								|| (lockTime < Definition.LOCKTIME_THRESHOLD && lockTime > bestBlockHeight)) {
-							continue;
-						} else {
-							unSpentOutputs.add((TransactionOutput) output);
-						}
-					}
-				}
-			}
-			txs.put(new Address(network,hash160).getBase58() ,unSpentOutputs);
+		for (byte[] hash160 : hash160s) {
+			txs.put(new Address(network, hash160).getBase58(), utxoIndex.getSpendableOutputs(hash160, bestBlockHeight, time));
 		}
 		return txs;
 	}
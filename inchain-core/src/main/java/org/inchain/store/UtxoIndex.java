@@ -0,0 +1,297 @@
+package org.inchain.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.inchain.core.ByteHash;
+import org.inchain.core.Coin;
+import org.inchain.core.Definition;
+import org.inchain.transaction.Transaction;
+import org.inchain.transaction.TransactionOutput;
+
+/**
+ * 钱包未花费输出索引，按地址（hash160）分组，并维护每个地址的可用余额和等待中的余额
+ * 锁定中的输出只在区块高度或时间到达它最早的解锁点时才重新检查，查询余额不再需要遍历所有交易
+ * @author ln
+ *
+ */
+public class UtxoIndex {
+
+	private final Lock locker = new ReentrantLock();
+
+	//输出的引用 -> 未花费输出
+	private final Map<ByteHash, Utxo> outpoints = new HashMap<ByteHash, Utxo>();
+	//地址 -> 该地址的未花费输出
+	private final Map<ByteHash, AddressUtxos> addresses = new HashMap<ByteHash, AddressUtxos>();
+
+	/**
+	 * 添加一笔属于 hash160 的未花费输出
+	 * @param txs 输出所在的交易
+	 * @param index 输出序号
+	 * @param hash160 所属地址
+	 */
+	public void add(TransactionStore txs, int index, byte[] hash160) {
+		locker.lock();
+		try {
+			TransactionOutput output = txs.getTransaction().getOutput(index);
+			ByteHash key = new ByteHash(output.getKey());
+			if(outpoints.containsKey(key)) {
+				return;
+			}
+			ByteHash address = new ByteHash(hash160);
+			AddressUtxos utxos = addresses.get(address);
+			if(utxos == null) {
+				utxos = new AddressUtxos();
+				addresses.put(address, utxos);
+			}
+			Utxo utxo = new Utxo(txs, output, address);
+			outpoints.put(key, utxo);
+			utxos.locked.put(key, utxo);
+			utxos.lockedValue += output.getValue();
+			//下次查询时重新归类
+			utxos.nextHeight = Long.MIN_VALUE;
+		} finally {
+			locker.unlock();
+		}
+	}
+
+	/**
+	 * 花费一笔输出，如果该输出在索引里，返回它所在的交易
+	 * @param outpointKey 输出的引用，即交易hash加输出序号
+	 * @return TransactionStore
+	 */
+	public TransactionStore spend(byte[] outpointKey) {
+		locker.lock();
+		try {
+			ByteHash key = new ByteHash(outpointKey);
+			Utxo utxo = outpoints.remove(key);
+			if(utxo == null) {
+				return null;
+			}
+			addresses.get(utxo.address).remove(key, utxo);
+			return utxo.txs;
+		} finally {
+			locker.unlock();
+		}
+	}
+
+	/**
+	 * 移除交易的所有输出，交易被回滚时调用
+	 * @param tx
+	 */
+	public void removeTransaction(Transaction tx) {
+		if(tx.getOutputs() == null) {
+			return;
+		}
+		locker.lock();
+		try {
+			for (TransactionOutput output : tx.getOutputs()) {
+				spend(output.getKey());
+			}
+		} finally {
+			locker.unlock();
+		}
+	}
+
+	/**
+	 * 交易被确认（高度发生变化），重新归类它的输出
+	 * @param tx
+	 */
+	public void confirm(Transaction tx) {
+		if(tx.getOutputs() == null) {
+			return;
+		}
+		locker.lock();
+		try {
+			for (TransactionOutput output : tx.getOutputs()) {
+				ByteHash key = new ByteHash(output.getKey());
+				Utxo utxo = outpoints.get(key);
+				if(utxo == null) {
+					continue;
+				}
+				AddressUtxos utxos = addresses.get(utxo.address);
+				if(utxos.pending.containsKey(key)) {
+					utxos.remove(key, utxo);
+					utxos.locked.put(key, utxo);
+					utxos.lockedValue += utxo.output.getValue();
+					utxos.nextHeight = Long.MIN_VALUE;
+				}
+			}
+		} finally {
+			locker.unlock();
+		}
+	}
+
+	/**
+	 * 清空索引
+	 */
+	public void clear() {
+		locker.lock();
+		try {
+			outpoints.clear();
+			addresses.clear();
+		} finally {
+			locker.unlock();
+		}
+	}
+
+	/**
+	 * 获取地址的可用余额和等待中的余额
+	 * @param hash160
+	 * @param bestHeight 当前最新高度
+	 * @param time 当前时间（秒）
+	 * @return Coin[]
+	 */
+	public Coin[] getBalanceAndUnconfirmedBalance(byte[] hash160, long bestHeight, long time) {
+		locker.lock();
+		try {
+			AddressUtxos utxos = addresses.get(new ByteHash(hash160));
+			if(utxos == null) {
+				return new Coin[]{Coin.ZERO, Coin.ZERO};
+			}
+			utxos.mature(bestHeight, time);
+			return new Coin[]{Coin.valueOf(utxos.availableValue), Coin.valueOf(utxos.pendingValue + utxos.lockedValue)};
+		} finally {
+			locker.unlock();
+		}
+	}
+
+	/**
+	 * 获取地址所有可以花费的输出，锁定中的输出除外
+	 * @param hash160
+	 * @param bestHeight 当前最新高度
+	 * @param time 当前时间（秒）
+	 * @return List<TransactionOutput>
+	 */
+	public List<TransactionOutput> getSpendableOutputs(byte[] hash160, long bestHeight, long time) {
+		locker.lock();
+		try {
+			List<TransactionOutput> list = new ArrayList<TransactionOutput>();
+			AddressUtxos utxos = addresses.get(new ByteHash(hash160));
+			if(utxos == null) {
+				return list;
+			}
+			utxos.mature(bestHeight, time);
+			for (Utxo utxo : utxos.available.values()) {
+				list.add(utxo.output);
+			}
+			for (Utxo utxo : utxos.pending.values()) {
+				list.add(utxo.output);
+			}
+			return list;
+		} finally {
+			locker.unlock();
+		}
+	}
+
+	/*
+	 * 锁定时间是否未到
+	 */
+	private static boolean isLocked(long lockTime, long bestHeight, long time) {
+		return lockTime < 0l
+				|| (lockTime >= Definition.LOCKTIME_THRESHOLD && lockTime > time)
+				|| (lockTime < Definition.LOCKTIME_THRESHOLD && lockTime > bestHeight);
+	}
+
+	/**
+	 * 未花费输出
+	 */
+	private static class Utxo {
+		private final TransactionStore txs;
+		private final TransactionOutput output;
+		private final ByteHash address;
+
+		private Utxo(TransactionStore txs, TransactionOutput output, ByteHash address) {
+			this.txs = txs;
+			this.output = output;
+			this.address = address;
+		}
+	}
+
+	/**
+	 * 单个地址的未花费输出，分为三类
+	 * available 已确认且已解锁，计入可用余额
+	 * pending 未确认交易的第一笔输出（即收款），可以花费但计入等待中的余额
+	 * locked 交易或输出的锁定时间未到，不能花费，计入等待中的余额
+	 */
+	private static class AddressUtxos {
+		private final Map<ByteHash, Utxo> available = new LinkedHashMap<ByteHash, Utxo>();
+		private final Map<ByteHash, Utxo> pending = new LinkedHashMap<ByteHash, Utxo>();
+		private final Map<ByteHash, Utxo> locked = new LinkedHashMap<ByteHash, Utxo>();
+
+		private long availableValue;
+		private long pendingValue;
+		private long lockedValue;
+
+		//锁定中的输出最早的解锁高度和时间，到达之前不需要重新检查
+		private long nextHeight = Long.MAX_VALUE;
+		private long nextTime = Long.MAX_VALUE;
+
+		private void remove(ByteHash key, Utxo utxo) {
+			long value = utxo.output.getValue();
+			if(available.remove(key) != null) {
+				availableValue -= value;
+			} else if(pending.remove(key) != null) {
+				pendingValue -= value;
+			} else if(locked.remove(key) != null) {
+				lockedValue -= value;
+			}
+		}
+
+		/*
+		 * 把已到解锁高度或时间的输出移出锁定列表
+		 */
+		private void mature(long bestHeight, long time) {
+			if(bestHeight < nextHeight && time < nextTime) {
+				return;
+			}
+			nextHeight = Long.MAX_VALUE;
+			nextTime = Long.MAX_VALUE;
+
+			Iterator<Map.Entry<ByteHash, Utxo>> it = locked.entrySet().iterator();
+			while(it.hasNext()) {
+				Map.Entry<ByteHash, Utxo> item = it.next();
+				Utxo utxo = item.getValue();
+				long txLockTime = utxo.txs.getTransaction().getLockTime();
+				long lockTime = utxo.output.getLockTime();
+
+				if(isLocked(txLockTime, bestHeight, time) || isLocked(lockTime, bestHeight, time)) {
+					updateNext(txLockTime, bestHeight, time);
+					updateNext(lockTime, bestHeight, time);
+					continue;
+				}
+
+				it.remove();
+				long value = utxo.output.getValue();
+				lockedValue -= value;
+				if(utxo.output.getIndex() == 0 && utxo.txs.getHeight() == -1l) {
+					pending.put(item.getKey(), utxo);
+					pendingValue += value;
+				} else {
+					available.put(item.getKey(), utxo);
+					availableValue += value;
+				}
+			}
+		}
+
+		private void updateNext(long lockTime, long bestHeight, long time) {
+			if(lockTime < 0l) {
+				//永久锁定
+				return;
+			}
+			if(lockTime >= Definition.LOCKTIME_THRESHOLD) {
+				if(lockTime > time && lockTime < nextTime) {
+					nextTime = lockTime;
+				}
+			} else if(lockTime > bestHeight && lockTime < nextHeight) {
+				nextHeight = lockTime;
+			}
+		}
+	}
+}
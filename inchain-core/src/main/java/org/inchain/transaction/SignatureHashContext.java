@@ -0,0 +1,145 @@
+package org.inchain.transaction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import org.inchain.core.VarInt;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.script.Script;
+import org.inchain.script.ScriptOpCodes;
+
+/**
+ * 交易签名hash的计算上下文
+ * 签名的内容是清空所有输入脚本后的交易，再把当前输入的脚本替换为上次交易的赎回脚本，最后加上hash类型
+ * 这里只序列化一次清空脚本后的交易，记录每个输入脚本所在的位置，计算某个输入的签名hash时，只需把赎回脚本拼接到对应位置，流式写入sha256，不再复制和重新解析整个交易
+ * 每个输入之前的内容对所有签名都是相同的，对应的sha256中间状态也会缓存下来
+ * @author ln
+ *
+ */
+public class SignatureHashContext {
+
+	//清空所有输入脚本后的交易序列化内容
+	private final byte[] template;
+	//每个输入的脚本（空脚本的长度，1个字节的0）在 template 里的位置
+	private final int[] scriptOffsets;
+
+	private final MessageDigest digest;
+	//template 从开始到每个输入脚本位置的sha256中间状态
+	private final MessageDigest[] midstates;
+
+	private SignatureHashContext(byte[] template, int[] scriptOffsets) {
+		this.template = template;
+		this.scriptOffsets = scriptOffsets;
+		this.digest = Sha256Hash.newDigest();
+		this.midstates = new MessageDigest[scriptOffsets.length];
+	}
+
+	/**
+	 * 创建交易的签名hash上下文
+	 * 如果交易的输入不是按标准方式序列化的，无法确定脚本的位置，返回null
+	 * @param tx
+	 * @return SignatureHashContext
+	 */
+	public static SignatureHashContext create(Transaction tx) {
+		TemplateOutputStream stream = new TemplateOutputStream(tx.getInputs() == null ? 0 : tx.getInputs().size());
+		try {
+			tx.serializeToStream(stream);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		if(stream.marks != stream.scriptOffsets.length) {
+			return null;
+		}
+		return new SignatureHashContext(stream.toByteArray(), stream.scriptOffsets);
+	}
+
+	/**
+	 * 计算输入的签名hash
+	 * @param index			输入序号
+	 * @param redeemScript	上次交易的赎回脚本
+	 * @param sigHashType	hash类型
+	 * @return Sha256Hash
+	 */
+	public synchronized Sha256Hash hashForSignature(int index, byte[] redeemScript, byte sigHashType) {
+		//清除上次交易脚本里的操作码
+		redeemScript = Script.removeAllInstancesOfOp(redeemScript, ScriptOpCodes.OP_CODESEPARATOR);
+
+		int offset = scriptOffsets[index];
+		MessageDigest hasher = getMidstate(index);
+
+		hasher.update(new VarInt(redeemScript.length).encode());
+		hasher.update(redeemScript);
+		hasher.update(template, offset + 1, template.length - offset - 1);
+		//把hash的类型加到最后
+		int type = 0x000000ff & sigHashType;
+		hasher.update((byte) type);
+		hasher.update((byte) (type >> 8));
+		hasher.update((byte) (type >> 16));
+		hasher.update((byte) (type >> 24));
+
+		byte[] first = hasher.digest();
+		digest.reset();
+		return Sha256Hash.wrap(digest.digest(first));
+	}
+
+	/*
+	 * 获取输入之前内容的sha256中间状态的副本，没有缓存时依次往后计算
+	 */
+	private MessageDigest getMidstate(int index) {
+		try {
+			if(midstates[index] == null) {
+				int begin = 0;
+				MessageDigest state = null;
+				for (int i = index - 1; i >= 0; i--) {
+					if(midstates[i] != null) {
+						state = (MessageDigest) midstates[i].clone();
+						begin = i;
+						break;
+					}
+				}
+				if(state == null) {
+					state = Sha256Hash.newDigest();
+					state.update(template, 0, scriptOffsets[0]);
+					midstates[0] = (MessageDigest) state.clone();
+				}
+				for (int i = begin + 1; i <= index; i++) {
+					state.update(template, scriptOffsets[i - 1], scriptOffsets[i] - scriptOffsets[i - 1]);
+					midstates[i] = (MessageDigest) state.clone();
+				}
+			}
+			return (MessageDigest) midstates[index].clone();
+		} catch (CloneNotSupportedException e) {
+			//不支持复制中间状态，从头计算
+			MessageDigest state = Sha256Hash.newDigest();
+			state.update(template, 0, scriptOffsets[index]);
+			return state;
+		}
+	}
+
+	/**
+	 * 输入序列化时，如果是写入该流，则不写入脚本，只写入空脚本并记录位置
+	 * @see TransactionInput#serialize(java.io.OutputStream)
+	 */
+	static class TemplateOutputStream extends ByteArrayOutputStream {
+
+		private final int[] scriptOffsets;
+		private int marks;
+
+		private TemplateOutputStream(int inputCount) {
+			super(256);
+			this.scriptOffsets = new int[inputCount];
+		}
+
+		/**
+		 * 在当前位置写入空脚本
+		 */
+		void writeEmptyScript() {
+			if(marks < scriptOffsets.length) {
+				scriptOffsets[marks] = count;
+			}
+			marks++;
+			write(0);
+		}
+	}
+}
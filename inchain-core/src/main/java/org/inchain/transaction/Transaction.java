@@ -56,6 +56,10 @@ public class Transaction extends Message {
 	//备注
 	protected byte[] remark;
 	
+	//签名hash的上下文，开启缓存时，对多个输入签名或验证时复用
+	private SignatureHashContext signatureHashContext;
+	private boolean cacheSignatureHash;
+	
 	/**
 	 * 签名类型
 	 * @author ln
@@ -300,7 +304,43 @@ public class Transaction extends Message {
 //		
 //	}
 
+	/**
+	 * 计算输入的签名hash
+	 * @param index			输入序号
+	 * @param redeemScript	上次交易的赎回脚本
+	 * @param sigHashType	hash类型
+	 * @return Sha256Hash
+	 */
 	public Sha256Hash hashForSignature(int index, byte[] redeemScript, byte sigHashType) {
+		SignatureHashContext context = signatureHashContext;
+		if(context == null) {
+			context = SignatureHashContext.create(this);
+			if(context == null) {
+				return hashForSignatureByCopy(index, redeemScript, sigHashType);
+			}
+			if(cacheSignatureHash) {
+				signatureHashContext = context;
+			}
+		}
+		return context.hashForSignature(index, redeemScript, sigHashType);
+	}
+	
+	/**
+	 * 是否缓存签名hash的上下文
+	 * 对多个输入签名或验证签名之前开启，结束后关闭，开启期间除输入脚本外交易内容不能有变化
+	 * @param cacheSignatureHash
+	 */
+	public void setCacheSignatureHash(boolean cacheSignatureHash) {
+		this.cacheSignatureHash = cacheSignatureHash;
+		if(!cacheSignatureHash) {
+			signatureHashContext = null;
+		}
+	}
+	
+	/*
+	 * 复制一份交易来计算签名hash，输入不是按标准方式序列化的交易使用
+	 */
+	Sha256Hash hashForSignatureByCopy(int index, byte[] redeemScript, byte sigHashType) {
 		try {
             Transaction tx = this.network.getDefaultSerializer().makeTransaction(this.baseSerialize());
             //清空输入脚本
@@ -63,10 +63,15 @@ public class TransactionInput extends Message implements Input {
 	        	Utils.uint32ToByteStreamLE(from.getIndex(), stream);
 			}
 		}
-		//签名的长度
-        stream.write(new VarInt(scriptBytes.length).encode());
-        //签名
-        stream.write(scriptBytes);
+		if(stream instanceof SignatureHashContext.TemplateOutputStream) {
+			//计算签名hash时，输入脚本为空
+			((SignatureHashContext.TemplateOutputStream) stream).writeEmptyScript();
+		} else {
+			//签名的长度
+	        stream.write(new VarInt(scriptBytes.length).encode());
+	        //签名
+	        stream.write(scriptBytes);
+		}
         //sequence，送者定义的交易版本，用于在交易被写入block之前更改交易
         Utils.uint32ToByteStreamLE(sequence, stream);
 	}
@@ -1,6 +1,5 @@
 package org.inchain.validator;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -8,12 +7,12 @@ import java.util.List;
 import org.inchain.Configure;
 import org.inchain.consensus.ConsensusInfos;
 import org.inchain.consensus.ConsensusMeeting;
-import org.inchain.core.ByteHash;
 import org.inchain.core.Coin;
 import org.inchain.core.Definition;
 import org.inchain.core.Result;
 import org.inchain.core.TimeService;
 import org.inchain.core.exception.VerificationException;
+import org.inchain.filter.OutpointSet;
 import org.inchain.message.Block;
 import org.inchain.message.BlockHeader;
 import org.inchain.network.NetworkParams;
@@ -57,6 +56,8 @@ public class BlockValidator {
 	@Autowired
 	private TransactionValidator transactionValidator;
 	@Autowired
+	private ParallelTransactionVerifier parallelTransactionVerifier;
+	@Autowired
 	private CreditCollectionService creditCollectionService;
 
 	public Result doVal(Block block) {
@@ -159,9 +160,15 @@ public class BlockValidator {
 		boolean coinbase = false;
 		
 		List<Transaction> txs = block.getTxs();
-		for (Transaction tx : txs) {
+		
+		//先并行验证所有交易的签名和脚本，再按顺序验证依赖状态的规则
+		//并行验证时引用的交易还找不到的，脚本没有执行，在状态验证时完整验证
+		boolean[] scriptVerified = parallelTransactionVerifier.verify(txs);
+		
+		for (int i = 0; i < txs.size(); i++) {
+			Transaction tx = txs.get(i);
 			
-			ValidatorResult<TransactionValidatorResult> rs = transactionValidator.valDo(tx, txs);
+			ValidatorResult<TransactionValidatorResult> rs = transactionValidator.valDo(tx, txs, scriptVerified[i]);
 			
 			if(!rs.getResult().isSuccess()) {
 				throw new VerificationException(rs.getResult().getMessage());
@@ -191,7 +198,7 @@ public class BlockValidator {
 		now = System.currentTimeMillis();
 		
 		//验证本区块的双花
-		List<ByteHash> outputIndexHashArray = new ArrayList<ByteHash>();
+		OutpointSet outputIndexSet = new OutpointSet(txs.size() * 2);
 		for (Transaction t : txs) {
 			List<TransactionInput> inputsTemp = t.getInputs();
 			if(inputsTemp == null || inputsTemp.size() == 0) {
@@ -203,14 +210,9 @@ public class BlockValidator {
 					continue;
 				}
 				for (TransactionOutput fromTemp : fromsTemp) {
-					byte[] statusKey = fromTemp.getKey();
-					
-					ByteHash byteHash = new ByteHash(statusKey);
-					if(outputIndexHashArray.contains(byteHash)) {
+					if(!outputIndexSet.add(fromTemp)) {
 						log.warn("存在双花交易");
 						return new Result(false, "存在双花交易");
-					} else {
-						outputIndexHashArray.add(byteHash);
 					}
 				}
 			}
@@ -0,0 +1,143 @@
+package org.inchain.validator;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.inchain.transaction.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * 区块交易的并行验证
+ * 交易的格式、签名、赎回脚本验证与链上状态无关，这里把它们分发到与cpu核数相同的ForkJoin线程池里并行执行
+ * 双花、金额、信用等依赖状态的规则，仍由调用方按顺序验证
+ * @author ln
+ *
+ */
+@Service
+public class ParallelTransactionVerifier {
+
+	private static final Logger log = LoggerFactory.getLogger(ParallelTransactionVerifier.class);
+
+	//每个任务最多验证的交易数，交易数少于该值时直接在当前线程验证
+	private static final int BATCH_SIZE = 8;
+
+	private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	//累计验证的交易数
+	private final AtomicLong verifiedCount = new AtomicLong();
+	//累计验证耗时，纳秒
+	private final AtomicLong verifiedNanos = new AtomicLong();
+	//最近一次验证的速度，每秒交易数
+	private volatile long lastTxPerSecond;
+
+	@Autowired
+	private TransactionValidator transactionValidator;
+
+	/**
+	 * 并行验证交易的签名和脚本，任何一笔验证不通过都会抛出 VerificationException
+	 * @param txs	区块里的所有交易
+	 * @return boolean[]	与交易列表一一对应，脚本已经完整验证的为true，有引用的交易还找不到的为false，需要在状态验证时完整验证
+	 */
+	public boolean[] verify(List<Transaction> txs) {
+		if(txs == null || txs.isEmpty()) {
+			return new boolean[0];
+		}
+		boolean[] verified = new boolean[txs.size()];
+		long begin = System.nanoTime();
+
+		//交易hash是延迟计算的，先在当前线程算好，验证时会在列表里查找被引用的交易
+		for (Transaction tx : txs) {
+			tx.getHash();
+		}
+
+		if(txs.size() <= BATCH_SIZE) {
+			for (int i = 0; i < txs.size(); i++) {
+				verified[i] = transactionValidator.verifyScripts(txs.get(i), txs);
+			}
+		} else {
+			pool.invoke(new VerifyTask(txs, verified, 0, txs.size()));
+		}
+
+		long nanos = Math.max(1l, System.nanoTime() - begin);
+		verifiedCount.addAndGet(txs.size());
+		verifiedNanos.addAndGet(nanos);
+		lastTxPerSecond = txs.size() * 1000000000l / nanos;
+
+		if(log.isDebugEnabled()) {
+			log.debug("并行验证 {} 笔交易，耗时 {} ms，{} 笔/秒", txs.size(), nanos / 1000000l, lastTxPerSecond);
+		}
+		return verified;
+	}
+
+	/**
+	 * 累计验证的交易数
+	 * @return long
+	 */
+	public long getVerifiedCount() {
+		return verifiedCount.get();
+	}
+
+	/**
+	 * 累计的平均验证速度，每秒交易数
+	 * @return long
+	 */
+	public long getTxPerSecond() {
+		long nanos = verifiedNanos.get();
+		if(nanos == 0l) {
+			return 0l;
+		}
+		return verifiedCount.get() * 1000000000l / nanos;
+	}
+
+	/**
+	 * 最近一次验证的速度，每秒交易数
+	 * @return long
+	 */
+	public long getLastTxPerSecond() {
+		return lastTxPerSecond;
+	}
+
+	/**
+	 * 并行度，即线程池大小
+	 * @return int
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/*
+	 * 把交易列表对半拆分，直到每段不超过 BATCH_SIZE
+	 */
+	@SuppressWarnings("serial")
+	private class VerifyTask extends RecursiveAction {
+
+		private final List<Transaction> txs;
+		private final boolean[] verified;
+		private final int from;
+		private final int to;
+
+		private VerifyTask(List<Transaction> txs, boolean[] verified, int from, int to) {
+			this.txs = txs;
+			this.verified = verified;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= BATCH_SIZE) {
+				for (int i = from; i < to; i++) {
+					verified[i] = transactionValidator.verifyScripts(txs.get(i), txs);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new VerifyTask(txs, verified, from, middle), new VerifyTask(txs, verified, middle, to));
+		}
+	}
+}
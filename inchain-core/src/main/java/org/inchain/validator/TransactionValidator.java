@@ -69,6 +69,98 @@ public class TransactionValidator {
 		return valDo(tx, null);
 	}
 
+	/**
+	 * 验证交易本身的格式、签名和输入的赎回脚本，只读取引用的交易，不依赖也不修改链上状态，可以多个交易并行调用
+	 * 双花、金额、业务规则等需要状态的验证，由 {@link #valDo(Transaction, List, boolean)} 完成
+	 * @param tx	待验证的交易
+	 * @param txs	当输入引用找不到时，就在这个列表里面查找
+	 * @return boolean	所有输入的赎回脚本都已执行返回true，有引用的交易还找不到（脚本没有执行）返回false，这时需要在状态验证时完整验证
+	 */
+	public boolean verifyScripts(Transaction tx, List<Transaction> txs) {
+		tx.verify();
+		//验证交易的合法性
+		if(tx instanceof BaseCommonlyTransaction) {
+			((BaseCommonlyTransaction)tx).verifyScript();
+		}
+		if(!tx.isPaymentTransaction() || tx.getType() == Definition.TYPE_COINBASE || !needRunInputScript(tx)) {
+			return true;
+		}
+		boolean resolved = true;
+		List<TransactionInput> inputs = tx.getInputs();
+		//多个输入验证签名时，复用签名hash的上下文
+		tx.setCacheSignatureHash(true);
+		try {
+			for (int i = 0; i < inputs.size(); i++) {
+				TransactionInput input = inputs.get(i);
+				List<TransactionOutput> froms = input.getFroms();
+				if(froms == null || froms.size() == 0) {
+					throw new VerificationException("交易没有引用输入");
+				}
+				TransactionOutput from = froms.get(0);
+				Transaction fromTx = from.getParent();
+				if(fromTx == null) {
+					throw new VerificationException("交易没有正确的输入引用");
+				}
+				if(fromTx.getOutputs() == null || fromTx.getOutputs().isEmpty()) {
+					fromTx = resolveFrom(from, txs);
+					if(fromTx == null) {
+						//引用不存在，留给状态验证处理
+						resolved = false;
+						continue;
+					}
+				}
+				Script verifyScript = new Script(fromTx.getOutput(from.getIndex()).getScriptBytes());
+				if(!verifyScript.isConsensusOutputScript()) {
+					input.getScriptSig().run(tx, i, verifyScript);
+				}
+			}
+		} finally {
+			tx.setCacheSignatureHash(false);
+		}
+		return resolved;
+	}
+
+	/*
+	 * 查找输入引用的完整交易，并设置到引用上，找不到返回null
+	 */
+	private Transaction resolveFrom(TransactionOutput output, List<Transaction> txs) {
+		Sha256Hash fromId = output.getParent().getHash();
+		//查询内存池里是否有该交易
+		Transaction preTransaction = MempoolContainer.getInstace().get(fromId);
+		//内存池里面没有，那么是否在传入的列表里面
+		if(preTransaction == null && txs != null && txs.size() > 0) {
+			for (Transaction transaction : txs) {
+				if(transaction.getHash().equals(fromId)) {
+					preTransaction = transaction;
+					break;
+				}
+			}
+		}
+		if(preTransaction == null) {
+			//内存池和传入的列表都没有，那么去存储里面找
+			TransactionStore preTransactionStore = blockStoreProvider.getTransaction(fromId.getBytes());
+			if(preTransactionStore == null) {
+				return null;
+			}
+			preTransaction = preTransactionStore.getTransaction();
+		}
+		output.setParent(preTransaction);
+		output.setScript(preTransaction.getOutput(output.getIndex()).getScript());
+		return preTransaction;
+	}
+
+	/*
+	 * 是否需要执行输入的赎回脚本，防伪码验证交易和两笔历史交易除外
+	 */
+	private boolean needRunInputScript(Transaction tx) {
+		if(tx.getType() == Definition.TYPE_ANTIFAKE_CODE_VERIFY) {
+			return false;
+		}
+		String hash = tx.getHash().toString();
+		return !(hash.equals("eef6ef8421229850dfc7e276264b179eced6699f518691c555652df73a5cf86a")
+				|| hash.equals("f134df4fdf57228cf95b8d69f038b872d04729868010dae62a101b0c7fd1aa91"));
+	}
+
 	/**
 	 * 交易验证器，验证交易的输入输出是否合法
 	 * @param tx	待验证的交易
@@ -76,6 +168,27 @@ public class TransactionValidator {
 	 * @return ValidatorResult<TransactionValidatorResult>
 	 */
 	public ValidatorResult<TransactionValidatorResult> valDo(Transaction tx, List<Transaction> txs) {
+		return valDo(tx, txs, false);
+	}
+
+	/**
+	 * 交易验证器，验证交易的输入输出是否合法
+	 * @param tx	待验证的交易
+	 * @param txs	当输入引用找不到时，就在这个列表里面查找（当同一个区块包含多个交易链时需要用到）
+	 * @param scriptVerified	签名和脚本是否已经通过 {@link #verifyScripts(Transaction, List)} 验证，是则不再重复验证
+	 * @return ValidatorResult<TransactionValidatorResult>
+	 */
+	public ValidatorResult<TransactionValidatorResult> valDo(Transaction tx, List<Transaction> txs, boolean scriptVerified) {
+		//多个输入验证签名时，复用签名hash的上下文
+		tx.setCacheSignatureHash(true);
+		try {
+			return doValDo(tx, txs, scriptVerified);
+		} finally {
+			tx.setCacheSignatureHash(false);
+		}
+	}
+
+	private ValidatorResult<TransactionValidatorResult> doValDo(Transaction tx, List<Transaction> txs, boolean scriptVerified) {
 
 		final TransactionValidatorResult result = new TransactionValidatorResult();
 		ValidatorResult<TransactionValidatorResult> validatorResult = new ValidatorResult<TransactionValidatorResult>() {
@@ -85,10 +198,12 @@ public class TransactionValidator {
 			}
 		};
 
-		tx.verify();
-		//验证交易的合法性
-		if(tx instanceof BaseCommonlyTransaction) {
-			((BaseCommonlyTransaction)tx).verifyScript();
+		if(!scriptVerified) {
+			tx.verify();
+			//验证交易的合法性
+			if(tx instanceof BaseCommonlyTransaction) {
+				((BaseCommonlyTransaction)tx).verifyScript();
+			}
 		}
 
 		//交易的txid不能和区块里面的交易重复
@@ -127,30 +242,11 @@ public class TransactionValidator {
 
 					//如果引用已经是完整的交易，则不查询
 					if(fromTx.getOutputs() == null || fromTx.getOutputs().isEmpty()) {
-						//需要设置引用的完整交易
-						//查询内存池里是否有该交易
-						Transaction preTransaction = MempoolContainer.getInstace().get(fromId);
-						//内存池里面没有，那么是否在传入的列表里面
-						if(preTransaction == null && txs != null && txs.size() > 0) {
-							for (Transaction transaction : txs) {
-								if(transaction.getHash().equals(fromId)) {
-									preTransaction = transaction;
-									break;
-								}
-							}
-						}
-						if(preTransaction == null) {
-							//内存池和传入的列表都没有，那么去存储里面找
-							TransactionStore preTransactionStore = blockStoreProvider.getTransaction(fromId.getBytes());
-							if(preTransactionStore == null) {
-								result.setResult(false, TransactionValidatorResult.ERROR_CODE_NOT_FOUND, "引用了不存在的交易");
-								return validatorResult;
-							}
-							preTransaction = preTransactionStore.getTransaction();
+						fromTx = resolveFrom(output, txs);
+						if(fromTx == null) {
+							result.setResult(false, TransactionValidatorResult.ERROR_CODE_NOT_FOUND, "引用了不存在的交易");
+							return validatorResult;
 						}
-						output.setParent(preTransaction);
-						output.setScript(preTransaction.getOutput(index).getScript());
-						fromTx = preTransaction;
 					}
 
 					//验证引用的交易是否可用
@@ -241,16 +337,9 @@ public class TransactionValidator {
 							return validatorResult;
 						}
 					}
-				} else {
+				} else if(!scriptVerified && needRunInputScript(tx)) {
 					//验证赎回脚本
-					if(tx.getType() == Definition.TYPE_ANTIFAKE_CODE_VERIFY) {
-//                		input.getScriptSig().execute(verifyScript);
-					} else if(!(
-						tx.getHash().toString().equals("eef6ef8421229850dfc7e276264b179eced6699f518691c555652df73a5cf86a")
-								|| tx.getHash().toString().equals("f134df4fdf57228cf95b8d69f038b872d04729868010dae62a101b0c7fd1aa91")
-					)) {
-						input.getScriptSig().run(tx, i, verifyScript);
-					}
+					input.getScriptSig().run(tx, i, verifyScript);
 				}
 				i ++;
 			}
@@ -0,0 +1,246 @@
+package org.inchain.core;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.NotYetConnectedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.inchain.crypto.ECKey;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.message.Block;
+import org.inchain.message.BlockHeader;
+import org.inchain.message.GetDatasMessage;
+import org.inchain.message.GetHeadersMessage;
+import org.inchain.message.InventoryItem;
+import org.inchain.message.Message;
+import org.inchain.msgprocess.BlockMessageProcess;
+import org.inchain.msgprocess.MessageProcessResult;
+import org.inchain.network.NetworkParams;
+import org.inchain.network.UnitNetworkParams;
+import org.inchain.script.ScriptBuilder;
+import org.inchain.utils.Utils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HeadersFirstSynchronizerTest {
+
+	private final NetworkParams network = new UnitNetworkParams();
+	private final ECKey key = new ECKey();
+	//按顺序保存的区块高度
+	private final List<Long> connected = new CopyOnWriteArrayList<Long>();
+
+	private final BlockMessageProcess blockMessageProcess = new BlockMessageProcess() {
+		@Override
+		public MessageProcessResult process(Message message, Peer peer) {
+			connected.add(((Block) message).getHeight());
+			return new MessageProcessResult(true);
+		}
+	};
+
+	@Test
+	public void testOutOfOrderBlocks() {
+		final List<BlockHeader> headers = createHeaders(3);
+		final HeadersFirstSynchronizer[] sync = new HeadersFirstSynchronizer[1];
+		TestPeer peer = new TestPeer(1) {
+			@Override
+			protected void onGetDatas(List<InventoryItem> items) {
+				//倒序返回，先到的区块要等前面的区块保存之后才能保存
+				List<InventoryItem> reversed = new ArrayList<InventoryItem>(items);
+				Collections.reverse(reversed);
+				for (InventoryItem item : reversed) {
+					Assert.assertTrue(sync[0].receiveBlock(createBlock(headers, item.getHash())));
+				}
+				Assert.assertFalse(sync[0].receiveBlock(createBlock(headers, items.get(0).getHash())));
+			}
+		};
+		sync[0] = peer.synchronizer = newSynchronizer(peer);
+		peer.headers = headers;
+
+		Assert.assertEquals(HeadersFirstSynchronizer.RESULT_SUCCESS, sync[0].synchronize(createLocalBest(), 3));
+		Assert.assertEquals(3l, sync[0].getConnectedCount());
+		Assert.assertEquals(heights(1, 3), connected);
+	}
+
+	@Test
+	public void testStalledPeer() {
+		final List<BlockHeader> headers = createHeaders(20);
+		//不返回任何区块的节点
+		TestPeer stalled = new TestPeer(1);
+		final List<Sha256Hash> served = new CopyOnWriteArrayList<Sha256Hash>();
+		TestPeer good = new TestPeer(2) {
+			@Override
+			protected void onGetDatas(List<InventoryItem> items) {
+				for (InventoryItem item : items) {
+					served.add(item.getHash());
+					synchronizer.receiveBlock(createBlock(headers, item.getHash()));
+				}
+			}
+		};
+		HeadersFirstSynchronizer synchronizer = newSynchronizer(stalled, good);
+		synchronizer.setBlockTimeout(200l);
+		stalled.synchronizer = good.synchronizer = synchronizer;
+		stalled.headers = good.headers = headers;
+
+		Assert.assertEquals(HeadersFirstSynchronizer.RESULT_SUCCESS, synchronizer.synchronize(createLocalBest(), 20));
+		Assert.assertEquals(heights(1, 20), connected);
+
+		//第一批分配给了超时的节点，超时后全部重新分配给另一个节点
+		Assert.assertEquals(16, stalled.requested.size());
+		Assert.assertEquals(20, served.size());
+		Assert.assertTrue(served.containsAll(stalled.requested));
+	}
+
+	@Test
+	public void testInvalidHeaders() throws IOException {
+		//梅克尔树根不对
+		List<BlockHeader> headers = createHeaders(3);
+		headers.get(1).setMerkleHash(Sha256Hash.ZERO_HASH);
+		sign(headers.get(1));
+		assertRejected(headers);
+
+		//时间没有晚于上一个区块
+		headers = createHeaders(3);
+		headers.get(2).setTime(headers.get(1).getTime());
+		sign(headers.get(2));
+		assertRejected(headers);
+
+		//签名不对
+		headers = createHeaders(3);
+		headers.get(2).setPeriodCount(5);
+		assertRejected(headers);
+
+		//交易数量和hash列表不一致
+		headers = createHeaders(3);
+		headers.get(0).setTxCount(3);
+		sign(headers.get(0));
+		assertRejected(headers);
+	}
+
+	private void assertRejected(List<BlockHeader> headers) {
+		TestPeer bad = new TestPeer(1);
+		TestPeer good = new TestPeer(2);
+		HeadersFirstSynchronizer synchronizer = newSynchronizer(bad, good);
+		bad.synchronizer = good.synchronizer = synchronizer;
+		bad.headers = headers;
+		//另一个节点也没有正确的区块头
+		good.headers = headers;
+
+		Assert.assertEquals(HeadersFirstSynchronizer.RESULT_FAILED, synchronizer.synchronize(createLocalBest(), 3));
+		//返回错误区块头的节点不再使用，没有请求任何区块
+		Assert.assertEquals(1, bad.headerRequests);
+		Assert.assertEquals(1, good.headerRequests);
+		Assert.assertTrue(bad.requested.isEmpty());
+		Assert.assertTrue(good.requested.isEmpty());
+		Assert.assertEquals(0l, synchronizer.getConnectedCount());
+	}
+
+	private HeadersFirstSynchronizer newSynchronizer(Peer... peers) {
+		List<Peer> list = new ArrayList<Peer>();
+		Collections.addAll(list, peers);
+		return new HeadersFirstSynchronizer(network, blockMessageProcess, list);
+	}
+
+	private BlockHeader createLocalBest() {
+		BlockHeader header = new BlockHeader(network);
+		header.setHash(Sha256Hash.of("local".getBytes()));
+		header.setHeight(0);
+		header.setTime(1000l);
+		return header;
+	}
+
+	private List<BlockHeader> createHeaders(int count) {
+		List<BlockHeader> headers = new ArrayList<BlockHeader>();
+		Sha256Hash preHash = createLocalBest().getHash();
+		for (int height = 1; height <= count; height++) {
+			BlockHeader header = new BlockHeader(network);
+			header.setVersion(1);
+			header.setPreHash(preHash);
+			header.setTime(1000l + height * 10);
+			header.setHeight(height);
+			header.setPeriodCount(1);
+			List<Sha256Hash> txHashs = new ArrayList<Sha256Hash>();
+			txHashs.add(Sha256Hash.of(("coinbase" + height).getBytes()));
+			txHashs.add(Sha256Hash.of(("tx" + height).getBytes()));
+			header.setTxHashs(txHashs);
+			header.setTxCount(txHashs.size());
+			header.setMerkleHash(BlockHeader.buildMerkleHash(txHashs));
+			sign(header);
+			header.setHash(Sha256Hash.of(("block" + height).getBytes()));
+			headers.add(header);
+			preHash = header.getHash();
+		}
+		return headers;
+	}
+
+	private void sign(BlockHeader header) {
+		try {
+			byte[] sign = key.sign(header.getHeaderHash()).encodeToDER();
+			header.setScriptBytes(ScriptBuilder.createSystemAccountScript(Utils.sha256hash160(key.getPubKey(false)), key.getPubKey(true), sign).getProgram());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Block createBlock(List<BlockHeader> headers, Sha256Hash hash) {
+		for (BlockHeader header : headers) {
+			if(header.getHash().equals(hash)) {
+				Block block = new Block(network);
+				block.setHash(hash);
+				block.setHeight(header.getHeight());
+				return block;
+			}
+		}
+		throw new IllegalArgumentException("unknown block " + hash);
+	}
+
+	private static List<Long> heights(long from, long to) {
+		List<Long> heights = new ArrayList<Long>();
+		for (long height = from; height <= to; height++) {
+			heights.add(height);
+		}
+		return heights;
+	}
+
+	/*
+	 * 不建立连接的节点，发送的消息直接交给同步器应答
+	 */
+	private class TestPeer extends Peer {
+		HeadersFirstSynchronizer synchronizer;
+		List<BlockHeader> headers;
+		int headerRequests;
+		final List<Sha256Hash> requested = new CopyOnWriteArrayList<Sha256Hash>();
+
+		private TestPeer(int id) {
+			super(network, new InetSocketAddress("127.0.0." + id, 8322));
+		}
+
+		@Override
+		public void sendMessage(Message message) throws NotYetConnectedException, IOException {
+			if(message instanceof GetHeadersMessage) {
+				headerRequests++;
+				Sha256Hash start = ((GetHeadersMessage) message).getStartHash();
+				List<BlockHeader> result = new ArrayList<BlockHeader>();
+				boolean found = start.equals(createLocalBest().getHash());
+				for (BlockHeader header : headers) {
+					if(found) {
+						result.add(header);
+					}
+					found = found || header.getHash().equals(start);
+				}
+				synchronizer.receiveHeaders(this, result);
+			} else if(message instanceof GetDatasMessage) {
+				List<InventoryItem> items = ((GetDatasMessage) message).getInvs();
+				for (InventoryItem item : items) {
+					requested.add(item.getHash());
+				}
+				onGetDatas(items);
+			}
+		}
+
+		protected void onGetDatas(List<InventoryItem> items) {
+		}
+	}
+}
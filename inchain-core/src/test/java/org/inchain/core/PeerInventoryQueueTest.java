@@ -0,0 +1,56 @@
+package org.inchain.core;
+
+import java.util.List;
+
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.message.InventoryItem;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PeerInventoryQueueTest {
+
+	@Test
+	public void testQueue() {
+		PeerInventoryQueue queue = new PeerInventoryQueue();
+
+		//对方通知过的不再加入
+		queue.addKnown(hash(1));
+		Assert.assertEquals(-1, queue.offer(item(1), 1000l));
+
+		Assert.assertEquals(1, queue.offer(item(2), 1000l));
+		//后加入的不改变本批的发送时间
+		Assert.assertEquals(2, queue.offer(item(3), 5000l));
+		//重复的忽略
+		Assert.assertEquals(-1, queue.offer(item(2), 1000l));
+
+		Assert.assertNull(queue.poll(999l, false));
+		List<InventoryItem> items = queue.poll(1000l, false);
+		Assert.assertEquals(2, items.size());
+		Assert.assertEquals(hash(2), items.get(0).getHash());
+		Assert.assertEquals(hash(3), items.get(1).getHash());
+		Assert.assertNull(queue.poll(1000l, true));
+
+		//强制发送不管时间
+		queue.offer(item(4), 9000l);
+		Assert.assertEquals(1, queue.poll(0l, true).size());
+		Assert.assertTrue(queue.isKnown(hash(4)));
+	}
+
+	@Test
+	public void testKnownLimit() {
+		PeerInventoryQueue queue = new PeerInventoryQueue();
+		for (int i = 0; i <= PeerInventoryQueue.MAX_KNOWN_SIZE; i++) {
+			queue.addKnown(hash(i));
+		}
+		Assert.assertFalse(queue.isKnown(hash(0)));
+		Assert.assertTrue(queue.isKnown(hash(PeerInventoryQueue.MAX_KNOWN_SIZE)));
+	}
+
+	private InventoryItem item(int i) {
+		return new InventoryItem(InventoryItem.Type.Transaction, hash(i));
+	}
+
+	private Sha256Hash hash(int i) {
+		return Sha256Hash.twiceOf(new byte[] {(byte) i, (byte) (i >> 8)});
+	}
+}
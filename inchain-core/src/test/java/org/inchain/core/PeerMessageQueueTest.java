@@ -0,0 +1,80 @@
+package org.inchain.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.message.GetHeadersMessage;
+import org.inchain.message.Message;
+import org.inchain.message.PingMessage;
+import org.inchain.network.NetworkParams;
+import org.inchain.network.UnitNetworkParams;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PeerMessageQueueTest {
+
+	@Test
+	public void testOrderAndWatermark() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(PeerMessageQueue.HIGH_WATER_COUNT + 1);
+		final CountDownLatch pingDone = new CountDownLatch(1);
+		final List<Message> handled = new CopyOnWriteArrayList<Message>();
+		final List<Boolean> pauses = new CopyOnWriteArrayList<Boolean>();
+
+		PeerMessageQueue queue = new PeerMessageQueue(new PeerMessageQueue.Listener() {
+			@Override
+			public void onMessage(Message message) {
+				if(message instanceof PingMessage) {
+					pingDone.countDown();
+				} else {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					handled.add(message);
+				}
+				finished.countDown();
+			}
+			@Override
+			public void onReadPaused(boolean paused) {
+				pauses.add(paused);
+			}
+		});
+
+		NetworkParams network = new UnitNetworkParams();
+		GetHeadersMessage[] messages = new GetHeadersMessage[PeerMessageQueue.HIGH_WATER_COUNT];
+		for (int i = 0; i < messages.length; i++) {
+			messages[i] = new GetHeadersMessage(network, Sha256Hash.ZERO_HASH, Sha256Hash.ZERO_HASH);
+			queue.offer(messages[i]);
+		}
+		//普通消息积压时达到高水位，暂停读取
+		Assert.assertTrue(queue.isPaused());
+		Assert.assertEquals(1, pauses.size());
+		Assert.assertTrue(pauses.get(0));
+
+		//优先消息不排在普通消息后面
+		queue.offer(new PingMessage(1l));
+		Assert.assertTrue(pingDone.await(5, TimeUnit.SECONDS));
+
+		release.countDown();
+		Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+
+		//同一队列按接收顺序处理，处理完后恢复读取
+		Assert.assertEquals(messages.length, handled.size());
+		for (int i = 0; i < messages.length; i++) {
+			Assert.assertSame(messages[i], handled.get(i));
+		}
+		//回调之后才计数，稍等最后一条处理完
+		for (int i = 0; i < 100 && queue.size() > 0; i++) {
+			Thread.sleep(50);
+		}
+		Assert.assertEquals(0, queue.size());
+		Assert.assertEquals(2, pauses.size());
+		Assert.assertFalse(pauses.get(1));
+		Assert.assertFalse(queue.isPaused());
+	}
+}
@@ -0,0 +1,36 @@
+package org.inchain.crypto;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Sha256HashTest {
+
+	@Test
+	public void testHashTwiceBuffer() {
+		byte[] bytes = new byte[10000];
+		new Random(1l).nextBytes(bytes);
+
+		ByteBuffer heap = ByteBuffer.wrap(bytes);
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes);
+		direct.flip();
+
+		int[][] ranges = new int[][] {{0, bytes.length}, {0, 0}, {24, 80}, {333, 9000}};
+		for (int[] range : ranges) {
+			byte[] expected = Sha256Hash.hashTwice(bytes, range[0], range[1]);
+			for (ByteBuffer buffer : new ByteBuffer[] {heap, direct}) {
+				buffer.limit(range[0] + range[1]);
+				buffer.position(range[0]);
+				Assert.assertArrayEquals(expected, Sha256Hash.hashTwice(buffer));
+				//只计算剩余的部分，不改变位置
+				Assert.assertEquals(range[0], buffer.position());
+				Assert.assertEquals(range[0] + range[1], buffer.limit());
+				buffer.clear();
+			}
+		}
+		Assert.assertArrayEquals(Sha256Hash.hashTwice(bytes), Sha256Hash.hashTwice(ByteBuffer.wrap(bytes)));
+	}
+}
@@ -0,0 +1,113 @@
+package org.inchain.crypto;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.inchain.NativeSecp256k1Util.AssertFailException;
+import org.inchain.Secp256k1Context;
+import org.inchain.crypto.ECKey.ECDSASignature;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class SignatureVerifierTest {
+
+	private ECKey key = ECKey.fromPrivate(new BigInteger("16426823946378490801614451355554969482806436503112915489322677953633742147003"));
+
+	@Test
+	public void testBouncyCastle() {
+		check(new BouncyCastleSignatureVerifier());
+	}
+
+	@Test
+	public void testNative() {
+		Assume.assumeTrue(Secp256k1Context.isEnabled());
+		check(new NativeSignatureVerifier(new BouncyCastleSignatureVerifier()));
+	}
+
+	/**
+	 * 本地库拒绝的签名，结果以纯java实现为准，不依赖本地库是否可用
+	 */
+	@Test
+	public void testNativeRejectFallback() {
+		check(new NativeSignatureVerifier(new BouncyCastleSignatureVerifier()) {
+			@Override
+			boolean nativeVerify(byte[] data, byte[] signature, byte[] pub) {
+				return false;
+			}
+
+			@Override
+			byte[] nativeSign(byte[] data, byte[] sec) {
+				return new byte[0];
+			}
+		});
+	}
+
+	/**
+	 * 本地库出错时，同样回退到纯java实现
+	 */
+	@Test
+	public void testNativeErrorFallback() {
+		check(new NativeSignatureVerifier(new BouncyCastleSignatureVerifier()) {
+			@Override
+			boolean nativeVerify(byte[] data, byte[] signature, byte[] pub) throws AssertFailException {
+				throw new AssertFailException("verify failed");
+			}
+
+			@Override
+			byte[] nativeSign(byte[] data, byte[] sec) throws AssertFailException {
+				throw new AssertFailException("sign failed");
+			}
+		});
+	}
+
+	/**
+	 * 更换签名实现后，ECKey 的签名和验证都使用新的实现
+	 */
+	@Test
+	public void testSetSignatureVerifier() {
+		SignatureVerifier original = ECKey.getSignatureVerifier();
+		final AtomicInteger calls = new AtomicInteger();
+		try {
+			ECKey.setSignatureVerifier(new BouncyCastleSignatureVerifier() {
+				@Override
+				public boolean verify(byte[] data, byte[] signature, byte[] pub) {
+					calls.incrementAndGet();
+					return super.verify(data, signature, pub);
+				}
+			});
+			byte[] data = Sha256Hash.of("data".getBytes()).getBytes();
+			byte[] sig = key.sign(Sha256Hash.wrap(data)).encodeToDER();
+			Assert.assertTrue(ECKey.verify(data, sig, key.getPubKey()));
+			Assert.assertEquals(1, calls.get());
+		} finally {
+			ECKey.setSignatureVerifier(original);
+		}
+		Assert.assertSame(original, ECKey.getSignatureVerifier());
+	}
+
+	private void check(SignatureVerifier verifier) {
+		SignatureVerifier reference = new BouncyCastleSignatureVerifier();
+		byte[] pub = key.getPubKey();
+
+		for (int i = 0; i < 20; i++) {
+			byte[] data = Sha256Hash.of(("data_" + i).getBytes()).getBytes();
+
+			//确定性签名，两种实现结果一致
+			ECDSASignature sig = verifier.sign(data, key.getPrivKey());
+			Assert.assertArrayEquals(reference.sign(data, key.getPrivKey()).encodeToDER(), sig.encodeToDER());
+			Assert.assertTrue(sig.isCanonical());
+
+			Assert.assertTrue(verifier.verify(data, sig.encodeToDER(), pub));
+			Assert.assertTrue(verifier.verify(data, sig, pub));
+
+			//高s值的签名，纯java实现可以验证通过，其它实现也必须一致
+			ECDSASignature high = new ECDSASignature(sig.r, ECKey.CURVE.getN().subtract(sig.s));
+			Assert.assertEquals(reference.verify(data, high.encodeToDER(), pub), verifier.verify(data, high.encodeToDER(), pub));
+
+			//篡改内容
+			byte[] other = Sha256Hash.of(("other_" + i).getBytes()).getBytes();
+			Assert.assertFalse(verifier.verify(other, sig.encodeToDER(), pub));
+		}
+	}
+}
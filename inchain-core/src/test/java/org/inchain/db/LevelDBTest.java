@@ -3,6 +3,7 @@ package org.inchain.db;
 import java.io.IOException;
 
 import org.inchain.UnitBaseTestCase;
+import org.junit.Assert;
 import org.junit.Test;
 
 public class LevelDBTest extends UnitBaseTestCase {
@@ -31,4 +32,85 @@ public class LevelDBTest extends UnitBaseTestCase {
 		System.out.println("读取 "+count+" 条数据耗时："+(System.currentTimeMillis() - time)+" ms");
 		storage.close();
 	}
+	
+	@Test
+	public void testBatch() throws IOException {
+		Db storage = new LevelDB("./data/db/inchain_batch");
+		
+		byte[] key1 = "batch_key_1".getBytes();
+		byte[] key2 = "batch_key_2".getBytes();
+		storage.put(key2, "old".getBytes());
+		
+		//批次内能读到未提交的修改
+		storage.beginBatch();
+		storage.put(key1, "value1".getBytes());
+		storage.delete(key2);
+		Assert.assertArrayEquals("value1".getBytes(), storage.get(key1));
+		Assert.assertNull(storage.get(key2));
+		storage.rollbackBatch();
+		
+		//回滚之后数据不变
+		Assert.assertNull(storage.get(key1));
+		Assert.assertArrayEquals("old".getBytes(), storage.get(key2));
+		
+		storage.beginBatch();
+		storage.put(key1, "value1".getBytes());
+		storage.delete(key2);
+		storage.commitBatch(true);
+		
+		Assert.assertFalse(storage.isInBatch());
+		Assert.assertArrayEquals("value1".getBytes(), storage.get(key1));
+		Assert.assertNull(storage.get(key2));
+		
+		storage.delete(key1);
+		storage.close();
+	}
+	
+	@Test
+	public void testNestedRollback() throws IOException {
+		Db storage = new LevelDB("./data/db/inchain_batch");
+		
+		byte[] key1 = "nested_key_1".getBytes();
+		byte[] key2 = "nested_key_2".getBytes();
+		
+		//内层回滚后外层还在批次中，最外层提交时整个批次被放弃
+		storage.beginBatch();
+		storage.put(key1, "outer".getBytes());
+		storage.beginBatch();
+		storage.put(key2, "inner".getBytes());
+		storage.rollbackBatch();
+		Assert.assertTrue(storage.isInBatch());
+		try {
+			storage.commitBatch(true);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+		}
+		Assert.assertFalse(storage.isInBatch());
+		Assert.assertNull(storage.get(key1));
+		Assert.assertNull(storage.get(key2));
+		
+		//内层回滚，外层也回滚
+		storage.beginBatch();
+		storage.put(key1, "outer".getBytes());
+		storage.beginBatch();
+		storage.rollbackBatch();
+		storage.rollbackBatch();
+		Assert.assertFalse(storage.isInBatch());
+		Assert.assertNull(storage.get(key1));
+		
+		//内层提交不影响外层，外层提交后一起写入
+		storage.beginBatch();
+		storage.put(key1, "outer".getBytes());
+		storage.beginBatch();
+		storage.put(key2, "inner".getBytes());
+		storage.commitBatch(true);
+		Assert.assertNull(storage.getSourceDb().get(key2));
+		storage.commitBatch(true);
+		Assert.assertArrayEquals("outer".getBytes(), storage.get(key1));
+		Assert.assertArrayEquals("inner".getBytes(), storage.get(key2));
+		
+		storage.delete(key1);
+		storage.delete(key2);
+		storage.close();
+	}
 }
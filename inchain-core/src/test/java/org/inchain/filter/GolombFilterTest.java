@@ -0,0 +1,63 @@
+package org.inchain.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.utils.Utils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GolombFilterTest {
+
+	@Test
+	public void testSipHash() {
+		byte[] key = new byte[16];
+		byte[] message = new byte[15];
+		for (int i = 0; i < 16; i++) {
+			key[i] = (byte) i;
+			if(i < 15) {
+				message[i] = (byte) i;
+			}
+		}
+		long k0 = Utils.readInt64(key, 0);
+		long k1 = Utils.readInt64(key, 8);
+		Assert.assertEquals(0x726fdb47dd0e0e31l, GolombFilter.sipHash(k0, k1, new byte[0]));
+		Assert.assertEquals(0xa129ca6149be45e5l, GolombFilter.sipHash(k0, k1, message));
+	}
+
+	@Test
+	public void testMatch() {
+		byte[] key = Sha256Hash.hash(new byte[] {1});
+		List<byte[]> elements = new ArrayList<byte[]>();
+		for (int i = 0; i < 500; i++) {
+			elements.add(Arrays.copyOf(Sha256Hash.hash(("in" + i).getBytes()), 20));
+		}
+		//重复的元素只保留一个
+		elements.add(elements.get(0).clone());
+
+		GolombFilter filter = new GolombFilter(key, GolombFilter.build(key, elements).getData());
+		Assert.assertEquals(500, filter.getCount());
+		for (byte[] element : elements) {
+			Assert.assertTrue(filter.match(element));
+		}
+
+		int falsePositives = 0;
+		List<byte[]> others = new ArrayList<byte[]>();
+		for (int i = 0; i < 10000; i++) {
+			byte[] other = Arrays.copyOf(Sha256Hash.hash(("out" + i).getBytes()), 20);
+			others.add(other);
+			if(filter.match(other)) {
+				falsePositives++;
+			}
+		}
+		Assert.assertTrue(falsePositives < 5);
+
+		others.add(elements.get(250));
+		Assert.assertTrue(filter.matchAny(others));
+
+		GolombFilter empty = GolombFilter.build(key, new ArrayList<byte[]>());
+		Assert.assertFalse(new GolombFilter(key, empty.getData()).match(elements.get(0)));
+	}
+}
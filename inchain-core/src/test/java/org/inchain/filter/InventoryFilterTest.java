@@ -0,0 +1,42 @@
+package org.inchain.filter;
+
+import org.inchain.crypto.Sha256Hash;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InventoryFilterTest {
+
+	@Test
+	public void testRolling() {
+		int generationSize = 1000;
+		InventoryFilter filter = new InventoryFilter(generationSize, Long.MAX_VALUE);
+
+		byte[] first = Sha256Hash.hash(new byte[] {0});
+		Assert.assertTrue(filter.add(first));
+		Assert.assertFalse(filter.add(first));
+
+		//写满两代之后仍然能查到
+		for (int i = 1; i < 2 * generationSize; i++) {
+			filter.insert(Sha256Hash.hash(Integer.toString(i).getBytes()));
+		}
+		Assert.assertTrue(filter.contains(first));
+		Assert.assertTrue(filter.getFalsePositiveRate() < 0.001);
+
+		//持续写入，误判率不会增长
+		for (int i = 0; i < 20 * generationSize; i++) {
+			filter.insert(Sha256Hash.hash(Integer.toString(-i).getBytes()));
+		}
+		Assert.assertTrue(filter.getFalsePositiveRate() < 0.001);
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if(filter.contains(Sha256Hash.hash(("new" + i).getBytes()))) {
+				falsePositives++;
+			}
+		}
+		Assert.assertTrue(falsePositives < 10);
+
+		filter.clear();
+		Assert.assertFalse(filter.contains(first));
+		Assert.assertEquals(0d, filter.getFalsePositiveRate(), 0d);
+	}
+}
@@ -0,0 +1,37 @@
+package org.inchain.filter;
+
+import org.inchain.crypto.Sha256Hash;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OutpointSetTest {
+
+	@Test
+	public void testAddAndContains() {
+		OutpointSet set = new OutpointSet(4);
+
+		int count = 10000;
+		for (int i = 0; i < count; i++) {
+			byte[] hash = Sha256Hash.of(("tx_" + i).getBytes()).getBytes();
+			Assert.assertTrue(set.add(hash, i % 3));
+		}
+		Assert.assertEquals(count, set.size());
+
+		for (int i = 0; i < count; i++) {
+			byte[] hash = Sha256Hash.of(("tx_" + i).getBytes()).getBytes();
+			byte[] key = new byte[OutpointSet.KEY_LENGTH];
+			System.arraycopy(hash, 0, key, 0, hash.length);
+			key[hash.length] = (byte) (i % 3);
+
+			Assert.assertTrue(set.contains(key));
+			//重复引用
+			Assert.assertFalse(set.add(key));
+
+			key[hash.length] = (byte) (i % 3 + 1);
+			Assert.assertFalse(set.contains(key));
+		}
+
+		set.clear();
+		Assert.assertTrue(set.isEmpty());
+	}
+}
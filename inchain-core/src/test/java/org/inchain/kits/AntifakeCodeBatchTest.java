@@ -0,0 +1,140 @@
+package org.inchain.kits;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.inchain.core.AntifakeCode;
+import org.inchain.core.BroadcastMakeAntifakeCodeResult;
+import org.inchain.core.BroadcastResult;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.network.NetworkParams;
+import org.inchain.network.UnitNetworkParams;
+import org.inchain.transaction.Transaction;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AntifakeCodeBatchTest {
+
+	private final NetworkParams network = new UnitNetworkParams();
+	private final List<Transaction> records = new ArrayList<Transaction>();
+
+	private AccountKit accountKit;
+
+	@Before
+	public void init() throws IOException {
+		accountKit = new AccountKit() {
+			@Override
+			void recordTransaction(Transaction tx) {
+				records.add(tx);
+			}
+		};
+	}
+
+	@Test
+	public void testChainedBatch() throws Exception {
+		Transaction[] txs = newTransactions(4);
+		AntifakeCode[] codes = newCodes(4);
+		//第二笔被拒绝，第三笔一直没有回应
+		BroadcastResult[] broadcastResults = new BroadcastResult[] {
+			replied(true), replied(false), new BroadcastResult(), new BroadcastResult()
+		};
+
+		List<BroadcastMakeAntifakeCodeResult> results = accountKit.trackAntifakeCodeResults(txs, codes, new String[4], broadcastResults, true);
+
+		//找零链上的交易都在内存池里，不等回应全部按顺序记录，后面的交易才能衔接
+		Assert.assertEquals(Arrays.asList(txs), records);
+		Assert.assertEquals(4, results.size());
+		for (int i = 0; i < results.size(); i++) {
+			BroadcastMakeAntifakeCodeResult result = results.get(i);
+			Assert.assertTrue(result.isSuccess());
+			Assert.assertSame(codes[i], result.getAntifakeCode());
+			Assert.assertEquals(txs[i].getHash(), result.getHash());
+		}
+
+		//回应到达时完成对应的 future
+		Assert.assertTrue(results.get(0).get().isSuccess());
+		Assert.assertFalse(results.get(1).get().isSuccess());
+		Assert.assertFalse(results.get(2).getFuture().isDone());
+		Assert.assertFalse(results.get(3).getFuture().isDone());
+
+		broadcastResults[3].getFuture().set(replied(true));
+		Assert.assertTrue(results.get(3).get().isSuccess());
+		Assert.assertFalse(results.get(2).getFuture().isDone());
+		Assert.assertEquals(4, records.size());
+	}
+
+	@Test
+	public void testChainBroken() {
+		//第三笔生成失败后找零链断开，后面的交易没有生成
+		Transaction[] txs = newTransactions(4);
+		txs[2] = null;
+		txs[3] = null;
+		String[] errors = new String[] {null, null, "余额不足", "前面的防伪码生成失败：余额不足"};
+		BroadcastResult[] broadcastResults = new BroadcastResult[] {replied(true), new BroadcastResult(), null, null};
+
+		List<BroadcastMakeAntifakeCodeResult> results = accountKit.trackAntifakeCodeResults(txs, newCodes(4), errors, broadcastResults, true);
+
+		Assert.assertEquals(Arrays.asList(txs[0], txs[1]), records);
+		Assert.assertTrue(results.get(0).isSuccess());
+		Assert.assertNotNull(results.get(1).getAntifakeCode());
+		for (int i = 2; i < 4; i++) {
+			Assert.assertFalse(results.get(i).isSuccess());
+			Assert.assertNull(results.get(i).getAntifakeCode());
+			Assert.assertEquals(errors[i], results.get(i).getMessage());
+			Assert.assertTrue(results.get(i).getFuture().isDone());
+		}
+	}
+
+	@Test
+	public void testIndependentBatch() throws Exception {
+		Transaction[] txs = newTransactions(4);
+		txs[0] = null;
+		String[] errors = new String[] {"验证失败", null, null, null};
+		BroadcastResult[] broadcastResults = new BroadcastResult[] {null, replied(false), new BroadcastResult(), new BroadcastResult()};
+
+		List<BroadcastMakeAntifakeCodeResult> results = accountKit.trackAntifakeCodeResults(txs, newCodes(4), errors, broadcastResults, false);
+
+		//互不依赖的交易只在广播成功后记录
+		Assert.assertTrue(records.isEmpty());
+		Assert.assertEquals("验证失败", results.get(0).getMessage());
+		Assert.assertTrue(results.get(0).getFuture().isDone());
+		for (int i = 1; i < 4; i++) {
+			Assert.assertTrue(results.get(i).isSuccess());
+			Assert.assertEquals(txs[i].getHash(), results.get(i).getHash());
+		}
+		Assert.assertFalse(results.get(1).get().isSuccess());
+
+		broadcastResults[3].getFuture().set(replied(true));
+		Assert.assertEquals(Arrays.asList(txs[3]), records);
+		Assert.assertTrue(results.get(3).get().isSuccess());
+
+		broadcastResults[2].getFuture().set(replied(true));
+		Assert.assertEquals(Arrays.asList(txs[3], txs[2]), records);
+	}
+
+	private Transaction[] newTransactions(int count) {
+		Transaction[] txs = new Transaction[count];
+		for (int i = 0; i < count; i++) {
+			txs[i] = new Transaction(network);
+			txs[i].setHash(Sha256Hash.of(("tx" + i).getBytes()));
+		}
+		return txs;
+	}
+
+	private static AntifakeCode[] newCodes(int count) {
+		AntifakeCode[] codes = new AntifakeCode[count];
+		for (int i = 0; i < count; i++) {
+			codes[i] = new AntifakeCode(null, i);
+		}
+		return codes;
+	}
+
+	private static BroadcastResult replied(boolean success) {
+		BroadcastResult result = new BroadcastResult(success, success ? "成功" : "广播失败，失败信息：交易被拒绝");
+		result.getFuture().set(result);
+		return result;
+	}
+}
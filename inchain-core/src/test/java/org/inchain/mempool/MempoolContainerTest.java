@@ -0,0 +1,124 @@
+package org.inchain.mempool;
+
+import java.math.BigInteger;
+
+import org.inchain.UnitBaseTestCase;
+import org.inchain.account.AccountTool;
+import org.inchain.account.Address;
+import org.inchain.core.Coin;
+import org.inchain.crypto.ECKey;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.network.NetworkParams;
+import org.inchain.script.ScriptBuilder;
+import org.inchain.transaction.Transaction;
+import org.inchain.transaction.TransactionInput;
+import org.inchain.transaction.TransactionOutput;
+import org.inchain.utils.Hex;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class MempoolContainerTest extends UnitBaseTestCase {
+	
+	@Autowired
+	private NetworkParams network;
+	
+	private ECKey key = ECKey.fromPrivate(new BigInteger("16426823946378490801614451355554969482806436503112915489322677953633742147003"));
+
+	@Test
+	public void testFeeRateOrder() {
+		Mempool mempool = new MempoolContainer(1048576);
+		
+		Transaction source = newSource(Coin.COIN.multiply(10), 3);
+		Transaction low = newTx(source.getOutput(0), Coin.COIN.subtract(Coin.CENT));
+		Transaction high = newTx(source.getOutput(1), Coin.COIN.subtract(Coin.CENT.multiply(50)));
+		Transaction middle = newTx(source.getOutput(2), Coin.COIN.subtract(Coin.CENT.multiply(10)));
+		
+		Assert.assertTrue(mempool.add(low));
+		Assert.assertTrue(mempool.add(high));
+		Assert.assertTrue(mempool.add(middle));
+		
+		Assert.assertEquals(high, mempool.get());
+		Assert.assertEquals(middle, mempool.get());
+		Assert.assertEquals(low, mempool.get());
+		Assert.assertNull(mempool.get());
+		
+		//取出打包的交易，在确认之前依然可以查询到
+		Assert.assertEquals(low, mempool.get(low.getHash()));
+	}
+	
+	@Test
+	public void testDoubleSpend() {
+		Mempool mempool = new MempoolContainer(1048576);
+		
+		Transaction source = newSource(Coin.COIN, 1);
+		Transaction tx1 = newTx(source.getOutput(0), Coin.COIN.subtract(Coin.CENT));
+		Transaction tx2 = newTx(source.getOutput(0), Coin.COIN.subtract(Coin.CENT.multiply(2)));
+		
+		Assert.assertTrue(mempool.add(tx1));
+		Assert.assertFalse(mempool.add(tx2));
+		
+		//被确认之后，引用同一输出的交易才可以再次进入
+		mempool.remove(tx1.getHash());
+		Assert.assertTrue(mempool.add(tx2));
+	}
+	
+	@Test
+	public void testDependencyOrder() {
+		Mempool mempool = new MempoolContainer(1048576);
+		
+		Transaction source = newSource(Coin.COIN, 1);
+		Transaction parent = newTx(source.getOutput(0), Coin.COIN.subtract(Coin.CENT));
+		//子交易手续费更高，但必须在父交易之后取出
+		Transaction child = newTx(parent.getOutput(0), Coin.COIN.subtract(Coin.CENT.multiply(50)));
+		
+		//先放入子交易，模拟区块回滚时倒序放回
+		Assert.assertTrue(mempool.add(child));
+		Assert.assertTrue(mempool.add(parent));
+		
+		Assert.assertEquals(parent, mempool.get());
+		Assert.assertEquals(child, mempool.get());
+	}
+	
+	@Test
+	public void testEvictLowestFeeRate() {
+		Transaction source = newSource(Coin.COIN.multiply(10), 3);
+		Transaction low = newTx(source.getOutput(0), Coin.COIN.subtract(Coin.CENT));
+		Transaction high = newTx(source.getOutput(1), Coin.COIN.subtract(Coin.CENT.multiply(50)));
+		Transaction middle = newTx(source.getOutput(2), Coin.COIN.subtract(Coin.CENT.multiply(10)));
+		
+		//只够容纳两笔交易
+		int size = low.baseSerialize().length;
+		Mempool mempool = new MempoolContainer(size * 2 + size / 2);
+		
+		Assert.assertTrue(mempool.add(low));
+		Assert.assertTrue(mempool.add(middle));
+		Assert.assertTrue(mempool.add(high));
+		
+		Assert.assertEquals(2, mempool.getTxCount());
+		Assert.assertNull(mempool.get(low.getHash()));
+		
+		//手续费率比池内都低，不接收
+		Assert.assertFalse(mempool.add(low));
+	}
+	
+	private Transaction newSource(Coin value, int outputCount) {
+		Address addr = Address.fromP2PKHash(network, network.getSystemAccountVersion(), Hex.decode("ffdf74c494d27474def57c5cb4b41a5455705956"));
+		Transaction source = new Transaction(network);
+		source.setHash(Sha256Hash.twiceOf(Hex.decode("75d58fffca9a69ba47056e435f7a5a2347a11d0093b50b415aa28e973d70640b")));
+		for (int i = 0; i < outputCount; i++) {
+			source.addOutput(new TransactionOutput(source, value, addr));
+		}
+		return source;
+	}
+	
+	private Transaction newTx(TransactionOutput from, Coin outputValue) {
+		Transaction tx = new Transaction(network);
+		TransactionInput input = tx.addInput(from);
+		input.setScriptSig(ScriptBuilder.createInputScript(null, key));
+		
+		Address to = AccountTool.newAddress(network, network.getSystemAccountVersion(), key);
+		tx.addOutput(new TransactionOutput(tx, outputValue, to));
+		return tx;
+	}
+}
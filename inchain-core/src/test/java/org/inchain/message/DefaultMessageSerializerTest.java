@@ -0,0 +1,70 @@
+package org.inchain.message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.inchain.core.exception.ProtocolException;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.network.NetworkParams;
+import org.inchain.network.UnitNetworkParams;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DefaultMessageSerializerTest {
+
+	private final NetworkParams network = new UnitNetworkParams();
+	private final MessageSerializer serializer = network.getDefaultSerializer();
+
+	@Test
+	public void testDeserializePayloadBytes() throws IOException {
+		Sha256Hash start = Sha256Hash.of("start".getBytes());
+		byte[] bytes = serialize(new GetHeadersMessage(network, start, Sha256Hash.ZERO_HASH));
+
+		ByteBuffer in = ByteBuffer.wrap(bytes);
+		serializer.seekPastMagicBytes(in);
+		MessageSerializer.MessagePacketHeader header = serializer.deserializeHeader(in);
+		byte[] payload = Arrays.copyOfRange(bytes, in.position(), bytes.length);
+		Assert.assertEquals(payload.length, header.size);
+
+		//大消息从拼接好的字节数组解析，结果与直接从缓冲区解析一致
+		Message message = serializer.deserializePayload(header, payload);
+		Assert.assertTrue(message instanceof GetHeadersMessage);
+		Assert.assertEquals(start, ((GetHeadersMessage) message).getStartHash());
+
+		Message fromBuffer = serializer.deserializePayload(header, ByteBuffer.wrap(payload));
+		Assert.assertEquals(start, ((GetHeadersMessage) fromBuffer).getStartHash());
+	}
+
+	@Test
+	public void testInvalidPayloadBytes() throws IOException {
+		byte[] bytes = serialize(new GetHeadersMessage(network, Sha256Hash.ZERO_HASH, Sha256Hash.ZERO_HASH));
+		ByteBuffer in = ByteBuffer.wrap(bytes);
+		serializer.seekPastMagicBytes(in);
+		MessageSerializer.MessagePacketHeader header = serializer.deserializeHeader(in);
+		byte[] payload = Arrays.copyOfRange(bytes, in.position(), bytes.length);
+
+		//校验和不对
+		byte[] corrupted = payload.clone();
+		corrupted[0] ^= 1;
+		try {
+			serializer.deserializePayload(header, corrupted);
+			Assert.fail();
+		} catch (ProtocolException e) {
+		}
+
+		//长度与消息头不一致
+		try {
+			serializer.deserializePayload(header, Arrays.copyOf(payload, payload.length - 1));
+			Assert.fail();
+		} catch (ProtocolException e) {
+		}
+	}
+
+	private byte[] serialize(Message message) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize(message, out);
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,79 @@
+package org.inchain.message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.inchain.core.VarInt;
+import org.inchain.core.exception.ProtocolException;
+import org.inchain.crypto.ECKey;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.network.NetworkParams;
+import org.inchain.network.UnitNetworkParams;
+import org.inchain.script.ScriptBuilder;
+import org.inchain.utils.Utils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HeadersMessageTest {
+
+	private final NetworkParams network = new UnitNetworkParams();
+
+	@Test
+	public void testGetHeaders() {
+		Sha256Hash start = Sha256Hash.of("start".getBytes());
+		GetHeadersMessage message = new GetHeadersMessage(network, start, Sha256Hash.ZERO_HASH);
+
+		GetHeadersMessage parsed = new GetHeadersMessage(network, message.baseSerialize());
+		Assert.assertEquals(start, parsed.getStartHash());
+		Assert.assertEquals(Sha256Hash.ZERO_HASH, parsed.getStopHash());
+	}
+
+	@Test
+	public void testHeaders() throws Exception {
+		ECKey key = new ECKey();
+		List<BlockHeader> headers = new ArrayList<BlockHeader>();
+		Sha256Hash preHash = Sha256Hash.ZERO_HASH;
+		for (int height = 1; height <= 3; height++) {
+			BlockHeader header = new BlockHeader(network);
+			header.setVersion(1);
+			header.setPreHash(preHash);
+			header.setTime(1000l + height);
+			header.setHeight(height);
+			header.setPeriodCount(1);
+			header.setTimePeriod(height);
+			header.setPeriodStartTime(1000l);
+			List<Sha256Hash> txHashs = new ArrayList<Sha256Hash>();
+			for (int i = 0; i < height; i++) {
+				txHashs.add(Sha256Hash.of(("tx" + height + i).getBytes()));
+			}
+			header.setTxHashs(txHashs);
+			header.setTxCount(txHashs.size());
+			header.setMerkleHash(BlockHeader.buildMerkleHash(txHashs));
+			byte[] sign = key.sign(header.getHeaderHash()).encodeToDER();
+			header.setScriptBytes(ScriptBuilder.createSystemAccountScript(Utils.sha256hash160(key.getPubKey(false)), key.getPubKey(true), sign).getProgram());
+			header.setHash(Sha256Hash.of(("block" + height).getBytes()));
+			headers.add(header);
+			preHash = header.getHash();
+		}
+
+		HeadersMessage parsed = new HeadersMessage(network, new HeadersMessage(network, headers).baseSerialize());
+		Assert.assertEquals(headers.size(), parsed.getHeaders().size());
+		for (int i = 0; i < headers.size(); i++) {
+			BlockHeader expected = headers.get(i);
+			BlockHeader header = parsed.getHeaders().get(i);
+			//区块hash单独传输，不是对区块头计算的
+			Assert.assertEquals(expected.getHash(), header.getHash());
+			Assert.assertEquals(expected.getPreHash(), header.getPreHash());
+			Assert.assertEquals(expected.getHeight(), header.getHeight());
+			Assert.assertEquals(expected.getTime(), header.getTime());
+			Assert.assertEquals(expected.getTxHashs(), header.getTxHashs());
+			Assert.assertEquals(header.getMerkleHash(), BlockHeader.buildMerkleHash(header.getTxHashs()));
+			header.verifyScript();
+		}
+	}
+
+	@Test(expected = ProtocolException.class)
+	public void testTooManyHeaders() {
+		new HeadersMessage(network, new VarInt(HeadersMessage.MAX_HEADERS + 1).encode());
+	}
+}
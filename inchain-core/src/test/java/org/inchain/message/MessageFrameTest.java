@@ -0,0 +1,130 @@
+package org.inchain.message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.inchain.core.Peer;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.net.MessageWriteTarget;
+import org.inchain.network.NetworkParams;
+import org.inchain.network.UnitNetworkParams;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageFrameTest {
+
+	private static final int PEER_COUNT = 8;
+	private static final int SEND_COUNT = 50;
+
+	private final NetworkParams network = new UnitNetworkParams();
+
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		Message message = new GetHeadersMessage(network, Sha256Hash.of("start".getBytes()), Sha256Hash.ZERO_HASH);
+		final MessageFrame frame = new MessageFrame(network.getDefaultSerializer(), message);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		network.getDefaultSerializer().serialize(message, out);
+		final byte[] expected = out.toByteArray();
+		Assert.assertEquals(expected.length, frame.size());
+
+		//每个节点一个线程，同时发送同一个帧，并且一边发送一边分段读出，模拟连接各自的写入进度
+		ExecutorService executor = Executors.newFixedThreadPool(PEER_COUNT);
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<List<byte[]>>> futures = new ArrayList<Future<List<byte[]>>>();
+		for (int i = 0; i < PEER_COUNT; i++) {
+			final int chunk = i + 1;
+			final Peer peer = new Peer(network, new InetSocketAddress("127.0.0." + (i + 1), 8322));
+			peer.setHandshake(true);
+			final TestWriteTarget target = new TestWriteTarget();
+			peer.setWriteTarget(target);
+			futures.add(executor.submit(new Callable<List<byte[]>>() {
+				@Override
+				public List<byte[]> call() throws Exception {
+					start.await();
+					List<byte[]> written = new ArrayList<byte[]>();
+					for (int j = 0; j < SEND_COUNT; j++) {
+						peer.sendMessage(frame);
+						written.add(target.drain(chunk));
+					}
+					return written;
+				}
+			}));
+		}
+		start.countDown();
+
+		try {
+			for (Future<List<byte[]>> future : futures) {
+				List<byte[]> written = future.get();
+				Assert.assertEquals(SEND_COUNT, written.size());
+				for (byte[] bytes : written) {
+					Assert.assertArrayEquals(expected, bytes);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		//共享的数据没有被任何一个连接移动或者修改
+		ByteBuffer buffer = frame.duplicate();
+		Assert.assertEquals(0, buffer.position());
+		Assert.assertEquals(expected.length, buffer.remaining());
+		Assert.assertTrue(buffer.isReadOnly());
+		try {
+			buffer.put(0, (byte) 0);
+			Assert.fail();
+		} catch (ReadOnlyBufferException e) {
+		}
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		Assert.assertArrayEquals(expected, bytes);
+	}
+
+	/*
+	 * 只保存写入的缓冲区，由发送线程自己按指定大小分段读出
+	 */
+	private static class TestWriteTarget implements MessageWriteTarget {
+		private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+
+		@Override
+		public void writeBytes(byte[] message) throws IOException {
+			writeBuffer(ByteBuffer.wrap(message.clone()));
+		}
+
+		@Override
+		public void writeBuffer(ByteBuffer message) throws IOException {
+			buffers.add(message);
+		}
+
+		byte[] drain(int chunk) {
+			ByteBuffer buffer = buffers.remove(0);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] bytes = new byte[chunk];
+			while (buffer.hasRemaining()) {
+				int length = Math.min(chunk, buffer.remaining());
+				buffer.get(bytes, 0, length);
+				out.write(bytes, 0, length);
+				Thread.yield();
+			}
+			return out.toByteArray();
+		}
+
+		@Override
+		public void setReadPaused(boolean paused) {
+		}
+
+		@Override
+		public void closeConnection() {
+		}
+	}
+}
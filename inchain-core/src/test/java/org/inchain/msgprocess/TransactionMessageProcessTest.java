@@ -0,0 +1,215 @@
+package org.inchain.msgprocess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.inchain.core.Coin;
+import org.inchain.core.Definition;
+import org.inchain.core.InventoryRelay;
+import org.inchain.core.Peer;
+import org.inchain.crypto.ECKey;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.filter.InventoryFilter;
+import org.inchain.mempool.Mempool;
+import org.inchain.mempool.MempoolContainer;
+import org.inchain.message.InventoryItem;
+import org.inchain.network.NetworkParams;
+import org.inchain.network.UnitNetworkParams;
+import org.inchain.script.ScriptBuilder;
+import org.inchain.transaction.Transaction;
+import org.inchain.transaction.TransactionOutput;
+import org.inchain.validator.TransactionValidator;
+import org.inchain.validator.TransactionValidatorResult;
+import org.inchain.validator.ValidatorResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class TransactionMessageProcessTest {
+
+	private static final int TX_COUNT = 8;
+
+	private final NetworkParams network = new UnitNetworkParams();
+	private final ECKey key = new ECKey();
+	private final Mempool mempool = MempoolContainer.getInstace();
+	private final List<Transaction> txs = new ArrayList<Transaction>();
+	//转发出去的交易
+	private final List<Sha256Hash> relayed = new CopyOnWriteArrayList<Sha256Hash>();
+	//每个被引用的输出，同时在做状态验证的交易数
+	private final ConcurrentHashMap<Sha256Hash, AtomicInteger> verifying = new ConcurrentHashMap<Sha256Hash, AtomicInteger>();
+	private final AtomicInteger maxVerifying = new AtomicInteger();
+
+	private TransactionMessageProcess process;
+	private InventoryRelay inventoryRelay;
+	//不为空时，状态验证要等到另一笔交易也进入才继续
+	private volatile CyclicBarrier barrier;
+
+	@Before
+	public void init() {
+		inventoryRelay = new InventoryRelay() {
+			@Override
+			public void relay(InventoryItem item, Peer fromPeer) {
+				relayed.add(item.getHash());
+			}
+		};
+		process = new TransactionMessageProcess();
+		ReflectionTestUtils.setField(process, "network", network);
+		ReflectionTestUtils.setField(process, "filter", new InventoryFilter());
+		ReflectionTestUtils.setField(process, "inventoryRelay", inventoryRelay);
+		ReflectionTestUtils.setField(process, "transactionValidator", new TestValidator());
+	}
+
+	@After
+	public void clean() {
+		for (Transaction tx : txs) {
+			mempool.remove(tx.getHash());
+		}
+		inventoryRelay.shutdown();
+	}
+
+	@Test
+	public void testConcurrentDoubleSpend() throws Exception {
+		Transaction source = newSource(1);
+		for (int i = 0; i < TX_COUNT; i++) {
+			newTx(source.getOutput(0), Coin.COIN.subtract(Coin.CENT.multiply(i + 1)));
+		}
+
+		List<MessageProcessResult> results = processAll(txs);
+
+		//引用同一个输出的交易只有一笔进入内存池并转发，其它的状态验证在它之后，被当作双花拒绝
+		int accepted = 0;
+		for (Transaction tx : txs) {
+			if(mempool.get(tx.getHash()) != null) {
+				accepted++;
+				Assert.assertEquals(tx.getHash(), relayed.get(0));
+			}
+		}
+		Assert.assertEquals(1, accepted);
+		Assert.assertEquals(1, relayed.size());
+		Assert.assertEquals(1, maxVerifying.get());
+		for (MessageProcessResult result : results) {
+			Assert.assertNull(result.getReplyMessage());
+		}
+
+		//已经处理过的交易直接忽略
+		Assert.assertFalse(process.process(txs.get(1), null).isSuccess());
+		Assert.assertEquals(1, relayed.size());
+	}
+
+	@Test
+	public void testIndependentTransactions() throws Exception {
+		//引用不同输出的交易可以同时做状态验证，互相等待对方进入，串行执行时会超时
+		barrier = new CyclicBarrier(2);
+		Transaction source = newSource(2);
+		newTx(source.getOutput(0), Coin.COIN.subtract(Coin.CENT));
+		newTx(source.getOutput(1), Coin.COIN.subtract(Coin.CENT));
+
+		processAll(txs);
+
+		Assert.assertEquals(2, relayed.size());
+		for (Transaction tx : txs) {
+			Assert.assertNotNull(mempool.get(tx.getHash()));
+		}
+	}
+
+	private List<MessageProcessResult> processAll(List<Transaction> list) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(list.size());
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<MessageProcessResult>> futures = new ArrayList<Future<MessageProcessResult>>();
+		for (final Transaction tx : list) {
+			futures.add(executor.submit(new Callable<MessageProcessResult>() {
+				@Override
+				public MessageProcessResult call() throws Exception {
+					start.await();
+					return process.process(tx, null);
+				}
+			}));
+		}
+		start.countDown();
+		List<MessageProcessResult> results = new ArrayList<MessageProcessResult>();
+		try {
+			for (Future<MessageProcessResult> future : futures) {
+				results.add(future.get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return results;
+	}
+
+	private Transaction newSource(int outputCount) {
+		Transaction source = new Transaction(network);
+		source.setType(Definition.TYPE_PAY);
+		for (int i = 0; i < outputCount; i++) {
+			source.addOutput(new TransactionOutput(source, Coin.COIN, key));
+		}
+		source.setHash(Sha256Hash.of(source.baseSerialize()));
+		return source;
+	}
+
+	/*
+	 * 输出到公钥，不是发给地址的，不会去查询本地账户
+	 */
+	private Transaction newTx(TransactionOutput from, Coin outputValue) {
+		Transaction tx = new Transaction(network);
+		tx.setType(Definition.TYPE_PAY);
+		tx.addInput(from).setScriptSig(ScriptBuilder.createInputScript(null, key));
+		tx.addOutput(new TransactionOutput(tx, outputValue, key));
+		txs.add(tx);
+		return tx;
+	}
+
+	/*
+	 * 脚本验证直接通过，状态验证记录同一输出上的并发数
+	 */
+	private class TestValidator extends TransactionValidator {
+
+		@Override
+		public boolean verifyScripts(Transaction tx, List<Transaction> txs) {
+			return true;
+		}
+
+		@Override
+		public ValidatorResult<TransactionValidatorResult> valDo(Transaction tx, List<Transaction> txs, boolean scriptVerified) {
+			Sha256Hash from = tx.getInput(0).getFroms().get(0).getParent().getHash();
+			AtomicInteger counter = verifying.putIfAbsent(from, new AtomicInteger());
+			counter = counter == null ? verifying.get(from) : counter;
+			int count = counter.incrementAndGet();
+			synchronized (maxVerifying) {
+				maxVerifying.set(Math.max(maxVerifying.get(), count));
+			}
+			try {
+				if(barrier != null) {
+					barrier.await(5, TimeUnit.SECONDS);
+				} else {
+					Thread.sleep(10l);
+				}
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			} finally {
+				counter.decrementAndGet();
+			}
+
+			final TransactionValidatorResult result = new TransactionValidatorResult();
+			result.setResult(true, "success");
+			return new ValidatorResult<TransactionValidatorResult>() {
+				@Override
+				public TransactionValidatorResult getResult() {
+					return result;
+				}
+			};
+		}
+	}
+}
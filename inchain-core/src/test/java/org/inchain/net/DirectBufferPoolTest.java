@@ -0,0 +1,73 @@
+package org.inchain.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DirectBufferPoolTest {
+
+	@Test
+	public void testSizeClasses() {
+		DirectBufferPool pool = new DirectBufferPool();
+
+		//按所在的级别分配，超过最大一级的按实际大小分配
+		assertBuffer(pool.acquire(1), 4096);
+		assertBuffer(pool.acquire(4096), 4096);
+		assertBuffer(pool.acquire(4097), 16384);
+		assertBuffer(pool.acquire(20000), 65536);
+		assertBuffer(pool.acquire(70000), 70000);
+		Assert.assertEquals(0, pool.size());
+	}
+
+	@Test
+	public void testReuse() {
+		DirectBufferPool pool = new DirectBufferPool();
+
+		ByteBuffer buffer = pool.acquire(1000);
+		buffer.put(new byte[100]);
+		buffer.flip();
+		pool.release(buffer);
+		Assert.assertEquals(1, pool.size());
+
+		//同一级别取回同一块，已经 clear
+		Assert.assertSame(buffer, pool.acquire(2000));
+		Assert.assertEquals(0, buffer.position());
+		Assert.assertEquals(buffer.capacity(), buffer.limit());
+		Assert.assertEquals(0, pool.size());
+
+		//其它级别不会取到
+		pool.release(buffer);
+		Assert.assertNotSame(buffer, pool.acquire(5000));
+		Assert.assertEquals(1, pool.size());
+	}
+
+	@Test
+	public void testRejectedBuffers() {
+		DirectBufferPool pool = new DirectBufferPool();
+
+		pool.release(null);
+		pool.release(ByteBuffer.allocate(4096));
+		pool.release(ByteBuffer.allocateDirect(5000));
+		pool.release(ByteBuffer.allocateDirect(70000));
+		Assert.assertEquals(0, pool.size());
+
+		//每一级缓存的总字节数有上限
+		List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+		for (int i = 0; i < 200; i++) {
+			buffers.add(ByteBuffer.allocateDirect(DirectBufferPool.MAX_SIZE));
+		}
+		for (ByteBuffer buffer : buffers) {
+			pool.release(buffer);
+		}
+		Assert.assertEquals(8 * 1048576 / DirectBufferPool.MAX_SIZE, pool.size());
+	}
+
+	private static void assertBuffer(ByteBuffer buffer, int capacity) {
+		Assert.assertTrue(buffer.isDirect());
+		Assert.assertEquals(capacity, buffer.capacity());
+		Assert.assertEquals(0, buffer.position());
+	}
+}
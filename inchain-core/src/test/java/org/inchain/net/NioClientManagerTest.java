@@ -0,0 +1,175 @@
+package org.inchain.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.inchain.core.Peer;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.listener.NewInConnectionListener;
+import org.inchain.message.BlockHeader;
+import org.inchain.network.UnitNetworkParams;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class NioClientManagerTest {
+
+	private static final int REACTORS = 4;
+
+	private NioClientManager manager;
+	//模拟对方节点，接收主动连接
+	private ServerSocket remote;
+	private final List<Socket> sockets = new CopyOnWriteArrayList<Socket>();
+
+	@Before
+	public void init() throws IOException {
+		manager = new NioClientManager(0, REACTORS);
+		//被动连接建立后会发送版本信息，不读取区块存储
+		ReflectionTestUtils.setField(manager, "network", new UnitNetworkParams() {
+			@Override
+			public BlockHeader getBestBlockHeader() {
+				BlockHeader header = new BlockHeader(this);
+				header.setHash(Sha256Hash.ZERO_HASH);
+				return header;
+			}
+		});
+		manager.start();
+
+		remote = new ServerSocket(0);
+		new Thread("test remote") {
+			public void run() {
+				try {
+					while (true) {
+						sockets.add(remote.accept());
+					}
+				} catch (IOException e) {
+				}
+			}
+		}.start();
+	}
+
+	@After
+	public void close() throws IOException {
+		manager.stop();
+		remote.close();
+		for (Socket socket : sockets) {
+			socket.close();
+		}
+	}
+
+	@Test
+	public void testSpreadAndClose() throws Exception {
+		//主动连接轮流分配给各个反应器
+		int outCount = REACTORS * 2;
+		List<TestConnection> connections = new ArrayList<TestConnection>();
+		for (int i = 0; i < outCount; i++) {
+			TestConnection connection = new TestConnection();
+			connections.add(connection);
+			Assert.assertNotNull(manager.openConnection(new InetSocketAddress("127.0.0.1", remote.getLocalPort()), connection));
+		}
+		for (TestConnection connection : connections) {
+			Assert.assertTrue(connection.opened.await(5, TimeUnit.SECONDS));
+		}
+		assertCounts(2);
+
+		//被动连接同样分配
+		final CountDownLatch inOpened = new CountDownLatch(REACTORS);
+		final CountDownLatch inClosed = new CountDownLatch(REACTORS);
+		manager.setNewInConnectionListener(new NewInConnectionListener() {
+			@Override
+			public boolean allowConnection(InetSocketAddress inetSocketAddress) {
+				return true;
+			}
+			@Override
+			public void connectionOpened(Peer peer) {
+				inOpened.countDown();
+			}
+			@Override
+			public void connectionClosed(Peer peer) {
+				inClosed.countDown();
+			}
+		});
+		List<Socket> inSockets = new ArrayList<Socket>();
+		for (int i = 0; i < REACTORS; i++) {
+			Socket socket = new Socket("127.0.0.1", manager.getLocalPort());
+			inSockets.add(socket);
+			sockets.add(socket);
+		}
+		Assert.assertTrue(inOpened.await(5, TimeUnit.SECONDS));
+		assertCounts(3);
+		Assert.assertEquals(outCount + REACTORS, manager.getConnectedClientCount());
+
+		//关闭时每个反应器关闭自己的连接，两端都能感知到
+		manager.stop();
+		for (TestConnection connection : connections) {
+			Assert.assertTrue(connection.closed.await(5, TimeUnit.SECONDS));
+		}
+		Assert.assertTrue(inClosed.await(5, TimeUnit.SECONDS));
+		assertCounts(0);
+		for (Socket socket : inSockets) {
+			socket.setSoTimeout(5000);
+			InputStream in = socket.getInputStream();
+			//可能先收到版本消息，最后读到连接结束
+			while (in.read() != -1) {
+			}
+		}
+
+		try {
+			manager.openConnection(new InetSocketAddress("127.0.0.1", remote.getLocalPort()), new TestConnection());
+			Assert.fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	private void assertCounts(int expected) throws InterruptedException {
+		int[] counts = new int[REACTORS];
+		Arrays.fill(counts, expected);
+		//连接的登记和回调在反应器线程里，等待登记完成
+		long end = System.currentTimeMillis() + 5000;
+		while (!Arrays.equals(counts, manager.getConnectedClientCounts()) && System.currentTimeMillis() < end) {
+			Thread.sleep(10l);
+		}
+		Assert.assertArrayEquals(counts, manager.getConnectedClientCounts());
+	}
+
+	private static class TestConnection implements StreamConnection {
+		final CountDownLatch opened = new CountDownLatch(1);
+		final CountDownLatch closed = new CountDownLatch(1);
+
+		@Override
+		public void connectionClosed() {
+			closed.countDown();
+		}
+
+		@Override
+		public void connectionOpened() {
+			opened.countDown();
+		}
+
+		@Override
+		public int receiveBytes(ByteBuffer buff) throws Exception {
+			return buff.remaining();
+		}
+
+		@Override
+		public void setWriteTarget(MessageWriteTarget writeTarget) {
+		}
+
+		@Override
+		public int getMaxMessageSize() {
+			return 1024;
+		}
+	}
+}
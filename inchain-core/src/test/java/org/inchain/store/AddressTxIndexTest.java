@@ -0,0 +1,73 @@
+package org.inchain.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.db.LevelDB;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AddressTxIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPageAcrossAddresses() throws IOException {
+		LevelDB db = new LevelDB(folder.newFolder().getAbsolutePath());
+		try {
+			AddressTxIndex index = new AddressTxIndex(db);
+			byte[] a = new byte[20];
+			byte[] b = new byte[20];
+			b[19] = 1;
+
+			//a 在每个高度都有交易，b 只在偶数高度，高度4的交易同时涉及两个地址
+			for (int height = 0; height < 10; height++) {
+				index.put(a, height, 1, txHash(height, 1));
+				if(height % 2 == 0) {
+					index.put(b, height, 2, txHash(height, 2));
+				}
+			}
+			index.put(b, 4, 1, txHash(4, 1));
+
+			List<byte[]> both = Arrays.asList(a, b);
+			List<AddressTxIndex.Item> page = index.list(both, null, 4);
+			Assert.assertEquals("9:1 8:2 8:1 7:1", positions(page));
+			Assert.assertEquals(txHash(8, 2), page.get(1).getTxHash());
+
+			//从上一页的位置继续，同一笔交易只返回一次
+			page = index.list(both, page.get(3).getPosition(), 5);
+			Assert.assertEquals("6:2 6:1 5:1 4:2 4:1", positions(page));
+			page = index.list(both, AddressTxIndex.Position.parse(page.get(4).getPosition().toString()), 100);
+			Assert.assertEquals(6, page.size());
+
+			//回滚后不再返回
+			index.delete(a, 9, 1);
+			Assert.assertEquals("8:1", positions(index.list(Arrays.asList(a), null, 1)));
+			Assert.assertEquals(0, index.list(new ArrayList<byte[]>(), null, 10).size());
+			Assert.assertNull(AddressTxIndex.Position.parse("abc"));
+		} finally {
+			db.close();
+		}
+	}
+
+	private static Sha256Hash txHash(long height, int txIndex) {
+		return Sha256Hash.twiceOf((height + ":" + txIndex).getBytes());
+	}
+
+	private static String positions(List<AddressTxIndex.Item> items) {
+		StringBuilder sb = new StringBuilder();
+		for (AddressTxIndex.Item item : items) {
+			if(sb.length() > 0) {
+				sb.append(" ");
+			}
+			sb.append(item.getPosition());
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,55 @@
+package org.inchain.store;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BlockFileStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testAppendAndRead() throws IOException {
+		String dir = folder.newFolder().getAbsolutePath();
+
+		BlockFileStore store = new BlockFileStore(dir);
+		BlockFileStore.Location first = store.append(content(100, 1), false);
+		BlockFileStore.Location second = store.append(content(200, 2), true);
+		Assert.assertArrayEquals(content(100, 1), store.read(first));
+		Assert.assertArrayEquals(content(200, 2), store.read(second));
+
+		//撤销最后一条后，新的记录写在同一位置
+		store.truncate(second);
+		BlockFileStore.Location third = store.append(content(50, 3), true);
+		Assert.assertEquals(second.getOffset(), third.getOffset());
+		//不是最后一条则不撤销
+		store.truncate(first);
+		Assert.assertArrayEquals(content(100, 1), store.read(first));
+		store.close();
+
+		//重新打开后继续追加
+		store = new BlockFileStore(dir);
+		BlockFileStore.Location fourth = store.append(content(10, 4), true);
+		Assert.assertTrue(fourth.getOffset() > third.getOffset());
+		Assert.assertArrayEquals(content(50, 3), store.read(third));
+		Assert.assertArrayEquals(content(10, 4), store.read(fourth));
+
+		BlockFileStore.Location parsed = BlockFileStore.Location.parse(fourth.serialize());
+		Assert.assertEquals(fourth.getFile(), parsed.getFile());
+		Assert.assertEquals(fourth.getOffset(), parsed.getOffset());
+		Assert.assertEquals(fourth.getLength(), parsed.getLength());
+		store.close();
+	}
+
+	private byte[] content(int length, int seed) {
+		byte[] content = new byte[length];
+		for (int i = 0; i < length; i++) {
+			content[i] = (byte) (seed * 31 + i);
+		}
+		return content;
+	}
+}
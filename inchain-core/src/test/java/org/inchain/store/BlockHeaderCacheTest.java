@@ -0,0 +1,36 @@
+package org.inchain.store;
+
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.network.NetworkParams;
+import org.inchain.network.UnitNetworkParams;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockHeaderCacheTest {
+
+	@Test
+	public void testStaleReadAfterInvalidate() {
+		NetworkParams network = new UnitNetworkParams();
+		BlockHeaderCache cache = new BlockHeaderCache(16);
+		byte[] hash = Sha256Hash.of("block".getBytes()).getBytes();
+
+		//读取存储之前取版本，期间区块被回滚，读到的旧区块头不能放入缓存
+		long version = cache.getVersion();
+		BlockHeaderStore stale = new BlockHeaderStore(network);
+		cache.invalidate(hash);
+		Assert.assertSame(stale, cache.putIfAbsent(hash, stale, version));
+		Assert.assertNull(cache.get(hash));
+
+		//提交之后放入的新区块头不会被读到的旧区块头替换
+		BlockHeaderStore updated = new BlockHeaderStore(network);
+		version = cache.getVersion();
+		cache.put(hash, updated);
+		Assert.assertSame(updated, cache.putIfAbsent(hash, new BlockHeaderStore(network), version));
+
+		//版本没有变化时正常放入
+		cache.remove(hash);
+		BlockHeaderStore fresh = new BlockHeaderStore(network);
+		Assert.assertSame(fresh, cache.putIfAbsent(hash, fresh, cache.getVersion()));
+		Assert.assertSame(fresh, cache.get(hash));
+	}
+}
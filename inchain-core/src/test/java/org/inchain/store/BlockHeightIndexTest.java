@@ -0,0 +1,43 @@
+package org.inchain.store;
+
+import org.inchain.crypto.Sha256Hash;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockHeightIndexTest {
+
+	@Test
+	public void testPutAndTruncate() {
+		BlockHeightIndex index = new BlockHeightIndex(2);
+
+		for (int i = 0; i < 1000; i++) {
+			index.put(i, Sha256Hash.of(("block_" + i).getBytes()));
+		}
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertArrayEquals(Sha256Hash.of(("block_" + i).getBytes()).getBytes(), index.get(i));
+		}
+		Assert.assertNull(index.get(1000));
+
+		//回滚后，之后的高度都没有了
+		index.truncate(500);
+		Assert.assertNotNull(index.get(499));
+		Assert.assertNull(index.get(500));
+		Assert.assertNull(index.get(999));
+	}
+
+	@Test
+	public void testFill() {
+		BlockHeightIndex index = new BlockHeightIndex(16);
+		byte[] hash = Sha256Hash.of("block".getBytes()).getBytes();
+
+		long version = index.getVersion();
+		index.fill(5, hash, version);
+		Assert.assertArrayEquals(hash, index.get(5));
+
+		//读取期间有区块回滚，不写入
+		version = index.getVersion();
+		index.truncate(5);
+		index.fill(5, hash, version);
+		Assert.assertNull(index.get(5));
+	}
+}
@@ -0,0 +1,151 @@
+package org.inchain.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.filter.GolombFilter;
+import org.inchain.message.BlockHeader;
+import org.inchain.network.UnitNetworkParams;
+import org.inchain.utils.Utils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BlockStoreRescanTest {
+
+	private static final int BEST_HEIGHT = 5;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private byte[] mine = new byte[20];
+	private byte[] other = new byte[20];
+	private List<Sha256Hash> hashs = new ArrayList<Sha256Hash>();
+	private List<BlockStoreProvider> providers = new ArrayList<BlockStoreProvider>();
+	private String dir;
+	private String blockFilesDir;
+
+	@Before
+	public void init() throws IOException {
+		mine[0] = 1;
+		other[0] = 2;
+		dir = folder.newFolder().getAbsolutePath();
+		blockFilesDir = folder.newFolder().getAbsolutePath();
+
+		BlockStoreProvider provider = new BlockStoreProvider(dir, blockFilesDir);
+		provider.network = new UnitNetworkParams();
+		for (int height = 0; height <= BEST_HEIGHT; height++) {
+			Sha256Hash hash = Sha256Hash.of(("block" + height).getBytes());
+			hashs.add(hash);
+			putHeader(provider, height, hash);
+		}
+		provider.put(Sha256Hash.ZERO_HASH.getBytes(), hashs.get(BEST_HEIGHT).getBytes());
+
+		//高度1和4的区块与账户有关，高度2和5缺少过滤器
+		putFilter(provider, 0, other);
+		putFilter(provider, 1, mine);
+		putFilter(provider, 3, other);
+		putFilter(provider, 4, mine);
+		//长度不对的键和内容不能当成过滤器读取
+		provider.put(Keyspace.BLOCK_FILTER.key().int32(1).build(), new byte[40]);
+		provider.close();
+	}
+
+	@After
+	public void close() throws IOException {
+		for (BlockStoreProvider provider : providers) {
+			provider.close();
+		}
+	}
+
+	@Test
+	public void testCandidates() {
+		final List<Sha256Hash> loaded = Collections.synchronizedList(new ArrayList<Sha256Hash>());
+		BlockStoreProvider provider = open(new BlockStoreProvider(dir, blockFilesDir) {
+			@Override
+			public BlockStore getBlock(byte[] hash) {
+				loaded.add(Sha256Hash.wrap(hash));
+				return null;
+			}
+		});
+
+		List<TransactionStore> txs = provider.loadRelatedTransactions(Arrays.asList(mine));
+		Assert.assertNotNull(txs);
+		Assert.assertTrue(txs.isEmpty());
+
+		//匹配的区块和缺少过滤器的区块都要读取，不匹配的跳过
+		Set<Sha256Hash> expected = new HashSet<Sha256Hash>(Arrays.asList(hashs.get(1), hashs.get(2), hashs.get(4), hashs.get(5)));
+		Assert.assertEquals(expected, new HashSet<Sha256Hash>(loaded));
+		Assert.assertEquals(expected.size(), loaded.size());
+
+		RescanProgress progress = provider.getRescanProgress();
+		Assert.assertEquals(BEST_HEIGHT, progress.getBestHeight());
+		Assert.assertEquals(4, progress.getCandidateBlocks());
+		Assert.assertEquals(4, progress.getLoadedBlocks());
+		Assert.assertEquals(100, progress.getPercent());
+		Assert.assertTrue(progress.isFinished());
+		Assert.assertFalse(provider.cancelRescan());
+	}
+
+	@Test
+	public void testCancel() {
+		BlockStoreProvider provider = open(new BlockStoreProvider(dir, blockFilesDir) {
+			@Override
+			public BlockStore getBlock(byte[] hash) {
+				//读取第一个区块时取消
+				cancelRescan();
+				return null;
+			}
+		});
+
+		Assert.assertNull(provider.loadRelatedTransactions(Arrays.asList(mine)));
+
+		RescanProgress progress = provider.getRescanProgress();
+		Assert.assertTrue(progress.isCancelled());
+		Assert.assertTrue(progress.isFinished());
+		Assert.assertTrue(progress.getLoadedBlocks() < progress.getCandidateBlocks());
+	}
+
+	private BlockStoreProvider open(BlockStoreProvider provider) {
+		provider.network = new UnitNetworkParams();
+		providers.add(provider);
+		return provider;
+	}
+
+	private void putHeader(BlockStoreProvider provider, int height, Sha256Hash hash) {
+		BlockHeader header = new BlockHeader(provider.network);
+		header.setVersion(1);
+		header.setPreHash(height == 0 ? Sha256Hash.ZERO_HASH : hashs.get(height - 1));
+		header.setMerkleHash(Sha256Hash.ZERO_HASH);
+		header.setHeight(height);
+		header.setScriptBytes(new byte[0]);
+		header.setTxHashs(new ArrayList<Sha256Hash>());
+
+		BlockHeaderStore store = new BlockHeaderStore(provider.network);
+		store.setBlockHeader(header);
+		store.setNextHash(Sha256Hash.ZERO_HASH);
+		provider.put(hash.getBytes(), store.baseSerialize());
+
+		byte[] heightBytes = new byte[4];
+		Utils.uint32ToByteArrayBE(height, heightBytes, 0);
+		provider.put(heightBytes, hash.getBytes());
+	}
+
+	private void putFilter(BlockStoreProvider provider, int height, byte[] hash160) {
+		byte[] hash = hashs.get(height).getBytes();
+		byte[] filter = GolombFilter.build(hash, Arrays.asList(hash160)).getData();
+		byte[] content = new byte[hash.length + filter.length];
+		System.arraycopy(hash, 0, content, 0, hash.length);
+		System.arraycopy(filter, 0, content, hash.length, filter.length);
+		provider.put(Keyspace.BLOCK_FILTER.key(height), content);
+	}
+}
@@ -0,0 +1,169 @@
+package org.inchain.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.inchain.account.Address;
+import org.inchain.core.Assets;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.network.UnitNetworkParams;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ChainstateMigrationTest {
+
+	private static final int SUB_ACCOUNT_RECORD_LENGTH = Address.HASH_LENGTH + Sha256Hash.LENGTH;
+	private static final int CIRCULATION_RECORD_LENGTH = Address.LENGTH + Sha256Hash.LENGTH;
+	private static final int ASSETS_RECORD_LENGTH = Assets.CODE_LENGTH + 8;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(1l);
+	private final List<byte[]> legacyKeys = new ArrayList<byte[]>();
+	private ChainstateStoreProvider provider;
+	private BlockStoreProvider blockStoreProvider;
+
+	@Before
+	public void init() throws IOException {
+		provider = new ChainstateStoreProvider(folder.newFolder().getAbsolutePath());
+		provider.network = new UnitNetworkParams();
+		blockStoreProvider = new BlockStoreProvider(folder.newFolder().getAbsolutePath(), folder.newFolder().getAbsolutePath());
+		blockStoreProvider.network = provider.network;
+		ReflectionTestUtils.setField(provider, "blockStoreProvider", blockStoreProvider);
+	}
+
+	@After
+	public void close() throws IOException {
+		provider.close();
+		blockStoreProvider.close();
+	}
+
+	@Test
+	public void testMigrateLegacyLists() {
+		//长度能同时被两种记录整除的列表，认证账户有账户信息，按子账户转换；防伪码没有，按流转记录转换
+		int ambiguousLength = SUB_ACCOUNT_RECORD_LENGTH * CIRCULATION_RECORD_LENGTH;
+		byte[] certAccount = owner(Address.LENGTH);
+		provider.put(certAccount, new byte[] {1});
+		byte[] certSubAccounts = records(ambiguousLength / SUB_ACCOUNT_RECORD_LENGTH, SUB_ACCOUNT_RECORD_LENGTH);
+		putLegacy(0, 1, certAccount, certSubAccounts);
+
+		byte[] antifakeCode = owner(Address.LENGTH);
+		byte[] circulations = records(ambiguousLength / CIRCULATION_RECORD_LENGTH, CIRCULATION_RECORD_LENGTH);
+		putLegacy(0, 1, antifakeCode, circulations);
+
+		//只能被一种记录整除的列表
+		byte[] subAccountOwner = owner(Address.LENGTH);
+		byte[] subAccounts = records(2, SUB_ACCOUNT_RECORD_LENGTH);
+		putLegacy(0, 1, subAccountOwner, subAccounts);
+
+		byte[] circulationOwner = owner(Address.LENGTH);
+		byte[] fewCirculations = records(3, CIRCULATION_RECORD_LENGTH);
+		putLegacy(0, 1, circulationOwner, fewCirculations);
+
+		//防伪码转让
+		byte[] transferOwner = owner(Address.LENGTH);
+		byte[] transfers = records(2, SUB_ACCOUNT_RECORD_LENGTH);
+		putLegacy(0, 2, transferOwner, transfers);
+
+		//资产发行，key为资产代码的hash
+		byte[] assetsCodeHash = owner(Sha256Hash.LENGTH);
+		byte[] issues = records(2, Sha256Hash.LENGTH);
+		putLegacy(1, 1, assetsCodeHash, issues);
+
+		//资产账户，旧版本用过hash160和完整地址两种key
+		byte[] assetsHash160 = owner(Address.LENGTH);
+		byte[] hash160Assets = records(2, ASSETS_RECORD_LENGTH);
+		putLegacy(1, 1, assetsHash160, hash160Assets);
+		byte[] assetsAddress = owner(Address.HASH_LENGTH);
+		byte[] addressAssets = records(3, ASSETS_RECORD_LENGTH);
+		putLegacy(1, 1, assetsAddress, addressAssets);
+
+		provider.init();
+
+		MultiValueIndex subAccountIndex = new MultiValueIndex(provider.db, Keyspace.SUB_ACCOUNTS);
+		assertRecords(subAccountIndex, certAccount, certSubAccounts, SUB_ACCOUNT_RECORD_LENGTH);
+		assertRecords(subAccountIndex, subAccountOwner, subAccounts, SUB_ACCOUNT_RECORD_LENGTH);
+		Assert.assertEquals(0, subAccountIndex.count(antifakeCode));
+		Assert.assertEquals(0, subAccountIndex.count(circulationOwner));
+
+		MultiValueIndex circulationIndex = new MultiValueIndex(provider.db, Keyspace.CIRCULATIONS);
+		MultiValueIndex circulationAdderIndex = new MultiValueIndex(provider.db, Keyspace.CIRCULATION_ADDERS);
+		assertRecords(circulationIndex, antifakeCode, circulations, CIRCULATION_RECORD_LENGTH);
+		assertRecords(circulationIndex, circulationOwner, fewCirculations, CIRCULATION_RECORD_LENGTH);
+		Assert.assertEquals(0, circulationIndex.count(certAccount));
+		for (int j = 0; j < fewCirculations.length; j += CIRCULATION_RECORD_LENGTH) {
+			byte[] hash160 = Arrays.copyOfRange(fewCirculations, j, j + Address.LENGTH);
+			byte[] txHash = Arrays.copyOfRange(fewCirculations, j + Address.LENGTH, j + CIRCULATION_RECORD_LENGTH);
+			byte[] adder = new byte[circulationOwner.length + hash160.length];
+			System.arraycopy(circulationOwner, 0, adder, 0, circulationOwner.length);
+			System.arraycopy(hash160, 0, adder, circulationOwner.length, hash160.length);
+			Assert.assertEquals(1, circulationAdderIndex.count(adder));
+			Assert.assertArrayEquals(txHash, circulationAdderIndex.get(adder, txHash));
+		}
+
+		assertRecords(new MultiValueIndex(provider.db, Keyspace.ANTIFAKE_TRANSFERS), transferOwner, transfers, SUB_ACCOUNT_RECORD_LENGTH);
+
+		//区块里找不到发行交易时数量记为0
+		MultiValueIndex assetsIssueIndex = new MultiValueIndex(provider.db, Keyspace.ASSETS_ISSUES);
+		List<byte[]> issueRecords = assetsIssueIndex.values(assetsCodeHash);
+		Assert.assertEquals(2, issueRecords.size());
+		for (int i = 0; i < issueRecords.size(); i++) {
+			byte[] expected = Arrays.copyOf(Arrays.copyOfRange(issues, i * Sha256Hash.LENGTH, (i + 1) * Sha256Hash.LENGTH), Sha256Hash.LENGTH + 8);
+			Assert.assertArrayEquals(expected, issueRecords.get(i));
+		}
+
+		MultiValueIndex accountAssetsIndex = new MultiValueIndex(provider.db, Keyspace.ACCOUNT_ASSETS);
+		assertRecords(accountAssetsIndex, assetsHash160, hash160Assets, ASSETS_RECORD_LENGTH);
+		assertRecords(accountAssetsIndex, assetsAddress, addressAssets, ASSETS_RECORD_LENGTH);
+
+		//旧的key已经删除，账户信息保留
+		for (byte[] key : legacyKeys) {
+			Assert.assertNull(provider.getBytes(key));
+		}
+		Assert.assertNotNull(provider.getBytes(certAccount));
+	}
+
+	private void putLegacy(int first, int second, byte[] owner, byte[] value) {
+		byte[] key = new byte[2 + owner.length];
+		key[0] = (byte) first;
+		key[1] = (byte) second;
+		System.arraycopy(owner, 0, key, 2, owner.length);
+		provider.put(key, value);
+		legacyKeys.add(key);
+	}
+
+	private void assertRecords(MultiValueIndex index, byte[] owner, byte[] value, int recordLength) {
+		List<byte[]> values = index.values(owner);
+		Assert.assertEquals(value.length / recordLength, index.count(owner));
+		Assert.assertEquals(value.length / recordLength, values.size());
+		for (int i = 0; i < values.size(); i++) {
+			byte[] expected = Arrays.copyOfRange(value, i * recordLength, (i + 1) * recordLength);
+			Assert.assertArrayEquals(expected, values.get(i));
+		}
+	}
+
+	/*
+	 * 第一个字节不为0和1，不会和旧的列表key混在一起
+	 */
+	private byte[] owner(int length) {
+		byte[] owner = new byte[length];
+		random.nextBytes(owner);
+		owner[0] = 5;
+		return owner;
+	}
+
+	private byte[] records(int count, int length) {
+		byte[] value = new byte[count * length];
+		random.nextBytes(value);
+		return value;
+	}
+}
@@ -0,0 +1,85 @@
+package org.inchain.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.inchain.consensus.ConsensusAccount;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.db.Db;
+import org.inchain.db.LevelDB;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ConsensusJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMembers() throws IOException {
+		Db db = new LevelDB(folder.newFolder().getAbsolutePath());
+		try {
+			ConsensusJournal journal = new ConsensusJournal(db);
+			PeriodIndex periodIndex = new PeriodIndex();
+
+			//模拟共识池，每轮一个块，第 i 轮加入成员 i，每 3 轮退出最早加入的一个成员
+			List<ConsensusAccount> pool = new ArrayList<ConsensusAccount>();
+			List<List<ConsensusAccount>> expected = new ArrayList<List<ConsensusAccount>>();
+			for (int i = 0; i < 100; i++) {
+				long time = 1000l + i * 10;
+				expected.add(new ArrayList<ConsensusAccount>(pool));
+
+				if(journal.needCheckpoint(time, periodIndex)) {
+					journal.putCheckpoint(time, pool);
+				}
+				List<ConsensusJournal.Event> events = new ArrayList<ConsensusJournal.Event>();
+				ConsensusAccount join = member(i);
+				pool.add(join);
+				events.add(new ConsensusJournal.Event(ConsensusJournal.TYPE_JOIN, join.getHash160(), join.getCommissioned()));
+				if(i % 3 == 2) {
+					ConsensusAccount leave = pool.remove(0);
+					events.add(new ConsensusJournal.Event(ConsensusJournal.TYPE_LEAVE, leave.getHash160(), leave.getCommissioned()));
+				}
+				journal.appendEvents(time, i, events);
+				periodIndex.add(time, i);
+			}
+
+			for (int i = 0; i < 100; i++) {
+				assertMembers(expected.get(i), journal.getMembers(1000l + i * 10, periodIndex));
+			}
+			//下一轮
+			assertMembers(pool, journal.getMembers(2000l, periodIndex));
+
+			//重新加载检查点
+			journal = new ConsensusJournal(db);
+			journal.load();
+			assertMembers(expected.get(55), journal.getMembers(1550l, periodIndex));
+
+			//回滚最后一轮
+			PeriodIndex.Period period = periodIndex.remove(1990l, 99);
+			journal.revoke(1990l, 99, period == null);
+			assertMembers(expected.get(99), journal.getMembers(1990l, periodIndex));
+		} finally {
+			db.close();
+		}
+	}
+
+	private ConsensusAccount member(int i) {
+		byte[] packager = Arrays.copyOf(Sha256Hash.of(("packager_" + i).getBytes()).getBytes(), 20);
+		byte[] commissioned = Arrays.copyOf(Sha256Hash.of(("commissioned_" + i).getBytes()).getBytes(), 20);
+		return new ConsensusAccount(packager, commissioned);
+	}
+
+	private void assertMembers(List<ConsensusAccount> expected, List<ConsensusAccount> actual) {
+		Assert.assertNotNull(actual);
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertArrayEquals(expected.get(i).getHash160(), actual.get(i).getHash160());
+			Assert.assertArrayEquals(expected.get(i).getCommissioned(), actual.get(i).getCommissioned());
+		}
+	}
+}
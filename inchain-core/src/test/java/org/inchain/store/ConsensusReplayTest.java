@@ -0,0 +1,199 @@
+package org.inchain.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.inchain.consensus.CarditConsensusMeeting;
+import org.inchain.consensus.ConsensusAccount;
+import org.inchain.consensus.ConsensusModel;
+import org.inchain.consensus.ConsensusPoolCacher;
+import org.inchain.core.Coin;
+import org.inchain.core.Definition;
+import org.inchain.crypto.ECKey;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.message.Block;
+import org.inchain.network.NetworkParams;
+import org.inchain.network.UnitNetworkParams;
+import org.inchain.script.ScriptBuilder;
+import org.inchain.transaction.Transaction;
+import org.inchain.transaction.TransactionOutput;
+import org.inchain.transaction.business.RegConsensusTransaction;
+import org.inchain.transaction.business.RemConsensusTransaction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 共识成员日志没有覆盖的轮次，从区块倒推的共识成员，必须和日志得到的一致
+ * @author ln
+ *
+ */
+public class ConsensusReplayTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final NetworkParams network = new UnitNetworkParams();
+	private final ECKey key = new ECKey();
+
+	private final Map<Sha256Hash, Block> blocks = new HashMap<Sha256Hash, Block>();
+	private final Map<Sha256Hash, Transaction> transactions = new HashMap<Sha256Hash, Transaction>();
+	private final ConsensusPoolCacher consensusPool = new ConsensusPoolCacher();
+	private final PeriodIndex periodIndex = new PeriodIndex();
+
+	private ConsensusJournal journal;
+	private BlockStoreProvider blockStoreProvider;
+	private CarditConsensusMeeting consensusMeeting;
+	//为false时模拟升级之前的轮次，日志里没有，只能从区块倒推
+	private boolean useJournal;
+	private Block bestBlock;
+
+	@Before
+	public void init() throws IOException {
+		blockStoreProvider = new BlockStoreProvider(folder.newFolder().getAbsolutePath(), folder.newFolder().getAbsolutePath()) {
+			@Override
+			public BlockHeaderStore getBestBlockHeader() {
+				BlockHeaderStore store = new BlockHeaderStore(network);
+				store.setBlockHeader(bestBlock);
+				return store;
+			}
+
+			@Override
+			public BlockStore getBlock(byte[] hash) {
+				Block block = blocks.get(Sha256Hash.wrap(hash));
+				return block == null ? null : new BlockStore(network, block);
+			}
+
+			@Override
+			public TransactionStore getTransaction(byte[] hash) {
+				Transaction tx = transactions.get(Sha256Hash.wrap(hash));
+				return tx == null ? null : new TransactionStore(network, tx);
+			}
+
+			@Override
+			public List<ConsensusAccount> getConsensusMembers(long periodStartTime) {
+				return useJournal ? journal.getMembers(periodStartTime, periodIndex) : null;
+			}
+		};
+		ReflectionTestUtils.setField(blockStoreProvider, "network", network);
+		journal = new ConsensusJournal(blockStoreProvider.db);
+
+		consensusMeeting = new CarditConsensusMeeting();
+		ReflectionTestUtils.setField(consensusMeeting, "blockStoreProvider", blockStoreProvider);
+		ReflectionTestUtils.setField(consensusMeeting, "consensusPool", consensusPool);
+	}
+
+	@After
+	public void close() throws IOException {
+		blockStoreProvider.close();
+	}
+
+	/**
+	 * 打包人和申请人不同的成员退出后，倒推和日志得到的成员及顺序一致
+	 */
+	@Test
+	public void testReplayMatchesJournal() {
+		RegConsensusTransaction a = newReg("a", "a");
+		RegConsensusTransaction b = newReg("b", "b_packager");
+		RegConsensusTransaction c = newReg("c", "c_packager");
+		RegConsensusTransaction d = newReg("d", "d_packager");
+		for (RegConsensusTransaction regTx : new RegConsensusTransaction[] {a, b, c}) {
+			consensusPool.add(new ConsensusModel(regTx.getHash(), regTx.getHash160(), regTx.getPackager()));
+		}
+
+		RemConsensusTransaction remB = new RemConsensusTransaction(network);
+		remB.addInput(new TransactionOutput(b, Coin.ZERO, key)).setScriptSig(ScriptBuilder.createInputScript(null, key));
+		remB.setScriptSig(ScriptBuilder.createSystemAccountScript(b.getHash160(), key.getPubKey(true), new byte[0]));
+		remB.setScriptBytes(remB.getScriptSig().getProgram());
+
+		addBlock(990l);
+		addBlock(1000l, remB);
+		addBlock(1010l, d);
+
+		for (long periodStartTime = 990l; periodStartTime <= 1020l; periodStartTime += 10l) {
+			useJournal = true;
+			List<ConsensusAccount> fromJournal = consensusMeeting.analysisConsensusSnapshots(periodStartTime);
+			useJournal = false;
+			List<ConsensusAccount> replayed = consensusMeeting.analysisConsensusSnapshots(periodStartTime);
+
+			Assert.assertEquals(fromJournal.size(), replayed.size());
+			for (int i = 0; i < fromJournal.size(); i++) {
+				Assert.assertArrayEquals(fromJournal.get(i).getHash160(), replayed.get(i).getHash160());
+				Assert.assertArrayEquals(fromJournal.get(i).getCommissioned(), replayed.get(i).getCommissioned());
+			}
+		}
+
+		//第1000轮开始时 b 还没有退出，打包人是 b 的打包地址
+		useJournal = false;
+		List<ConsensusAccount> members = consensusMeeting.analysisConsensusSnapshots(1000l);
+		Assert.assertEquals(3, members.size());
+		boolean found = false;
+		for (ConsensusAccount account : members) {
+			if(Arrays.equals(b.getPackager(), account.getHash160())) {
+				Assert.assertArrayEquals(b.getHash160(), account.getCommissioned());
+				found = true;
+			}
+		}
+		Assert.assertTrue(found);
+	}
+
+	/*
+	 * 按保存区块的顺序，记录共识成员日志并更新共识池
+	 */
+	private void addBlock(long periodStartTime, Transaction... txs) {
+		Block block = new Block(network);
+		block.setHeight(bestBlock == null ? 0l : bestBlock.getHeight() + 1);
+		block.setPreHash(bestBlock == null ? Sha256Hash.ZERO_HASH : bestBlock.getHash());
+		block.setPeriodStartTime(periodStartTime);
+		block.setTxs(new ArrayList<Transaction>(Arrays.asList(txs)));
+		block.setTxCount(txs.length);
+		block.setHash(Sha256Hash.of(("block" + block.getHeight()).getBytes()));
+
+		if(periodIndex.get(periodStartTime) == null && journal.needCheckpoint(periodStartTime, periodIndex)) {
+			journal.putCheckpoint(periodStartTime, consensusPool.listSnapshots());
+		}
+		List<ConsensusJournal.Event> events = new ArrayList<ConsensusJournal.Event>();
+		for (Transaction tx : txs) {
+			transactions.put(tx.getHash(), tx);
+			ConsensusJournal.Event event = ReflectionTestUtils.invokeMethod(blockStoreProvider, "getConsensusEvent", tx);
+			if(event != null) {
+				events.add(event);
+			}
+			if(tx.getType() == Definition.TYPE_REG_CONSENSUS) {
+				RegConsensusTransaction regTx = (RegConsensusTransaction) tx;
+				consensusPool.add(new ConsensusModel(regTx.getHash(), regTx.getHash160(), regTx.getPackager()));
+			} else if(tx.getType() == Definition.TYPE_REM_CONSENSUS) {
+				Transaction regTx = transactions.get(tx.getInput(0).getFroms().get(0).getParent().getHash());
+				consensusPool.delete(((RegConsensusTransaction) regTx).getHash160());
+			}
+		}
+		journal.appendEvents(periodStartTime, block.getHeight(), events);
+		periodIndex.add(periodStartTime, block.getHeight());
+
+		blocks.put(block.getHash(), block);
+		bestBlock = block;
+	}
+
+	/*
+	 * 申请人和打包人地址由名称生成，不需要有效签名
+	 */
+	private RegConsensusTransaction newReg(String applicant, String packager) {
+		RegConsensusTransaction regTx = new RegConsensusTransaction(network, Definition.VERSION, 1000l, hash160(packager));
+		regTx.setScriptSig(ScriptBuilder.createSystemAccountScript(hash160(applicant), key.getPubKey(true), new byte[0]));
+		regTx.setScriptBytes(regTx.getScriptSig().getProgram());
+		transactions.put(regTx.getHash(), regTx);
+		return regTx;
+	}
+
+	private byte[] hash160(String name) {
+		return Arrays.copyOf(Sha256Hash.of(name.getBytes()).getBytes(), 20);
+	}
+}
@@ -0,0 +1,77 @@
+package org.inchain.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.inchain.db.LevelDB;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class KeyspaceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testOrderedScan() throws IOException {
+		LevelDB db = new LevelDB(folder.newFolder().getAbsolutePath());
+		try {
+			//其它命名空间和没有前缀的旧记录
+			db.put(Keyspace.BLOCK_FILE.key(new byte[] {1}), new byte[] {1});
+			db.put(new byte[] {0x68, 0x67, 0x74, 0x3b}, new byte[] {1});
+			db.put(new byte[32], new byte[] {1});
+
+			long[] heights = new long[] {300l, -1l, 0l, 2l, 256l, Long.MAX_VALUE, 1l};
+			for (long height : heights) {
+				db.put(Keyspace.BLOCK_HEIGHT.key(height), new byte[] {(byte) height});
+			}
+
+			//按数值顺序返回，不包含范围外的记录
+			int offset = Keyspace.BLOCK_HEIGHT.getPrefixLength();
+			List<Long> scanned = new ArrayList<Long>();
+			Keyspace.Cursor cursor = Keyspace.BLOCK_HEIGHT.iterator(db);
+			try {
+				while(cursor.hasNext()) {
+					scanned.add(Keyspace.readInt64(cursor.next().getKey(), offset));
+				}
+			} finally {
+				cursor.close();
+			}
+			Assert.assertEquals(7, scanned.size());
+			for (int i = 1; i < scanned.size(); i++) {
+				Assert.assertTrue(scanned.get(i - 1) < scanned.get(i));
+			}
+			Assert.assertEquals(-1l, (long) scanned.get(0));
+
+			//从某个值开始
+			byte[] range = Keyspace.BLOCK_HEIGHT.key().build();
+			cursor = Keyspace.BLOCK_HEIGHT.iterator(db, range, Keyspace.BLOCK_HEIGHT.key(2l));
+			try {
+				Assert.assertEquals(2l, Keyspace.readInt64(cursor.next().getKey(), offset));
+				Assert.assertEquals(256l, Keyspace.readInt64(cursor.next().getKey(), offset));
+			} finally {
+				cursor.close();
+			}
+
+			//组合key，按第一个字段限定范围
+			byte[] owner = Keyspace.PERIOD.key().int32(-5).build();
+			Assert.assertEquals(-5, Keyspace.readInt32(owner, offset));
+			db.put(Keyspace.PERIOD.key().int32(-5).int64(2l).build(), new byte[0]);
+			db.put(Keyspace.PERIOD.key().int32(-5).int64(1l).build(), new byte[0]);
+			db.put(Keyspace.PERIOD.key().int32(6).int64(0l).build(), new byte[0]);
+			cursor = Keyspace.PERIOD.iterator(db, owner);
+			try {
+				Assert.assertEquals(1l, Keyspace.readInt64(cursor.next().getKey(), offset + 4));
+				Assert.assertEquals(2l, Keyspace.readInt64(cursor.next().getKey(), offset + 4));
+				Assert.assertFalse(cursor.hasNext());
+			} finally {
+				cursor.close();
+			}
+		} finally {
+			db.close();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.inchain.store;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.inchain.db.LevelDB;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MultiValueIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testAppendRemoveAndPage() throws IOException {
+		LevelDB db = new LevelDB(folder.newFolder().getAbsolutePath());
+		try {
+			MultiValueIndex index = new MultiValueIndex(db, Keyspace.CIRCULATIONS);
+			byte[] owner = new byte[] {1, 2, 3};
+			//所有者是另一个所有者的前缀时，记录不能混在一起
+			byte[] longerOwner = new byte[] {1, 2, 3, 4};
+
+			for (int i = 0; i < 10; i++) {
+				Assert.assertTrue(index.put(owner, new byte[] {(byte) i}, new byte[] {(byte) i}));
+			}
+			index.put(longerOwner, new byte[] {0}, new byte[] {100});
+			Assert.assertEquals(10, index.count(owner));
+			Assert.assertEquals(1, index.count(longerOwner));
+
+			//相同的id替换内容，不增加数量
+			Assert.assertFalse(index.put(owner, new byte[] {3}, new byte[] {33}));
+			Assert.assertEquals(10, index.count(owner));
+			Assert.assertArrayEquals(new byte[] {33}, index.get(owner, new byte[] {3}));
+
+			//删除中间和最后的记录
+			Assert.assertArrayEquals(new byte[] {5}, index.remove(owner, new byte[] {5}));
+			Assert.assertNull(index.remove(owner, new byte[] {5}));
+			Assert.assertArrayEquals(new byte[] {9}, index.remove(owner, new byte[] {9}));
+			Assert.assertEquals(8, index.count(owner));
+			Assert.assertArrayEquals(new byte[] {8}, index.last(owner));
+			Assert.assertFalse(index.contains(owner, new byte[] {9}));
+
+			//按添加顺序分页
+			List<MultiValueIndex.Item> page = index.list(owner, 0, 5);
+			Assert.assertEquals(5, page.size());
+			Assert.assertArrayEquals(new byte[] {4}, page.get(4).getValue());
+			page = index.list(owner, page.get(4).getSeq() + 1, 5);
+			Assert.assertEquals(3, page.size());
+			Assert.assertArrayEquals(new byte[] {8}, page.get(2).getValue());
+			Assert.assertEquals(8, index.values(owner).size());
+
+			//删除最后一条后，新加的记录接在后面
+			index.remove(owner, new byte[] {8});
+			index.remove(owner, new byte[] {7});
+			index.remove(owner, new byte[] {6});
+			Assert.assertArrayEquals(new byte[] {4}, index.last(owner));
+			index.put(owner, new byte[] {10}, new byte[] {10});
+			List<MultiValueIndex.Item> items = index.list(owner, 0, 100);
+			Assert.assertEquals(6, items.size());
+			Assert.assertEquals(5l, items.get(5).getSeq());
+
+			for (MultiValueIndex.Item item : items) {
+				index.remove(owner, new byte[] {item.getValue()[0] == 33 ? 3 : item.getValue()[0]});
+			}
+			Assert.assertEquals(0, index.count(owner));
+			Assert.assertNull(index.last(owner));
+			Assert.assertEquals(1, index.count(longerOwner));
+		} finally {
+			db.close();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package org.inchain.store;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PeriodIndexTest {
+
+	@Test
+	public void testAddAndRemove() {
+		PeriodIndex index = new PeriodIndex();
+
+		//每轮10个块
+		long height = 0;
+		for (int i = 0; i < 100; i++) {
+			for (int j = 0; j < 10; j++) {
+				index.add(1000l + i * 100, height++);
+			}
+		}
+		Assert.assertEquals(100, index.size());
+
+		PeriodIndex.Period period = index.get(1500l);
+		Assert.assertEquals(50l, period.getFirstHeight());
+		Assert.assertEquals(59l, period.getLastHeight());
+		Assert.assertNull(index.get(1550l));
+
+		List<PeriodIndex.Period> previous = index.getPrevious(1500l, 5);
+		Assert.assertEquals(5, previous.size());
+		Assert.assertEquals(1400l, previous.get(0).getPeriodStartTime());
+		Assert.assertEquals(1000l, index.getPrevious(1100l, 5).get(0).getPeriodStartTime());
+		Assert.assertEquals(1500l, index.getPrevious(1550l, 5).get(0).getPeriodStartTime());
+
+		Assert.assertEquals(3, index.getRange(1450l, 1700l).size());
+
+		//回滚最后一轮
+		for (int j = 0; j < 9; j++) {
+			period = index.remove(10900l, --height);
+			Assert.assertEquals(height - 1, period.getLastHeight());
+		}
+		Assert.assertNull(index.remove(10900l, --height));
+		Assert.assertNull(index.get(10900l));
+		Assert.assertEquals(10800l, index.getLast().getPeriodStartTime());
+	}
+}
@@ -0,0 +1,100 @@
+package org.inchain.store;
+
+import java.util.List;
+
+import org.inchain.UnitBaseTestCase;
+import org.inchain.account.Address;
+import org.inchain.core.Coin;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.network.NetworkParams;
+import org.inchain.transaction.Transaction;
+import org.inchain.transaction.TransactionOutput;
+import org.inchain.utils.Hex;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class UtxoIndexTest extends UnitBaseTestCase {
+
+	@Autowired
+	private NetworkParams network;
+
+	private byte[] hash160 = Hex.decode("ffdf74c494d27474def57c5cb4b41a5455705956");
+
+	@Test
+	public void testBalanceAndSpend() {
+		UtxoIndex index = new UtxoIndex();
+
+		TransactionStore txs = newTransactionStore("75d58fffca9a69ba47056e435f7a5a2347a11d0093b50b415aa28e973d70640b", 10l, 0l, 0l);
+		index.add(txs, 0, hash160);
+		index.add(txs, 1, hash160);
+
+		Coin[] balances = index.getBalanceAndUnconfirmedBalance(hash160, 10l, 0l);
+		Assert.assertEquals(Coin.COIN.multiply(2), balances[0]);
+		Assert.assertEquals(Coin.ZERO, balances[1]);
+		Assert.assertEquals(2, index.getSpendableOutputs(hash160, 10l, 0l).size());
+
+		Assert.assertSame(txs, index.spend(txs.getTransaction().getOutput(0).getKey()));
+		Assert.assertNull(index.spend(txs.getTransaction().getOutput(0).getKey()));
+
+		balances = index.getBalanceAndUnconfirmedBalance(hash160, 10l, 0l);
+		Assert.assertEquals(Coin.COIN, balances[0]);
+
+		index.removeTransaction(txs.getTransaction());
+		Assert.assertEquals(0, index.getSpendableOutputs(hash160, 10l, 0l).size());
+	}
+
+	@Test
+	public void testLockTimeMature() {
+		UtxoIndex index = new UtxoIndex();
+
+		TransactionStore txs = newTransactionStore("a5d58fffca9a69ba47056e435f7a5a2347a11d0093b50b415aa28e973d70640b", 10l, 20l, 0l);
+		index.add(txs, 0, hash160);
+		index.add(txs, 1, hash160);
+
+		//第一笔输出锁定到高度20
+		Coin[] balances = index.getBalanceAndUnconfirmedBalance(hash160, 19l, 0l);
+		Assert.assertEquals(Coin.COIN, balances[0]);
+		Assert.assertEquals(Coin.COIN, balances[1]);
+		Assert.assertEquals(1, index.getSpendableOutputs(hash160, 19l, 0l).size());
+
+		balances = index.getBalanceAndUnconfirmedBalance(hash160, 20l, 0l);
+		Assert.assertEquals(Coin.COIN.multiply(2), balances[0]);
+		Assert.assertEquals(Coin.ZERO, balances[1]);
+		Assert.assertEquals(2, index.getSpendableOutputs(hash160, 20l, 0l).size());
+	}
+
+	@Test
+	public void testConfirm() {
+		UtxoIndex index = new UtxoIndex();
+
+		TransactionStore txs = newTransactionStore("b5d58fffca9a69ba47056e435f7a5a2347a11d0093b50b415aa28e973d70640b", -1l, 0l, 0l);
+		index.add(txs, 0, hash160);
+		index.add(txs, 1, hash160);
+
+		//未确认交易的第一笔输出计入等待中的余额，但可以花费
+		Coin[] balances = index.getBalanceAndUnconfirmedBalance(hash160, 10l, 0l);
+		Assert.assertEquals(Coin.COIN, balances[0]);
+		Assert.assertEquals(Coin.COIN, balances[1]);
+		Assert.assertEquals(2, index.getSpendableOutputs(hash160, 10l, 0l).size());
+
+		txs.setHeight(11l);
+		index.confirm(txs.getTransaction());
+
+		balances = index.getBalanceAndUnconfirmedBalance(hash160, 11l, 0l);
+		Assert.assertEquals(Coin.COIN.multiply(2), balances[0]);
+		Assert.assertEquals(Coin.ZERO, balances[1]);
+	}
+
+	private TransactionStore newTransactionStore(String hash, long height, long lockTime0, long lockTime1) {
+		Address addr = Address.fromP2PKHash(network, network.getSystemAccountVersion(), hash160);
+		Transaction tx = new Transaction(network);
+		tx.setHash(Sha256Hash.wrap(Hex.decode(hash)));
+		tx.addOutput(new TransactionOutput(tx, Coin.COIN, lockTime0, addr));
+		tx.addOutput(new TransactionOutput(tx, Coin.COIN, lockTime1, addr));
+
+		TransactionStore txs = new TransactionStore(network, tx);
+		txs.setHeight(height);
+		return txs;
+	}
+}
@@ -0,0 +1,93 @@
+package org.inchain.test;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.inchain.core.Definition;
+import org.inchain.message.Block;
+import org.inchain.message.Message;
+import org.inchain.message.MessageParsers;
+import org.inchain.network.NetworkParams;
+import org.inchain.network.UnitNetworkParams;
+import org.inchain.transaction.Transaction;
+
+/**
+ * 对比消息解析时反射创建和预先绑定解析器的耗时
+ * 使用单元测试网络的创世块和其中的交易作为数据，直接运行 main 方法
+ * @author ln
+ *
+ */
+public class MessageParseBenchmark {
+
+	private static final int WARMUP = 20000;
+	private static final int ROUNDS = 200000;
+
+	public static void main(String[] args) throws Exception {
+		NetworkParams network = new UnitNetworkParams();
+		Block block = network.getGengsisBlock().getBlock();
+
+		final byte[] blockBytes = block.baseSerialize();
+		final List<byte[]> txs = new ArrayList<byte[]>();
+		for (Transaction tx : block.getTxs()) {
+			txs.add(tx.baseSerialize());
+		}
+		System.out.println("区块 " + blockBytes.length + " 字节，交易 " + txs.size() + " 笔");
+
+		String blockCommand = Definition.MESSAGE_COMMANDS.get(Block.class);
+
+		for (int i = 0; i < 3; i++) {
+			System.out.println("交易 反射    " + time(network, txs, true) + " ns/op");
+			System.out.println("交易 解析器  " + time(network, txs, false) + " ns/op");
+			System.out.println("区块 反射    " + time(network, blockCommand, blockBytes, true) + " ns/op");
+			System.out.println("区块 解析器  " + time(network, blockCommand, blockBytes, false) + " ns/op");
+		}
+	}
+
+	private static long time(NetworkParams network, List<byte[]> txs, boolean reflect) throws Exception {
+		Object sink = null;
+		long start = 0;
+		for (int i = 0; i < WARMUP + ROUNDS; i++) {
+			if(i == WARMUP) {
+				start = System.nanoTime();
+			}
+			byte[] payload = txs.get(i % txs.size());
+			int type = payload[0] & 0xff;
+			if(reflect) {
+				Class<?> clazz = Definition.TRANSACTION_RELATION.get(type);
+				Constructor<?> constructor = clazz.getDeclaredConstructor(NetworkParams.class, byte[].class, int.class);
+				sink = constructor.newInstance(network, payload, 0);
+			} else {
+				sink = MessageParsers.getTransactionParser(type).parse(network, payload, 0);
+			}
+		}
+		long cost = (System.nanoTime() - start) / ROUNDS;
+		if(sink == null) {
+			throw new IllegalStateException();
+		}
+		return cost;
+	}
+
+	private static long time(NetworkParams network, String command, byte[] payload, boolean reflect) throws Exception {
+		Message sink = null;
+		int rounds = ROUNDS / 20;
+		long start = 0;
+		for (int i = 0; i < WARMUP / 20 + rounds; i++) {
+			if(i == WARMUP / 20) {
+				start = System.nanoTime();
+			}
+			if(reflect) {
+				Class<?> clazz = Definition.COMMANDS_MESSAGE.get(command);
+				Constructor<?> constructor = clazz.getDeclaredConstructor(NetworkParams.class, byte[].class);
+				sink = (Message) constructor.newInstance(network, payload);
+			} else {
+				sink = MessageParsers.getMessageParser(command).parse(network, payload);
+			}
+		}
+		long cost = (System.nanoTime() - start) / rounds;
+		if(sink == null) {
+			throw new IllegalStateException();
+		}
+		return cost;
+	}
+}
@@ -0,0 +1,60 @@
+package org.inchain.transaction;
+
+import java.math.BigInteger;
+
+import org.inchain.UnitBaseTestCase;
+import org.inchain.account.AccountTool;
+import org.inchain.account.Address;
+import org.inchain.core.Coin;
+import org.inchain.core.Definition;
+import org.inchain.crypto.ECKey;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.network.NetworkParams;
+import org.inchain.script.Script;
+import org.inchain.script.ScriptBuilder;
+import org.inchain.signers.LocalTransactionSigner;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class SignatureHashContextTest extends UnitBaseTestCase {
+
+	@Autowired
+	private NetworkParams network;
+
+	private ECKey key = ECKey.fromPrivate(new BigInteger("16426823946378490801614451355554969482806436503112915489322677953633742147003"));
+
+	@Test
+	public void testSameAsCopy() {
+		Address addr = AccountTool.newAddress(network, network.getSystemAccountVersion(), key);
+
+		Transaction tx = new Transaction(network);
+		tx.setType(Definition.TYPE_PAY);
+		tx.setVersion(Definition.VERSION);
+		tx.setRemark("sighash".getBytes());
+		for (int i = 0; i < 5; i++) {
+			Transaction out = new Transaction(network);
+			out.setHash(Sha256Hash.of(("out_" + i).getBytes()));
+			TransactionOutput output = out.addOutput(new TransactionOutput(out, Coin.COIN, addr));
+			TransactionInput input = tx.addInput(output);
+			input.setScriptSig(ScriptBuilder.createInputScript(null, key));
+		}
+		tx.addOutput(new TransactionOutput(tx, Coin.COIN.multiply(4), addr));
+
+		new LocalTransactionSigner().signInputs(tx, key);
+
+		byte[] redeemScript = ScriptBuilder.createOutputScript(addr).getProgram();
+		for (int i = 0; i < 5; i++) {
+			Assert.assertEquals(tx.hashForSignatureByCopy(i, redeemScript, (byte) 1), tx.hashForSignature(i, redeemScript, (byte) 1));
+		}
+
+		//解析后的交易验证签名
+		Transaction verifyTx = network.getDefaultSerializer().makeTransaction(tx.baseSerialize(), 0);
+		verifyTx.setCacheSignatureHash(true);
+		for (int i = 0; i < 5; i++) {
+			Assert.assertEquals(tx.hashForSignature(i, redeemScript, (byte) 1), verifyTx.hashForSignature(i, redeemScript, (byte) 1));
+			verifyTx.getInput(i).getScriptSig().run(verifyTx, i, new Script(redeemScript));
+		}
+		verifyTx.setCacheSignatureHash(false);
+	}
+}
@@ -0,0 +1,190 @@
+package org.inchain.validator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.inchain.account.AccountTool;
+import org.inchain.account.Address;
+import org.inchain.core.Coin;
+import org.inchain.core.Definition;
+import org.inchain.core.exception.VerificationException;
+import org.inchain.crypto.ECKey;
+import org.inchain.crypto.Sha256Hash;
+import org.inchain.message.Block;
+import org.inchain.network.NetworkParams;
+import org.inchain.network.UnitNetworkParams;
+import org.inchain.script.ScriptBuilder;
+import org.inchain.transaction.Transaction;
+import org.inchain.transaction.TransactionInput;
+import org.inchain.transaction.TransactionOutput;
+import org.inchain.utils.ConsensusCalculationUtil;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 区块交易的并行验证，并行验证时脚本没有执行的交易，要在状态验证时完整验证
+ * @author ln
+ *
+ */
+public class BlockValidatorTest {
+
+	private final NetworkParams network = new UnitNetworkParams();
+	private final ECKey key = new ECKey();
+	//每笔来源交易的金额不同，保证交易hash不重复
+	private long sourceValue;
+
+	//并行验证时引用的交易找不到的交易
+	private final Set<Sha256Hash> unresolved = new HashSet<Sha256Hash>();
+	//状态验证时是否跳过了脚本验证
+	private final Map<Sha256Hash, Boolean> scriptVerified = new ConcurrentHashMap<Sha256Hash, Boolean>();
+	//完整验证时签名不通过的交易
+	private final Set<Sha256Hash> badSignatures = new HashSet<Sha256Hash>();
+
+	private BlockValidator blockValidator;
+	private ParallelTransactionVerifier parallelTransactionVerifier;
+
+	@Before
+	public void init() {
+		TestValidator transactionValidator = new TestValidator();
+		parallelTransactionVerifier = new ParallelTransactionVerifier();
+		ReflectionTestUtils.setField(parallelTransactionVerifier, "transactionValidator", transactionValidator);
+
+		blockValidator = new BlockValidator();
+		ReflectionTestUtils.setField(blockValidator, "transactionValidator", transactionValidator);
+		ReflectionTestUtils.setField(blockValidator, "parallelTransactionVerifier", parallelTransactionVerifier);
+	}
+
+	/**
+	 * 被引用的交易在并行验证时还找不到，签名不能被当作已经验证过
+	 */
+	@Test
+	public void testUnresolvedInputVerifiedInBlock() throws IOException {
+		Transaction resolved = newTx(newSource());
+		Transaction pending = newTx(newSource());
+		unresolved.add(pending.getHash());
+		badSignatures.add(pending.getHash());
+
+		Block block = newBlock(resolved, pending);
+		try {
+			blockValidator.verifyBlock(block);
+			Assert.fail("引用的交易在并行验证时找不到，签名错误的交易没有被拒绝");
+		} catch (VerificationException e) {
+			//正常
+		}
+
+		Assert.assertEquals(Boolean.TRUE, scriptVerified.get(block.getTxs().get(0).getHash()));
+		Assert.assertEquals(Boolean.TRUE, scriptVerified.get(resolved.getHash()));
+		Assert.assertEquals(Boolean.FALSE, scriptVerified.get(pending.getHash()));
+	}
+
+	/**
+	 * 交易数超过单批数量时，在线程池里并行验证，结果要和交易一一对应
+	 */
+	@Test
+	public void testVerifyResultsInOrder() {
+		List<Transaction> txs = new ArrayList<Transaction>();
+		for (int i = 0; i < 50; i++) {
+			Transaction tx = newTx(newSource());
+			if(i % 3 == 0) {
+				unresolved.add(tx.getHash());
+			}
+			txs.add(tx);
+		}
+
+		boolean[] verified = parallelTransactionVerifier.verify(txs);
+
+		Assert.assertEquals(txs.size(), verified.length);
+		for (int i = 0; i < txs.size(); i++) {
+			Assert.assertEquals(i % 3 != 0, verified[i]);
+		}
+		Assert.assertEquals(txs.size(), parallelTransactionVerifier.getVerifiedCount());
+		Assert.assertEquals(0, parallelTransactionVerifier.verify(Collections.<Transaction>emptyList()).length);
+	}
+
+	private Transaction newSource() {
+		Transaction source = new Transaction(network);
+		source.setType(Definition.TYPE_PAY);
+		source.addOutput(new TransactionOutput(source, Coin.valueOf(++sourceValue), key));
+		source.setHash(Sha256Hash.of(source.baseSerialize()));
+		return source;
+	}
+
+	private Transaction newTx(Transaction source) {
+		Transaction tx = new Transaction(network);
+		tx.setType(Definition.TYPE_PAY);
+		tx.addInput(source.getOutput(0)).setScriptSig(ScriptBuilder.createInputScript(null, key));
+		tx.addOutput(new TransactionOutput(tx, Coin.COIN, key));
+		tx.getHash();
+		return tx;
+	}
+
+	private Block newBlock(Transaction... payTxs) throws IOException {
+		Address address = AccountTool.newAddress(network, key);
+
+		Transaction coinBaseTx = new Transaction(network);
+		coinBaseTx.setVersion(Definition.VERSION);
+		coinBaseTx.setType(Definition.TYPE_COINBASE);
+		TransactionInput input = new TransactionInput();
+		coinBaseTx.addInput(input);
+		input.setScriptSig(ScriptBuilder.createCoinbaseInputScript("block validator test".getBytes()));
+		coinBaseTx.addOutput(ConsensusCalculationUtil.calculatReward(1l), address);
+
+		List<Transaction> txs = new ArrayList<Transaction>();
+		txs.add(coinBaseTx);
+		for (Transaction tx : payTxs) {
+			txs.add(tx);
+		}
+
+		Block block = new Block(network);
+		block.setHeight(1l);
+		block.setPreHash(Sha256Hash.ZERO_HASH);
+		block.setTime(1000l);
+		block.setVersion(1);
+		block.setPeriodCount(1);
+		block.setTimePeriod(0);
+		block.setPeriodStartTime(1000l);
+		block.setTxs(txs);
+		block.setTxCount(txs.size());
+		block.setMerkleHash(block.buildMerkleHash());
+
+		byte[] sign = key.sign(block.getHeaderHash()).encodeToDER();
+		block.setScriptBytes(ScriptBuilder.createSystemAccountScript(address.getHash160(), key.getPubKey(true), sign).getProgram());
+		return block;
+	}
+
+	/*
+	 * 模拟引用的交易是否能找到，以及完整验证时的签名结果
+	 */
+	private class TestValidator extends TransactionValidator {
+
+		@Override
+		public boolean verifyScripts(Transaction tx, List<Transaction> txs) {
+			return !unresolved.contains(tx.getHash());
+		}
+
+		@Override
+		public ValidatorResult<TransactionValidatorResult> valDo(Transaction tx, List<Transaction> txs, boolean verified) {
+			scriptVerified.put(tx.getHash(), verified);
+			final TransactionValidatorResult result = new TransactionValidatorResult();
+			if(!verified && badSignatures.contains(tx.getHash())) {
+				result.setResult(false, "签名错误");
+			} else {
+				result.setResult(true, "ok");
+			}
+			return new ValidatorResult<TransactionValidatorResult>() {
+				@Override
+				public TransactionValidatorResult getResult() {
+					return result;
+				}
+			};
+		}
+	}
+}